@@ -15,8 +15,6 @@
  */
 package org.noear.solon.ai.agent.react.intercept;
 
-import com.knuddels.jtokkit.api.Encoding;
-import org.noear.solon.Utils;
 import org.noear.solon.ai.agent.AgentTrace;
 import org.noear.solon.ai.agent.react.ReActInterceptor;
 import org.noear.solon.ai.agent.react.ReActOptions;
@@ -25,11 +23,13 @@ import org.noear.solon.ai.agent.react.ReActTrace;
 import org.noear.solon.ai.agent.react.intercept.compress.CompressionUtil;
 import org.noear.solon.ai.chat.CacheControl;
 import org.noear.solon.ai.chat.ChatModel;
-import org.noear.solon.ai.chat.content.AbsMedia;
 import org.noear.solon.ai.chat.content.ContentBlock;
 import org.noear.solon.ai.chat.message.*;
 import org.noear.solon.ai.chat.tool.FunctionTool;
 import org.noear.solon.ai.chat.tool.ToolCall;
+import org.noear.solon.ai.tokenizer.TokenCountUtil;
+import org.noear.solon.ai.tokenizer.Tokenizer;
+import org.noear.solon.ai.tokenizer.TokenizerManager;
 import org.noear.solon.core.util.Assert;
 import org.noear.solon.lang.Preview;
 import org.slf4j.Logger;
@@ -70,9 +70,7 @@ public class ContextCompressionInterceptor implements ReActInterceptor {
 
     public final static String META_COMPRESSED = "_compressed";
 
-    // 复用 CompressionUtil 的 Encoding 实例，避免重复加载编码注册表（~2MB 内存开销）
-    private static final Encoding ENCODING_FOR_MODEL = CompressionUtil.getEncoding();
-    private static final String META_TOKEN_SIZE = "token_size";
+    private static final String META_TOKEN_SIZE = TokenCountUtil.META_TOKEN_SIZE;
     // 请求在 ChatRequestDesc.prepare() 阶段仍可能被默认指令、Talent 和 ChatInterceptor 扩展。
     // 这里保留有限安全余量，不提前执行这些有副作用的扩展逻辑。
     private static final double REQUEST_PREPARATION_RESERVE_RATIO = 0.05D;
@@ -92,6 +90,22 @@ public class ContextCompressionInterceptor implements ReActInterceptor {
     // 模型上下文窗口默认值（当 ChatModel 未提供 contextLength 时使用）
     private long defaultContextLength = 128_000L;
 
+    // Token 计数器（共享实例，默认 o200k_base，与 CompressionUtil 同口径）
+    private Tokenizer tokenizer = TokenizerManager.getDefault();
+    // 最近一次 systemPrompt 的计数（systemPrompt 通常每步相同）
+    private volatile TextTokens lastSystemPromptTokens;
+
+    /**
+     * 设置 Token 计数器（如非 OpenAI 模型可使用 {@link TokenizerManager#getTokenizer(String)} 按模型选择）
+     *
+     * @since 4.1
+     */
+    public void setTokenizer(Tokenizer tokenizer) {
+        if (tokenizer != null) {
+            this.tokenizer = tokenizer;
+        }
+    }
+
     /** 设置上下文窗口默认值。 */
     public void setDefaultContextLength(long defaultContextLength) {
         if (defaultContextLength <= 0) {
@@ -218,6 +232,7 @@ public class ContextCompressionInterceptor implements ReActInterceptor {
         tmp.perMessageCap = this.perMessageCap;
         tmp.defaultContextLength = this.defaultContextLength;
         tmp.messageTriggerFactor = this.messageTriggerFactor;
+        tmp.tokenizer = this.tokenizer;
 
         return tmp;
     }
@@ -1154,7 +1169,13 @@ public class ContextCompressionInterceptor implements ReActInterceptor {
                 continue;
             }
 
-            int contentTokens = ENCODING_FOR_MODEL.countTokens(content);
+            // 消息整体计数（带记忆）不超过上限时，内容必然不超过，免去每步重复分词
+            if (estimateMessageTokens(msg) <= cap) {
+                result.add(msg);
+                continue;
+            }
+
+            int contentTokens = tokenizer.countTokens(content);
             if (contentTokens <= cap) {
                 result.add(msg);
                 continue;
@@ -1272,16 +1293,16 @@ public class ContextCompressionInterceptor implements ReActInterceptor {
      * 以字符切分逼近，再用编码器精确收敛，确保结果不超过 tokenThreshold。
      */
     private String truncateTextToTokens(String text, int tokenThreshold) {
-        if (text == null || ENCODING_FOR_MODEL.countTokens(text) <= tokenThreshold) {
+        if (text == null || tokenizer.countTokens(text) <= tokenThreshold) {
             return text;
         }
 
         String marker = "\n... [内容过大已截断：单条消息超过上下文预算，省略中间部分，仅保留首尾。"
                 + "如需完整内容，请用分页方式重新获取] ...\n";
-        int markerTokens = ENCODING_FOR_MODEL.countTokens(marker);
+        int markerTokens = tokenizer.countTokens(marker);
         if (markerTokens > tokenThreshold) {
             String shortMarker = "[内容已截断]";
-            while (!shortMarker.isEmpty() && ENCODING_FOR_MODEL.countTokens(shortMarker) > tokenThreshold) {
+            while (!shortMarker.isEmpty() && tokenizer.countTokens(shortMarker) > tokenThreshold) {
                 shortMarker = shortMarker.substring(0, shortMarker.length() - 1);
             }
             return shortMarker;
@@ -1311,7 +1332,7 @@ public class ContextCompressionInterceptor implements ReActInterceptor {
      * @return 收敛后的文本
      */
     private String shrinkToTokenBudget(String text, int tokenBudget, boolean keepHead) {
-        while (text.length() > 0 && ENCODING_FOR_MODEL.countTokens(text) > tokenBudget) {
+        while (text.length() > 0 && tokenizer.countTokens(text) > tokenBudget) {
             // 对称节奏：每次保留 90%（至少裁剪 1 字符），防止陆陆无法前进。
             int newLen = Math.min(text.length() - 1, text.length() * 9 / 10);
             newLen = Math.max(0, newLen);
@@ -1329,83 +1350,46 @@ public class ContextCompressionInterceptor implements ReActInterceptor {
         }
 
         if (systemPrompt != null && !systemPrompt.isEmpty()) {
-            totalTokens += ENCODING_FOR_MODEL.countTokens(systemPrompt) + 4;
+            totalTokens += countSystemPromptTokens(systemPrompt) + 4;
         }
 
         return totalTokens + 3;
     }
 
     /**
-     * 每次按消息当前内容重新估算 Token 数。
-     * 消息内容块和工具调用集合可变，因此不依赖任何持久缓存。
+     * 估算单条消息的 Token 数。
      *
-     * <p><b>无副作用</b>：本方法为纯计算，不向消息对象回写任何 metadata，
-     * 避免在高频收敛循环中产生无谓写入，以及多线程共享工作记忆时的竞态写入风险。</p>
+     * <p>计数结果带记忆（见 {@link TokenCountUtil#countMessage}）：记忆保存在消息之外，记录中包含计数器名与消息指纹，
+     * 内容块或工具调用集合变化后指纹随之变化并自动重算，因此每条消息在内容不变时只分词一次。
+     * <b>无副作用</b>：不向消息对象回写任何 metadata。</p>
      */
     private int estimateMessageTokens(ChatMessage message) {
-        int count = 0;
-        if (message.getContent() != null) {
-            count += ENCODING_FOR_MODEL.countTokens(message.getContent());
-        }
-
-        if (message instanceof AssistantMessage) {
-            AssistantMessage assistant = (AssistantMessage) message;
-            if (Assert.isNotEmpty(assistant.getToolCalls())) {
-                for (ToolCall tc : assistant.getToolCalls()) {
-                    String name = tc.getName() != null ? tc.getName() : "";
-                    String args = tc.getArgumentsStr() != null ? tc.getArgumentsStr() : "";
-                    count += ENCODING_FOR_MODEL.countTokens(name + args) + 10;
-                    count += countTextTokens(tc.getId());
-                    count += countTextTokens(tc.getThoughtSignature());
-                }
-            }
-            if (Assert.isNotEmpty(assistant.getToolCallsRaw())) {
-                count += ENCODING_FOR_MODEL.countTokens(String.valueOf(assistant.getToolCallsRaw()));
-            }
-            count += estimateMediaTokens(assistant.getBlocks());
-        } else if (message instanceof UserMessage) {
-            count += estimateMediaTokens(((UserMessage) message).getBlocks());
-        } else if (message instanceof ToolMessage) {
-            ToolMessage toolMessage = (ToolMessage) message;
-            count += estimateMediaTokens(toolMessage.getBlocks());
-            count += countTextTokens(toolMessage.getName());
-            count += countTextTokens(toolMessage.getToolCallId());
+        return TokenCountUtil.countMessage(message, tokenizer);
+    }
+
+    /** 估算 systemPrompt 的 Token 数（与上次相同时复用）。 */
+    private int countSystemPromptTokens(String systemPrompt) {
+        TextTokens last = lastSystemPromptTokens;
+        if (last != null && last.tokenizer == tokenizer && last.text.equals(systemPrompt)) {
+            return last.tokens;
         }
 
-        return count;
+        int tokens = tokenizer.countTokens(systemPrompt);
+        lastSystemPromptTokens = new TextTokens(tokenizer, systemPrompt, tokens);
+        return tokens;
     }
 
-    /** 估算文本 Token 数（null/空返回 0）。 */
-    private int countTextTokens(String text) {
-        return text == null || text.isEmpty() ? 0 : ENCODING_FOR_MODEL.countTokens(text);
-    }
+    /** 文本及其 Token 数。 */
+    private static class TextTokens {
+        final Tokenizer tokenizer;
+        final String text;
+        final int tokens;
 
-    /**
-     * 估算消息中媒体块的 Token 开销。
-     * <p>纯 base64 media 的 content 投影为空，但仍会随请求发送；按 data/url 字符长度
-     * 保守换算（约 4 chars/token），避免 media-only 被记为 0 导致压缩误判。</p>
-     */
-    private int estimateMediaTokens(List<ContentBlock> blocks) {
-        if (Assert.isEmpty(blocks)) {
-            return 0;
+        TextTokens(Tokenizer tokenizer, String text, int tokens) {
+            this.tokenizer = tokenizer;
+            this.text = text;
+            this.tokens = tokens;
         }
-        int tokens = 0;
-        for (ContentBlock block : blocks) {
-            if (!(block instanceof AbsMedia)) {
-                continue;
-            }
-            AbsMedia<?> media = (AbsMedia<?>) block;
-            String data = media.getData();
-            if (Utils.isNotEmpty(data)) {
-                // base64 体积大，按 4 chars ≈ 1 token 估算，并加 MIME 结构开销
-                tokens += Math.max(1, data.length() / 4) + 20;
-            } else if (Utils.isNotEmpty(media.getUrl())) {
-                tokens += ENCODING_FOR_MODEL.countTokens(media.getUrl()) + 10;
-            } else {
-                tokens += 8; // 空/截断媒体的占位开销
-            }
-        }
-        return tokens;
     }
 
     /**
@@ -1450,15 +1434,15 @@ public class ContextCompressionInterceptor implements ReActInterceptor {
         for (FunctionTool tool : tools) {
             // name
             if (tool.name() != null) {
-                tokens += ENCODING_FOR_MODEL.countTokens(tool.name());
+                tokens += tokenizer.countTokens(tool.name());
             }
             // description（含 meta 信息）
             if (tool.descriptionAndMeta() != null) {
-                tokens += ENCODING_FOR_MODEL.countTokens(tool.descriptionAndMeta());
+                tokens += tokenizer.countTokens(tool.descriptionAndMeta());
             }
             // inputSchema（JSON Schema 定义）
             if (tool.inputSchema() != null) {
-                tokens += ENCODING_FOR_MODEL.countTokens(tool.inputSchema());
+                tokens += tokenizer.countTokens(tool.inputSchema());
             }
             tokens += 15; // JSON 结构开销（type, function, parameters 等字段）
         }
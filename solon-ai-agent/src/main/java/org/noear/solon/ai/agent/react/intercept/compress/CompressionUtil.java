@@ -23,6 +23,7 @@ import org.noear.solon.ai.chat.message.AssistantMessage;
 import org.noear.solon.ai.chat.message.ChatMessage;
 import org.noear.solon.ai.chat.message.ToolMessage;
 import org.noear.solon.ai.chat.tool.ToolCall;
+import org.noear.solon.ai.tokenizer.TokenizerManager;
 import org.noear.solon.ai.util.RetryTask;
 import org.noear.solon.core.util.Assert;
 import org.slf4j.Logger;
@@ -396,13 +397,14 @@ public class CompressionUtil {
         return end;
     }
 
+    // 使用全局共享的编码（GPT-4o 即 o200k_base），与拦截器等共用同一份编码表
     private static final com.knuddels.jtokkit.api.Encoding ENCODING =
-            com.knuddels.jtokkit.Encodings.newDefaultEncodingRegistry()
-                    .getEncodingForModel(com.knuddels.jtokkit.api.ModelType.GPT_4O);
+            TokenizerManager.getEncoding(com.knuddels.jtokkit.api.EncodingType.O200K_BASE);
 
     /**
      * 获取共享的 Encoding 实例（GPT-4o 编码器）。
      * <p>供拦截器及其他需要直接调用 {@code countTokens} 的类复用，避免重复加载编码注册表。
+     * 与 {@link TokenizerManager#getDefault()} 为同一实例。
      *
      * @return 共享的 Encoding 实例
      * @since 4.0.0
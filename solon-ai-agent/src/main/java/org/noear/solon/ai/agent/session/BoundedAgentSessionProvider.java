@@ -0,0 +1,109 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.agent.session;
+
+import org.noear.solon.ai.agent.AgentSession;
+import org.noear.solon.ai.agent.AgentSessionProvider;
+import org.noear.solon.ai.chat.session.BoundedSessionCache;
+import org.noear.solon.lang.Preview;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * 有界智能体会话提供者（热会话留在内存，超限或空闲时淘汰，再次访问时从后端存储重新加载）
+ *
+ * <pre>{@code
+ * AgentSessionProvider provider = BoundedAgentSessionProvider.builder(id -> new FileAgentSession(id, "/data/sessions"))
+ *         .maxSessions(1000)
+ *         .maxBytes(256 * 1024 * 1024)
+ *         .idleTimeout(Duration.ofMinutes(30))
+ *         .build();
+ * }</pre>
+ *
+ * @author noear
+ * @since 4.1
+ */
+@Preview("4.1")
+public class BoundedAgentSessionProvider implements AgentSessionProvider {
+    private final BoundedSessionCache<AgentSession> cache;
+
+    public BoundedAgentSessionProvider(Function<String, AgentSession> loader, int maxSessions, long maxBytes, Duration idleTimeout) {
+        this.cache = new BoundedSessionCache<>(loader, maxSessions, maxBytes, idleTimeout);
+    }
+
+    @Override
+    public AgentSession getSession(String instanceId) {
+        return cache.get(instanceId);
+    }
+
+    /**
+     * 获取会话缓存（查看用量或手动淘汰）
+     */
+    public BoundedSessionCache<AgentSession> getCache() {
+        return cache;
+    }
+
+    /**
+     * 构建
+     *
+     * @param loader 会话加载器（从后端存储加载或新建）
+     */
+    public static Builder builder(Function<String, AgentSession> loader) {
+        return new Builder(loader);
+    }
+
+    public static class Builder {
+        private final Function<String, AgentSession> loader;
+        private int maxSessions = 1000;
+        private long maxBytes = 0L;
+        private Duration idleTimeout;
+
+        public Builder(Function<String, AgentSession> loader) {
+            Objects.requireNonNull(loader, "loader is required");
+            this.loader = loader;
+        }
+
+        /**
+         * 最大会话数（0 表示不限；默认 1000）
+         */
+        public Builder maxSessions(int maxSessions) {
+            this.maxSessions = maxSessions;
+            return this;
+        }
+
+        /**
+         * 最大估算字节数（0 表示不限）
+         */
+        public Builder maxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * 空闲淘汰时间（null 表示不按空闲淘汰）
+         */
+        public Builder idleTimeout(Duration idleTimeout) {
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
+        public BoundedAgentSessionProvider build() {
+            return new BoundedAgentSessionProvider(loader, maxSessions, maxBytes, idleTimeout);
+        }
+    }
+}
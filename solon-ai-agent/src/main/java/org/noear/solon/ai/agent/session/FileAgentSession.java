@@ -20,34 +20,75 @@ import org.noear.solon.ai.agent.Agent;
 import org.noear.solon.ai.agent.AgentSession;
 import org.noear.solon.ai.chat.ChatRole;
 import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.chat.message.ChatMessageCodec;
+import org.noear.solon.ai.chat.session.SessionUtil;
 import org.noear.solon.flow.FlowContext;
 import org.noear.solon.lang.Preview;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 文件型智能体会话适配器 (带内存缓存层)
  *
+ * <p>快照由 {@link FileSnapshotWriter} 写入（只追加变化的键，定期压缩）。默认同步写入；
+ * 通过构造参数开启防抖后在后台写入，此时须在结束时调用 {@link #flush()} 或 {@link #close()}。
+ * 消息默认以 NDJSON 写入，可选其它消息编解码器（读取时按记录自动识别格式）。
+ *
  * @author noear
  * @since 3.9.1
  */
 @Preview("3.9.1")
-public class FileAgentSession implements AgentSession {
+public class FileAgentSession implements AgentSession, Closeable {
     private static final Logger LOG = LoggerFactory.getLogger(FileAgentSession.class);
 
     private final String sessionId;
     private final File messagesFile;
-    private final File snapshotFile;
+    private final FileSnapshotWriter snapshotWriter;
     private final InMemoryAgentSession cache;
-    private final ReentrantLock locker = new ReentrantLock();
+    private final ChatMessageCodec codec;
 
     public FileAgentSession(String sessionId, String dir) {
+        this(sessionId, dir, Duration.ZERO, 64);
+    }
+
+    /**
+     * @param sessionId        会话 id
+     * @param dir              目录
+     * @param snapshotDebounce 快照写入的防抖间隔（0 表示同步写入；大于 0 时未 flush/close 的快照可能在进程退出时丢失）
+     * @param compactDeltas    快照增量日志超过该行数时压缩
+     * @since 4.1
+     */
+    public FileAgentSession(String sessionId, String dir, Duration snapshotDebounce, int compactDeltas) {
+        this(sessionId, dir, snapshotDebounce, compactDeltas, false);
+    }
+
+    /**
+     * @param sessionId        会话 id
+     * @param dir              目录
+     * @param snapshotDebounce 快照写入的防抖间隔（0 表示同步写入；大于 0 时未 flush/close 的快照可能在进程退出时丢失）
+     * @param compactDeltas    快照增量日志超过该行数时压缩
+     * @param snapshotSync     快照每次写入后是否强制刷盘（fsync；默认不刷盘）
+     * @since 4.1
+     */
+    public FileAgentSession(String sessionId, String dir, Duration snapshotDebounce, int compactDeltas, boolean snapshotSync) {
+        this(sessionId, dir, snapshotDebounce, compactDeltas, snapshotSync, null);
+    }
+
+    /**
+     * @param sessionId        会话 id
+     * @param dir              目录
+     * @param snapshotDebounce 快照写入的防抖间隔（0 表示同步写入；大于 0 时未 flush/close 的快照可能在进程退出时丢失）
+     * @param compactDeltas    快照增量日志超过该行数时压缩
+     * @param snapshotSync     快照每次写入后是否强制刷盘（fsync；默认不刷盘）
+     * @param codec            消息编解码器（null 表示 json；读取时按记录自动识别格式）
+     * @since 4.1
+     */
+    public FileAgentSession(String sessionId, String dir, Duration snapshotDebounce, int compactDeltas, boolean snapshotSync,
+                            ChatMessageCodec codec) {
         Objects.requireNonNull(sessionId, "sessionId is required");
         Objects.requireNonNull(dir, "dir is required");
 
@@ -57,18 +98,20 @@ public class FileAgentSession implements AgentSession {
         }
 
         this.sessionId = sessionId;
+        this.codec = (codec == null ? ChatMessageCodec.JSON : codec);
         this.messagesFile = new File(baseDir, sessionId + ".messages.ndjson");
-        this.snapshotFile = new File(baseDir, sessionId + ".snapshot.json");
+        this.snapshotWriter = new FileSnapshotWriter(new File(baseDir, sessionId + ".snapshot.json"),
+                snapshotDebounce, compactDeltas, snapshotSync);
 
-        // --- 1. 初始化快照 ---
+        // --- 1. 初始化快照（基础文件 + 增量日志）---
         FlowContext snapshot = null;
-        if (snapshotFile.exists()) {
-            try {
-                byte[] bytes = Files.readAllBytes(snapshotFile.toPath());
-                snapshot = FlowContext.fromJson(new String(bytes, StandardCharsets.UTF_8));
-            } catch (Throwable e) {
-                LOG.warn("Load snapshot failed, session: {}", sessionId, e);
+        try {
+            String json = snapshotWriter.load();
+            if (json != null) {
+                snapshot = FlowContext.fromJson(json);
             }
+        } catch (Throwable e) {
+            LOG.warn("Load snapshot failed, session: {}", sessionId, e);
         }
 
         if (snapshot == null) {
@@ -89,13 +132,8 @@ public class FileAgentSession implements AgentSession {
         if (!messagesFile.exists()) return;
 
         List<ChatMessage> history = new ArrayList<>();
-        try (BufferedReader reader = Files.newBufferedReader(messagesFile.toPath(), StandardCharsets.UTF_8)) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (Utils.isNotEmpty(line)) {
-                    history.add(ChatMessage.fromJson(line));
-                }
-            }
+        try (InputStream in = new BufferedInputStream(new FileInputStream(messagesFile))) {
+            SessionUtil.readRecords(in, (msg, offset) -> history.add(msg));
             // 批量加入缓存（内存层会自动过滤 System 消息）
             this.cache.addMessage(history);
         } catch (IOException e) {
@@ -133,12 +171,10 @@ public class FileAgentSession implements AgentSession {
      * 将当前内存缓存中的所有非 System 消息持久化到磁盘（全量覆盖）
      */
     private void persistMessages() {
-        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
-                new FileOutputStream(messagesFile, false), StandardCharsets.UTF_8))) {
+        try (OutputStream writer = new BufferedOutputStream(new FileOutputStream(messagesFile, false))) {
             for (ChatMessage msg : cache.getMessages()) {
                 if (msg.getRole() != ChatRole.SYSTEM) {
-                    writer.write(ChatMessage.toJson(msg));
-                    writer.newLine();
+                    writer.write(SessionUtil.encodeRecord(codec, msg));
                 }
             }
             writer.flush();
@@ -154,13 +190,11 @@ public class FileAgentSession implements AgentSession {
         // 1. 同步到内存层
         cache.addMessage(messages);
 
-        // 2. 持久化到磁盘 (NDJSON 追加模式)
-        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
-                new FileOutputStream(messagesFile, true), StandardCharsets.UTF_8))) {
+        // 2. 持久化到磁盘 (追加模式)
+        try (OutputStream writer = new BufferedOutputStream(new FileOutputStream(messagesFile, true))) {
             for (ChatMessage msg : messages) {
                 if (msg.getRole() != ChatRole.SYSTEM) {
-                    writer.write(ChatMessage.toJson(msg));
-                    writer.newLine();
+                    writer.write(SessionUtil.encodeRecord(codec, msg));
                 }
             }
             writer.flush();
@@ -181,18 +215,33 @@ public class FileAgentSession implements AgentSession {
 
     @Override
     public void updateSnapshot() {
-        locker.lock();
         try {
-            // 将缓存中的快照全量持久化
-            String json = cache.getContext().toJson();
-            Files.write(snapshotFile.toPath(), json.getBytes(StandardCharsets.UTF_8));
+            // 在调用线程上取快照（保证一致的检查点），写入交给后台
+            snapshotWriter.submit(cache.getContext().toJson());
         } catch (Throwable e) {
             LOG.error("Persistence snapshot failed: {}", e.toString());
-        } finally {
-            locker.unlock();
         }
     }
 
+    /**
+     * 立即写入待写的快照
+     *
+     * @since 4.1
+     */
+    public void flush() {
+        snapshotWriter.flush();
+    }
+
+    /**
+     * 写入待写的快照
+     *
+     * @since 4.1
+     */
+    @Override
+    public void close() {
+        snapshotWriter.close();
+    }
+
     @Override
     public FlowContext getContext() {
         // 外部读写的快照对象直接来自缓存
@@ -202,6 +251,6 @@ public class FileAgentSession implements AgentSession {
     public void clear() {
         cache.clear();
         if (messagesFile.exists()) messagesFile.delete();
-        if (snapshotFile.exists()) snapshotFile.delete();
+        snapshotWriter.delete();
     }
 }
\ No newline at end of file
@@ -0,0 +1,436 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.agent.session;
+
+import org.noear.snack4.ONode;
+import org.noear.solon.core.util.RunUtil;
+import org.noear.solon.lang.Preview;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.zip.CRC32;
+
+/**
+ * 文件快照写入器（防抖、增量、原子替换）
+ *
+ * <p>频繁提交的快照按防抖间隔合并，在后台线程写入：首次（或压缩时）把全量 JSON 写入临时文件并原子替换基础文件；
+ * 之后只把变化的顶层键（对象类型的顶层键细分到第二层）作为一行追加到增量日志。增量行数或字节数超过阈值时重新压缩。
+ * 加载时回放“基础文件 + 增量日志”。开启防抖时，待写的快照须由使用方通过 {@link #flush()} 或 {@link #close()} 写入。
+ *
+ * <p>增量日志的首行记录所属基础文件的长度与 CRC32：替换基础文件后、清空增量日志前中断时，旧的增量日志与新的基础文件不匹配，加载时忽略。
+ * 默认不强制刷盘（进程崩溃时不丢数据，断电时可能丢失最近的写入）；需要时通过构造参数开启 fsync。
+ *
+ * @author noear
+ * @since 4.1
+ */
+@Preview("4.1")
+public class FileSnapshotWriter implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(FileSnapshotWriter.class);
+    private static final String STAMP_PREFIX = "#base:";
+
+    private final File baseFile;
+    private final File deltaFile;
+    private final long debounceMillis;
+    private final int compactDeltas;
+    private final boolean sync;
+    private final Object ioLock = new Object();
+
+    //以下待写状态由 this 锁保护
+    private String pendingJson;
+    private ScheduledFuture<?> flushTask;
+
+    //以下落盘状态由 ioLock 保护
+    private Map<String, Object> lastEntries;
+    private int deltaCount;
+    private long baseBytes;
+    private String baseStamp;
+    private long deltaBytes;
+    private boolean needCompact;
+
+    /**
+     * @param baseFile      基础快照文件
+     * @param debounce      防抖间隔（0 表示同步写入）
+     * @param compactDeltas 增量日志超过该行数时压缩
+     */
+    public FileSnapshotWriter(File baseFile, Duration debounce, int compactDeltas) {
+        this(baseFile, debounce, compactDeltas, false);
+    }
+
+    /**
+     * @param baseFile      基础快照文件
+     * @param debounce      防抖间隔（0 表示同步写入）
+     * @param compactDeltas 增量日志超过该行数时压缩
+     * @param sync          是否每次写入后强制刷盘（fsync）
+     */
+    public FileSnapshotWriter(File baseFile, Duration debounce, int compactDeltas, boolean sync) {
+        Objects.requireNonNull(baseFile, "baseFile is required");
+
+        this.baseFile = baseFile;
+        this.deltaFile = new File(baseFile.getParentFile(), baseFile.getName() + ".delta");
+        this.debounceMillis = (debounce == null ? 0L : Math.max(0L, debounce.toMillis()));
+        this.compactDeltas = Math.max(1, compactDeltas);
+        this.sync = sync;
+    }
+
+    /**
+     * 加载快照（回放基础文件与增量日志）
+     *
+     * @return 快照 json（不存在时为 null）
+     */
+    public String load() throws IOException {
+        synchronized (ioLock) {
+            lastEntries = null;
+            deltaCount = 0;
+            deltaBytes = 0;
+            needCompact = false;
+
+            if (baseFile.exists() == false) {
+                //没有基础文件的增量日志无法回放
+                if (deltaFile.exists()) {
+                    deltaFile.delete();
+                }
+                return null;
+            }
+
+            byte[] bytes = Files.readAllBytes(baseFile.toPath());
+            String json = new String(bytes, StandardCharsets.UTF_8);
+            baseBytes = bytes.length;
+            baseStamp = stampOf(bytes);
+
+            ONode root = ONode.ofJson(json);
+            if (root.isObject() == false) {
+                needCompact = true;
+                return json;
+            }
+
+            if (deltaFile.exists()) {
+                List<String> lines = Files.readAllLines(deltaFile.toPath(), StandardCharsets.UTF_8);
+
+                if (lines.size() > 0 && lines.get(0).startsWith(STAMP_PREFIX) && lines.get(0).equals(baseStamp) == false) {
+                    //属于之前的基础文件（替换基础文件后未及清空），不再回放
+                    Files.delete(deltaFile.toPath());
+                    lastEntries = toEntries(root);
+                    return json;
+                }
+
+                for (String line : lines) {
+                    if (line.isEmpty() || line.startsWith(STAMP_PREFIX)) {
+                        continue;
+                    }
+
+                    try {
+                        applyDelta(root, ONode.ofJson(line));
+                    } catch (Throwable e) {
+                        //尾部的不完整记录（写入中断），其后的记录不再回放；下次写入时压缩
+                        needCompact = true;
+                        break;
+                    }
+
+                    deltaCount++;
+                }
+
+                deltaBytes = deltaFile.length();
+            }
+
+            lastEntries = toEntries(root);
+            return deltaCount == 0 ? json : root.toJson();
+        }
+    }
+
+    /**
+     * 提交快照（按防抖间隔在后台写入；间隔内多次提交只写最后一次）
+     */
+    public void submit(String json) {
+        if (json == null) {
+            return;
+        }
+
+        synchronized (this) {
+            pendingJson = json;
+
+            if (debounceMillis > 0) {
+                if (flushTask == null) {
+                    flushTask = RunUtil.delay(this::flush, debounceMillis);
+                }
+                return;
+            }
+        }
+
+        flush();
+    }
+
+    /**
+     * 立即写入待写的快照
+     */
+    public void flush() {
+        synchronized (ioLock) {
+            String json;
+            synchronized (this) {
+                if (flushTask != null) {
+                    flushTask.cancel(false);
+                    flushTask = null;
+                }
+
+                json = pendingJson;
+                pendingJson = null;
+            }
+
+            if (json == null) {
+                return;
+            }
+
+            try {
+                write(json);
+            } catch (Throwable e) {
+                LOG.error("Persistence snapshot failed: {}", e.toString());
+            }
+        }
+    }
+
+    /**
+     * 写入待写的快照
+     */
+    @Override
+    public void close() {
+        flush();
+    }
+
+    /**
+     * 丢弃待写的快照，并删除快照文件
+     */
+    public void delete() {
+        synchronized (ioLock) {
+            synchronized (this) {
+                if (flushTask != null) {
+                    flushTask.cancel(false);
+                    flushTask = null;
+                }
+
+                pendingJson = null;
+            }
+
+            if (deltaFile.exists()) deltaFile.delete();
+            if (baseFile.exists()) baseFile.delete();
+
+            lastEntries = null;
+            deltaCount = 0;
+            deltaBytes = 0;
+        }
+    }
+
+    private void write(String json) throws IOException {
+        ONode root = ONode.ofJson(json);
+        Map<String, Object> entries = (root.isObject() ? toEntries(root) : null);
+
+        if (entries != null && entries.equals(lastEntries) && needCompact == false) {
+            //没有变化
+            return;
+        }
+
+        if (lastEntries == null || entries == null || needCompact
+                || deltaCount >= compactDeltas || deltaBytes > baseBytes) {
+            writeBase(json);
+        } else {
+            String delta = diff(lastEntries, entries);
+            if (delta == null) {
+                //没有变化
+                return;
+            }
+
+            appendDelta(delta);
+        }
+
+        lastEntries = entries;
+    }
+
+    /**
+     * 全量写入（先写临时文件再替换），并清空增量日志
+     */
+    private void writeBase(String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        File tmpFile = new File(baseFile.getParentFile(), baseFile.getName() + ".tmp");
+
+        //中途失败时，下次仍全量写入（不向可能残留的旧增量日志追加）
+        needCompact = true;
+
+        try (FileOutputStream out = new FileOutputStream(tmpFile, false)) {
+            out.write(bytes);
+            if (sync) {
+                out.getFD().sync();
+            }
+        }
+
+        try {
+            Files.move(tmpFile.toPath(), baseFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmpFile.toPath(), baseFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        Files.deleteIfExists(deltaFile.toPath());
+
+        baseBytes = bytes.length;
+        baseStamp = stampOf(bytes);
+        deltaBytes = 0;
+        deltaCount = 0;
+        needCompact = false;
+    }
+
+    private void appendDelta(String delta) throws IOException {
+        //新的增量日志，首行记录所属的基础文件
+        String text = (deltaBytes == 0 ? baseStamp + "\n" + delta + "\n" : delta + "\n");
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+
+        try (FileOutputStream out = new FileOutputStream(deltaFile, true)) {
+            out.write(bytes);
+            if (sync) {
+                out.getFD().sync();
+            }
+        }
+
+        deltaBytes += bytes.length;
+        deltaCount++;
+    }
+
+    /**
+     * 基础文件的标记（长度与 CRC32）
+     */
+    private static String stampOf(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return STAMP_PREFIX + bytes.length + ":" + Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * 拆分为比较单元：顶层键 -> json，或（对象类型的顶层键）子键 -> json
+     */
+    private static Map<String, Object> toEntries(ONode root) {
+        Map<String, Object> entries = new LinkedHashMap<>();
+
+        for (Map.Entry<String, ONode> kv : root.getObject().entrySet()) {
+            ONode val = kv.getValue();
+            if (val.isObject()) {
+                Map<String, String> children = new LinkedHashMap<>();
+                for (Map.Entry<String, ONode> kv2 : val.getObject().entrySet()) {
+                    children.put(kv2.getKey(), kv2.getValue().toJson());
+                }
+                entries.put(kv.getKey(), children);
+            } else {
+                entries.put(kv.getKey(), val.toJson());
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * 生成增量记录：[{"p":[路径],"v":值}, {"p":[路径]}(删除)]；没有变化时返回 null
+     */
+    private static String diff(Map<String, Object> before, Map<String, Object> after) {
+        StringBuilder buf = new StringBuilder();
+
+        for (Map.Entry<String, Object> kv : after.entrySet()) {
+            String key = kv.getKey();
+            Object oldVal = before.get(key);
+            Object newVal = kv.getValue();
+
+            if (oldVal instanceof Map && newVal instanceof Map) {
+                Map<String, String> oldChildren = (Map<String, String>) oldVal;
+                Map<String, String> newChildren = (Map<String, String>) newVal;
+
+                for (Map.Entry<String, String> kv2 : newChildren.entrySet()) {
+                    if (kv2.getValue().equals(oldChildren.get(kv2.getKey())) == false) {
+                        appendOp(buf, key, kv2.getKey(), kv2.getValue());
+                    }
+                }
+
+                for (String key2 : oldChildren.keySet()) {
+                    if (newChildren.containsKey(key2) == false) {
+                        appendOp(buf, key, key2, null);
+                    }
+                }
+            } else if (newVal.equals(oldVal) == false) {
+                appendOp(buf, key, null, toJson(newVal));
+            }
+        }
+
+        for (String key : before.keySet()) {
+            if (after.containsKey(key) == false) {
+                appendOp(buf, key, null, null);
+            }
+        }
+
+        if (buf.length() == 0) {
+            return null;
+        }
+
+        return "[" + buf + "]";
+    }
+
+    private static void appendOp(StringBuilder buf, String key, String key2, String json) {
+        if (buf.length() > 0) {
+            buf.append(',');
+        }
+
+        buf.append("{\"p\":[").append(ONode.serialize(key));
+        if (key2 != null) {
+            buf.append(',').append(ONode.serialize(key2));
+        }
+        buf.append(']');
+
+        if (json != null) {
+            buf.append(",\"v\":").append(json);
+        }
+        buf.append('}');
+    }
+
+    private static String toJson(Object entry) {
+        if (entry instanceof Map) {
+            StringBuilder buf = new StringBuilder();
+            for (Map.Entry<String, String> kv : ((Map<String, String>) entry).entrySet()) {
+                buf.append(buf.length() == 0 ? "{" : ",");
+                buf.append(ONode.serialize(kv.getKey())).append(':').append(kv.getValue());
+            }
+            return buf.length() == 0 ? "{}" : buf.append('}').toString();
+        } else {
+            return (String) entry;
+        }
+    }
+
+    private static void applyDelta(ONode root, ONode ops) {
+        for (ONode op : ops.getArray()) {
+            List<ONode> path = op.get("p").getArray();
+            ONode parent = root;
+            for (int i = 0; i < path.size() - 1; i++) {
+                parent = parent.get(path.get(i).getString());
+            }
+
+            String key = path.get(path.size() - 1).getString();
+            if (op.hasKey("v")) {
+                parent.set(key, op.get("v"));
+            } else {
+                parent.remove(key);
+            }
+        }
+    }
+}
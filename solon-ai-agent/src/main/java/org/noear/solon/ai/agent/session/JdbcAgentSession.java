@@ -0,0 +1,200 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.agent.session;
+
+import org.noear.solon.Utils;
+import org.noear.solon.ai.agent.Agent;
+import org.noear.solon.ai.agent.AgentSession;
+import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.chat.session.JdbcSessionStore;
+import org.noear.solon.ai.chat.session.SessionUtil;
+import org.noear.solon.flow.FlowContext;
+import org.noear.solon.lang.Preview;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * JDBC 智能体会话适配器 (带内存缓存层)
+ *
+ * <p>消息追加为批量插入，移除最近消息为尾部删除；快照存于快照表，未变化时不重复写入。
+ *
+ * @author noear
+ * @since 4.1
+ */
+@Preview("4.1")
+public class JdbcAgentSession implements AgentSession {
+    private static final Logger LOG = LoggerFactory.getLogger(JdbcAgentSession.class);
+
+    private final String sessionId;
+    private final JdbcSessionStore store;
+    private final ReentrantLock locker = new ReentrantLock();
+
+    // 内存缓存层
+    private final InMemoryAgentSession cache;
+    // 下一条消息的顺序号
+    private long nextSeq;
+    // 最近一次写入的快照（未变化时跳过写入）
+    private String lastSnapshot;
+
+    public JdbcAgentSession(String sessionId, JdbcSessionStore store) {
+        this(sessionId, store, 50);
+    }
+
+    /**
+     * @param maxMessages 初始加载的最大消息数
+     */
+    public JdbcAgentSession(String sessionId, JdbcSessionStore store, int maxMessages) {
+        Objects.requireNonNull(sessionId, "sessionId is required");
+        Objects.requireNonNull(store, "store is required");
+
+        this.sessionId = sessionId;
+        this.store = store;
+
+        // --- 1. 加载快照 ---
+        FlowContext snapshot = null;
+        String json = store.loadSnapshot(sessionId);
+        if (json != null) {
+            snapshot = FlowContext.fromJson(json);
+            lastSnapshot = json;
+        }
+
+        if (snapshot == null) {
+            snapshot = FlowContext.of(sessionId);
+        }
+
+        // --- 2. 初始化缓存层 ---
+        this.cache = new InMemoryAgentSession(snapshot);
+
+        // --- 3. 初始化加载历史消息到缓存 ---
+        this.nextSeq = store.nextSeq(sessionId);
+        this.cache.addMessage(store.loadMessages(sessionId, maxMessages > 0 ? maxMessages : 50));
+
+        // 注入当前实例，确保外部调用 updateSnapshot 走持久化逻辑
+        this.cache.getContext().put(Agent.KEY_SESSION, this);
+    }
+
+    @Override
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    @Override
+    public List<ChatMessage> getMessages() {
+        // 走缓存
+        return cache.getMessages();
+    }
+
+    @Override
+    public List<ChatMessage> getLatestMessages(int windowSize) {
+        // 走缓存
+        return cache.getLatestMessages(windowSize);
+    }
+
+    @Override
+    public synchronized void removeLatestMessage(int windowSize) {
+        int sizeBefore = SessionUtil.countPersistable(cache.getMessages());
+
+        // 1. 先从内存层安全删除
+        cache.removeLatestMessage(windowSize);
+
+        // 2. 计算实际删除的条数（ToolCall 链可能会导致实际删除数量大于 windowSize）
+        int actualRemoved = sizeBefore - SessionUtil.countPersistable(cache.getMessages());
+
+        // 3. 同步到库：删除尾部
+        if (actualRemoved > 0) {
+            nextSeq -= actualRemoved;
+            store.removeMessagesFrom(sessionId, nextSeq);
+        }
+    }
+
+    @Override
+    public synchronized void addMessage(Collection<? extends ChatMessage> messages) {
+        if (Utils.isEmpty(messages)) return;
+
+        // 1. 批量写入（顺序号冲突时，说明有其它实例写入了同一会话，重新取号后重试一次；其它错误不重试）
+        try {
+            try {
+                nextSeq += store.appendMessages(sessionId, nextSeq, messages);
+            } catch (SQLException e) {
+                if (JdbcSessionStore.isConstraintViolation(e) == false) {
+                    throw e;
+                }
+
+                nextSeq = store.nextSeq(sessionId);
+                nextSeq += store.appendMessages(sessionId, nextSeq, messages);
+            }
+        } catch (SQLException | RuntimeException e) {
+            // 写入失败时记录日志后继续（内存层不加入，与库保持一致）
+            LOG.error("Persistence messages failed, session: {}, {}", sessionId, e.toString());
+            return;
+        }
+
+        // 2. 写入成功后同步到内存
+        cache.addMessage(messages);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return cache.isEmpty();
+    }
+
+    @Override
+    public synchronized void clear() {
+        cache.clear();
+        store.clear(sessionId);
+        nextSeq = 0L;
+
+        locker.lock();
+        try {
+            lastSnapshot = null;
+        } finally {
+            locker.unlock();
+        }
+    }
+
+    @Override
+    public Map<String, Object> attrs() {
+        return cache.attrs();
+    }
+
+    @Override
+    public void updateSnapshot() {
+        locker.lock();
+
+        try {
+            String json = cache.getContext().toJson();
+            if (json.equals(lastSnapshot)) {
+                return;
+            }
+
+            store.saveSnapshot(sessionId, json);
+            lastSnapshot = json;
+        } catch (Throwable e) {
+            LOG.error("Persistence snapshot failed: {}", e.toString());
+        } finally {
+            locker.unlock();
+        }
+    }
+
+    @Override
+    public FlowContext getContext() {
+        return cache.getContext();
+    }
+}
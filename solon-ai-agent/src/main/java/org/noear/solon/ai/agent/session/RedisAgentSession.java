@@ -16,12 +16,13 @@
 package org.noear.solon.ai.agent.session;
 
 import org.noear.redisx.RedisClient;
-import org.noear.redisx.plus.RedisList;
 import org.noear.solon.Utils;
 import org.noear.solon.ai.agent.Agent;
 import org.noear.solon.ai.agent.AgentSession;
-import org.noear.solon.ai.chat.ChatRole;
 import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.chat.message.ChatMessageCodec;
+import org.noear.solon.ai.chat.session.RedisSessionStore;
+import org.noear.solon.ai.chat.session.SessionUtil;
 import org.noear.solon.flow.FlowContext;
 import org.noear.solon.lang.Preview;
 import org.slf4j.Logger;
@@ -33,6 +34,8 @@ import java.util.concurrent.locks.ReentrantLock;
 /**
  * Redis 智能体会话适配器 (带内存缓存层)
  *
+ * <p>追加消息一次往返（管道 LPUSH + LTRIM 封顶）；移除最近消息一条 LTRIM；快照未变化时不重复写入，可选压缩。
+ *
  * @author noear
  * @since 3.8.1
  */
@@ -41,26 +44,53 @@ public class RedisAgentSession implements AgentSession {
     private static final Logger LOG = LoggerFactory.getLogger(RedisAgentSession.class);
 
     private final String sessionId;
-    private final String messagesKey;
     private final String snapshotKey;
     private final RedisClient redisClient;
+    private final RedisSessionStore store;
+    private final int compressThreshold;
     private final ReentrantLock locker = new ReentrantLock();
 
     // 内存缓存层
     private final InMemoryAgentSession cache;
+    // 最近一次写入的快照（未变化时跳过写入）
+    private String lastSnapshot;
 
     public RedisAgentSession(String sessionId, RedisClient redisClient) {
+        this(sessionId, redisClient, 0, 0);
+    }
+
+    /**
+     * @param maxMessages       Redis 列表的最大消息数（0 表示不封顶）
+     * @param compressThreshold 快照压缩阈值（字符数；0 表示不压缩）
+     * @since 4.1
+     */
+    public RedisAgentSession(String sessionId, RedisClient redisClient, int maxMessages, int compressThreshold) {
+        this(sessionId, redisClient, maxMessages, compressThreshold, null);
+    }
+
+    /**
+     * @param maxMessages       Redis 列表的最大消息数（0 表示不封顶）
+     * @param compressThreshold 快照压缩阈值（字符数；0 表示不压缩）
+     * @param codec             消息编解码器（null 表示 json；读取时自动识别已存数据的格式）
+     * @since 4.1
+     */
+    public RedisAgentSession(String sessionId, RedisClient redisClient, int maxMessages, int compressThreshold, ChatMessageCodec codec) {
         Objects.requireNonNull(sessionId, "sessionId is required");
         Objects.requireNonNull(redisClient, "redisClient is required");
 
         this.sessionId = sessionId;
-        this.messagesKey = sessionId + ":messages";
         this.snapshotKey = sessionId + ":snapshot";
         this.redisClient = redisClient;
+        this.store = new RedisSessionStore(redisClient, sessionId + ":messages", maxMessages, codec);
+        this.compressThreshold = compressThreshold;
 
-        // --- 1. 严格遵循原逻辑加载快照 (使用 instanceId 读取) ---
+        // --- 1. 加载快照（优先 snapshotKey；兼容旧版本使用 sessionId 存储的快照）---
         FlowContext snapshot = null;
-        String json = redisClient.getBucket().get(sessionId);
+        String json = RedisSessionStore.decodeSnapshot(redisClient.getBucket().get(snapshotKey));
+        if (json == null) {
+            json = redisClient.getBucket().get(sessionId);
+        }
+
         if (json != null) {
             snapshot = FlowContext.fromJson(json);
             if (LOG.isDebugEnabled()) {
@@ -76,26 +106,12 @@ public class RedisAgentSession implements AgentSession {
         this.cache = new InMemoryAgentSession(snapshot);
 
         // --- 3. 初始化加载历史消息到缓存 ---
-        loadMessagesToCache();
+        this.cache.addMessage(store.loadMessages(maxMessages > 0 ? maxMessages : 50));
 
         // 注入当前实例，确保外部调用 updateSnapshot 走持久化逻辑
         this.cache.getContext().put(Agent.KEY_SESSION, this);
     }
 
-    private void loadMessagesToCache() {
-        // 从 Redis 捞取最近的 50 条消息
-        List<String> rawList = redisClient.openSession().key(messagesKey).listGetRange(0, 49);
-        if (rawList != null && !rawList.isEmpty()) {
-            List<ChatMessage> history = new ArrayList<>();
-            for (String json : rawList) {
-                history.add(ChatMessage.fromJson(json));
-            }
-            // 保持原有顺序逻辑：Redis LPUSH 出来的需要反转后存入内存 cache
-            Collections.reverse(history);
-            this.cache.addMessage(history);
-        }
-    }
-
     @Override
     public String getSessionId() {
         return sessionId;
@@ -115,22 +131,17 @@ public class RedisAgentSession implements AgentSession {
 
     @Override
     public void removeLatestMessage(int windowSize) {
-        // 记录删除前的消息数
-        int sizeBefore = cache.getMessages().size();
+        // 记录删除前的（需持久化的）消息数
+        int sizeBefore = SessionUtil.countPersistable(cache.getMessages());
 
         // 1. 先从内存层安全删除
         cache.removeLatestMessage(windowSize);
 
         // 2. 计算实际删除的条数（ToolCall 链可能会导致实际删除数量大于 windowSize）
-        int actualRemoved = sizeBefore - cache.getMessages().size();
+        int actualRemoved = sizeBefore - SessionUtil.countPersistable(cache.getMessages());
 
-        // 3. 同步到 Redis：从末尾删除实际被移除的条数
-        RedisList list = redisClient.getList(messagesKey);
-        for (int i = 0; i < actualRemoved; i++) {
-            if (list.size() > 0) {
-                list.removeAt(list.size() - 1);
-            }
-        }
+        // 3. 同步到 Redis：一次裁掉最近的 actualRemoved 条
+        store.removeLatestMessages(actualRemoved);
     }
 
     @Override
@@ -140,12 +151,8 @@ public class RedisAgentSession implements AgentSession {
         // 1. 同步到内存
         cache.addMessage(messages);
 
-        // 2. 同步到 Redis (保持原逻辑)
-        for (ChatMessage msg : messages) {
-            if (msg.getRole() != ChatRole.SYSTEM) {
-                redisClient.getList(messagesKey).add(ChatMessage.toJson(msg));
-            }
-        }
+        // 2. 同步到 Redis（一次往返）
+        store.appendMessages(messages);
     }
 
     @Override
@@ -156,10 +163,17 @@ public class RedisAgentSession implements AgentSession {
     @Override
     public void clear() {
         cache.clear();
-        redisClient.getList(messagesKey).clear();
+        store.clearMessages();
         // 物理清理按照原逻辑涉及的 key
         redisClient.getBucket().remove(sessionId);
         redisClient.getBucket().remove(snapshotKey);
+
+        locker.lock();
+        try {
+            lastSnapshot = null;
+        } finally {
+            locker.unlock();
+        }
     }
 
     @Override
@@ -172,8 +186,13 @@ public class RedisAgentSession implements AgentSession {
         locker.lock();
 
         try {
-            // 严格遵循原逻辑：使用 snapshotKey 持久化
-            redisClient.getBucket().store(snapshotKey, cache.getContext().toJson());
+            String json = cache.getContext().toJson();
+            if (json.equals(lastSnapshot)) {
+                return;
+            }
+
+            redisClient.getBucket().store(snapshotKey, RedisSessionStore.encodeSnapshot(json, compressThreshold));
+            lastSnapshot = json;
         } catch (Throwable e) {
             LOG.error("Persistence snapshot failed: {}", e.toString());
         } finally {
@@ -4,11 +4,13 @@ import org.junit.jupiter.api.*;
 import org.noear.solon.ai.agent.Agent;
 import org.noear.solon.ai.agent.session.FileAgentSession;
 import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.chat.message.ChatMessageCodec;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
@@ -107,6 +109,22 @@ public class FileAgentSessionTest {
         Assertions.assertTrue(msgFile.length() > 0);
     }
 
+    @Test
+    public void testCodec() {
+        FileAgentSession session = new FileAgentSession(sessionId, tempDir.toString());
+        session.addMessage(Arrays.asList(ChatMessage.ofUser("json")));
+
+        //切换为二进制编码后，已存的 json 记录仍可读取
+        session = new FileAgentSession(sessionId, tempDir.toString(), Duration.ZERO, 64, false, ChatMessageCodec.BINARY);
+        session.addMessage(Arrays.asList(ChatMessage.ofAssistant("binary 1"), ChatMessage.ofUser("binary 2")));
+        session.removeLatestMessage(1);
+
+        List<ChatMessage> messages = new FileAgentSession(sessionId, tempDir.toString()).getMessages();
+        Assertions.assertEquals(2, messages.size());
+        Assertions.assertEquals("json", messages.get(0).getContent());
+        Assertions.assertEquals("binary 1", messages.get(1).getContent());
+    }
+
     @Test
     public void testClear() {
         FileAgentSession session = new FileAgentSession(sessionId, tempDir.toString());
@@ -124,6 +142,79 @@ public class FileAgentSessionTest {
         Assertions.assertFalse(snapFile.exists());
     }
 
+    @Test
+    public void testSnapshot_DebounceAndDelta() {
+        FileAgentSession session = new FileAgentSession(sessionId, tempDir.toString(), Duration.ofSeconds(10), 64);
+        File snapFile = new File(tempDir.toFile(), sessionId + ".snapshot.json");
+        File deltaFile = new File(tempDir.toFile(), sessionId + ".snapshot.json.delta");
+
+        // 防抖间隔内不写盘
+        session.getContext().put("step", 1);
+        session.updateSnapshot();
+        Assertions.assertFalse(snapFile.exists());
+
+        // 首次写入全量
+        session.flush();
+        Assertions.assertTrue(snapFile.exists());
+        Assertions.assertFalse(deltaFile.exists());
+
+        // 之后只追加变化的键
+        session.getContext().put("step", 2);
+        session.getContext().put("user_name", "noear");
+        session.updateSnapshot();
+        session.close();
+        Assertions.assertTrue(deltaFile.exists());
+
+        // 恢复：基础文件 + 增量日志
+        FileAgentSession sessionRecovered = new FileAgentSession(sessionId, tempDir.toString());
+        Assertions.assertEquals(2, ((Number) sessionRecovered.getContext().get("step")).intValue());
+        Assertions.assertEquals("noear", sessionRecovered.getContext().get("user_name"));
+
+        sessionRecovered.clear();
+        Assertions.assertFalse(snapFile.exists());
+        Assertions.assertFalse(deltaFile.exists());
+    }
+
+    @Test
+    public void testSnapshot_DefaultSync() {
+        FileAgentSession session = new FileAgentSession(sessionId, tempDir.toString());
+        session.getContext().put("user_name", "noear");
+        session.updateSnapshot();
+
+        // 默认同步写入：不 flush/close 也可立即重新加载
+        FileAgentSession sessionRecovered = new FileAgentSession(sessionId, tempDir.toString());
+        Assertions.assertEquals("noear", sessionRecovered.getContext().get("user_name"));
+
+        sessionRecovered.clear();
+    }
+
+    @Test
+    public void testSnapshot_StaleDeltaIgnored() throws IOException {
+        FileAgentSession session = new FileAgentSession(sessionId, tempDir.toString(), Duration.ZERO, 1);
+        File deltaFile = new File(tempDir.toFile(), sessionId + ".snapshot.json.delta");
+
+        session.getContext().put("step", 1);
+        session.updateSnapshot();
+        session.getContext().put("step", 2);
+        session.updateSnapshot();
+        Assertions.assertTrue(deltaFile.exists());
+        byte[] staleDelta = Files.readAllBytes(deltaFile.toPath());
+
+        // 压缩：替换基础文件并清空增量日志
+        session.getContext().put("step", 3);
+        session.updateSnapshot();
+        Assertions.assertFalse(deltaFile.exists());
+
+        // 模拟替换基础文件后、清空增量日志前中断：旧的增量日志仍在
+        Files.write(deltaFile.toPath(), staleDelta);
+
+        FileAgentSession sessionRecovered = new FileAgentSession(sessionId, tempDir.toString());
+        Assertions.assertEquals(3, ((Number) sessionRecovered.getContext().get("step")).intValue());
+        Assertions.assertFalse(deltaFile.exists());
+
+        sessionRecovered.clear();
+    }
+
     @AfterAll
     public static void tearDown() throws IOException {
         // 清理整个临时目录（可选）
@@ -57,6 +57,9 @@ public class CacheControl {
     // 缓存键（OpenAI 风格）
     private String promptCacheKey;
 
+    // 稳定前缀的消息数（与上一轮请求相同的前缀；Anthropic 风格时在其末尾补一个断点）
+    private int stableMessages;
+
     public CacheControl() {
         // 用于反序列化
     }
@@ -109,6 +112,30 @@ public class CacheControl {
         return new CacheControl(null, null, promptCacheKey);
     }
 
+    /**
+     * 同时指定两种风格（按供应商协议各取所需）
+     *
+     * @param type           缓存类型（Anthropic 风格，如 "ephemeral"；可为 null）
+     * @param ttl            缓存存活时长（可为 null）
+     * @param promptCacheKey 缓存键（OpenAI 风格；可为 null）
+     * @since 4.1
+     */
+    public static CacheControl of(String type, String ttl, String promptCacheKey) {
+        return new CacheControl(type, ttl, promptCacheKey);
+    }
+
+    /**
+     * 复制并指定稳定前缀的消息数
+     *
+     * @param stableMessages 稳定前缀的消息数（按请求消息列表计数，0 表示未知）
+     * @since 4.1
+     */
+    public CacheControl withStableMessages(int stableMessages) {
+        CacheControl copy = new CacheControl(type, ttl, promptCacheKey);
+        copy.stableMessages = stableMessages;
+        return copy;
+    }
+
     /**
      * 获取缓存类型（Anthropic 风格，如 "ephemeral"）
      */
@@ -135,4 +162,13 @@ public class CacheControl {
     public String getPromptCacheKey() {
         return promptCacheKey;
     }
+
+    /**
+     * 获取稳定前缀的消息数（0 表示未知）
+     *
+     * @since 4.1
+     */
+    public int getStableMessages() {
+        return stableMessages;
+    }
 }
\ No newline at end of file
@@ -109,7 +109,7 @@ public class ChatRequest implements NonSerializable {
      */
     public String toRequestData() {
         //留个变量方便调试
-        ONode oNode = dialect.buildRequestJson(config, options, finalPrompt.getMessages(), stream);
+        ONode oNode = dialect.buildRequestJson(config, this);
 
         return oNode.toJson();
     }
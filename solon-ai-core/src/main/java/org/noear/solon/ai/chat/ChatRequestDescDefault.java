@@ -242,6 +242,15 @@ public class ChatRequestDescDefault implements ChatRequestDesc {
      * 调用
      */
     private ChatResponse doCall(ChatRequest req) throws IOException {
+        return doCall(req, false);
+    }
+
+    /**
+     * 调用
+     *
+     * @param recovered 是否已恢复过（恢复重试仅限一次）
+     */
+    private ChatResponse doCall(ChatRequest req, boolean recovered) throws IOException {
         HttpUtils httpUtils = dialect.createHttpUtils(config, req.isStream());
         if(req.getOptions().httpCustomize() != null){
             req.getOptions().httpCustomize().accept(httpUtils);
@@ -253,7 +262,15 @@ public class ChatRequestDescDefault implements ChatRequestDesc {
             log.debug("llm-request[{}]: {}", req.getAgentAndModel(), reqJson);
         }
 
-        String respJson = httpUtils.bodyOfJson(reqJson).post();
+        String respJson;
+        try {
+            respJson = httpUtils.bodyOfJson(reqJson).post();
+        } catch (IOException | RuntimeException e) {
+            if (recovered == false && dialect.recoverRequest(req, e)) {
+                return doCall(req, true);
+            }
+            throw e;
+        }
 
         if (log.isDebugEnabled()) {
             log.debug("llm-response[{}]: {}", req.getAgentAndModel(), respJson);
@@ -264,6 +281,9 @@ public class ChatRequestDescDefault implements ChatRequestDesc {
         dialect.parseResponseJson(config, resp, respJson);
 
         if (resp.getError() != null) {
+            if (recovered == false && dialect.recoverRequest(req, resp.getError())) {
+                return doCall(req, true);
+            }
             throw resp.getError();
         }
 
@@ -319,6 +339,15 @@ public class ChatRequestDescDefault implements ChatRequestDesc {
      * 流响应
      */
     private Flux<ChatResponse> doStream(ChatRequest req) {
+        return doStream(req, false);
+    }
+
+    /**
+     * 流响应
+     *
+     * @param recovered 是否已恢复过（恢复重试仅限一次）
+     */
+    private Flux<ChatResponse> doStream(ChatRequest req, boolean recovered) {
         HttpUtils httpUtils = dialect.createHttpUtils(config, req.isStream());
         if(req.getOptions().httpCustomize() != null){
             req.getOptions().httpCustomize().accept(httpUtils);
@@ -336,7 +365,11 @@ public class ChatRequestDescDefault implements ChatRequestDesc {
                         if (resp.code() < 400) {
                             return parseResp(req, resp);
                         } else {
-                            return Flux.error(resp.createError());
+                            Throwable error = resp.createError();
+                            if (recovered == false && dialect.recoverRequest(req, error)) {
+                                return doStream(req, true);
+                            }
+                            return Flux.error(error);
                         }
                     } catch (Throwable e) {
                         return Flux.error(e);
@@ -208,6 +208,25 @@ public class ModelOptionsAmend<T extends ModelOptionsAmend, X> {
         return toolAdd(toolProvider.getTools());
     }
 
+    /**
+     * 排序函数工具（工具定义的顺序是提示词前缀的一部分，固定顺序有利于前缀缓存命中）
+     *
+     * @since 4.1
+     */
+    public T toolSort(Comparator<FunctionTool> comparator) {
+        if (tools.size() > 1) {
+            List<FunctionTool> sorted = new ArrayList<>(tools.values());
+            sorted.sort(comparator);
+
+            tools.clear();
+            for (FunctionTool tool : sorted) {
+                tools.put(tool.name(), tool);
+            }
+        }
+
+        return (T) this;
+    }
+
     /**
      * 添加函数工具（构建形式）
      *
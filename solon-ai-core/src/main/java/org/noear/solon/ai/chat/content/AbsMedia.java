@@ -16,6 +16,8 @@
 package org.noear.solon.ai.chat.content;
 
 import org.noear.solon.Utils;
+import org.noear.solon.ai.chat.media.MediaStore;
+import org.noear.solon.ai.chat.media.MediaStoreManager;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -51,12 +53,35 @@ public abstract class AbsMedia<T extends AbsMedia> implements MediaBlock {
     }
 
     /**
-     * 获取 base64
+     * 获取 base64（数据存于媒体存储时，按摘要取回）
      */
     public String getData() {
+        if (data == null) {
+            String hash = getMediaHash();
+            if (hash != null) {
+                return MediaStoreManager.resolveBase64(hash);
+            }
+        }
+
         return data;
     }
 
+    /**
+     * 获取媒体存储摘要（数据未内联时）
+     *
+     * @since 4.1
+     */
+    public String getMediaHash() {
+        if (data == null && metas != null) {
+            Object hash = metas.get(MediaStore.META_HASH);
+            if (hash != null) {
+                return hash.toString();
+            }
+        }
+
+        return null;
+    }
+
     /**
      * 获取 url
      */
@@ -71,7 +96,7 @@ public abstract class AbsMedia<T extends AbsMedia> implements MediaBlock {
     @Override
     public String getContent() {
         if (url == null) {
-            return data;
+            return getData();
         } else {
             return url;
         }
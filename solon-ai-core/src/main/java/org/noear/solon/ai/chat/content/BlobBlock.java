@@ -17,6 +17,8 @@ package org.noear.solon.ai.chat.content;
 
 import org.noear.snack4.annotation.ONodeAttr;
 import org.noear.solon.Utils;
+import org.noear.solon.ai.chat.media.MediaStore;
+import org.noear.solon.ai.chat.media.MediaStoreManager;
 
 import java.util.Base64;
 import java.util.LinkedHashMap;
@@ -52,12 +54,38 @@ public class BlobBlock implements ContentBlock, ResourceBlock, MessageBlock {
         return tmp;
     }
 
+    /**
+     * 获取 base64（数据存于媒体存储时，按摘要取回）
+     */
     public String getBlob() {
+        if (blob == null) {
+            String hash = getMediaHash();
+            if (hash != null) {
+                return MediaStoreManager.resolveBase64(hash);
+            }
+        }
+
         return blob;
     }
 
+    /**
+     * 获取媒体存储摘要（数据未内联时）
+     *
+     * @since 4.1
+     */
+    public String getMediaHash() {
+        if (blob == null && metas != null) {
+            Object hash = metas.get(MediaStore.META_HASH);
+            if (hash != null) {
+                return hash.toString();
+            }
+        }
+
+        return null;
+    }
+
     public String getContent() {
-        return blob;
+        return getBlob();
     }
 
     @Override
@@ -18,6 +18,7 @@ package org.noear.solon.ai.chat.dialect;
 import org.noear.snack4.ONode;
 import org.noear.solon.ai.AiModelDialect;
 import org.noear.solon.ai.chat.ChatConfig;
+import org.noear.solon.ai.chat.ChatRequest;
 import org.noear.solon.ai.chat.ChatResponseDefault;
 import org.noear.solon.ai.chat.message.ToolMessage;
 import org.noear.solon.ai.chat.tool.ToolCallBuilder;
@@ -78,6 +79,29 @@ public interface ChatDialect extends AiModelDialect {
      */
     ONode buildRequestJson(ChatConfig config, ChatOptions options, List<ChatMessage> messages, boolean isStream);
 
+    /**
+     * 构建请求数据（可访问会话等请求上下文，默认按最终提示语的全部消息构建）
+     *
+     * @param config 聊天配置
+     * @param req    聊天请求
+     * @since 4.1
+     */
+    default ONode buildRequestJson(ChatConfig config, ChatRequest req) {
+        return buildRequestJson(config, req.getOptions(), req.getFinalPrompt().getMessages(), req.isStream());
+    }
+
+    /**
+     * 请求失败后的恢复（如服务端会话状态失效）
+     *
+     * @param req   聊天请求
+     * @param error 请求异常
+     * @return 是否已恢复（为 true 时会重新构建请求并重试一次）
+     * @since 4.1
+     */
+    default boolean recoverRequest(ChatRequest req, Throwable error) {
+        return false;
+    }
+
     /**
      * 构建助理消息节点
      *
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.chat.interceptor;
+
+import org.noear.solon.ai.AiUsage;
+import org.noear.solon.ai.chat.CacheControl;
+import org.noear.solon.ai.chat.ChatOptions;
+import org.noear.solon.ai.chat.ChatRequest;
+import org.noear.solon.ai.chat.ChatResponse;
+import org.noear.solon.ai.chat.ChatRole;
+import org.noear.solon.ai.chat.ChatSession;
+import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.chat.tool.FunctionTool;
+import org.noear.solon.lang.Preview;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 提示词缓存拦截器（自动放置缓存断点，并按会话统计命中率）
+ *
+ * <p>每次请求前：
+ * <ul>
+ *   <li>按名字排序工具定义，使工具前缀在各轮之间保持稳定</li>
+ *   <li>补齐缓存控制：Anthropic 风格的断点类型（由方言在 system/tools 与历史末尾打断点），
+ *       以及 OpenAI 风格的 prompt_cache_key（按 system 与工具定义的摘要生成；已显式指定的保持不变）</li>
+ *   <li>与该会话上一次成功请求的消息对比，得出未变化的前缀消息数；方言据此在稳定前缀末尾补一个断点，
+ *       使历史被改写（如上下文压缩）时，前缀仍能命中缓存</li>
+ * </ul>
+ * <p>请求后按会话累计用量，通过 {@link #getStats(ChatSession)} 获取命中率。
+ *
+ * <pre>{@code
+ * chatModel.prompt("hello")
+ *          .session(session)
+ *          .options(o -> o.interceptorAdd(new PromptCacheInterceptor()))
+ *          .call();
+ *
+ * PromptCacheInterceptor.getStats(session).getCacheRate();
+ * }</pre>
+ *
+ * @author noear
+ * @since 4.1
+ */
+@Preview("4.1")
+public class PromptCacheInterceptor implements ChatInterceptor {
+    /**
+     * 会话属性：缓存统计
+     */
+    public static final String ATTR_STATS = "prompt_cache_stats";
+    private static final String ATTR_FINGERPRINTS = "prompt_cache_fingerprints";
+    private static final String KEY_PREFIX = "pc-";
+
+    private final String type;
+    private final String ttl;
+    private final boolean sortTools;
+    private final boolean sessionScopedKey;
+
+    public PromptCacheInterceptor() {
+        this(null, true, false);
+    }
+
+    /**
+     * @param ttl              缓存存活时长（Anthropic 风格，如 "5m" / "1h"；null 表示供应商默认值）
+     * @param sortTools        是否按名字排序工具定义
+     * @param sessionScopedKey prompt_cache_key 是否按会话区分（默认按前缀区分，相同前缀的会话共用）
+     */
+    public PromptCacheInterceptor(String ttl, boolean sortTools, boolean sessionScopedKey) {
+        this.type = "ephemeral";
+        this.ttl = ttl;
+        this.sortTools = sortTools;
+        this.sessionScopedKey = sessionScopedKey;
+    }
+
+    /**
+     * 获取会话的缓存统计
+     */
+    public static PromptCacheStats getStats(ChatSession session) {
+        return (PromptCacheStats) session.attrs().computeIfAbsent(ATTR_STATS, k -> new PromptCacheStats());
+    }
+
+    @Override
+    public ChatResponse interceptCall(ChatRequest req, CallChain chain) throws IOException {
+        long[] fingerprints = prepare(req);
+
+        ChatResponse resp = chain.doIntercept(req);
+        remember(req, fingerprints);
+        getStats(req.getSession()).addUsage(resp.getUsage());
+        return resp;
+    }
+
+    @Override
+    public Flux<ChatResponse> interceptStream(ChatRequest req, StreamChain chain) {
+        long[] fingerprints = prepare(req);
+
+        //流式用量可能随多个分片重复下发，只取最后一次
+        AtomicReference<AiUsage> usageRef = new AtomicReference<>();
+        return chain.doIntercept(req)
+                .doOnNext(resp -> {
+                    if (resp.getUsage() != null) {
+                        usageRef.set(resp.getUsage());
+                    }
+                })
+                .doOnComplete(() -> {
+                    remember(req, fingerprints);
+                    getStats(req.getSession()).addUsage(usageRef.get());
+                });
+    }
+
+    /**
+     * 请求前处理（与该会话上一次成功请求对比得出稳定前缀；不修改会话）
+     *
+     * @return 本次请求的消息指纹（请求成功后经 remember 记入会话）
+     */
+    protected long[] prepare(ChatRequest req) {
+        ChatOptions options = req.getOptions();
+        ChatSession session = req.getSession();
+        List<ChatMessage> messages = req.getFinalPrompt().getMessages();
+
+        if (sortTools) {
+            options.toolSort(Comparator.comparing(FunctionTool::name));
+        }
+
+        // 稳定前缀：与上一轮请求相同的前缀消息数
+        long[] fingerprints = fingerprints(messages);
+        long[] previous = (long[]) session.attrs().get(ATTR_FINGERPRINTS);
+        int stableMessages = commonPrefix(previous, fingerprints);
+
+        CacheControl cacheControl = options.cacheControl();
+        String cacheType = type;
+        String cacheTtl = ttl;
+        String promptCacheKey = null;
+
+        if (cacheControl != null) {
+            if (cacheControl.getType() != null) {
+                cacheType = cacheControl.getType();
+                cacheTtl = cacheControl.getTtl();
+            }
+
+            //显式指定的缓存键保持不变（本拦截器生成的键每次重算，前缀变化时随之变化）
+            if (cacheControl.getPromptCacheKey() != null && cacheControl.getPromptCacheKey().startsWith(KEY_PREFIX) == false) {
+                promptCacheKey = cacheControl.getPromptCacheKey();
+            }
+        }
+
+        if (promptCacheKey == null) {
+            promptCacheKey = buildPromptCacheKey(options, messages, session);
+        }
+
+        options.cacheControl(CacheControl.of(cacheType, cacheTtl, promptCacheKey)
+                .withStableMessages(stableMessages));
+
+        return fingerprints;
+    }
+
+    /**
+     * 请求成功后处理（记下本次请求的消息指纹，作为下一轮的对比基准；失败的请求不记，以免稳定前缀偏离服务端实际缓存）
+     *
+     * @param fingerprints 本次请求的消息指纹
+     */
+    protected void remember(ChatRequest req, long[] fingerprints) {
+        req.getSession().attrs().put(ATTR_FINGERPRINTS, fingerprints);
+    }
+
+    /**
+     * 构建缓存键（system 消息与工具定义的摘要）
+     */
+    protected String buildPromptCacheKey(ChatOptions options, List<ChatMessage> messages, ChatSession session) {
+        MessageDigest digest = sha256();
+
+        for (ChatMessage msg : messages) {
+            if (msg.getRole() == ChatRole.SYSTEM) {
+                update(digest, msg.getContent());
+            }
+        }
+
+        for (FunctionTool tool : options.tools()) {
+            update(digest, tool.name());
+            update(digest, tool.description());
+            update(digest, tool.inputSchema());
+        }
+
+        if (sessionScopedKey) {
+            update(digest, session.getSessionId());
+        }
+
+        byte[] hash = digest.digest();
+        StringBuilder buf = new StringBuilder(KEY_PREFIX.length() + 32);
+        buf.append(KEY_PREFIX);
+        for (int i = 0; i < 16; i++) {
+            buf.append(Character.forDigit((hash[i] >> 4) & 0xF, 16));
+            buf.append(Character.forDigit(hash[i] & 0xF, 16));
+        }
+        return buf.toString();
+    }
+
+    /**
+     * 消息指纹（system 消息每轮重建，不计生成时间）
+     */
+    private static long[] fingerprints(List<ChatMessage> messages) {
+        long[] prints = new long[messages.size()];
+        for (int i = 0; i < prints.length; i++) {
+            ChatMessage msg = messages.get(i);
+
+            long h = msg.getRole().ordinal();
+            h = h * 31 + Objects.hashCode(msg.getContent());
+            if (msg.getRole() != ChatRole.SYSTEM) {
+                h = h * 31 + msg.getCreatedAt();
+            }
+            prints[i] = h;
+        }
+        return prints;
+    }
+
+    private static int commonPrefix(long[] previous, long[] current) {
+        if (previous == null) {
+            return 0;
+        }
+
+        int len = Math.min(previous.length, current.length);
+        int i = 0;
+        while (i < len && previous[i] == current[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    private static void update(MessageDigest digest, String str) {
+        if (str != null) {
+            digest.update(str.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.chat.interceptor;
+
+import org.noear.solon.ai.AiUsage;
+
+import java.io.Serializable;
+
+/**
+ * 提示词缓存统计（按会话累计）
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class PromptCacheStats implements Serializable {
+    private long requests;
+    private long promptTokens;
+    private long cacheCreationInputTokens;
+    private long cacheReadInputTokens;
+
+    /**
+     * 累计一次请求的用量
+     */
+    public synchronized void addUsage(AiUsage usage) {
+        if (usage == null) {
+            return;
+        }
+
+        requests++;
+        promptTokens += usage.promptTokens();
+        cacheCreationInputTokens += usage.cacheCreationInputTokens();
+        cacheReadInputTokens += usage.cacheReadInputTokens();
+    }
+
+    public synchronized void reset() {
+        requests = 0;
+        promptTokens = 0;
+        cacheCreationInputTokens = 0;
+        cacheReadInputTokens = 0;
+    }
+
+    /**
+     * 请求数
+     */
+    public synchronized long getRequests() {
+        return requests;
+    }
+
+    /**
+     * 提示语（输入）令牌数
+     */
+    public synchronized long getPromptTokens() {
+        return promptTokens;
+    }
+
+    /**
+     * 缓存创建输入令牌数
+     */
+    public synchronized long getCacheCreationInputTokens() {
+        return cacheCreationInputTokens;
+    }
+
+    /**
+     * 缓存读取输入令牌数
+     */
+    public synchronized long getCacheReadInputTokens() {
+        return cacheReadInputTokens;
+    }
+
+    /**
+     * 获取缓存命中率（0-100 百分比，保留2位小数），即缓存读取输入令牌数占提示语输入令牌数的比例
+     */
+    public synchronized double getCacheRate() {
+        if (promptTokens <= 0)
+            return 0.0D;
+
+        double rate = (double) cacheReadInputTokens * 100.0D / promptTokens;
+        return Math.round(Math.min(100.0D, rate) * 100.0D) / 100.0D;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PromptCacheStats{" +
+                "requests=" + requests +
+                ", promptTokens=" + promptTokens +
+                ", cacheCreationInputTokens=" + cacheCreationInputTokens +
+                ", cacheReadInputTokens=" + cacheReadInputTokens +
+                ", cacheRate=" + getCacheRate() +
+                '}';
+    }
+}
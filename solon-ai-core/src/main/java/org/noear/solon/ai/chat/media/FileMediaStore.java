@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.chat.media;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+
+/**
+ * 文件媒体存储（按摘要前两位分目录；先写临时文件再原子替换）
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class FileMediaStore implements MediaStore {
+    private final File baseDir;
+
+    public FileMediaStore(String dir) {
+        Objects.requireNonNull(dir, "dir is required");
+
+        this.baseDir = new File(dir);
+        if (!baseDir.exists()) {
+            baseDir.mkdirs();
+        }
+    }
+
+    @Override
+    public String put(byte[] data) {
+        String hash = MediaStoreManager.hash(data);
+        File file = getFile(hash);
+
+        if (file.exists()) {
+            return hash;
+        }
+
+        try {
+            File dir = file.getParentFile();
+            if (!dir.exists()) {
+                dir.mkdirs();
+            }
+
+            File tmpFile = File.createTempFile(hash, ".tmp", dir);
+            try {
+                try (FileOutputStream out = new FileOutputStream(tmpFile)) {
+                    out.write(data);
+                    out.getFD().sync();
+                }
+
+                try {
+                    Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmpFile.toPath(), file.toPath());
+                }
+            } catch (FileAlreadyExistsException e) {
+                //并发写入了相同内容
+            } finally {
+                tmpFile.delete();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Store media failed: " + hash, e);
+        }
+
+        return hash;
+    }
+
+    @Override
+    public byte[] get(String hash) {
+        try {
+            return Files.readAllBytes(getFile(hash).toPath());
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Load media failed: " + hash, e);
+        }
+    }
+
+    @Override
+    public boolean contains(String hash) {
+        return getFile(hash).exists();
+    }
+
+    @Override
+    public void remove(String hash) {
+        getFile(hash).delete();
+    }
+
+    private File getFile(String hash) {
+        if (hash.length() < 3 || hash.indexOf('/') >= 0 || hash.indexOf('\\') >= 0 || hash.indexOf('.') >= 0) {
+            throw new IllegalArgumentException("Invalid media hash: " + hash);
+        }
+
+        return new File(new File(baseDir, hash.substring(0, 2)), hash);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.chat.media;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 内存媒体存储
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class InMemoryMediaStore implements MediaStore {
+    private final Map<String, byte[]> blobs = new ConcurrentHashMap<>();
+
+    @Override
+    public String put(byte[] data) {
+        String hash = MediaStoreManager.hash(data);
+        blobs.putIfAbsent(hash, data.clone());
+        return hash;
+    }
+
+    @Override
+    public byte[] get(String hash) {
+        byte[] data = blobs.get(hash);
+        return data == null ? null : data.clone();
+    }
+
+    @Override
+    public boolean contains(String hash) {
+        return blobs.containsKey(hash);
+    }
+
+    @Override
+    public void remove(String hash) {
+        blobs.remove(hash);
+    }
+
+    /**
+     * 数量
+     */
+    public int size() {
+        return blobs.size();
+    }
+
+    /**
+     * 清空
+     */
+    public void clear() {
+        blobs.clear();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.chat.media;
+
+/**
+ * 媒体存储（按内容 SHA-256 寻址；相同内容只存一份，可跨会话共享）
+ *
+ * <p>会话持久化时，内联的媒体数据（图像、音频、视频、二进制块）存入媒体存储，消息里只保留摘要（元信息 {@link #META_HASH}）；
+ * 构建请求时再按摘要取回数据。
+ *
+ * @author noear
+ * @since 4.1
+ */
+public interface MediaStore {
+    /**
+     * 元信息：媒体摘要
+     */
+    String META_HASH = "media_hash";
+
+    /**
+     * 保存（已存在时不重复写入）
+     *
+     * @param data 数据
+     * @return 摘要（SHA-256 十六进制）
+     */
+    String put(byte[] data);
+
+    /**
+     * 获取
+     *
+     * @param hash 摘要
+     * @return 数据（不存在时为 null）
+     */
+    byte[] get(String hash);
+
+    /**
+     * 是否存在
+     */
+    boolean contains(String hash);
+
+    /**
+     * 移除
+     */
+    void remove(String hash);
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.chat.media;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * 媒体存储管理（全局默认存储；未设置时，会话持久化沿用截断超大内联数据的策略）
+ *
+ * @author noear
+ * @since 4.1
+ */
+public final class MediaStoreManager {
+    private static final Logger LOG = LoggerFactory.getLogger(MediaStoreManager.class);
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static volatile MediaStore defaultStore;
+
+    /**
+     * 获取默认存储
+     */
+    public static MediaStore getDefault() {
+        return defaultStore;
+    }
+
+    /**
+     * 设置默认存储（null 表示不使用）
+     */
+    public static void setDefault(MediaStore store) {
+        defaultStore = store;
+    }
+
+    /**
+     * 保存 base64 数据到默认存储
+     *
+     * @return 摘要（未设置存储或数据不是有效的 base64 时为 null）
+     */
+    public static String storeBase64(String base64) {
+        MediaStore store = defaultStore;
+        if (store == null || base64 == null) {
+            return null;
+        }
+
+        byte[] bytes;
+        try {
+            bytes = Base64.getMimeDecoder().decode(base64.getBytes(StandardCharsets.ISO_8859_1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        return store.put(bytes);
+    }
+
+    /**
+     * 从默认存储取回 base64 数据
+     *
+     * @return base64（未设置存储或不存在时为 null）
+     */
+    public static String resolveBase64(String hash) {
+        MediaStore store = defaultStore;
+        if (store == null || hash == null) {
+            return null;
+        }
+
+        byte[] bytes = store.get(hash);
+        if (bytes == null) {
+            LOG.warn("Media not found in store: {}", hash);
+            return null;
+        }
+
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    /**
+     * 计算摘要（SHA-256 十六进制）
+     */
+    public static String hash(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            char[] chars = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                chars[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+                chars[i * 2 + 1] = HEX[digest[i] & 0xF];
+            }
+            return new String(chars);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
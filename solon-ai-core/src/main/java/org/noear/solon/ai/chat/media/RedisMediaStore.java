@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.chat.media;
+
+import org.noear.redisx.RedisClient;
+import redis.clients.jedis.UnifiedJedis;
+import redis.clients.jedis.params.SetParams;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Redis 媒体存储（SET NX 写入，已存在时不重复写入；可设置过期时间）
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class RedisMediaStore implements MediaStore {
+    private final RedisClient redisClient;
+    private final String keyPrefix;
+    private final long ttlSeconds;
+
+    public RedisMediaStore(RedisClient redisClient) {
+        this(redisClient, "solon-ai:media:", null);
+    }
+
+    /**
+     * @param redisClient Redis 客户端
+     * @param keyPrefix   键前缀
+     * @param ttl         过期时间（null 表示不过期）
+     */
+    public RedisMediaStore(RedisClient redisClient, String keyPrefix, Duration ttl) {
+        Objects.requireNonNull(redisClient, "redisClient is required");
+
+        this.redisClient = redisClient;
+        this.keyPrefix = (keyPrefix == null ? "" : keyPrefix);
+        this.ttlSeconds = (ttl == null ? 0L : ttl.getSeconds());
+    }
+
+    @Override
+    public String put(byte[] data) {
+        String hash = MediaStoreManager.hash(data);
+
+        if (ttlSeconds > 0) {
+            jedis().set(getKey(hash), data, SetParams.setParams().nx().ex(ttlSeconds));
+        } else {
+            jedis().setnx(getKey(hash), data);
+        }
+
+        return hash;
+    }
+
+    @Override
+    public byte[] get(String hash) {
+        return jedis().get(getKey(hash));
+    }
+
+    @Override
+    public boolean contains(String hash) {
+        return jedis().exists(getKey(hash));
+    }
+
+    @Override
+    public void remove(String hash) {
+        jedis().del(getKey(hash));
+    }
+
+    private byte[] getKey(String hash) {
+        return (keyPrefix + hash).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private UnifiedJedis jedis() {
+        return redisClient.jedis();
+    }
+}
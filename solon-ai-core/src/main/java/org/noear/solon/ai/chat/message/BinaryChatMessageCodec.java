@@ -0,0 +1,374 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.chat.message;
+
+import org.noear.snack4.Feature;
+import org.noear.snack4.ONode;
+import org.noear.snack4.Options;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 聊天消息紧凑二进制编解码
+ *
+ * <p>对 {@link ChatMessage#toNode(ChatMessage, boolean)} 得到的节点树（与 json 完全同构，含类型标记与媒体压缩）做带标签的二进制编码：
+ * 长度与整数用变长编码，数值与布尔不再经过文本转换，字符串按 UTF-8 原样存放。省去了 json 的词法解析与转义，体积也更小。
+ *
+ * <p>单条格式：魔数 + 版本 + 节点；批量格式：魔数 + 版本 + 多个（长度 + 节点）。
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class BinaryChatMessageCodec implements ChatMessageCodec {
+    /**
+     * 魔数（不会出现在 UTF-8 文本的开头，用于与 json 区分）
+     */
+    public static final byte MAGIC = (byte) 0xC1;
+    public static final byte VERSION = 1;
+
+    private static final int T_NULL = 0;
+    private static final int T_FALSE = 1;
+    private static final int T_TRUE = 2;
+    private static final int T_LONG = 3;
+    private static final int T_DOUBLE = 4;
+    private static final int T_DECIMAL = 5;
+    private static final int T_STRING = 6;
+    private static final int T_DATE = 7;
+    private static final int T_ARRAY = 8;
+    private static final int T_OBJECT = 9;
+
+    private final Options options = Options.of(Feature.Read_AutoType);
+
+    /**
+     * 是否为二进制编码
+     */
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length > 0 && data[0] == MAGIC;
+    }
+
+    /**
+     * 是否为二进制编码（需支持 mark；不消费数据）
+     */
+    public static boolean isBinary(InputStream in) throws IOException {
+        in.mark(1);
+        int b = in.read();
+        in.reset();
+        return b == (MAGIC & 0xFF);
+    }
+
+    @Override
+    public byte[] encode(ChatMessage message) {
+        Writer writer = new Writer(256);
+        writer.write(MAGIC);
+        writer.write(VERSION);
+        writer.writeNode(ChatMessage.toNode(message, true));
+        return writer.toByteArray();
+    }
+
+    @Override
+    public ChatMessage decode(byte[] data) {
+        if (isBinary(data) == false) {
+            return JSON.decode(data);
+        }
+
+        checkVersion(data[1]);
+        Reader reader = new Reader(data, 2, data.length);
+        return ChatMessage.fromJson(reader.readNode());
+    }
+
+    @Override
+    public void encodeAll(Collection<? extends ChatMessage> messages, OutputStream out) throws IOException {
+        out.write(MAGIC);
+        out.write(VERSION);
+
+        Writer writer = new Writer(1024);
+        for (ChatMessage msg : messages) {
+            writer.reset();
+            writer.writeNode(ChatMessage.toNode(msg, true));
+
+            Writer head = new Writer(5);
+            head.writeVarint(writer.size());
+            head.writeTo(out);
+            writer.writeTo(out);
+        }
+        out.flush();
+    }
+
+    @Override
+    public void decodeAll(InputStream in, Consumer<ChatMessage> consumer) throws IOException {
+        InputStream input = (in.markSupported() ? in : new BufferedInputStream(in));
+
+        if (isBinary(input) == false) {
+            JSON.decodeAll(input, consumer);
+            return;
+        }
+
+        input.read();
+        checkVersion((byte) input.read());
+
+        byte[] buf = new byte[1024];
+        while (true) {
+            int len = readVarint(input);
+            if (len < 0) {
+                break;
+            }
+
+            if (buf.length < len) {
+                buf = new byte[Math.max(len, buf.length * 2)];
+            }
+            readFully(input, buf, len);
+
+            Reader reader = new Reader(buf, 0, len);
+            consumer.accept(ChatMessage.fromJson(reader.readNode()));
+        }
+    }
+
+    private static void checkVersion(byte version) {
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported chat message codec version: " + version);
+        }
+    }
+
+    /**
+     * 读取帧长度（流结束时返回 -1）
+     */
+    private static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (shift == 0) {
+                    return -1;
+                }
+                throw new EOFException("Truncated chat message frame");
+            }
+
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Malformed chat message frame");
+    }
+
+    private static void readFully(InputStream in, byte[] buf, int len) throws IOException {
+        int off = 0;
+        while (off < len) {
+            int n = in.read(buf, off, len - off);
+            if (n < 0) {
+                throw new EOFException("Truncated chat message frame");
+            }
+            off += n;
+        }
+    }
+
+    /// /////////////////
+
+    private static class Writer extends ByteArrayOutputStream {
+        Writer(int size) {
+            super(size);
+        }
+
+        void writeNode(ONode node) {
+            if (node == null || node.isNull()) {
+                write(T_NULL);
+            } else if (node.isObject()) {
+                Map<String, ONode> map = node.getObject();
+                write(T_OBJECT);
+                writeVarint(map.size());
+                for (Map.Entry<String, ONode> kv : map.entrySet()) {
+                    writeString(kv.getKey());
+                    writeNode(kv.getValue());
+                }
+            } else if (node.isArray()) {
+                List<ONode> list = node.getArray();
+                write(T_ARRAY);
+                writeVarint(list.size());
+                for (ONode item : list) {
+                    writeNode(item);
+                }
+            } else {
+                writeValue(node.getValue());
+            }
+        }
+
+        void writeValue(Object value) {
+            if (value == null) {
+                write(T_NULL);
+            } else if (value instanceof String) {
+                write(T_STRING);
+                writeString((String) value);
+            } else if (value instanceof Boolean) {
+                write((Boolean) value ? T_TRUE : T_FALSE);
+            } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                long v = ((Number) value).longValue();
+                write(T_LONG);
+                writeVarlong((v << 1) ^ (v >> 63));
+            } else if (value instanceof Double || value instanceof Float) {
+                long v = Double.doubleToLongBits(((Number) value).doubleValue());
+                write(T_DOUBLE);
+                for (int i = 56; i >= 0; i -= 8) {
+                    write((int) (v >>> i));
+                }
+            } else if (value instanceof Number) {
+                write(T_DECIMAL);
+                writeString(value.toString());
+            } else if (value instanceof Date) {
+                long v = ((Date) value).getTime();
+                write(T_DATE);
+                writeVarlong((v << 1) ^ (v >> 63));
+            } else {
+                write(T_STRING);
+                writeString(value.toString());
+            }
+        }
+
+        void writeString(String str) {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        void writeVarint(int value) {
+            writeVarlong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarlong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+    }
+
+    private class Reader {
+        private final byte[] buf;
+        private final int end;
+        private int pos;
+
+        Reader(byte[] buf, int pos, int end) {
+            this.buf = buf;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        ONode readNode() {
+            int tag = readByte();
+            switch (tag) {
+                case T_NULL:
+                    return new ONode(options);
+                case T_FALSE:
+                    return new ONode(options).setValue(false);
+                case T_TRUE:
+                    return new ONode(options).setValue(true);
+                case T_LONG: {
+                    long v = readVarlong();
+                    v = (v >>> 1) ^ -(v & 1);
+                    if (v == (int) v) {
+                        return new ONode(options).setValue((int) v);
+                    } else {
+                        return new ONode(options).setValue(v);
+                    }
+                }
+                case T_DOUBLE: {
+                    long v = 0;
+                    for (int i = 0; i < 8; i++) {
+                        v = (v << 8) | readByte();
+                    }
+                    return new ONode(options).setValue(Double.longBitsToDouble(v));
+                }
+                case T_DECIMAL: {
+                    String str = readString();
+                    if (str.indexOf('.') < 0 && str.indexOf('e') < 0 && str.indexOf('E') < 0) {
+                        return new ONode(options).setValue(new BigInteger(str));
+                    } else {
+                        return new ONode(options).setValue(new BigDecimal(str));
+                    }
+                }
+                case T_STRING:
+                    return new ONode(options).setValue(readString());
+                case T_DATE: {
+                    long v = readVarlong();
+                    return new ONode(options).setValue(new Date((v >>> 1) ^ -(v & 1)));
+                }
+                case T_ARRAY: {
+                    int size = (int) readVarlong();
+                    ONode node = new ONode(options).asArray();
+                    for (int i = 0; i < size; i++) {
+                        node.add(readNode());
+                    }
+                    return node;
+                }
+                case T_OBJECT: {
+                    int size = (int) readVarlong();
+                    ONode node = new ONode(options).asObject();
+                    for (int i = 0; i < size; i++) {
+                        String key = readString();
+                        node.set(key, readNode());
+                    }
+                    return node;
+                }
+                default:
+                    throw new IllegalStateException("Malformed chat message data, tag: " + tag);
+            }
+        }
+
+        String readString() {
+            int len = (int) readVarlong();
+            if (len < 0 || pos + len > end) {
+                throw new IllegalStateException("Malformed chat message data");
+            }
+
+            String str = new String(buf, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return str;
+        }
+
+        long readVarlong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalStateException("Malformed chat message data");
+        }
+
+        int readByte() {
+            if (pos >= end) {
+                throw new IllegalStateException("Truncated chat message data");
+            }
+            return buf[pos++] & 0xFF;
+        }
+    }
+}
@@ -23,6 +23,8 @@ import org.noear.solon.ai.chat.content.ContentBlock;
 import org.noear.solon.ai.chat.ChatRole;
 import org.noear.solon.ai.chat.content.Contents;
 import org.noear.solon.ai.chat.content.TextBlock;
+import org.noear.solon.ai.chat.media.MediaStore;
+import org.noear.solon.ai.chat.media.MediaStoreManager;
 import org.noear.solon.ai.chat.tool.ToolResult;
 import org.noear.solon.core.util.Assert;
 import org.noear.solon.lang.NonNull;
@@ -261,6 +263,13 @@ public interface ChatMessage extends Serializable {
      * @since 3.9
      */
     int SESSION_INLINE_BASE64_MAX_CHARS = 64 * 1024;
+
+    /**
+     * Session 持久化时，存入媒体存储的内联 base64 最小字符数（需设置 {@link MediaStoreManager#setDefault(MediaStore)}）
+     *
+     * @since 4.1
+     */
+    int SESSION_MEDIA_STORE_MIN_CHARS = 1024;
     
     /**
      * 序列化为 json
@@ -276,16 +285,27 @@ public interface ChatMessage extends Serializable {
      * @since 3.9
      */
     static String toJson(ChatMessage message, boolean compactLargeMedia) {
+        return toNode(message, compactLargeMedia).toJson();
+    }
+
+    /**
+     * 转换为节点（json 与二进制编码共用）
+     *
+     * @param compactLargeMedia 是否压缩超大内联 base64
+     * @since 4.1
+     */
+    static ONode toNode(ChatMessage message, boolean compactLargeMedia) {
         ONode node = ONode.ofBean(message, Feature.Write_EnumUsingName);
         if (compactLargeMedia) {
             compactLargeMediaInNode(node);
         }
-        return node.toJson();
+        return node;
     }
     
     /**
      * 递归压缩消息 JSON 中超大内联 base64 媒体字段。
-     * <p>策略：保留 url / mimeType / metas / @type；清空超大 data，并标记 storage=external。</p>
+     * <p>策略：设置了媒体存储时，把 data / blob 存入媒体存储并在 metas 中记录摘要（按摘要去重）；
+     * 否则保留 url / mimeType / metas / @type，清空超大 data，并标记 storage=external。</p>
      *
      * @since 3.9
      */
@@ -305,28 +325,65 @@ public interface ChatMessage extends Serializable {
             return;
         }
     
-        // ContentBlock / AbsMedia: data 为内联 base64
-        if (node.hasKey("data")) {
-            ONode dataNode = node.get("data");
-            if (dataNode != null && dataNode.isValue()) {
-                String data = dataNode.getString();
-                if (Utils.isNotEmpty(data) && data.length() > SESSION_INLINE_BASE64_MAX_CHARS) {
-                    int originalLen = data.length();
-                    node.set("data", null);
-                    ONode metas = node.getOrNew("metas").asObject();
-                    metas.set("storage", "external");
-                    metas.set("data_truncated", true);
-                    metas.set("original_data_length", originalLen);
-                    // 若已有 id/url 可回传；否则仅保留元信息，避免 Session 膨胀
-                }
-            }
-        }
+        // ContentBlock / AbsMedia: data 为内联 base64；BlobBlock: blob 为内联 base64
+        compactLargeMediaField(node, "data");
+        compactLargeMediaField(node, "blob");
     
         for (Map.Entry<String, ONode> entry : node.getObject().entrySet()) {
             compactLargeMediaInNode(entry.getValue());
         }
     }
 
+    /**
+     * 压缩单个内联 base64 字段
+     *
+     * @since 4.1
+     */
+    static void compactLargeMediaField(ONode node, String field) {
+        if (node.hasKey(field) == false) {
+            return;
+        }
+
+        ONode dataNode = node.get(field);
+        if (dataNode == null || dataNode.isValue() == false) {
+            return;
+        }
+
+        String data = dataNode.getString();
+        if (Utils.isEmpty(data)) {
+            return;
+        }
+
+        int originalLen = data.length();
+
+        // 已存于媒体存储（数据是按摘要取回的）
+        if (node.hasKey("metas") && node.get("metas").hasKey(MediaStore.META_HASH)) {
+            node.set(field, null);
+            return;
+        }
+
+        if (originalLen > SESSION_MEDIA_STORE_MIN_CHARS) {
+            String hash = MediaStoreManager.storeBase64(data);
+            if (hash != null) {
+                node.set(field, null);
+                ONode metas = node.getOrNew("metas").asObject();
+                metas.set("storage", "external");
+                metas.set(MediaStore.META_HASH, hash);
+                metas.set("original_data_length", originalLen);
+                return;
+            }
+        }
+
+        if (originalLen > SESSION_INLINE_BASE64_MAX_CHARS) {
+            node.set(field, null);
+            ONode metas = node.getOrNew("metas").asObject();
+            metas.set("storage", "external");
+            metas.set("data_truncated", true);
+            metas.set("original_data_length", originalLen);
+            // 若已有 id/url 可回传；否则仅保留元信息，避免 Session 膨胀
+        }
+    }
+
     /**
      * 从 json 反序列化为消息
      */
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.chat.message;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 聊天消息编解码器（用于会话持久化）
+ *
+ * <p>解码时按首字节识别实际格式（二进制编码以固定魔数开头，json 以 '{' 开头），切换编解码器后已存的数据仍可读取。
+ *
+ * @author noear
+ * @since 4.1
+ */
+public interface ChatMessageCodec {
+    /**
+     * json 编解码（默认；便于查看与调试）
+     */
+    ChatMessageCodec JSON = new JsonChatMessageCodec();
+
+    /**
+     * 紧凑二进制编解码（体积更小，加载更快）
+     */
+    ChatMessageCodec BINARY = new BinaryChatMessageCodec();
+
+    /**
+     * 编码单条消息
+     */
+    byte[] encode(ChatMessage message);
+
+    /**
+     * 解码单条消息（兼容另一种格式）
+     */
+    ChatMessage decode(byte[] data);
+
+    /**
+     * 批量编码（流式写出）
+     */
+    void encodeAll(Collection<? extends ChatMessage> messages, OutputStream out) throws IOException;
+
+    /**
+     * 批量解码（流式读取，兼容另一种格式）
+     */
+    void decodeAll(InputStream in, Consumer<ChatMessage> consumer) throws IOException;
+
+    /**
+     * 批量解码（流式读取，兼容另一种格式）
+     */
+    default List<ChatMessage> decodeAll(InputStream in) throws IOException {
+        List<ChatMessage> messages = new ArrayList<>();
+        decodeAll(in, messages::add);
+        return messages;
+    }
+
+    /**
+     * 按首字节识别格式并解码
+     */
+    static ChatMessage decodeAny(byte[] data) {
+        return BinaryChatMessageCodec.isBinary(data) ? BINARY.decode(data) : JSON.decode(data);
+    }
+}
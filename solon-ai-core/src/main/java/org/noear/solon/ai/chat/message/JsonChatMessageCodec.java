@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.chat.message;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * 聊天消息 json 编解码（单条为 json，批量为 ndjson）
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class JsonChatMessageCodec implements ChatMessageCodec {
+    @Override
+    public byte[] encode(ChatMessage message) {
+        return ChatMessage.toJson(message).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public ChatMessage decode(byte[] data) {
+        if (BinaryChatMessageCodec.isBinary(data)) {
+            return BINARY.decode(data);
+        }
+
+        return ChatMessage.fromJson(new String(data, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void encodeAll(Collection<? extends ChatMessage> messages, OutputStream out) throws IOException {
+        for (ChatMessage msg : messages) {
+            out.write(encode(msg));
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    @Override
+    public void decodeAll(InputStream in, Consumer<ChatMessage> consumer) throws IOException {
+        InputStream input = (in.markSupported() ? in : new BufferedInputStream(in));
+
+        if (BinaryChatMessageCodec.isBinary(input)) {
+            BINARY.decodeAll(input, consumer);
+        } else {
+            ChatMessage.fromNdjson(input, consumer);
+        }
+    }
+}
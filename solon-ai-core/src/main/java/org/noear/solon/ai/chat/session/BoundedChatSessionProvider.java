@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.chat.session;
+
+import org.noear.solon.ai.chat.ChatSession;
+import org.noear.solon.ai.chat.ChatSessionProvider;
+import org.noear.solon.lang.Preview;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * 有界聊天会话提供者（热会话留在内存，超限或空闲时淘汰，再次访问时从后端存储重新加载）
+ *
+ * <pre>{@code
+ * ChatSessionProvider provider = BoundedChatSessionProvider.builder(id -> new FileChatSession(id, "/data/sessions"))
+ *         .maxSessions(1000)
+ *         .maxBytes(256 * 1024 * 1024)
+ *         .idleTimeout(Duration.ofMinutes(30))
+ *         .build();
+ * }</pre>
+ *
+ * @author noear
+ * @since 4.1
+ */
+@Preview("4.1")
+public class BoundedChatSessionProvider implements ChatSessionProvider {
+    private final BoundedSessionCache<ChatSession> cache;
+
+    public BoundedChatSessionProvider(Function<String, ChatSession> loader, int maxSessions, long maxBytes, Duration idleTimeout) {
+        this.cache = new BoundedSessionCache<>(loader, maxSessions, maxBytes, idleTimeout);
+    }
+
+    @Override
+    public ChatSession getSession(String instanceId) {
+        return cache.get(instanceId);
+    }
+
+    /**
+     * 获取会话缓存（查看用量或手动淘汰）
+     */
+    public BoundedSessionCache<ChatSession> getCache() {
+        return cache;
+    }
+
+    /**
+     * 构建
+     *
+     * @param loader 会话加载器（从后端存储加载或新建）
+     */
+    public static Builder builder(Function<String, ChatSession> loader) {
+        return new Builder(loader);
+    }
+
+    public static class Builder {
+        private final Function<String, ChatSession> loader;
+        private int maxSessions = 1000;
+        private long maxBytes = 0L;
+        private Duration idleTimeout;
+
+        public Builder(Function<String, ChatSession> loader) {
+            Objects.requireNonNull(loader, "loader is required");
+            this.loader = loader;
+        }
+
+        /**
+         * 最大会话数（0 表示不限；默认 1000）
+         */
+        public Builder maxSessions(int maxSessions) {
+            this.maxSessions = maxSessions;
+            return this;
+        }
+
+        /**
+         * 最大估算字节数（0 表示不限）
+         */
+        public Builder maxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * 空闲淘汰时间（null 表示不按空闲淘汰）
+         */
+        public Builder idleTimeout(Duration idleTimeout) {
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
+        public BoundedChatSessionProvider build() {
+            return new BoundedChatSessionProvider(loader, maxSessions, maxBytes, idleTimeout);
+        }
+    }
+}
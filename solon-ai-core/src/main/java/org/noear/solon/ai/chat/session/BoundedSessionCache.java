@@ -0,0 +1,304 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.chat.session;
+
+import org.noear.solon.ai.chat.ChatSession;
+import org.noear.solon.ai.chat.content.AbsMedia;
+import org.noear.solon.ai.chat.content.BlobBlock;
+import org.noear.solon.ai.chat.content.ContentBlock;
+import org.noear.solon.ai.chat.message.AssistantMessage;
+import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.chat.message.ToolMessage;
+import org.noear.solon.ai.chat.message.UserMessage;
+import org.noear.solon.lang.Preview;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * 有界会话缓存（按最近访问淘汰；供有界会话提供者使用）
+ *
+ * <p>热会话保留在内存中，受会话数与估算字节数（按消息内容估算）两个上限约束；超限或空闲超时的会话被淘汰：
+ * 可关闭的会话先关闭（提交待写数据），再释放引用。再次访问时由加载器从后端存储（如 FileChatSession、RedisChatSession）重新加载。
+ *
+ * <p>注意：被淘汰的会话若仍在使用，会与重新加载的实例各自持有缓存，上限应大于同时活跃的会话数。
+ *
+ * @author noear
+ * @since 4.1
+ */
+@Preview("4.1")
+public class BoundedSessionCache<S extends ChatSession> {
+    private static final Logger LOG = LoggerFactory.getLogger(BoundedSessionCache.class);
+    /**
+     * 每条消息的固定开销估算（对象头、字段、元数据等）
+     */
+    private static final int MESSAGE_OVERHEAD_BYTES = 128;
+
+    private final Function<String, S> loader;
+    private final int maxSessions;
+    private final long maxBytes;
+    private final long idleTimeoutMillis;
+
+    //以下状态由 this 锁保护（按访问顺序排列，表头为最久未访问）
+    private final LinkedHashMap<String, Entry<S>> entries = new LinkedHashMap<>(16, 0.75F, true);
+    private long totalBytes;
+
+    /**
+     * @param loader      会话加载器（从后端存储加载或新建）
+     * @param maxSessions 最大会话数（0 表示不限）
+     * @param maxBytes    最大估算字节数（0 表示不限）
+     * @param idleTimeout 空闲淘汰时间（null 表示不按空闲淘汰）
+     */
+    public BoundedSessionCache(Function<String, S> loader, int maxSessions, long maxBytes, Duration idleTimeout) {
+        Objects.requireNonNull(loader, "loader is required");
+
+        this.loader = loader;
+        this.maxSessions = maxSessions;
+        this.maxBytes = maxBytes;
+        this.idleTimeoutMillis = (idleTimeout == null ? 0L : idleTimeout.toMillis());
+    }
+
+    /**
+     * 获取会话（不在内存中时加载）
+     */
+    public S get(String instanceId) {
+        Objects.requireNonNull(instanceId, "instanceId is required");
+
+        S session;
+        List<S> evicted;
+
+        synchronized (this) {
+            Entry<S> entry = entries.get(instanceId);
+            if (entry != null) {
+                //上次访问后可能追加了消息，重新估算
+                refresh(entry);
+                evicted = evictExcess(instanceId);
+                session = entry.session;
+            } else {
+                session = null;
+                evicted = null;
+            }
+        }
+
+        if (session == null) {
+            //加载在锁外进行（可能读磁盘或网络）
+            S loaded = loader.apply(instanceId);
+            Objects.requireNonNull(loaded, "The loaded session is null: " + instanceId);
+
+            synchronized (this) {
+                Entry<S> entry = entries.get(instanceId);
+                if (entry == null) {
+                    entry = new Entry<>(loaded);
+                    entries.put(instanceId, entry);
+                    refresh(entry);
+                    session = loaded;
+                } else {
+                    //并发加载，以先放入的为准
+                    session = entry.session;
+                }
+
+                evicted = evictExcess(instanceId);
+            }
+
+            if (session != loaded) {
+                close(loaded);
+            }
+        }
+
+        for (S s : evicted) {
+            close(s);
+        }
+
+        return session;
+    }
+
+    /**
+     * 淘汰指定会话
+     */
+    public void evict(String instanceId) {
+        Entry<S> entry;
+        synchronized (this) {
+            entry = entries.remove(instanceId);
+            if (entry != null) {
+                totalBytes -= entry.bytes;
+            }
+        }
+
+        if (entry != null) {
+            close(entry.session);
+        }
+    }
+
+    /**
+     * 淘汰全部会话
+     */
+    public void evictAll() {
+        List<Entry<S>> all;
+        synchronized (this) {
+            all = new ArrayList<>(entries.values());
+            entries.clear();
+            totalBytes = 0;
+        }
+
+        for (Entry<S> entry : all) {
+            close(entry.session);
+        }
+    }
+
+    /**
+     * 内存中的会话数
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 内存中会话的估算字节数
+     */
+    public synchronized long bytes() {
+        return totalBytes;
+    }
+
+    /**
+     * 是否在内存中
+     */
+    public synchronized boolean contains(String instanceId) {
+        return entries.containsKey(instanceId);
+    }
+
+    private void refresh(Entry<S> entry) {
+        long bytes = estimateBytes(entry.session);
+        totalBytes += bytes - entry.bytes;
+        entry.bytes = bytes;
+        entry.lastAccess = System.currentTimeMillis();
+    }
+
+    /**
+     * 淘汰超限与空闲超时的会话（不淘汰当前访问的会话）
+     */
+    private List<S> evictExcess(String currentId) {
+        List<S> evicted = Collections.emptyList();
+        long now = System.currentTimeMillis();
+
+        Iterator<Map.Entry<String, Entry<S>>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry<S>> kv = iterator.next();
+            Entry<S> entry = kv.getValue();
+
+            boolean overCount = maxSessions > 0 && entries.size() > maxSessions;
+            boolean overBytes = maxBytes > 0 && totalBytes > maxBytes;
+            boolean idle = idleTimeoutMillis > 0 && now - entry.lastAccess > idleTimeoutMillis;
+
+            if (overCount == false && overBytes == false && idle == false) {
+                //表头未过期且未超限，后面的访问更晚
+                break;
+            }
+
+            if (kv.getKey().equals(currentId)) {
+                continue;
+            }
+
+            iterator.remove();
+            totalBytes -= entry.bytes;
+
+            if (evicted.isEmpty()) {
+                evicted = new ArrayList<>();
+            }
+            evicted.add(entry.session);
+        }
+
+        return evicted;
+    }
+
+    private void close(S session) {
+        if (session instanceof Closeable) {
+            try {
+                ((Closeable) session).close();
+            } catch (Throwable e) {
+                LOG.warn("Close session failed: {}, {}", session.getSessionId(), e.toString());
+            }
+        }
+    }
+
+    /**
+     * 估算会话占用的字节数（按消息内容与内联媒体估算）
+     */
+    public static long estimateBytes(ChatSession session) {
+        List<ChatMessage> messages = session.getMessages();
+        if (messages == null) {
+            return 0L;
+        }
+
+        long bytes = 0L;
+        //消息列表可能被并发追加，按下标读取并容忍越界（仅为估算）
+        try {
+            for (int i = 0, size = messages.size(); i < size; i++) {
+                bytes += estimateBytes(messages.get(i));
+            }
+        } catch (IndexOutOfBoundsException e) {
+            //忽略
+        }
+
+        return bytes;
+    }
+
+    private static long estimateBytes(ChatMessage message) {
+        long bytes = MESSAGE_OVERHEAD_BYTES;
+
+        String content = message.getContent();
+        if (content != null) {
+            bytes += 2L * content.length();
+        }
+
+        List<ContentBlock> blocks = null;
+        if (message instanceof UserMessage) {
+            blocks = ((UserMessage) message).getBlocks();
+        } else if (message instanceof AssistantMessage) {
+            blocks = ((AssistantMessage) message).getBlocks();
+        } else if (message instanceof ToolMessage) {
+            blocks = ((ToolMessage) message).getBlocks();
+        }
+
+        if (blocks != null) {
+            for (ContentBlock block : blocks) {
+                //存于媒体存储的数据不占内存（不取回）
+                if (block instanceof AbsMedia && ((AbsMedia<?>) block).getMediaHash() == null) {
+                    String data = ((AbsMedia<?>) block).getData();
+                    bytes += (data == null ? 0 : 2L * data.length());
+                } else if (block instanceof BlobBlock && ((BlobBlock) block).getMediaHash() == null) {
+                    String blob = ((BlobBlock) block).getBlob();
+                    bytes += (blob == null ? 0 : 2L * blob.length());
+                }
+            }
+        }
+
+        return bytes;
+    }
+
+    private static class Entry<S> {
+        final S session;
+        long bytes;
+        long lastAccess;
+
+        Entry(S session) {
+            this.session = session;
+        }
+    }
+}
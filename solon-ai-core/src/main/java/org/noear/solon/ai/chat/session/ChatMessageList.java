@@ -0,0 +1,377 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.chat.session;
+
+import org.noear.solon.ai.chat.message.AssistantMessage;
+import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.chat.message.SystemMessage;
+import org.noear.solon.ai.chat.message.ToolMessage;
+import org.noear.solon.ai.chat.message.UserMessage;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * 聊天消息列表（环形数组，带安全截断点索引）
+ *
+ * <p>每条消息有一个绝对序号（头部移除时不变），并在追加时记录：此前最近的 UserMessage 序号、所在 ToolMessage 连续段的起始序号；
+ * 另维护 UserMessage 序号队列。据此，窗口的安全起始点可在常数时间内算出。尾部追加与移除、头部移除（按上限淘汰）均为常数时间；
+ * 移除“开头连续 SystemMessage 之后的第一条消息”时只移动这段 SystemMessage。其它位置的增删改会重建索引（线性时间）。
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class ChatMessageList extends AbstractList<ChatMessage> implements RandomAccess {
+    private static final long NONE = -1L;
+
+    private ChatMessage[] items = new ChatMessage[16];
+    //以下按槽位存放（与 items 对齐）
+    private long[] prevUser = new long[16];
+    private long[] toolRunStart = new long[16];
+
+    private int head;
+    private int size;
+    //头部元素的序号
+    private long baseSeq;
+    //开头连续的 SystemMessage 数
+    private int systemPrefix;
+
+    //UserMessage 序号队列（环形，递增）
+    private long[] users = new long[16];
+    private int usersHead;
+    private int usersSize;
+
+    @Override
+    public ChatMessage get(int index) {
+        checkIndex(index, size);
+        return items[slot(index)];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(ChatMessage message) {
+        append(message);
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void add(int index, ChatMessage message) {
+        checkIndex(index, size + 1);
+
+        if (index == size) {
+            add(message);
+        } else {
+            ChatMessage[] all = toArrayCopy();
+            clearAll();
+            for (int i = 0; i < all.length; i++) {
+                if (i == index) {
+                    append(message);
+                }
+                append(all[i]);
+            }
+            modCount++;
+        }
+    }
+
+    @Override
+    public ChatMessage set(int index, ChatMessage message) {
+        checkIndex(index, size);
+
+        ChatMessage[] all = toArrayCopy();
+        ChatMessage old = all[index];
+        all[index] = message;
+        rebuild(all);
+        return old;
+    }
+
+    @Override
+    public ChatMessage remove(int index) {
+        checkIndex(index, size);
+
+        ChatMessage old;
+        if (index == size - 1) {
+            old = removeLast();
+        } else if (index == 0) {
+            old = removeFirst();
+        } else if (index == systemPrefix) {
+            old = removeAfterSystemPrefix();
+        } else {
+            ChatMessage[] all = toArrayCopy();
+            old = all[index];
+            ChatMessage[] rest = new ChatMessage[all.length - 1];
+            System.arraycopy(all, 0, rest, 0, index);
+            System.arraycopy(all, index + 1, rest, index, all.length - index - 1);
+            rebuild(rest);
+            return old;
+        }
+
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        clearAll();
+        modCount++;
+    }
+
+    /**
+     * 开头连续的 SystemMessage 数
+     */
+    public int getSystemPrefix() {
+        return systemPrefix;
+    }
+
+    /**
+     * 计算窗口的安全起始位置
+     *
+     * <ul>
+     *   <li>优先以 UserMessage 作为起始点（向前找最近的一个；没有则向后找第一个），保证对话轮次的完整性</li>
+     *   <li>不会以 ToolMessage 作为起始点（ToolMessage 必须跟在带 ToolCall 的 AssistantMessage 之后）</li>
+     *   <li>如果起始点前面是 ToolCall 链，会回退到包含带 ToolCall 的 AssistantMessage</li>
+     * </ul>
+     *
+     * @param start 初步起始位置
+     */
+    public int safeStart(int start) {
+        if (start <= 0 || size == 0) {
+            return 0;
+        }
+
+        long boundary = baseSeq + systemPrefix;
+        long seq = baseSeq + Math.min(start, size - 1);
+
+        // 1. 最近的一个 UserMessage（索引中早于边界的已被移除）
+        long user = prevUser[slotOf(seq)];
+        if (user < boundary) {
+            // 2. 没有则取第一个 UserMessage
+            user = (usersSize > 0 ? users[usersHead] : NONE);
+        }
+
+        int index;
+        if (user >= boundary) {
+            index = (int) (user - baseSeq);
+        } else {
+            // 3. 没有 UserMessage：跳过起始位置的 ToolMessage（ToolMessage 不能独立出现）
+            index = start;
+            while (index < size && items[slot(index)] instanceof ToolMessage) {
+                index++;
+            }
+        }
+
+        // 4. 回溯：前面是 ToolMessage 连续段时，退到段首；段首前是带 ToolCall 的 AssistantMessage 时，把它包含进来
+        if (index > 0) {
+            ChatMessage prev = items[slot(index - 1)];
+            if (prev instanceof ToolMessage) {
+                long runStart = Math.max(toolRunStart[slot(index - 1)], boundary);
+                index = (int) (runStart - baseSeq);
+            }
+
+            if (index > 0) {
+                prev = items[slot(index - 1)];
+                if (prev instanceof AssistantMessage && ((AssistantMessage) prev).isToolCalls()) {
+                    index--;
+                }
+            }
+        }
+
+        return index;
+    }
+
+    /// /////////////////
+
+    private void append(ChatMessage message) {
+        if (size == items.length) {
+            grow();
+        }
+
+        long seq = baseSeq + size;
+        int slot = slot(size);
+        items[slot] = message;
+
+        if (message instanceof UserMessage) {
+            prevUser[slot] = seq;
+            pushUser(seq);
+        } else {
+            prevUser[slot] = (size > 0 ? prevUser[slot(size - 1)] : NONE);
+        }
+
+        if (message instanceof ToolMessage && size > 0 && items[slot(size - 1)] instanceof ToolMessage) {
+            toolRunStart[slot] = toolRunStart[slot(size - 1)];
+        } else {
+            toolRunStart[slot] = seq;
+        }
+
+        if (size == systemPrefix && message instanceof SystemMessage) {
+            systemPrefix++;
+        }
+
+        size++;
+    }
+
+    private ChatMessage removeLast() {
+        int slot = slot(size - 1);
+        ChatMessage old = items[slot];
+        items[slot] = null;
+        size--;
+
+        if (old instanceof UserMessage) {
+            usersSize--;
+        }
+
+        if (systemPrefix > size) {
+            systemPrefix = size;
+        }
+
+        return old;
+    }
+
+    private ChatMessage removeFirst() {
+        ChatMessage old = items[head];
+        items[head] = null;
+        head = (head + 1) & (items.length - 1);
+        baseSeq++;
+        size--;
+
+        if (old instanceof UserMessage) {
+            usersHead = (usersHead + 1) & (users.length - 1);
+            usersSize--;
+        }
+
+        if (systemPrefix > 0) {
+            systemPrefix--;
+        } else {
+            extendSystemPrefix();
+        }
+
+        return old;
+    }
+
+    /**
+     * 移除开头连续 SystemMessage 之后的第一条消息（把这段 SystemMessage 后移一位）
+     */
+    private ChatMessage removeAfterSystemPrefix() {
+        int index = systemPrefix;
+        ChatMessage old = items[slot(index)];
+
+        for (int i = index; i > 0; i--) {
+            items[slot(i)] = items[slot(i - 1)];
+            prevUser[slot(i)] = NONE;
+            toolRunStart[slot(i)] = baseSeq + i;
+        }
+
+        items[head] = null;
+        head = (head + 1) & (items.length - 1);
+        baseSeq++;
+        size--;
+
+        if (old instanceof UserMessage) {
+            usersHead = (usersHead + 1) & (users.length - 1);
+            usersSize--;
+        }
+
+        extendSystemPrefix();
+        return old;
+    }
+
+    /**
+     * 移除后，紧随其后的 SystemMessage 并入开头连续段
+     */
+    private void extendSystemPrefix() {
+        while (systemPrefix < size && items[slot(systemPrefix)] instanceof SystemMessage) {
+            systemPrefix++;
+        }
+    }
+
+    private void rebuild(ChatMessage[] all) {
+        clearAll();
+        for (ChatMessage message : all) {
+            append(message);
+        }
+        modCount++;
+    }
+
+    private void clearAll() {
+        Arrays.fill(items, null);
+        head = 0;
+        size = 0;
+        baseSeq = 0;
+        systemPrefix = 0;
+        usersHead = 0;
+        usersSize = 0;
+    }
+
+    private ChatMessage[] toArrayCopy() {
+        ChatMessage[] all = new ChatMessage[size];
+        for (int i = 0; i < size; i++) {
+            all[i] = items[slot(i)];
+        }
+        return all;
+    }
+
+    private void grow() {
+        int capacity = items.length * 2;
+        ChatMessage[] newItems = new ChatMessage[capacity];
+        long[] newPrevUser = new long[capacity];
+        long[] newToolRunStart = new long[capacity];
+
+        for (int i = 0; i < size; i++) {
+            int slot = slot(i);
+            newItems[i] = items[slot];
+            newPrevUser[i] = prevUser[slot];
+            newToolRunStart[i] = toolRunStart[slot];
+        }
+
+        items = newItems;
+        prevUser = newPrevUser;
+        toolRunStart = newToolRunStart;
+        head = 0;
+    }
+
+    private void pushUser(long seq) {
+        if (usersSize == users.length) {
+            long[] newUsers = new long[users.length * 2];
+            for (int i = 0; i < usersSize; i++) {
+                newUsers[i] = users[(usersHead + i) & (users.length - 1)];
+            }
+            users = newUsers;
+            usersHead = 0;
+        }
+
+        users[(usersHead + usersSize) & (users.length - 1)] = seq;
+        usersSize++;
+    }
+
+    private int slot(int index) {
+        return (head + index) & (items.length - 1);
+    }
+
+    private int slotOf(long seq) {
+        return slot((int) (seq - baseSeq));
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (bound));
+        }
+    }
+}
@@ -19,36 +19,103 @@ import org.noear.solon.Utils;
 import org.noear.solon.ai.chat.ChatRole;
 import org.noear.solon.ai.chat.ChatSession;
 import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.chat.message.ChatMessageCodec;
+import org.noear.solon.core.util.RunUtil;
 import org.noear.solon.lang.Preview;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ScheduledFuture;
 
 /**
  * 文件聊天会话 (带内存缓存层)
  *
+ * <p>消息默认以 NDJSON 追加写入（可选其它消息编解码器，见 {@link SessionUtil#encodeRecord(ChatMessageCodec, ChatMessage)}），文件通道在会话内保持打开（空闲超时后关闭）。写入按刷盘方式提交（见 {@link FlushMode}）；
+ * 内存中维护每条记录的文件偏移，移除最近消息时直接截断文件尾部；记录数远超内存中的消息数时，压缩重写文件。
+ *
  * @author noear
  * @since 3.9.1
  */
 @Preview("3.9.1")
-public class FileChatSession implements ChatSession {
+public class FileChatSession implements ChatSession, Closeable {
     private static final Logger LOG = LoggerFactory.getLogger(FileChatSession.class);
+    /**
+     * ON_CLOSE 方式下，缓冲超过该字节数时提前写入
+     */
+    private static final int MAX_PENDING_BYTES = 1024 * 1024;
 
     private final File messagesFile;
     private final InMemoryChatSession cache;
+    private final FlushMode flushMode;
+    private final long flushIntervalMillis;
+    private final long idleTimeoutMillis;
+    private final int compactThreshold;
+    private final ChatMessageCodec codec;
+
+    //以下文件状态由 this 锁保护
+    private long[] offsets = new long[16];
+    private int records;
+    private long fileLength;
+    private final List<byte[]> pending = new ArrayList<>();
+    private int pendingBytes;
+    private FileChannel channel;
+    private long lastAccess;
+    private ScheduledFuture<?> flushTask;
+    private ScheduledFuture<?> idleTask;
 
     public FileChatSession(String sessionId, String dir) {
+        this(sessionId, dir, 50, FlushMode.WRITE, Duration.ofMillis(200), Duration.ofSeconds(30), 1024);
+    }
+
+    /**
+     * @param sessionId        会话 id
+     * @param dir              目录
+     * @param maxMessages      内存中的最大消息数
+     * @param flushMode        刷盘方式
+     * @param flushInterval    成组提交间隔（仅 INTERVAL 方式有效）
+     * @param idleTimeout      文件通道的空闲关闭时间
+     * @param compactThreshold 触发压缩的最小记录数（0 表示不压缩）
+     * @since 4.1
+     */
+    public FileChatSession(String sessionId, String dir, int maxMessages, FlushMode flushMode,
+                           Duration flushInterval, Duration idleTimeout, int compactThreshold) {
+        this(sessionId, dir, maxMessages, flushMode, flushInterval, idleTimeout, compactThreshold, null);
+    }
+
+    /**
+     * @param sessionId        会话 id
+     * @param dir              目录
+     * @param maxMessages      内存中的最大消息数
+     * @param flushMode        刷盘方式
+     * @param flushInterval    成组提交间隔（仅 INTERVAL 方式有效）
+     * @param idleTimeout      文件通道的空闲关闭时间
+     * @param compactThreshold 触发压缩的最小记录数（0 表示不压缩）
+     * @param codec            消息编解码器（null 表示 json；读取时按记录自动识别格式）
+     * @since 4.1
+     */
+    public FileChatSession(String sessionId, String dir, int maxMessages, FlushMode flushMode,
+                           Duration flushInterval, Duration idleTimeout, int compactThreshold, ChatMessageCodec codec) {
         File baseDir = new File(dir);
         if (!baseDir.exists()) {
             baseDir.mkdirs();
         }
 
         this.messagesFile = new File(baseDir, sessionId + ".messages.ndjson");
-        this.cache = new InMemoryChatSession(sessionId);
+        this.cache = new InMemoryChatSession(sessionId, maxMessages);
+        this.flushMode = (flushMode == null ? FlushMode.WRITE : flushMode);
+        this.flushIntervalMillis = Math.max(1L, flushInterval.toMillis());
+        this.idleTimeoutMillis = Math.max(1L, idleTimeout.toMillis());
+        this.compactThreshold = compactThreshold;
+        this.codec = (codec == null ? ChatMessageCodec.JSON : codec);
 
         loadMessagesToCache();
     }
@@ -57,13 +124,19 @@ public class FileChatSession implements ChatSession {
         if (!messagesFile.exists()) return;
 
         List<ChatMessage> history = new ArrayList<>();
-        try (BufferedReader reader = Files.newBufferedReader(messagesFile.toPath(), StandardCharsets.UTF_8)) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (Utils.isNotEmpty(line)) {
-                    history.add(ChatMessage.fromJson(line));
+        try (InputStream in = new BufferedInputStream(new FileInputStream(messagesFile))) {
+            fileLength = SessionUtil.readRecords(in, (msg, offset) -> {
+                history.add(msg);
+                addOffset(offset);
+            });
+
+            if (messagesFile.length() > fileLength) {
+                //尾部的不完整记录（写入中断），截断
+                try (FileChannel ch = FileChannel.open(messagesFile.toPath(), StandardOpenOption.WRITE)) {
+                    ch.truncate(fileLength);
                 }
             }
+
             // 批量加入缓存（内存层会自动过滤 System 消息）
             this.cache.addMessage(history);
         } catch (IOException e) {
@@ -89,54 +162,260 @@ public class FileChatSession implements ChatSession {
     }
 
     @Override
-    public void removeLatestMessage(int windowSize) {
-        // 1. 先从内存层安全删除
+    public synchronized void removeLatestMessage(int windowSize) {
+        // 1. 先从内存层安全删除（只删尾部，被删的非 System 消息即文件的最后几条记录）
+        int before = SessionUtil.countPersistable(cache.getMessages());
         cache.removeLatestMessage(windowSize);
+        int removed = before - SessionUtil.countPersistable(cache.getMessages());
+
+        if (removed <= 0) {
+            return;
+        }
+
+        // 2. 未写入的直接丢弃
+        while (removed > 0 && pending.size() > 0) {
+            pendingBytes -= pending.remove(pending.size() - 1).length;
+            removed--;
+        }
 
-        // 2. 同步到磁盘：重写整个消息文件
-        persistMessages();
+        // 3. 已写入的截断文件尾部
+        if (removed > 0) {
+            try {
+                if (removed <= records) {
+                    records -= removed;
+                    fileLength = offsets[records];
+                    openChannel().truncate(fileLength);
+                    if (flushMode == FlushMode.SYNC) {
+                        channel.force(false);
+                    }
+                } else {
+                    persistMessages();
+                }
+            } catch (IOException e) {
+                LOG.error("Truncate messages failed: {}", e.toString());
+            }
+        }
     }
 
     /**
-     * 将当前内存缓存中的所有非 System 消息持久化到磁盘（全量覆盖）
+     * 将当前内存缓存中的所有非 System 消息持久化到磁盘（全量覆盖；先写临时文件再替换）
      */
-    private void persistMessages() {
-        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
-                new FileOutputStream(messagesFile, false), StandardCharsets.UTF_8))) {
+    private void persistMessages() throws IOException {
+        closeChannel();
+
+        File tmpFile = new File(messagesFile.getParentFile(), messagesFile.getName() + ".tmp");
+        long[] newOffsets = new long[Math.max(16, offsets.length)];
+        int newRecords = 0;
+        long pos = 0;
+
+        try (FileOutputStream out = new FileOutputStream(tmpFile, false)) {
+            BufferedOutputStream writer = new BufferedOutputStream(out);
             for (ChatMessage msg : cache.getMessages()) {
                 if (msg.getRole() != ChatRole.SYSTEM) {
-                    writer.write(ChatMessage.toJson(msg));
-                    writer.newLine();
+                    byte[] bytes = encode(msg);
+                    writer.write(bytes);
+                    if (newRecords == newOffsets.length) {
+                        newOffsets = Arrays.copyOf(newOffsets, newRecords * 2);
+                    }
+                    newOffsets[newRecords++] = pos;
+                    pos += bytes.length;
                 }
             }
             writer.flush();
-        } catch (IOException e) {
-            LOG.error("Persist messages failed: {}", e.toString());
+            out.getFD().sync();
+        }
+
+        try {
+            Files.move(tmpFile.toPath(), messagesFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmpFile.toPath(), messagesFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
         }
+
+        //替换成功后再更新记录状态（失败时保留原文件对应的状态与待写记录）
+        offsets = newOffsets;
+        records = newRecords;
+        fileLength = pos;
+        pending.clear();
+        pendingBytes = 0;
     }
 
     @Override
     public void addMessage(Collection<? extends ChatMessage> messages) {
         if (Utils.isEmpty(messages)) return;
 
-        // 1. 同步到内存层
-        cache.addMessage(messages);
+        synchronized (this) {
+            // 1. 同步到内存层
+            cache.addMessage(messages);
 
-        // 2. 持久化到磁盘 (NDJSON 追加模式)
-        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
-                new FileOutputStream(messagesFile, true), StandardCharsets.UTF_8))) {
+            // 2. 进入待写缓冲
             for (ChatMessage msg : messages) {
                 if (msg.getRole() != ChatRole.SYSTEM) {
-                    writer.write(ChatMessage.toJson(msg));
-                    writer.newLine();
+                    byte[] bytes = encode(msg);
+                    pending.add(bytes);
+                    pendingBytes += bytes.length;
                 }
             }
-            writer.flush();
+
+            // 3. 按刷盘方式提交
+            try {
+                switch (flushMode) {
+                    case SYNC:
+                    case WRITE:
+                        flushPending();
+                        break;
+                    case INTERVAL:
+                        if (flushTask == null && pending.size() > 0) {
+                            flushTask = RunUtil.delay(this::flushByTask, flushIntervalMillis);
+                        }
+                        break;
+                    default:
+                        if (pendingBytes > MAX_PENDING_BYTES) {
+                            flushPending();
+                        }
+                        break;
+                }
+
+                compactIfNeeded();
+            } catch (IOException e) {
+                LOG.error("Persistence messages failed: {}", e.toString());
+            }
+        }
+    }
+
+    /**
+     * 提交未写入的消息（并刷盘）
+     *
+     * @since 4.1
+     */
+    public synchronized void flush() {
+        try {
+            flushPending();
+            if (channel != null) {
+                channel.force(false);
+            }
         } catch (IOException e) {
-            LOG.error("Persistence messages failed: {}", e.toString());
+            LOG.error("Flush messages failed: {}", e.toString());
+        }
+    }
+
+    /**
+     * 提交并关闭文件通道（之后仍可继续使用，会按需重新打开）
+     *
+     * @since 4.1
+     */
+    @Override
+    public synchronized void close() {
+        flush();
+        closeChannel();
+    }
+
+    private synchronized void flushByTask() {
+        flushTask = null;
+        flush();
+    }
+
+    private synchronized void closeByIdle() {
+        idleTask = null;
+
+        if (channel == null) {
+            return;
+        }
+
+        long idle = System.currentTimeMillis() - lastAccess;
+        if (idle >= idleTimeoutMillis && pending.isEmpty()) {
+            closeChannel();
+        } else {
+            idleTask = RunUtil.delay(this::closeByIdle, Math.max(1L, idleTimeoutMillis - idle));
+        }
+    }
+
+    /**
+     * 成组写入缓冲中的记录
+     */
+    private void flushPending() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(pendingBytes);
+        for (byte[] bytes : pending) {
+            buf.put(bytes);
+        }
+        buf.flip();
+
+        FileChannel ch = openChannel();
+        long pos = fileLength;
+        while (buf.hasRemaining()) {
+            pos += ch.write(buf, pos);
+        }
+
+        //写入成功后再记录偏移（写入失败时保留待写记录，重试会从原位置覆盖写入）
+        long offset = fileLength;
+        for (byte[] bytes : pending) {
+            addOffset(offset);
+            offset += bytes.length;
+        }
+        fileLength = pos;
+
+        pending.clear();
+        pendingBytes = 0;
+
+        if (flushMode != FlushMode.WRITE) {
+            ch.force(false);
+        }
+    }
+
+    /**
+     * 记录数远超内存中的消息数时，压缩重写（内存层之外的历史消息不会再被读取）
+     */
+    private void compactIfNeeded() throws IOException {
+        if (compactThreshold <= 0 || records + pending.size() <= compactThreshold) {
+            return;
+        }
+
+        if (records + pending.size() > 2 * SessionUtil.countPersistable(cache.getMessages())) {
+            persistMessages();
+        }
+    }
+
+    private FileChannel openChannel() throws IOException {
+        lastAccess = System.currentTimeMillis();
+
+        if (channel == null) {
+            channel = FileChannel.open(messagesFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            idleTask = RunUtil.delay(this::closeByIdle, idleTimeoutMillis);
+        }
+
+        return channel;
+    }
+
+    private void closeChannel() {
+        if (idleTask != null) {
+            idleTask.cancel(false);
+            idleTask = null;
+        }
+
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.warn("Close messages file failed: {}", e.toString());
+            }
+            channel = null;
         }
     }
 
+    private void addOffset(long offset) {
+        if (records == offsets.length) {
+            offsets = Arrays.copyOf(offsets, records * 2);
+        }
+        offsets[records++] = offset;
+    }
+
+    private byte[] encode(ChatMessage msg) {
+        return SessionUtil.encodeRecord(codec, msg);
+    }
+
     @Override
     public boolean isEmpty() {
         return cache.isEmpty();
@@ -147,8 +426,118 @@ public class FileChatSession implements ChatSession {
         return cache.attrs();
     }
 
-    public void clear() {
+    public synchronized void clear() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+
+        closeChannel();
+        pending.clear();
+        pendingBytes = 0;
+        records = 0;
+        fileLength = 0;
+
         cache.clear();
         if (messagesFile.exists()) messagesFile.delete();
     }
-}
\ No newline at end of file
+
+    /// /////////////////
+
+    /**
+     * @since 4.1
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @since 4.1
+     */
+    public static class Builder {
+        private String sessionId;
+        private String dir;
+        private int maxMessages = 50;
+        private FlushMode flushMode = FlushMode.WRITE;
+        private Duration flushInterval = Duration.ofMillis(200);
+        private Duration idleTimeout = Duration.ofSeconds(30);
+        private int compactThreshold = 1024;
+        private ChatMessageCodec codec;
+
+        /**
+         * 会话 id
+         */
+        public Builder sessionId(String sessionId) {
+            this.sessionId = sessionId;
+            return this;
+        }
+
+        /**
+         * 存储目录
+         */
+        public Builder dir(String dir) {
+            this.dir = dir;
+            return this;
+        }
+
+        /**
+         * 内存中的最大消息数（默认 50）
+         */
+        public Builder maxMessages(int maxMessages) {
+            this.maxMessages = maxMessages;
+            return this;
+        }
+
+        /**
+         * 刷盘方式（默认 WRITE）
+         */
+        public Builder flushMode(FlushMode flushMode) {
+            this.flushMode = flushMode;
+            return this;
+        }
+
+        /**
+         * 成组提交间隔（默认 200 毫秒；仅 INTERVAL 方式有效）
+         */
+        public Builder flushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+            return this;
+        }
+
+        /**
+         * 文件通道的空闲关闭时间（默认 30 秒）
+         */
+        public Builder idleTimeout(Duration idleTimeout) {
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
+        /**
+         * 触发压缩的最小记录数（默认 1024；0 表示不压缩）
+         */
+        public Builder compactThreshold(int compactThreshold) {
+            this.compactThreshold = compactThreshold;
+            return this;
+        }
+
+        /**
+         * 消息编解码器（默认 json）
+         */
+        public Builder codec(ChatMessageCodec codec) {
+            this.codec = codec;
+            return this;
+        }
+
+        /**
+         * 构建
+         */
+        public FileChatSession build() {
+            if (Utils.isEmpty(dir)) {
+                throw new IllegalArgumentException("The dir is required");
+            }
+
+            return new FileChatSession(sessionId == null ? Utils.guid() : sessionId, dir, maxMessages, flushMode,
+                    flushInterval, idleTimeout, compactThreshold, codec);
+        }
+    }
+}
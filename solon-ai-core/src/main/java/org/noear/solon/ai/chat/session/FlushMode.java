@@ -0,0 +1,41 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.chat.session;
+
+/**
+ * 会话持久化的刷盘方式
+ *
+ * @author noear
+ * @since 4.1
+ */
+public enum FlushMode {
+    /**
+     * 每次写入后立即刷盘（fsync；最可靠，最慢）
+     */
+    SYNC,
+    /**
+     * 每次写入后立即写入文件（由操作系统择机刷盘；默认）
+     */
+    WRITE,
+    /**
+     * 按间隔成组提交（间隔内的多次写入合并为一次写入与刷盘）
+     */
+    INTERVAL,
+    /**
+     * 关闭时提交（缓冲过大时也会提前写入；进程异常退出会丢失未提交的消息）
+     */
+    ON_CLOSE
+}
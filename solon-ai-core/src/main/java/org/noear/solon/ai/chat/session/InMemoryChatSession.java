@@ -18,7 +18,6 @@ package org.noear.solon.ai.chat.session;
 import org.noear.solon.Utils;
 import org.noear.solon.ai.chat.ChatSession;
 import org.noear.solon.ai.chat.message.*;
-import org.noear.solon.ai.chat.tool.ToolCall;
 import org.noear.solon.lang.Preview;
 
 import java.util.*;
@@ -33,7 +32,7 @@ import java.util.concurrent.ConcurrentHashMap;
 @Preview("3.4")
 public class InMemoryChatSession implements ChatSession {
     protected final String sessionId;
-    protected final List<ChatMessage> messages = new ArrayList<>();
+    protected final ChatMessageList messages = new ChatMessageList();
     protected final int maxMessages;
 
     private final transient Map<String, Object> attrs = new ConcurrentHashMap<>();
@@ -90,60 +89,14 @@ public class InMemoryChatSession implements ChatSession {
      */
     @Override
     public List<ChatMessage> getLatestMessages(int windowSize) {
-        List<ChatMessage> all = getMessages();
-        if (all == null || all.isEmpty()) return Collections.emptyList();
+        List<ChatMessage> all = messages;
+        if (all.isEmpty()) return Collections.emptyList();
 
         int size = all.size();
         if (size <= windowSize || windowSize <= 0) return all;
 
-        // 1. 初步截断点
-        int start = size - windowSize;
-
-        // 2. 向前寻找最近的一个 UserMessage 作为安全的起始点
-        // 这样能保证对话逻辑的完整性，且绝对不会出现 Tool/Assistant 错位
-        for (int i = start; i >= 0; i--) {
-            if (all.get(i) instanceof UserMessage) {
-                start = i;
-                break;
-            }
-        }
-
-        // 3. 兜底：如果往前找了一圈没找到 User（比如全是 Tool/Assistant）
-        // 那就只能向后找第一个 User
-        if (!(all.get(start) instanceof UserMessage)) {
-            for (int i = start; i < size; i++) {
-                if (all.get(i) instanceof UserMessage) {
-                    start = i;
-                    break;
-                }
-            }
-        }
-
-        // 4. 跳过起始位置的 ToolMessage（ToolMessage 不能独立出现）
-        while (start < size && (all.get(start) instanceof ToolMessage)) {
-            start++;
-        }
-
-        // 5. 回溯检查：如果 start 前面是带 ToolCall 的 AssistantMessage，
-        //    需要把该 AssistantMessage 也包含进来，以保证 ToolCall 链完整
-        //    场景：[Assistant(toolCalls), ToolMessage, ToolMessage, start=UserMessage, ...]
-        //    -> 回退后：[Assistant(toolCalls), ToolMessage, ToolMessage, UserMessage, ...]
-        while (start > 0) {
-            ChatMessage prev = all.get(start - 1);
-            if (prev instanceof ToolMessage) {
-                // 向前跳过连续的 ToolMessage，找到对应的带 ToolCall 的 AssistantMessage
-                start--;
-            } else if (prev instanceof AssistantMessage) {
-                AssistantMessage am = (AssistantMessage) prev;
-                if (am.isToolCalls()) {
-                    // 找到了带 ToolCall 的 AssistantMessage，把它包含进来
-                    start--;
-                }
-                break;
-            } else {
-                break;
-            }
-        }
+        // 初步截断点，再按截断点索引调整到安全的起始位置（常数时间，见 ChatMessageList::safeStart）
+        int start = messages.safeStart(size - windowSize);
 
         return all.subList(start, size);
     }
@@ -223,23 +176,19 @@ public class InMemoryChatSession implements ChatSession {
      * 当删除调用 ToolCall 的 AssistantMessage 时，需要删除后续对应的 ToolMessage，可能会导致实际删除的 size 大于传入的 size.
      */
     protected void removeNonSystemMessages(int size) {
-        Iterator<ChatMessage> iterator = messages.iterator();
         int removeNums = 0;
 
-        while (iterator.hasNext() && removeNums < size) {
-            ChatMessage message = iterator.next();
-            if (!(message instanceof SystemMessage)) {
-                iterator.remove();
-                removeNums++;
-                if (message instanceof AssistantMessage) {
-                    List<ToolCall> toolCalls = ((AssistantMessage) message).getToolCalls();
-                    // 存在 toolCall 调用的 AssistantMessage，需要删除后续对应的ToolMessage
-                    if (Utils.isNotEmpty(toolCalls)) {
-                        while (iterator.hasNext() && iterator.next() instanceof ToolMessage) {
-                            iterator.remove();
-                            removeNums++;
-                        }
-                    }
+        //非 SystemMessage 总是从开头连续的 SystemMessage 之后开始（无 SystemMessage 时为头部移除，常数时间）
+        while (removeNums < size && messages.size() > messages.getSystemPrefix()) {
+            int index = messages.getSystemPrefix();
+            ChatMessage message = messages.remove(index);
+            removeNums++;
+
+            if (message instanceof AssistantMessage && ((AssistantMessage) message).isToolCalls()) {
+                // 存在 toolCall 调用的 AssistantMessage，需要删除后续对应的ToolMessage
+                while (messages.size() > index && messages.get(index) instanceof ToolMessage) {
+                    messages.remove(index);
+                    removeNums++;
                 }
             }
         }
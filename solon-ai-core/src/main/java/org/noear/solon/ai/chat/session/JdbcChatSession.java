@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.chat.session;
+
+import org.noear.solon.Utils;
+import org.noear.solon.ai.chat.ChatSession;
+import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.lang.Preview;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * JDBC 聊天会话 (带内存缓存层)
+ *
+ * <p>内存层只加载最近的 maxMessages 条消息；超出内存层的窗口读取下推到 SQL。追加为批量插入，移除最近消息为尾部删除。
+ *
+ * @author noear
+ * @since 4.1
+ */
+@Preview("4.1")
+public class JdbcChatSession implements ChatSession {
+    private static final Logger LOG = LoggerFactory.getLogger(JdbcChatSession.class);
+
+    private final String sessionId;
+    private final JdbcSessionStore store;
+
+    // 内存缓存层
+    private final InMemoryChatSession cache;
+    // 下一条消息的顺序号
+    private long nextSeq;
+
+    public JdbcChatSession(String sessionId, JdbcSessionStore store) {
+        this(sessionId, store, 50);
+    }
+
+    /**
+     * @param maxMessages 内存层的最大消息数（0 表示不限）
+     */
+    public JdbcChatSession(String sessionId, JdbcSessionStore store, int maxMessages) {
+        Objects.requireNonNull(sessionId, "sessionId is required");
+        Objects.requireNonNull(store, "store is required");
+
+        this.sessionId = sessionId;
+        this.store = store;
+        this.cache = new InMemoryChatSession(sessionId, maxMessages);
+
+        this.nextSeq = store.nextSeq(sessionId);
+        this.cache.addMessage(store.loadMessages(sessionId, maxMessages > 0 ? maxMessages : Integer.MAX_VALUE));
+    }
+
+    @Override
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    @Override
+    public List<ChatMessage> getMessages() {
+        // 走缓存
+        return cache.getMessages();
+    }
+
+    @Override
+    public synchronized List<ChatMessage> getLatestMessages(int windowSize) {
+        int persisted = SessionUtil.countPersistable(cache.getMessages());
+
+        // 顺序号连续，nextSeq 即库中消息数的上限（被清理的早期消息不计）
+        if (windowSize <= 0 || windowSize <= persisted || persisted >= nextSeq) {
+            // 走缓存
+            return cache.getLatestMessages(windowSize);
+        }
+
+        // 超出内存层的窗口，下推到 SQL（再按内存层的规则做安全截断）
+        InMemoryChatSession window = new InMemoryChatSession(sessionId, 0);
+        window.addMessage(store.loadMessages(sessionId, windowSize));
+        return window.getLatestMessages(windowSize);
+    }
+
+    @Override
+    public synchronized void removeLatestMessage(int windowSize) {
+        int sizeBefore = SessionUtil.countPersistable(cache.getMessages());
+
+        // 1. 先从内存层安全删除
+        cache.removeLatestMessage(windowSize);
+
+        // 2. 计算实际删除的条数（ToolCall 链可能会导致实际删除数量大于 windowSize）
+        int actualRemoved = sizeBefore - SessionUtil.countPersistable(cache.getMessages());
+
+        // 3. 同步到库：删除尾部
+        if (actualRemoved > 0) {
+            nextSeq -= actualRemoved;
+            store.removeMessagesFrom(sessionId, nextSeq);
+        }
+    }
+
+    @Override
+    public synchronized void addMessage(Collection<? extends ChatMessage> messages) {
+        if (Utils.isEmpty(messages)) return;
+
+        // 1. 批量写入（顺序号冲突时，说明有其它实例写入了同一会话，重新取号后重试一次；其它错误不重试）
+        try {
+            try {
+                nextSeq += store.appendMessages(sessionId, nextSeq, messages);
+            } catch (SQLException e) {
+                if (JdbcSessionStore.isConstraintViolation(e) == false) {
+                    throw e;
+                }
+
+                nextSeq = store.nextSeq(sessionId);
+                nextSeq += store.appendMessages(sessionId, nextSeq, messages);
+            }
+        } catch (SQLException | RuntimeException e) {
+            // 写入失败时记录日志后继续（内存层不加入，与库保持一致）
+            LOG.error("Persistence messages failed, session: {}, {}", sessionId, e.toString());
+            return;
+        }
+
+        // 2. 写入成功后同步到内存
+        cache.addMessage(messages);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return cache.isEmpty();
+    }
+
+    @Override
+    public synchronized void clear() {
+        cache.clear();
+        store.clear(sessionId);
+        nextSeq = 0L;
+    }
+
+    @Override
+    public Map<String, Object> attrs() {
+        return cache.attrs();
+    }
+}
@@ -0,0 +1,446 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.chat.session;
+
+import org.noear.solon.ai.chat.ChatRole;
+import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.chat.message.ChatMessageCodec;
+import org.noear.solon.ai.chat.message.JsonChatMessageCodec;
+import org.noear.solon.core.util.RunUtil;
+import org.noear.solon.lang.Preview;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * JDBC 会话存储（多个会话共用；JDBC 聊天会话与 JDBC 智能体会话使用）
+ *
+ * <p>消息表以 (session_id, seq) 为主键，按会话顺序号存放：追加为一个事务内的批量插入；读取最近消息按顺序号倒序并限制行数；
+ * 移除最近消息为按顺序号删除尾部。快照表按 session_id 存放智能体快照。可按消息时间在后台清理过期数据。
+ *
+ * <p>消息列默认存放 json；可选其它消息编解码器，此时存放编码数据的 Base64 文本（列类型不变，读取时按首字符自动识别格式）。
+ *
+ * <p>建表语句只使用通用 SQL（已在 SQLite 上验证）。
+ *
+ * @author noear
+ * @since 4.1
+ */
+@Preview("4.1")
+public class JdbcSessionStore {
+    private static final Logger LOG = LoggerFactory.getLogger(JdbcSessionStore.class);
+
+    private final DataSource dataSource;
+    private final String messageTable;
+    private final String snapshotTable;
+    private final ChatMessageCodec codec;
+    private ScheduledFuture<?> pruneTask;
+
+    public JdbcSessionStore(DataSource dataSource) {
+        this(dataSource, "ai_");
+    }
+
+    /**
+     * @param dataSource  数据源
+     * @param tablePrefix 表名前缀（消息表 {prefix}session_message，快照表 {prefix}session_snapshot）
+     */
+    public JdbcSessionStore(DataSource dataSource, String tablePrefix) {
+        this(dataSource, tablePrefix, null);
+    }
+
+    /**
+     * @param dataSource  数据源
+     * @param tablePrefix 表名前缀（消息表 {prefix}session_message，快照表 {prefix}session_snapshot）
+     * @param codec       消息编解码器（null 表示 json）
+     */
+    public JdbcSessionStore(DataSource dataSource, String tablePrefix, ChatMessageCodec codec) {
+        Objects.requireNonNull(dataSource, "dataSource is required");
+
+        String prefix = (tablePrefix == null ? "" : tablePrefix);
+        this.dataSource = dataSource;
+        this.messageTable = prefix + "session_message";
+        this.snapshotTable = prefix + "session_snapshot";
+        this.codec = (codec == null ? ChatMessageCodec.JSON : codec);
+
+        try (Connection conn = dataSource.getConnection()) {
+            initTables(conn);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to initialize jdbc session store", e);
+        }
+    }
+
+    private void initTables(Connection conn) throws SQLException {
+        if (!tableExists(conn, messageTable)) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE " + messageTable + " (" +
+                        "session_id VARCHAR(255) NOT NULL," +
+                        "seq BIGINT NOT NULL," +
+                        "message TEXT NOT NULL," +
+                        "created_at BIGINT NOT NULL," +
+                        "PRIMARY KEY (session_id, seq))");
+                stmt.execute("CREATE INDEX idx_" + messageTable + "_created_at ON " + messageTable + " (created_at)");
+            }
+        }
+
+        if (!tableExists(conn, snapshotTable)) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE " + snapshotTable + " (" +
+                        "session_id VARCHAR(255) NOT NULL PRIMARY KEY," +
+                        "snapshot TEXT NOT NULL," +
+                        "updated_at BIGINT NOT NULL)");
+            }
+        }
+    }
+
+    private boolean tableExists(Connection conn, String tableName) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.setMaxRows(1);
+            stmt.executeQuery("SELECT 1 FROM " + tableName + " WHERE 1 = 0").close();
+            return true;
+        } catch (SQLException e) {
+            if (isTableMissing(e)) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Table not found, will be created: {}", tableName);
+                }
+                return false;
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * 是否为表不存在的异常（SQLState 42 类：语法错误或访问规则违例，含表不存在；SQLite 没有 SQLState，按消息识别）
+     */
+    private static boolean isTableMissing(SQLException e) {
+        String state = e.getSQLState();
+        if (state != null) {
+            return state.startsWith("42");
+        }
+
+        String message = e.getMessage();
+        return message != null && message.contains("no such table");
+    }
+
+    /**
+     * 是否为约束冲突的异常（如顺序号主键冲突；SQLState 23 类，SQLite 按错误消息识别）
+     *
+     * @param e 异常
+     */
+    public static boolean isConstraintViolation(SQLException e) {
+        for (Throwable tmp = e; tmp != null; tmp = tmp.getCause()) {
+            if (tmp instanceof SQLIntegrityConstraintViolationException) {
+                return true;
+            }
+
+            if (tmp instanceof SQLException) {
+                String state = ((SQLException) tmp).getSQLState();
+                if (state != null && state.startsWith("23")) {
+                    return true;
+                }
+
+                String message = tmp.getMessage();
+                if (message != null && message.contains("SQLITE_CONSTRAINT")) {
+                    return true;
+                }
+
+                SQLException next = ((SQLException) tmp).getNextException();
+                if (next != null && next != tmp && isConstraintViolation(next)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * 加载最近的消息（按时间正序）
+     *
+     * @param sessionId 会话 id
+     * @param count     条数
+     */
+    public List<ChatMessage> loadMessages(String sessionId, int count) {
+        List<ChatMessage> history = new ArrayList<>();
+        if (count <= 0) {
+            return history;
+        }
+
+        String sql = "SELECT message FROM " + messageTable + " WHERE session_id = ? ORDER BY seq DESC";
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setMaxRows(count);
+            stmt.setString(1, sessionId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    history.add(decode(rs.getString(1)));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to load session messages: " + sessionId, e);
+        }
+
+        // 倒序读出，反转为时间正序
+        Collections.reverse(history);
+        return history;
+    }
+
+    private String encode(ChatMessage msg) {
+        if (codec instanceof JsonChatMessageCodec) {
+            return ChatMessage.toJson(msg);
+        } else {
+            return Base64.getEncoder().encodeToString(codec.encode(msg));
+        }
+    }
+
+    private static ChatMessage decode(String text) {
+        if (text.startsWith("{")) {
+            return ChatMessage.fromJson(text);
+        } else {
+            return ChatMessageCodec.decodeAny(Base64.getDecoder().decode(text));
+        }
+    }
+
+    /**
+     * 获取下一个顺序号
+     */
+    public long nextSeq(String sessionId) {
+        String sql = "SELECT MAX(seq) FROM " + messageTable + " WHERE session_id = ?";
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, sessionId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    long max = rs.getLong(1);
+                    return rs.wasNull() ? 0L : max + 1;
+                }
+                return 0L;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to query session seq: " + sessionId, e);
+        }
+    }
+
+    /**
+     * 追加消息（过滤 System 消息；一个事务内批量插入）
+     *
+     * @param sessionId 会话 id
+     * @param firstSeq  首条消息的顺序号
+     * @param messages  消息
+     * @return 写入的条数
+     */
+    public int appendMessages(String sessionId, long firstSeq, Collection<? extends ChatMessage> messages) throws SQLException {
+        String sql = "INSERT INTO " + messageTable + " (session_id, seq, message, created_at) VALUES (?, ?, ?, ?)";
+        long now = System.currentTimeMillis();
+        int count = 0;
+
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (ChatMessage msg : messages) {
+                    if (msg.getRole() != ChatRole.SYSTEM) {
+                        stmt.setString(1, sessionId);
+                        stmt.setLong(2, firstSeq + count);
+                        stmt.setString(3, encode(msg));
+                        stmt.setLong(4, now);
+                        stmt.addBatch();
+                        count++;
+                    }
+                }
+
+                if (count > 0) {
+                    stmt.executeBatch();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * 移除顺序号不小于 fromSeq 的消息（尾部删除）
+     */
+    public void removeMessagesFrom(String sessionId, long fromSeq) {
+        String sql = "DELETE FROM " + messageTable + " WHERE session_id = ? AND seq >= ?";
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, sessionId);
+            stmt.setLong(2, fromSeq);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to remove session messages: " + sessionId, e);
+        }
+    }
+
+    /**
+     * 清空会话（消息与快照）
+     */
+    public void clear(String sessionId) {
+        try (Connection conn = dataSource.getConnection()) {
+            executeUpdate(conn, "DELETE FROM " + messageTable + " WHERE session_id = ?", sessionId);
+            executeUpdate(conn, "DELETE FROM " + snapshotTable + " WHERE session_id = ?", sessionId);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to clear session: " + sessionId, e);
+        }
+    }
+
+    /**
+     * 加载快照
+     *
+     * @return 快照 json（不存在时为 null）
+     */
+    public String loadSnapshot(String sessionId) {
+        String sql = "SELECT snapshot FROM " + snapshotTable + " WHERE session_id = ?";
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, sessionId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to load session snapshot: " + sessionId, e);
+        }
+    }
+
+    /**
+     * 保存快照（先更新，不存在时插入）
+     */
+    public void saveSnapshot(String sessionId, String snapshot) {
+        long now = System.currentTimeMillis();
+
+        try (Connection conn = dataSource.getConnection()) {
+            int rows;
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "UPDATE " + snapshotTable + " SET snapshot = ?, updated_at = ? WHERE session_id = ?")) {
+                stmt.setString(1, snapshot);
+                stmt.setLong(2, now);
+                stmt.setString(3, sessionId);
+                rows = stmt.executeUpdate();
+            }
+
+            if (rows == 0) {
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "INSERT INTO " + snapshotTable + " (session_id, snapshot, updated_at) VALUES (?, ?, ?)")) {
+                    stmt.setString(1, sessionId);
+                    stmt.setString(2, snapshot);
+                    stmt.setLong(3, now);
+                    stmt.executeUpdate();
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to save session snapshot: " + sessionId, e);
+        }
+    }
+
+    /**
+     * 列出最近活跃的会话 id（按最后一条消息的时间倒序）
+     *
+     * @param limit 数量
+     */
+    public List<String> listSessions(int limit) {
+        String sql = "SELECT session_id, MAX(created_at) AS last_at FROM " + messageTable +
+                " GROUP BY session_id ORDER BY last_at DESC";
+        List<String> list = new ArrayList<>();
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            if (limit > 0) {
+                stmt.setMaxRows(limit);
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    list.add(rs.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to list sessions", e);
+        }
+
+        return list;
+    }
+
+    /**
+     * 清理早于指定时长的消息与快照
+     *
+     * @param maxAge 保留时长
+     * @return 删除的消息数
+     */
+    public int prune(Duration maxAge) {
+        long before = System.currentTimeMillis() - maxAge.toMillis();
+
+        try (Connection conn = dataSource.getConnection()) {
+            int rows = executeUpdate(conn, "DELETE FROM " + messageTable + " WHERE created_at < ?", before);
+            executeUpdate(conn, "DELETE FROM " + snapshotTable + " WHERE updated_at < ?", before);
+            return rows;
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to prune sessions", e);
+        }
+    }
+
+    /**
+     * 启动后台清理（重复调用时替换之前的任务）
+     *
+     * @param maxAge   保留时长
+     * @param interval 清理间隔
+     */
+    public synchronized void startPruning(Duration maxAge, Duration interval) {
+        stopPruning();
+
+        pruneTask = RunUtil.delayAndRepeat(() -> {
+            try {
+                int rows = prune(maxAge);
+                if (rows > 0 && LOG.isDebugEnabled()) {
+                    LOG.debug("Pruned {} session messages", rows);
+                }
+            } catch (Throwable e) {
+                LOG.warn("Prune sessions failed: {}", e.toString());
+            }
+        }, interval.toMillis());
+    }
+
+    /**
+     * 停止后台清理
+     */
+    public synchronized void stopPruning() {
+        if (pruneTask != null) {
+            pruneTask.cancel(false);
+            pruneTask = null;
+        }
+    }
+
+    private static int executeUpdate(Connection conn, String sql, Object arg) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setObject(1, arg);
+            return stmt.executeUpdate();
+        }
+    }
+}
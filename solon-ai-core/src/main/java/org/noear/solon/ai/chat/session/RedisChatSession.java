@@ -16,60 +16,62 @@
 package org.noear.solon.ai.chat.session;
 
 import org.noear.redisx.RedisClient;
-import org.noear.redisx.plus.RedisList;
 import org.noear.solon.Utils;
-import org.noear.solon.ai.chat.ChatRole;
 import org.noear.solon.ai.chat.ChatSession;
 import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.chat.message.ChatMessageCodec;
 import org.noear.solon.lang.Preview;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.util.*;
 
 /**
  * Redis 聊天会话 (带内存缓存层)
  *
+ * <p>追加消息一次往返（管道 LPUSH + LTRIM 封顶）；移除最近消息一条 LTRIM。
+ *
  * @author noear
  * @since 3.9.1
  */
 @Preview("3.9.1")
 public class RedisChatSession implements ChatSession {
     private final String instanceId;
-    private final String messagesKey;
     private final RedisClient redisClient;
+    private final RedisSessionStore store;
 
     // 内存缓存层
     private final InMemoryChatSession cache;
 
     public RedisChatSession(String instanceId, RedisClient redisClient) {
+        this(instanceId, redisClient, 0);
+    }
+
+    /**
+     * @param maxMessages 最大消息数（内存层与 Redis 列表均按此封顶；0 表示 Redis 列表不封顶，内存层保留最近 50 条）
+     * @since 4.1
+     */
+    public RedisChatSession(String instanceId, RedisClient redisClient, int maxMessages) {
+        this(instanceId, redisClient, maxMessages, null);
+    }
+
+    /**
+     * @param maxMessages 最大消息数（内存层与 Redis 列表均按此封顶；0 表示 Redis 列表不封顶，内存层保留最近 50 条）
+     * @param codec       消息编解码器（null 表示 json；读取时自动识别已存数据的格式）
+     * @since 4.1
+     */
+    public RedisChatSession(String instanceId, RedisClient redisClient, int maxMessages, ChatMessageCodec codec) {
         Objects.requireNonNull(instanceId, "instanceId is required");
         Objects.requireNonNull(redisClient, "redisClient is required");
 
         this.instanceId = instanceId;
-        this.messagesKey = instanceId + ":messages";
         this.redisClient = redisClient;
+        this.store = new RedisSessionStore(redisClient, instanceId + ":messages", maxMessages, codec);
 
 
         // --- 2. 初始化缓存层 ---
-        this.cache = new InMemoryChatSession(instanceId);
+        this.cache = new InMemoryChatSession(instanceId, maxMessages > 0 ? maxMessages : 50);
 
         // --- 3. 初始化加载历史消息到缓存 ---
-        loadMessagesToCache();
-    }
-
-    private void loadMessagesToCache() {
-        // 从 Redis 捞取最近的 50 条消息
-        List<String> rawList = redisClient.openSession().key(messagesKey).listGetRange(0, 49);
-        if (rawList != null && !rawList.isEmpty()) {
-            List<ChatMessage> history = new ArrayList<>();
-            for (String json : rawList) {
-                history.add(ChatMessage.fromJson(json));
-            }
-            // 保持原有顺序逻辑：Redis LPUSH 出来的需要反转后存入内存 cache
-            Collections.reverse(history);
-            this.cache.addMessage(history);
-        }
+        this.cache.addMessage(store.loadMessages(maxMessages > 0 ? maxMessages : 50));
     }
 
     @Override
@@ -91,22 +93,17 @@ public class RedisChatSession implements ChatSession {
 
     @Override
     public void removeLatestMessage(int windowSize) {
-        // 记录删除前的消息数
-        int sizeBefore = cache.getMessages().size();
+        // 记录删除前的（需持久化的）消息数
+        int sizeBefore = SessionUtil.countPersistable(cache.getMessages());
 
         // 1. 先从内存层安全删除
         cache.removeLatestMessage(windowSize);
 
         // 2. 计算实际删除的条数（ToolCall 链可能会导致实际删除数量大于 windowSize）
-        int actualRemoved = sizeBefore - cache.getMessages().size();
-
-        // 3. 同步到 Redis：从末尾删除实际被移除的条数
-        RedisList list = redisClient.getList(messagesKey);
-        for (int i = 0; i < actualRemoved; i++) {
-            if (list.size() > 0) {
-                list.removeAt(list.size() - 1);
-            }
-        }
+        int actualRemoved = sizeBefore - SessionUtil.countPersistable(cache.getMessages());
+
+        // 3. 同步到 Redis：一次裁掉最近的 actualRemoved 条
+        store.removeLatestMessages(actualRemoved);
     }
 
     @Override
@@ -116,12 +113,8 @@ public class RedisChatSession implements ChatSession {
         // 1. 同步到内存
         cache.addMessage(messages);
 
-        // 2. 同步到 Redis (保持原逻辑)
-        for (ChatMessage msg : messages) {
-            if (msg.getRole() != ChatRole.SYSTEM) {
-                redisClient.getList(messagesKey).add(ChatMessage.toJson(msg));
-            }
-        }
+        // 2. 同步到 Redis（一次往返）
+        store.appendMessages(messages);
     }
 
     @Override
@@ -132,7 +125,7 @@ public class RedisChatSession implements ChatSession {
     @Override
     public void clear() {
         cache.clear();
-        redisClient.getList(messagesKey).clear();
+        store.clearMessages();
         // 物理清理按照原逻辑涉及的 key
         redisClient.getBucket().remove(instanceId);
     }
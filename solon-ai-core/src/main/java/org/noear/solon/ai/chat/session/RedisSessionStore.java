@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.chat.session;
+
+import org.noear.redisx.RedisClient;
+import org.noear.solon.ai.chat.ChatRole;
+import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.chat.message.ChatMessageCodec;
+import redis.clients.jedis.AbstractPipeline;
+import redis.clients.jedis.UnifiedJedis;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Redis 会话存储（Redis 聊天会话与 Redis 智能体会话共用）
+ *
+ * <p>消息列表按“新消息在表头”存放（LPUSH，兼容已有数据）。设置了最大消息数时，追加时 LPUSH 与 LTRIM 走一次管道往返并按此封顶（默认不封顶）；
+ * 移除最近消息时用一条 LTRIM 裁掉表头。快照值可选 gzip 压缩（以 gz: 前缀标记，读取时自动识别）。
+ * 消息可按编解码器存为 json（默认）或紧凑二进制，读取时按格式自动识别。
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class RedisSessionStore {
+    private static final String COMPRESSED_PREFIX = "gz:";
+
+    private final RedisClient redisClient;
+    private final String messagesKey;
+    private final byte[] messagesKeyBytes;
+    private final int maxMessages;
+    private final ChatMessageCodec codec;
+
+    /**
+     * @param redisClient Redis 客户端
+     * @param messagesKey 消息列表键
+     * @param maxMessages 最大保存消息数（0 表示不封顶）
+     */
+    public RedisSessionStore(RedisClient redisClient, String messagesKey, int maxMessages) {
+        this(redisClient, messagesKey, maxMessages, null);
+    }
+
+    /**
+     * @param redisClient Redis 客户端
+     * @param messagesKey 消息列表键
+     * @param maxMessages 最大保存消息数（0 表示不封顶）
+     * @param codec       消息编解码器（null 表示 json）
+     */
+    public RedisSessionStore(RedisClient redisClient, String messagesKey, int maxMessages, ChatMessageCodec codec) {
+        this.redisClient = redisClient;
+        this.messagesKey = messagesKey;
+        this.messagesKeyBytes = messagesKey.getBytes(StandardCharsets.UTF_8);
+        this.maxMessages = maxMessages;
+        this.codec = (codec == null ? ChatMessageCodec.JSON : codec);
+    }
+
+    /**
+     * 加载最近的消息（按时间正序）
+     *
+     * @param count 条数
+     */
+    public List<ChatMessage> loadMessages(int count) {
+        List<byte[]> rawList = jedis().lrange(messagesKeyBytes, 0, count - 1);
+        List<ChatMessage> history = new ArrayList<>();
+
+        if (rawList != null && !rawList.isEmpty()) {
+            for (byte[] raw : rawList) {
+                history.add(codec.decode(raw));
+            }
+            // 新消息在表头，反转为时间正序
+            Collections.reverse(history);
+        }
+
+        return history;
+    }
+
+    /**
+     * 追加消息（过滤 System 消息；一次往返）
+     */
+    public void appendMessages(Collection<? extends ChatMessage> messages) {
+        List<byte[]> raws = new ArrayList<>(messages.size());
+        for (ChatMessage msg : messages) {
+            if (msg.getRole() != ChatRole.SYSTEM) {
+                raws.add(codec.encode(msg));
+            }
+        }
+
+        if (raws.isEmpty()) {
+            return;
+        }
+
+        try (AbstractPipeline pipeline = jedis().pipelined()) {
+            pipeline.lpush(messagesKeyBytes, raws.toArray(new byte[0][]));
+            if (maxMessages > 0) {
+                pipeline.ltrim(messagesKeyBytes, 0, maxMessages - 1);
+            }
+            pipeline.sync();
+        }
+    }
+
+    /**
+     * 移除最近的消息（一条命令）
+     *
+     * @param count 条数
+     */
+    public void removeLatestMessages(int count) {
+        if (count > 0) {
+            jedis().ltrim(messagesKey, count, -1);
+        }
+    }
+
+    /**
+     * 清空消息
+     */
+    public void clearMessages() {
+        jedis().del(messagesKey);
+    }
+
+    private UnifiedJedis jedis() {
+        return redisClient.jedis();
+    }
+
+    /**
+     * 编码快照值（长度不小于阈值时 gzip 压缩）
+     *
+     * @param json              快照 json
+     * @param compressThreshold 压缩阈值（字符数；0 表示不压缩）
+     */
+    public static String encodeSnapshot(String json, int compressThreshold) {
+        if (json == null || compressThreshold <= 0 || json.length() < compressThreshold) {
+            return json;
+        }
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(json.length() / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(buf)) {
+            out.write(json.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return COMPRESSED_PREFIX + Base64.getEncoder().encodeToString(buf.toByteArray());
+    }
+
+    /**
+     * 解码快照值（兼容未压缩的值）
+     */
+    public static String decodeSnapshot(String value) {
+        if (value == null || value.startsWith(COMPRESSED_PREFIX) == false) {
+            return value;
+        }
+
+        byte[] bytes = Base64.getDecoder().decode(value.substring(COMPRESSED_PREFIX.length()));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+            byte[] tmp = new byte[8192];
+            int len;
+            while ((len = in.read(tmp)) > 0) {
+                out.write(tmp, 0, len);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.chat.session;
+
+import org.noear.solon.ai.chat.ChatRole;
+import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.chat.message.ChatMessageCodec;
+import org.noear.solon.ai.chat.message.JsonChatMessageCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * 会话工具（供各持久化会话共用）
+ *
+ * @author noear
+ * @since 4.1
+ */
+public final class SessionUtil {
+    private SessionUtil() {
+    }
+
+    /**
+     * 统计需要持久化的消息数（即非 System 消息）
+     */
+    public static int countPersistable(List<ChatMessage> messages) {
+        int count = 0;
+        for (ChatMessage msg : messages) {
+            if (msg.getRole() != ChatRole.SYSTEM) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 编码一条消息文件记录
+     *
+     * <p>json 编解码为一行 json（即 ndjson）；其它编解码为 0 字节标记 + 4 字节长度 + 编码数据。
+     * 读取时按记录的首字节识别，切换编解码器后同一文件可混合两种记录。
+     *
+     * @param codec 消息编解码器（null 表示 json）
+     * @param msg   消息
+     */
+    public static byte[] encodeRecord(ChatMessageCodec codec, ChatMessage msg) {
+        if (codec == null || codec instanceof JsonChatMessageCodec) {
+            return (ChatMessage.toJson(msg) + "\n").getBytes(StandardCharsets.UTF_8);
+        }
+
+        byte[] data = codec.encode(msg);
+        return ByteBuffer.allocate(5 + data.length)
+                .put((byte) 0)
+                .putInt(data.length)
+                .put(data)
+                .array();
+    }
+
+    /**
+     * 读取消息文件记录（见 {@link #encodeRecord(ChatMessageCodec, ChatMessage)}）
+     *
+     * @param in       输入流（建议带缓冲）
+     * @param consumer 消息与其记录的起始偏移
+     * @return 完整记录的结束偏移（之后为写入中断的不完整记录）
+     */
+    public static long readRecords(InputStream in, ObjLongConsumer<ChatMessage> consumer) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        long pos = 0;
+        long end = 0;
+        int b;
+
+        while ((b = in.read()) >= 0) {
+            long start = pos++;
+
+            if (b == 0) {
+                //长度前缀的编码记录
+                byte[] head = new byte[4];
+                if (readFully(in, head) < head.length) {
+                    return end;
+                }
+
+                int len = ByteBuffer.wrap(head).getInt();
+                byte[] data = new byte[len];
+                if (len < 0 || readFully(in, data) < len) {
+                    return end;
+                }
+
+                pos += 4 + len;
+                consumer.accept(ChatMessageCodec.decodeAny(data), start);
+                end = pos;
+            } else if (b == '\n') {
+                end = pos;
+            } else {
+                //json 行
+                line.reset();
+                line.write(b);
+                while ((b = in.read()) >= 0 && b != '\n') {
+                    line.write(b);
+                }
+
+                if (b < 0) {
+                    return end;
+                }
+
+                pos += line.size();
+                consumer.accept(ChatMessage.fromJson(new String(line.toByteArray(), StandardCharsets.UTF_8)), start);
+                end = pos;
+            }
+        }
+
+        return end;
+    }
+
+    private static int readFully(InputStream in, byte[] buf) throws IOException {
+        int n = 0;
+        while (n < buf.length) {
+            int r = in.read(buf, n, buf.length - n);
+            if (r < 0) {
+                break;
+            }
+            n += r;
+        }
+        return n;
+    }
+}
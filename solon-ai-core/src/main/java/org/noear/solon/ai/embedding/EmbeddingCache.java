@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.embedding;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 嵌入缓存（按“模型 + 文本”缓存嵌入结果，LRU 淘汰；同一键的并发未命中只调用一次模型）
+ *
+ * <p>可被多个知识库共用。返回的数组为缓存内的实例，不要修改。
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class EmbeddingCache {
+    private final int maxSize;
+    private final Map<Key, float[]> cached;
+    private final Map<Key, CompletableFuture<float[]>> inflight = new ConcurrentHashMap<>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * @param maxSize 最大缓存条数
+     */
+    public EmbeddingCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be greater than 0");
+        }
+
+        this.maxSize = maxSize;
+        this.cached = new LinkedHashMap<Key, float[]>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, float[]> eldest) {
+                return size() > EmbeddingCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * 嵌入（优先取缓存）
+     *
+     * @param model 嵌入模型
+     * @param text  文本
+     */
+    public float[] embed(EmbeddingModel model, String text) throws IOException {
+        Key key = new Key(model, text);
+
+        float[] embedding;
+        synchronized (cached) {
+            embedding = cached.get(key);
+        }
+
+        if (embedding != null) {
+            hitCount.incrementAndGet();
+            return embedding;
+        }
+
+        CompletableFuture<float[]> future = new CompletableFuture<>();
+        CompletableFuture<float[]> running = inflight.putIfAbsent(key, future);
+
+        if (running != null) {
+            //同一键正在嵌入，等待其结果
+            hitCount.incrementAndGet();
+            return await(running);
+        }
+
+        missCount.incrementAndGet();
+
+        try {
+            embedding = model.embed(text);
+
+            synchronized (cached) {
+                cached.put(key, embedding);
+            }
+
+            future.complete(embedding);
+            return embedding;
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(key, future);
+        }
+    }
+
+    /**
+     * 移除某模型的全部缓存
+     */
+    public void invalidate(EmbeddingModel model) {
+        synchronized (cached) {
+            cached.keySet().removeIf(k -> k.model == model);
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        synchronized (cached) {
+            cached.clear();
+        }
+    }
+
+    /**
+     * 缓存条数
+     */
+    public int size() {
+        synchronized (cached) {
+            return cached.size();
+        }
+    }
+
+    /**
+     * 命中次数
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * 未命中次数（即模型调用次数）
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    private static float[] await(CompletableFuture<float[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Embedding interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    /**
+     * 缓存键（模型按实例区分）
+     */
+    private static class Key {
+        final EmbeddingModel model;
+        final String text;
+
+        Key(EmbeddingModel model, String text) {
+            this.model = model;
+            this.text = text;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (o instanceof Key == false) {
+                return false;
+            }
+
+            Key key = (Key) o;
+            return model == key.model && text.equals(key.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(model) + text.hashCode();
+        }
+    }
+}
@@ -58,6 +58,18 @@ public class EmbeddingModel implements AiModel {
         this.config = config;
     }
 
+    /**
+     * 用于包装器（共用被包装模型的配置与方言）
+     *
+     * @since 4.1
+     */
+    protected EmbeddingModel(EmbeddingModel target) {
+        Assert.notNull(target, "The target is required");
+
+        this.dialect = target.dialect;
+        this.config = target.config;
+    }
+
     /**
      * 快捷嵌入
      */
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.embedding;
+
+import org.noear.solon.ai.rag.Document;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 复用嵌入的嵌入模型（包装器：批量嵌入文档时，已有嵌入的文档不再重复嵌入）
+ *
+ * <p>用于文档已预先嵌入的场景（如 IngestionPipeline 的嵌入阶段）：知识库使用本模型构建，存储时不再重复请求。
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class ReusingEmbeddingModel extends EmbeddingModel {
+    private final EmbeddingModel target;
+
+    /**
+     * @param target 被包装的嵌入模型
+     */
+    public ReusingEmbeddingModel(EmbeddingModel target) {
+        super(target);
+        this.target = target;
+    }
+
+    /**
+     * 被包装的嵌入模型
+     */
+    public EmbeddingModel getTarget() {
+        return target;
+    }
+
+    @Override
+    public float[] embed(String text) throws IOException {
+        return target.embed(text);
+    }
+
+    @Override
+    public int batchSize() {
+        return target.batchSize();
+    }
+
+    @Override
+    public int dimensions() throws IOException {
+        return target.dimensions();
+    }
+
+    @Override
+    public void embed(List<Document> documents) throws IOException {
+        List<Document> pending = new ArrayList<>();
+        for (Document doc : documents) {
+            if (doc.getEmbedding() == null) {
+                pending.add(doc);
+            }
+        }
+
+        if (pending.size() > 0) {
+            target.embed(pending);
+        }
+    }
+
+    @Override
+    public EmbeddingRequestDesc input(List<String> input) {
+        return target.input(input);
+    }
+
+    @Override
+    public String toString() {
+        return "ReusingEmbeddingModel{" +
+                "target=" + target +
+                '}';
+    }
+}
@@ -20,6 +20,7 @@ import org.noear.solon.lang.Preview;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * 文档加载器
@@ -43,4 +44,15 @@ public interface DocumentLoader {
      * 加载文档
      */
     List<Document> load() throws IOException;
+
+    /**
+     * 流式加载文档（逐个产出，内存占用有界；使用后需关闭，建议 try-with-resources）
+     *
+     * <p>默认基于 load() 实现，支持流式的加载器会重写此方法</p>
+     *
+     * @since 4.1
+     */
+    default Stream<Document> stream() throws IOException {
+        return load().stream();
+    }
 }
@@ -16,6 +16,7 @@
 package org.noear.solon.ai.rag;
 
 import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.rag.util.ContextPacker;
 import org.noear.solon.ai.rag.util.QueryCondition;
 import org.noear.solon.lang.Preview;
 
@@ -46,6 +47,28 @@ public interface Repository {
      */
     List<Document> search(QueryCondition condition) throws IOException;
 
+    /**
+     * 检索（使用预先计算的查询嵌入，省去一次嵌入模型请求）
+     *
+     * <p>查询嵌入须由本知识库所用的嵌入模型对 condition.getQuery() 生成；不支持的知识库（见 {@link #isQueryEmbedSupported()}）忽略该参数，自行嵌入。
+     *
+     * @param condition  查询条件
+     * @param queryEmbed 查询嵌入（为 null 时，由知识库自行嵌入）
+     * @since 4.1
+     */
+    default List<Document> search(QueryCondition condition, float[] queryEmbed) throws IOException {
+        return search(condition);
+    }
+
+    /**
+     * 是否支持 {@link #search(QueryCondition, float[])} 传入的查询嵌入（不支持时，调用方无需预先计算查询嵌入）
+     *
+     * @since 4.1
+     */
+    default boolean isQueryEmbedSupported() {
+        return false;
+    }
+
     /**
      * 提示词简单增强
      */
@@ -53,4 +76,15 @@ public interface Repository {
         List<Document> context = search(query);
         return ChatMessage.ofUserAugment(query, context);
     }
+
+    /**
+     * 提示词增强（按 token 预算打包上下文：去重、多样性选取、合并相邻片段）
+     *
+     * @param packer 上下文打包器
+     * @since 4.1
+     */
+    default ChatMessage promptAugment(String query, ContextPacker packer) throws IOException {
+        List<Document> context = search(new QueryCondition(query).limit(packer.getCandidateLimit()));
+        return ChatMessage.ofUserAugment(query, packer.pack(context));
+    }
 }
\ No newline at end of file
@@ -63,6 +63,14 @@ public interface RepositoryStorable extends Repository {
      */
     void save(List<Document> documents, BiConsumer<Integer, Integer> progressCallback) throws IOException;
 
+    /**
+     * 保存时是否复用文档已有的嵌入（如使用 ReusingEmbeddingModel 构建；不复用时，预先嵌入只会多一次模型请求）
+     *
+     * @since 4.1
+     */
+    default boolean isEmbeddingReused() {
+        return false;
+    }
 
     /**
      * 保存文档
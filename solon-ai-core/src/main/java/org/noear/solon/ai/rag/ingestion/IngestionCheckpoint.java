@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.rag.ingestion;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 入库检查点（记录已提交的源文档数量；原子写入，崩溃后可从最后提交处继续）
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class IngestionCheckpoint {
+    private final File file;
+    private long committed;
+
+    public IngestionCheckpoint(File file) throws IOException {
+        this.file = file;
+        this.committed = read(file);
+    }
+
+    /**
+     * 已提交的源文档数量（按加载顺序，之前的全部已入库）
+     */
+    public synchronized long getCommitted() {
+        return committed;
+    }
+
+    /**
+     * 提交（只前进，不后退）
+     */
+    public synchronized void commit(long committed) throws IOException {
+        if (committed <= this.committed) {
+            return;
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        Files.write(temp.toPath(), String.valueOf(committed).getBytes(StandardCharsets.UTF_8));
+
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        this.committed = committed;
+    }
+
+    /**
+     * 重置（全部完成后调用，下次从头开始）
+     */
+    public synchronized void reset() throws IOException {
+        Files.deleteIfExists(file.toPath());
+        committed = 0L;
+    }
+
+    private static long read(File file) throws IOException {
+        if (file.exists() == false) {
+            return 0L;
+        }
+
+        String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+        if (text.isEmpty()) {
+            return 0L;
+        }
+
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid ingestion checkpoint: " + file, e);
+        }
+    }
+}
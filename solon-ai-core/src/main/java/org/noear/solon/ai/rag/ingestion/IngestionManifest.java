@@ -0,0 +1,272 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.rag.ingestion;
+
+import org.noear.solon.ai.rag.Document;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 入库清单（记录每个源的文档指纹与分块标识，用于增量入库）
+ *
+ * <p>文件为文本格式：每个源一行 {@code S\t源标识\t配置标识}，其后每个文档一行 {@code D\t序号\t指纹\t分块标识,...}。
+ * 执行过程中，已完成的文档追加到日志文件（崩溃后续做时视为已入库），成功结束后整体重写清单并删除日志。
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class IngestionManifest {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final File file;
+    private final File journalFile;
+    private final Map<String, SourceRecord> sources = new LinkedHashMap<>();
+    private Writer journal;
+
+    public IngestionManifest(File file) throws IOException {
+        this.file = file;
+        this.journalFile = new File(file.getPath() + ".journal");
+
+        read(file);
+        //上次未正常结束时，日志中的文档已入库
+        read(journalFile);
+    }
+
+    /**
+     * 源标识集合
+     */
+    public synchronized Set<String> getSourceUris() {
+        return new HashSet<>(sources.keySet());
+    }
+
+    /**
+     * 获取文档记录（没有时返回 null）
+     */
+    synchronized DocRecord getDoc(String uri, String configKey, int docIndex) {
+        SourceRecord source = sources.get(uri);
+        if (source == null || source.configKey.equals(configKey) == false) {
+            return null;
+        }
+
+        return source.docs.get(docIndex);
+    }
+
+    /**
+     * 获取源的全部分块标识
+     */
+    public synchronized Set<String> getChunkIds(String uri) {
+        Set<String> ids = new HashSet<>();
+        SourceRecord source = sources.get(uri);
+        if (source != null) {
+            for (DocRecord doc : source.docs.values()) {
+                ids.addAll(doc.chunkIds);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 记录已完成的文档（追加到日志）
+     */
+    synchronized void journal(String uri, String configKey, int docIndex, DocRecord doc) throws IOException {
+        if (journal == null) {
+            journal = Files.newBufferedWriter(journalFile.toPath(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+
+        writeSource(journal, uri, configKey);
+        writeDoc(journal, docIndex, doc);
+        journal.flush();
+    }
+
+    /**
+     * 提交（用本次结果替换清单，并删除日志）
+     *
+     * @param records 本次的源记录（未包含的源保持不变）
+     * @param removed 需要移除的源
+     */
+    synchronized void commit(Map<String, SourceRecord> records, Collection<String> removed) throws IOException {
+        closeJournal();
+
+        for (String uri : removed) {
+            sources.remove(uri);
+        }
+        sources.putAll(records);
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, SourceRecord> kv : sources.entrySet()) {
+                writeSource(writer, kv.getKey(), kv.getValue().configKey);
+                for (Map.Entry<Integer, DocRecord> doc : kv.getValue().docs.entrySet()) {
+                    writeDoc(writer, doc.getKey(), doc.getValue());
+                }
+            }
+        }
+
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        Files.deleteIfExists(journalFile.toPath());
+    }
+
+    /**
+     * 关闭日志（执行失败时调用，日志保留用于续做）
+     */
+    synchronized void closeJournal() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    private void read(File source) throws IOException {
+        if (source.exists() == false) {
+            return;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(source.toPath(), StandardCharsets.UTF_8)) {
+            SourceRecord current = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", -1);
+
+                if (parts.length == 3 && "S".equals(parts[0])) {
+                    current = sources.get(parts[1]);
+                    if (current == null || current.configKey.equals(parts[2]) == false) {
+                        current = new SourceRecord(parts[2]);
+                        sources.put(parts[1], current);
+                    }
+                } else if (parts.length == 4 && "D".equals(parts[0]) && current != null) {
+                    List<String> ids = parts[3].isEmpty() ? Collections.emptyList() : splitIds(parts[3]);
+                    current.docs.put(Integer.parseInt(parts[1]), new DocRecord(parts[2], ids));
+                }
+                //日志末尾可能有不完整的行，忽略
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid ingestion manifest: " + source, e);
+        }
+    }
+
+    private static List<String> splitIds(String text) {
+        List<String> ids = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= text.length(); i++) {
+            if (i == text.length() || text.charAt(i) == ',') {
+                ids.add(text.substring(start, i));
+                start = i + 1;
+            }
+        }
+        return ids;
+    }
+
+    private static void writeSource(Writer writer, String uri, String configKey) throws IOException {
+        writer.write("S\t");
+        writer.write(uri);
+        writer.write('\t');
+        writer.write(configKey);
+        writer.write('\n');
+    }
+
+    private static void writeDoc(Writer writer, int docIndex, DocRecord doc) throws IOException {
+        writer.write("D\t");
+        writer.write(String.valueOf(docIndex));
+        writer.write('\t');
+        writer.write(doc.hash);
+        writer.write('\t');
+        writer.write(String.join(",", doc.chunkIds));
+        writer.write('\n');
+    }
+
+    /**
+     * 文档指纹（内容与元数据）
+     */
+    static String fingerprint(Document doc) {
+        return hash(doc.getContent(), String.valueOf(new TreeMap<>(doc.getMetadata())));
+    }
+
+    /**
+     * 散列（sha-256，取前 80 位）
+     */
+    static String hash(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                if (part != null) {
+                    digest.update(part.getBytes(StandardCharsets.UTF_8));
+                }
+                digest.update((byte) 0);
+            }
+
+            byte[] bytes = digest.digest();
+            char[] chars = new char[20];
+            for (int i = 0; i < 10; i++) {
+                chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+                chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+            }
+            return new String(chars);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 源记录
+     */
+    static class SourceRecord {
+        final String configKey;
+        final Map<Integer, DocRecord> docs = new TreeMap<>();
+
+        SourceRecord(String configKey) {
+            this.configKey = configKey;
+        }
+    }
+
+    /**
+     * 文档记录
+     */
+    static class DocRecord {
+        final String hash;
+        final List<String> chunkIds;
+
+        DocRecord(String hash, List<String> chunkIds) {
+            this.hash = hash;
+            this.chunkIds = chunkIds;
+        }
+    }
+}
@@ -0,0 +1,791 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.rag.ingestion;
+
+import org.noear.solon.ai.embedding.EmbeddingModel;
+import org.noear.solon.ai.rag.Document;
+import org.noear.solon.ai.rag.DocumentLoader;
+import org.noear.solon.ai.rag.DocumentSplitter;
+import org.noear.solon.ai.rag.RepositoryStorable;
+import org.noear.solon.ai.rag.splitter.DedupSplitter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * 入库管道（加载 -> 分割 -> 嵌入 -> 存储）
+ *
+ * <p>各阶段并发执行，阶段之间使用有界队列（下游慢时，上游自动等待）；嵌入批次与嵌入模型的批次大小对齐；
+ * 嵌入与存储失败时按退避重试；可选检查点，崩溃后从最后提交的源文档处继续（要求源与顺序不变）。
+ *
+ * <p>可选入库清单（增量入库）：按源记录文档与分块的指纹，分块使用确定性标识（源标识、配置标识、内容与元数据的散列；设置了分割器时，配置标识须显式指定），
+ * 指纹未变的文档不再分割，已存在的分块不再嵌入与存储；成功结束后，删除不再出现的分块。
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class IngestionPipeline {
+    private static final Logger log = LoggerFactory.getLogger(IngestionPipeline.class);
+
+    private final RepositoryStorable repository;
+    private final EmbeddingModel embeddingModel;
+    private final DocumentSplitter splitter;
+    private final List<Source> sources;
+    private final int queueCapacity;
+    private final int splitParallelism;
+    private final int embedParallelism;
+    private final int storeParallelism;
+    private final int batchSize;
+    private final int maxRetries;
+    private final Duration retryBackoff;
+    private final File checkpointFile;
+    private final File manifestFile;
+    private final String configKey;
+    private final boolean deleteMissingSources;
+
+    private IngestionPipeline(Builder config) {
+        if (config.checkpointFile != null && config.manifestFile != null) {
+            throw new IllegalArgumentException("The checkpoint and manifest cannot be used together");
+        }
+
+        //分割器的参数无法可靠识别（类名不反映参数），使用清单时须显式指定配置标识
+        if (config.manifestFile != null && config.splitter != null && config.configKey == null) {
+            throw new IllegalArgumentException("The configKey is required when the manifest is used with a splitter");
+        }
+
+        this.repository = config.repository;
+        if (config.embeddingModel != null && config.repository.isEmbeddingReused() == false) {
+            //知识库存储时会自行嵌入，跳过嵌入阶段（避免重复嵌入）
+            log.warn("The repository does not reuse document embeddings, the embed stage is skipped (see: ReusingEmbeddingModel)");
+            this.embeddingModel = null;
+        } else {
+            this.embeddingModel = config.embeddingModel;
+        }
+        this.splitter = config.splitter;
+        this.sources = new ArrayList<>(config.sources);
+        this.queueCapacity = Math.max(1, config.queueCapacity);
+        this.splitParallelism = Math.max(1, config.splitParallelism);
+        this.embedParallelism = Math.max(1, config.embedParallelism);
+        this.storeParallelism = Math.max(1, config.storeParallelism);
+        this.maxRetries = Math.max(0, config.maxRetries);
+        this.retryBackoff = config.retryBackoff;
+        this.checkpointFile = config.checkpointFile;
+        this.manifestFile = config.manifestFile;
+        this.deleteMissingSources = config.deleteMissingSources;
+
+        this.configKey = (config.configKey == null ? "none" : config.configKey);
+
+        if (config.batchSize > 0) {
+            this.batchSize = config.batchSize;
+        } else if (config.embeddingModel != null) {
+            this.batchSize = config.embeddingModel.batchSize();
+        } else {
+            this.batchSize = 10;
+        }
+    }
+
+    /**
+     * 执行（阻塞直到完成；全部完成后清除检查点）
+     *
+     * @return 各阶段统计
+     */
+    public IngestionStats run() throws IOException {
+        return new Run().execute();
+    }
+
+    /**
+     * 创建入库管道
+     *
+     * @param repository 知识库
+     */
+    public static Builder builder(RepositoryStorable repository) {
+        return new Builder(repository);
+    }
+
+    /**
+     * 文档源
+     */
+    private static class Source {
+        final String uri;
+        final DocumentLoader loader;
+
+        Source(String uri, DocumentLoader loader) {
+            this.uri = uri;
+            this.loader = loader;
+        }
+    }
+
+    /**
+     * 源文档（带加载序号）
+     */
+    private static class Unit {
+        final long seq;
+        final String source;
+        final int index;
+        final Document doc;
+        //增量入库时，文档指纹与全部分块标识
+        String hash;
+        List<String> chunkIds;
+
+        Unit(long seq, String source, int index, Document doc) {
+            this.seq = seq;
+            this.source = source;
+            this.index = index;
+            this.doc = doc;
+        }
+    }
+
+    /**
+     * 分块（带所属源文档）
+     */
+    private static class Chunk {
+        final Unit unit;
+        final Document doc;
+
+        Chunk(Unit unit, Document doc) {
+            this.unit = unit;
+            this.doc = doc;
+        }
+    }
+
+    /**
+     * 工作循环
+     */
+    private interface WorkerLoop {
+        void run() throws Exception;
+    }
+
+    private static final Unit END_UNIT = new Unit(-1L, null, -1, null);
+    private static final List<Chunk> END_BATCH = new ArrayList<>(0);
+
+    /**
+     * 单次执行
+     */
+    private class Run {
+        private final IngestionStats stats = new IngestionStats();
+        private final IngestionStats.StageStats loadStats = stats.addStage("load");
+        private final IngestionStats.StageStats splitStats = stats.addStage("split");
+        private final IngestionStats.StageStats embedStats = (embeddingModel == null ? null : stats.addStage("embed"));
+        private final IngestionStats.StageStats storeStats = stats.addStage("store");
+
+        private final BlockingQueue<Unit> splitQueue = new ArrayBlockingQueue<>(queueCapacity);
+        private final BlockingQueue<List<Chunk>> embedQueue = new ArrayBlockingQueue<>(queueCapacity);
+        private final BlockingQueue<List<Chunk>> storeQueue = new ArrayBlockingQueue<>(queueCapacity);
+
+        //待存储的分块数（按源文档）
+        private final Map<Long, AtomicInteger> pending = new ConcurrentHashMap<>();
+        //已完成但未连续的源文档
+        private final TreeSet<Long> completed = new TreeSet<>();
+        //之前的源文档已全部完成
+        private long watermark;
+
+        private final Object batchLock = new Object();
+        private List<Chunk> batch = new ArrayList<>();
+
+        private IngestionCheckpoint checkpoint;
+        private IngestionManifest manifest;
+        //本次的源记录（增量入库）
+        private final Map<String, IngestionManifest.SourceRecord> records = new LinkedHashMap<>();
+        //之前的分块标识（按源）
+        private final Map<String, Set<String>> previousIds = new ConcurrentHashMap<>();
+        private volatile Throwable failure;
+
+        IngestionStats execute() throws IOException {
+            long resumeFrom = 0L;
+            if (checkpointFile != null) {
+                checkpoint = new IngestionCheckpoint(checkpointFile);
+                resumeFrom = checkpoint.getCommitted();
+            }
+
+            if (manifestFile != null) {
+                manifest = new IngestionManifest(manifestFile);
+            }
+
+            watermark = resumeFrom;
+            stats.start();
+
+            List<Thread> splitWorkers = startWorkers("split", splitParallelism, this::splitLoop);
+            List<Thread> embedWorkers = (embeddingModel == null ? Collections.emptyList() :
+                    startWorkers("embed", embedParallelism, this::embedLoop));
+            List<Thread> storeWorkers = startWorkers("store", storeParallelism, this::storeLoop);
+
+            try {
+                load(resumeFrom);
+            } catch (Throwable e) {
+                fail(e);
+            }
+
+            try {
+                //逐个阶段收尾（上游结束后，通知下游结束）
+                finish(splitQueue, END_UNIT, splitWorkers);
+                flushBatch();
+
+                if (embeddingModel != null) {
+                    finish(embedQueue, END_BATCH, embedWorkers);
+                }
+
+                finish(storeQueue, END_BATCH, storeWorkers);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+
+            if (manifest != null) {
+                if (failure == null) {
+                    try {
+                        reconcile();
+                    } catch (Throwable e) {
+                        fail(e);
+                    }
+                }
+
+                //失败时保留日志，下次执行时已完成的文档视为已入库
+                manifest.closeJournal();
+            }
+
+            stats.end();
+
+            if (failure != null) {
+                if (failure instanceof IOException) {
+                    throw (IOException) failure;
+                } else {
+                    throw new IOException("Ingestion failed", failure);
+                }
+            }
+
+            if (checkpoint != null) {
+                checkpoint.reset();
+            }
+
+            return stats;
+        }
+
+        private void load(long resumeFrom) throws IOException, InterruptedException {
+            long seq = 0L;
+
+            for (Source source : sources) {
+                if (manifest != null) {
+                    synchronized (records) {
+                        records.put(source.uri, new IngestionManifest.SourceRecord(configKey));
+                    }
+                }
+
+                int index = 0;
+                try (Stream<Document> stream = source.loader.stream()) {
+                    Iterator<Document> iterator = stream.iterator();
+
+                    while (failure == null) {
+                        long start = System.nanoTime();
+                        if (iterator.hasNext() == false) {
+                            break;
+                        }
+
+                        Document doc = iterator.next();
+                        loadStats.record(1, System.nanoTime() - start);
+
+                        if (seq < resumeFrom) {
+                            //检查点之前的已入库
+                            seq++;
+                            stats.skipped(seq);
+                            continue;
+                        }
+
+                        if (put(splitQueue, new Unit(seq++, source.uri, index++, doc)) == false) {
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+
+        private void splitLoop() throws Exception {
+            Unit unit;
+            while ((unit = take(splitQueue)) != null && unit != END_UNIT) {
+                if (manifest != null) {
+                    unit.hash = IngestionManifest.fingerprint(unit.doc);
+
+                    IngestionManifest.DocRecord previous = manifest.getDoc(unit.source, configKey, unit.index);
+                    if (previous != null && previous.hash.equals(unit.hash)) {
+                        //文档未变，沿用之前的分块
+                        unit.chunkIds = previous.chunkIds;
+                        stats.unchanged(previous.chunkIds.size());
+                        complete(unit);
+                        continue;
+                    }
+                }
+
+                //增量入库时，以源标识作为去重的所有者（重新入库时，分块不会被当作与自己重复而丢弃；分割后移除）
+                boolean owned = (manifest != null && splitter != null && unit.doc.getMetadata(DedupSplitter.OWNER_KEY) == null);
+                if (owned) {
+                    unit.doc.metadata(DedupSplitter.OWNER_KEY, unit.source);
+                }
+
+                long start = System.nanoTime();
+                List<Document> chunks;
+                if (splitter == null) {
+                    chunks = Collections.singletonList(unit.doc);
+                } else {
+                    chunks = splitter.split(new ArrayList<>(Collections.singletonList(unit.doc)));
+                }
+                splitStats.record(chunks.size(), System.nanoTime() - start);
+
+                if (owned) {
+                    unit.doc.getMetadata().remove(DedupSplitter.OWNER_KEY);
+                    for (Document chunk : chunks) {
+                        chunk.getMetadata().remove(DedupSplitter.OWNER_KEY);
+                    }
+                }
+
+                if (manifest != null) {
+                    chunks = identify(unit, chunks);
+                }
+
+                if (chunks.isEmpty()) {
+                    complete(unit);
+                    continue;
+                }
+
+                pending.put(unit.seq, new AtomicInteger(chunks.size()));
+                for (Document chunk : chunks) {
+                    addToBatch(new Chunk(unit, chunk));
+                }
+            }
+        }
+
+        /**
+         * 为分块分配确定性标识，并返回需要存储的分块（之前已存在的除外）
+         */
+        private List<Document> identify(Unit unit, List<Document> chunks) {
+            Set<String> previous = previousIds.computeIfAbsent(unit.source, manifest::getChunkIds);
+            Map<String, Integer> occurrences = new HashMap<>();
+            List<String> ids = new ArrayList<>(chunks.size());
+            List<Document> changed = new ArrayList<>();
+
+            for (Document chunk : chunks) {
+                String hash = IngestionManifest.fingerprint(chunk);
+                int occurrence = occurrences.merge(hash, 1, Integer::sum);
+                String id = IngestionManifest.hash(unit.source, configKey, hash, String.valueOf(occurrence));
+
+                chunk.id(id);
+                ids.add(id);
+
+                if (previous.contains(id) == false) {
+                    changed.add(chunk);
+                }
+            }
+
+            unit.chunkIds = ids;
+            stats.unchanged(chunks.size() - changed.size());
+            return changed;
+        }
+
+        /**
+         * 删除不再出现的分块，并提交清单
+         */
+        private void reconcile() throws Exception {
+            List<String> stale = new ArrayList<>();
+            List<String> removed = new ArrayList<>();
+
+            for (Map.Entry<String, IngestionManifest.SourceRecord> kv : records.entrySet()) {
+                Set<String> ids = manifest.getChunkIds(kv.getKey());
+                for (IngestionManifest.DocRecord doc : kv.getValue().docs.values()) {
+                    ids.removeAll(doc.chunkIds);
+                }
+                stale.addAll(ids);
+            }
+
+            if (deleteMissingSources) {
+                for (String uri : manifest.getSourceUris()) {
+                    if (records.containsKey(uri) == false) {
+                        stale.addAll(manifest.getChunkIds(uri));
+                        removed.add(uri);
+                    }
+                }
+            }
+
+            for (int i = 0; i < stale.size(); i += batchSize) {
+                String[] ids = stale.subList(i, Math.min(stale.size(), i + batchSize)).toArray(new String[0]);
+
+                retry(storeStats, () -> {
+                    repository.deleteById(ids);
+                    return null;
+                });
+                stats.deleted(ids.length);
+            }
+
+            manifest.commit(records, removed);
+        }
+
+        private void embedLoop() throws Exception {
+            List<Chunk> chunks;
+            while ((chunks = take(embedQueue)) != null && chunks != END_BATCH) {
+                List<Document> docs = toDocs(chunks);
+
+                long start = System.nanoTime();
+                retry(embedStats, () -> {
+                    embeddingModel.embed(docs);
+                    return null;
+                });
+                embedStats.record(docs.size(), System.nanoTime() - start);
+
+                if (put(storeQueue, chunks) == false) {
+                    return;
+                }
+            }
+        }
+
+        private void storeLoop() throws Exception {
+            List<Chunk> chunks;
+            while ((chunks = take(storeQueue)) != null && chunks != END_BATCH) {
+                List<Document> docs = toDocs(chunks);
+
+                long start = System.nanoTime();
+                retry(storeStats, () -> {
+                    repository.save(docs);
+                    return null;
+                });
+                storeStats.record(docs.size(), System.nanoTime() - start);
+
+                for (Chunk chunk : chunks) {
+                    AtomicInteger count = pending.get(chunk.unit.seq);
+                    if (count != null && count.decrementAndGet() == 0) {
+                        pending.remove(chunk.unit.seq);
+                        complete(chunk.unit);
+                    }
+                }
+            }
+        }
+
+        private void addToBatch(Chunk chunk) throws InterruptedException {
+            List<Chunk> full = null;
+
+            synchronized (batchLock) {
+                batch.add(chunk);
+                if (batch.size() >= batchSize) {
+                    full = batch;
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+
+            if (full != null) {
+                put(embeddingModel == null ? storeQueue : embedQueue, full);
+            }
+        }
+
+        private void flushBatch() throws InterruptedException {
+            List<Chunk> rest;
+            synchronized (batchLock) {
+                rest = batch;
+                batch = new ArrayList<>();
+            }
+
+            if (rest.size() > 0 && failure == null) {
+                put(embeddingModel == null ? storeQueue : embedQueue, rest);
+            }
+        }
+
+        /**
+         * 源文档的全部分块已存储（记录清单；推进连续完成的位置，并提交检查点）
+         */
+        private void complete(Unit unit) throws IOException {
+            if (manifest != null) {
+                IngestionManifest.DocRecord doc = new IngestionManifest.DocRecord(unit.hash, unit.chunkIds);
+                manifest.journal(unit.source, configKey, unit.index, doc);
+
+                synchronized (records) {
+                    records.get(unit.source).docs.put(unit.index, doc);
+                }
+            }
+
+            synchronized (completed) {
+                completed.add(unit.seq);
+
+                long before = watermark;
+                while (completed.remove(watermark)) {
+                    watermark++;
+                }
+
+                if (checkpoint != null && watermark > before) {
+                    checkpoint.commit(watermark);
+                }
+            }
+        }
+
+        private void retry(IngestionStats.StageStats stage, Callable<?> task) throws Exception {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    task.call();
+                    return;
+                } catch (Exception e) {
+                    if (attempt >= maxRetries || failure != null) {
+                        throw e;
+                    }
+
+                    stage.retry();
+                    log.warn("Ingestion {} failed, retrying ({}/{})", stage.getName(), attempt + 1, maxRetries, e);
+
+                    if (retryBackoff != null) {
+                        Thread.sleep(retryBackoff.toMillis() * (attempt + 1));
+                    }
+                }
+            }
+        }
+
+        private List<Thread> startWorkers(String stage, int count, WorkerLoop loop) {
+            List<Thread> workers = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Thread worker = new Thread(() -> {
+                    try {
+                        loop.run();
+                    } catch (Throwable e) {
+                        fail(e);
+                    }
+                }, "solon-ai-ingestion-" + stage + "-" + i);
+
+                worker.setDaemon(true);
+                worker.start();
+                workers.add(worker);
+            }
+            return workers;
+        }
+
+        private <T> void finish(BlockingQueue<T> queue, T end, List<Thread> workers) throws InterruptedException {
+            for (int i = 0; i < workers.size(); i++) {
+                if (put(queue, end) == false) {
+                    break;
+                }
+            }
+
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+
+        private <T> boolean put(BlockingQueue<T> queue, T item) throws InterruptedException {
+            while (failure == null) {
+                if (queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private <T> T take(BlockingQueue<T> queue) throws InterruptedException {
+            while (failure == null) {
+                T item = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (item != null) {
+                    return item;
+                }
+            }
+            return null;
+        }
+
+        private void fail(Throwable e) {
+            synchronized (this) {
+                if (failure == null) {
+                    failure = e;
+                    log.warn("Ingestion failed: {}", e.getMessage(), e);
+                }
+            }
+        }
+
+        private List<Document> toDocs(List<Chunk> chunks) {
+            List<Document> docs = new ArrayList<>(chunks.size());
+            for (Chunk chunk : chunks) {
+                docs.add(chunk.doc);
+            }
+            return docs;
+        }
+    }
+
+    /**
+     * 入库管道构建器
+     */
+    public static class Builder {
+        private final RepositoryStorable repository;
+        private EmbeddingModel embeddingModel;
+        private DocumentSplitter splitter;
+        private final List<Source> sources = new ArrayList<>();
+        private int queueCapacity = 64;
+        private int splitParallelism = 1;
+        private int embedParallelism = 2;
+        private int storeParallelism = 1;
+        private int batchSize;
+        private int maxRetries = 3;
+        private Duration retryBackoff = Duration.ofSeconds(1);
+        private File checkpointFile;
+        private File manifestFile;
+        private String configKey;
+        private boolean deleteMissingSources;
+
+        /**
+         * @param repository 知识库
+         */
+        public Builder(RepositoryStorable repository) {
+            this.repository = repository;
+        }
+
+        /**
+         * 嵌入模型（设置后独立为嵌入阶段并发执行）
+         *
+         * <p>仅当知识库存储时复用已有嵌入（见 {@link RepositoryStorable#isEmbeddingReused()}，如使用 ReusingEmbeddingModel 构建）时生效；
+         * 否则跳过嵌入阶段，由知识库存储时嵌入（避免重复嵌入）。
+         */
+        public Builder embeddingModel(EmbeddingModel embeddingModel) {
+            this.embeddingModel = embeddingModel;
+            return this;
+        }
+
+        /**
+         * 分割器
+         */
+        public Builder splitter(DocumentSplitter splitter) {
+            this.splitter = splitter;
+            return this;
+        }
+
+        /**
+         * 添加文档源（按添加顺序加载）
+         */
+        public Builder source(DocumentLoader loader) {
+            return source("#" + sources.size(), loader);
+        }
+
+        /**
+         * 添加文档源（按添加顺序加载）
+         *
+         * @param uri    源标识（增量入库时，用于识别同一个源）
+         * @param loader 加载器
+         */
+        public Builder source(String uri, DocumentLoader loader) {
+            this.sources.add(new Source(uri, loader));
+            return this;
+        }
+
+        /**
+         * 阶段之间的队列容量（默认 64）
+         */
+        public Builder queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * 分割并发数（默认 1）
+         */
+        public Builder splitParallelism(int splitParallelism) {
+            this.splitParallelism = splitParallelism;
+            return this;
+        }
+
+        /**
+         * 嵌入并发数（默认 2）
+         */
+        public Builder embedParallelism(int embedParallelism) {
+            this.embedParallelism = embedParallelism;
+            return this;
+        }
+
+        /**
+         * 存储并发数（默认 1）
+         */
+        public Builder storeParallelism(int storeParallelism) {
+            this.storeParallelism = storeParallelism;
+            return this;
+        }
+
+        /**
+         * 批次大小（默认为嵌入模型的批次大小）
+         */
+        public Builder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * 嵌入与存储的最大重试次数（默认 3）
+         */
+        public Builder maxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * 重试退避时间（按重试次数线性增加；默认 1 秒）
+         */
+        public Builder retryBackoff(Duration retryBackoff) {
+            this.retryBackoff = retryBackoff;
+            return this;
+        }
+
+        /**
+         * 检查点文件（设置后支持断点续做）
+         */
+        public Builder checkpoint(File checkpointFile) {
+            this.checkpointFile = checkpointFile;
+            return this;
+        }
+
+        /**
+         * 入库清单文件（设置后为增量入库，分块标识由管道生成；自带断点续做，不能与检查点同时使用）
+         */
+        public Builder manifest(File manifestFile) {
+            this.manifestFile = manifestFile;
+            return this;
+        }
+
+        /**
+         * 配置标识（影响分块结果的配置，如分割器及其参数；变更后全部重新入库）
+         *
+         * <p>使用入库清单且设置了分割器时必须指定（如 "regex-v2"）：只调整分割参数时，须同时变更配置标识，否则之前的分块会被沿用。
+         */
+        public Builder configKey(String configKey) {
+            this.configKey = configKey;
+            return this;
+        }
+
+        /**
+         * 是否删除清单中有、本次没有的源的分块（默认 false）
+         */
+        public Builder deleteMissingSources(boolean deleteMissingSources) {
+            this.deleteMissingSources = deleteMissingSources;
+            return this;
+        }
+
+        public IngestionPipeline build() {
+            return new IngestionPipeline(this);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.rag.ingestion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 入库统计（按阶段）
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class IngestionStats {
+    private final List<StageStats> stages = new ArrayList<>();
+    private volatile long startNanos;
+    private volatile long endNanos;
+    private volatile long skipped;
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+
+    StageStats addStage(String name) {
+        StageStats stage = new StageStats(this, name);
+        stages.add(stage);
+        return stage;
+    }
+
+    void start() {
+        startNanos = System.nanoTime();
+    }
+
+    void end() {
+        endNanos = System.nanoTime();
+    }
+
+    void skipped(long skipped) {
+        this.skipped = skipped;
+    }
+
+    void unchanged(int count) {
+        unchanged.addAndGet(count);
+    }
+
+    void deleted(int count) {
+        deleted.addAndGet(count);
+    }
+
+    /**
+     * 各阶段统计
+     */
+    public List<StageStats> getStages() {
+        return Collections.unmodifiableList(stages);
+    }
+
+    /**
+     * 获取阶段统计（load, split, embed, store）
+     */
+    public StageStats getStage(String name) {
+        for (StageStats stage : stages) {
+            if (stage.getName().equals(name)) {
+                return stage;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * 因检查点跳过的源文档数量
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * 因指纹未变而跳过的分块数量（增量入库）
+     */
+    public long getUnchanged() {
+        return unchanged.get();
+    }
+
+    /**
+     * 删除的过期分块数量（增量入库）
+     */
+    public long getDeleted() {
+        return deleted.get();
+    }
+
+    /**
+     * 总耗时（毫秒）
+     */
+    public long getElapsedMillis() {
+        long end = (endNanos == 0L ? System.nanoTime() : endNanos);
+        return startNanos == 0L ? 0L : (end - startNanos) / 1_000_000L;
+    }
+
+    @Override
+    public String toString() {
+        return "IngestionStats{" +
+                "elapsedMillis=" + getElapsedMillis() +
+                ", skipped=" + skipped +
+                ", unchanged=" + unchanged +
+                ", deleted=" + deleted +
+                ", stages=" + stages +
+                '}';
+    }
+
+    /**
+     * 阶段统计
+     */
+    public static class StageStats {
+        private final IngestionStats owner;
+        private final String name;
+        private final AtomicLong items = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+
+        StageStats(IngestionStats owner, String name) {
+            this.owner = owner;
+            this.name = name;
+        }
+
+        void record(int itemCount, long nanos) {
+            items.addAndGet(itemCount);
+            batches.incrementAndGet();
+            busyNanos.addAndGet(nanos);
+        }
+
+        void retry() {
+            retries.incrementAndGet();
+        }
+
+        /**
+         * 阶段名
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * 处理的条目数（文档或分块）
+         */
+        public long getItems() {
+            return items.get();
+        }
+
+        /**
+         * 处理的批次数
+         */
+        public long getBatches() {
+            return batches.get();
+        }
+
+        /**
+         * 工作耗时（毫秒；各并发工作者累计）
+         */
+        public long getBusyMillis() {
+            return busyNanos.get() / 1_000_000L;
+        }
+
+        /**
+         * 重试次数
+         */
+        public long getRetries() {
+            return retries.get();
+        }
+
+        /**
+         * 吞吐（条目每秒，按总耗时计）
+         */
+        public double getThroughput() {
+            long elapsed = owner.getElapsedMillis();
+            return elapsed == 0L ? 0.0D : items.get() * 1000.0D / elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return "StageStats{" +
+                    "name='" + name + '\'' +
+                    ", items=" + items +
+                    ", batches=" + batches +
+                    ", busyMillis=" + getBusyMillis() +
+                    ", retries=" + retries +
+                    ", throughput=" + String.format("%.1f", getThroughput()) +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.rag.loader;
+
+import org.noear.solon.ai.rag.Document;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 文档迭代器（按需拉取，用于实现流式加载）
+ *
+ * @author noear
+ * @since 4.1
+ */
+public abstract class DocumentIterator implements Iterator<Document>, Closeable {
+    private Document next;
+    private boolean finished;
+    private boolean closed;
+
+    /**
+     * 拉取下一个文档（没有更多时返回 null）
+     */
+    protected abstract Document fetch() throws IOException;
+
+    /**
+     * 释放资源
+     */
+    protected abstract void release() throws IOException;
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+
+        if (finished) {
+            return false;
+        }
+
+        try {
+            next = fetch();
+        } catch (IOException e) {
+            closeQuietly();
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            closeQuietly();
+            throw e;
+        }
+
+        if (next == null) {
+            //读完即释放，不必等待流关闭
+            closeQuietly();
+            return false;
+        } else {
+            return true;
+        }
+    }
+
+    @Override
+    public Document next() {
+        if (hasNext() == false) {
+            throw new NoSuchElementException();
+        }
+
+        Document tmp = next;
+        next = null;
+        return tmp;
+    }
+
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        next = null;
+
+        if (closed == false) {
+            closed = true;
+            release();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException ignored) {
+            //忽略
+        }
+    }
+
+    /**
+     * 转为流（流关闭时释放资源）
+     */
+    public Stream<Document> toStream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::closeQuietly);
+    }
+}
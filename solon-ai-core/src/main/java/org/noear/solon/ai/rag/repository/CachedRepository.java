@@ -0,0 +1,324 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.rag.repository;
+
+import org.noear.solon.ai.embedding.EmbeddingCache;
+import org.noear.solon.ai.embedding.EmbeddingModel;
+import org.noear.solon.ai.rag.Document;
+import org.noear.solon.ai.rag.Repository;
+import org.noear.solon.ai.rag.RepositoryStorable;
+import org.noear.solon.ai.rag.util.HybridSearchParams;
+import org.noear.solon.ai.rag.util.QueryCondition;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * 缓存知识库（装饰器：缓存查询嵌入与检索结果）
+ *
+ * <p>查询嵌入：按“模型 + 查询文本”缓存，并通过 {@link Repository#search(QueryCondition, float[])} 传给被装饰的知识库（省去一次模型请求）。
+ * 仅当被装饰的知识库支持传入查询嵌入时生效（见 {@link Repository#isQueryEmbedSupported()}），否则不做嵌入缓存，由知识库自行嵌入。
+ * <p>检索结果：按完整的检索条件缓存（可选），有存活时间；经由本知识库 save、deleteById 时失效，外部变更时可调用 invalidate。
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class CachedRepository implements RepositoryStorable {
+    private final Repository repository;
+    private final EmbeddingModel embeddingModel;
+    private final EmbeddingCache embeddingCache;
+    private final int resultCacheSize;
+    private final long resultTtlMillis;
+    private final Map<String, Result> results;
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong resultHitCount = new AtomicLong();
+    private final AtomicLong resultMissCount = new AtomicLong();
+
+    private CachedRepository(Builder config) {
+        this.repository = config.repository;
+        this.embeddingModel = config.embeddingModel;
+        this.embeddingCache = (config.embeddingCache == null && config.embeddingModel != null ?
+                new EmbeddingCache(config.embeddingCacheSize) : config.embeddingCache);
+        this.resultCacheSize = config.resultCacheSize;
+        this.resultTtlMillis = config.resultTtl.toMillis();
+        this.results = new LinkedHashMap<String, Result>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+                return size() > resultCacheSize;
+            }
+        };
+    }
+
+    /**
+     * 被装饰的知识库
+     */
+    public Repository getRepository() {
+        return repository;
+    }
+
+    /**
+     * 查询嵌入缓存（未配置嵌入模型时为 null）
+     */
+    public EmbeddingCache getEmbeddingCache() {
+        return embeddingCache;
+    }
+
+    /**
+     * 结果缓存命中次数
+     */
+    public long getResultHitCount() {
+        return resultHitCount.get();
+    }
+
+    /**
+     * 结果缓存未命中次数
+     */
+    public long getResultMissCount() {
+        return resultMissCount.get();
+    }
+
+    @Override
+    public List<Document> search(QueryCondition condition) throws IOException {
+        return search(condition, null);
+    }
+
+    @Override
+    public List<Document> search(QueryCondition condition, float[] queryEmbed) throws IOException {
+        if (resultCacheSize <= 0) {
+            return doSearch(condition, queryEmbed);
+        }
+
+        String key = keyOf(condition);
+        long now = System.currentTimeMillis();
+
+        Result result;
+        synchronized (results) {
+            result = results.get(key);
+            if (result != null && result.expireAt <= now) {
+                results.remove(key);
+                result = null;
+            }
+        }
+
+        if (result != null) {
+            resultHitCount.incrementAndGet();
+            return copyOf(result.documents);
+        }
+
+        resultMissCount.incrementAndGet();
+
+        //检索期间有写入时，结果可能已过时，不入缓存
+        long gen = generation.get();
+        List<Document> documents = doSearch(condition, queryEmbed);
+
+        if (documents != null) {
+            synchronized (results) {
+                if (generation.get() == gen) {
+                    results.put(key, new Result(copyOf(documents), now + resultTtlMillis));
+                }
+            }
+        }
+
+        return documents;
+    }
+
+    @Override
+    public boolean isQueryEmbedSupported() {
+        return repository.isQueryEmbedSupported();
+    }
+
+    private List<Document> doSearch(QueryCondition condition, float[] queryEmbed) throws IOException {
+        if (repository.isQueryEmbedSupported() == false) {
+            //不支持传入查询嵌入的知识库会自行嵌入，预先计算只会多一次模型请求
+            return repository.search(condition);
+        }
+
+        if (queryEmbed == null && embeddingModel != null && condition.getQuery() != null) {
+            queryEmbed = embeddingCache.embed(embeddingModel, condition.getQuery());
+        }
+
+        return repository.search(condition, queryEmbed);
+    }
+
+    /**
+     * 使结果缓存失效（被装饰的知识库在外部发生变更时调用）
+     */
+    public void invalidate() {
+        synchronized (results) {
+            generation.incrementAndGet();
+            results.clear();
+        }
+    }
+
+    @Override
+    public void save(List<Document> documents, BiConsumer<Integer, Integer> progressCallback) throws IOException {
+        try {
+            storable().save(documents, progressCallback);
+        } finally {
+            invalidate();
+        }
+    }
+
+    @Override
+    public boolean isEmbeddingReused() {
+        return repository instanceof RepositoryStorable && ((RepositoryStorable) repository).isEmbeddingReused();
+    }
+
+    @Override
+    public void deleteById(String... ids) throws IOException {
+        try {
+            storable().deleteById(ids);
+        } finally {
+            invalidate();
+        }
+    }
+
+    @Override
+    public boolean existsById(String id) throws IOException {
+        return storable().existsById(id);
+    }
+
+    private RepositoryStorable storable() {
+        if (repository instanceof RepositoryStorable) {
+            return (RepositoryStorable) repository;
+        } else {
+            throw new UnsupportedOperationException("The repository is not storable: " + repository.getClass().getName());
+        }
+    }
+
+    /**
+     * 检索条件的缓存键
+     */
+    private static String keyOf(QueryCondition condition) {
+        HybridSearchParams hybrid = condition.getHybridSearchParams();
+
+        StringBuilder buf = new StringBuilder();
+        buf.append(condition.getQuery()).append('\u0001')
+                .append(condition.getLimit()).append('|')
+                .append(condition.getSimilarityThreshold()).append('|')
+                .append(condition.getFreshness()).append('|')
+                .append(condition.getFilterExpression()).append('|')
+                .append(condition.isDisableRefilter()).append('|')
+                .append(condition.getSearchType());
+
+        if (hybrid != null) {
+            buf.append('|').append(hybrid.getVectorWeight()).append(',').append(hybrid.getFullTextWeight());
+        }
+
+        return buf.toString();
+    }
+
+    /**
+     * 复制结果（文档可被调用方修改，缓存内保留独立副本）
+     */
+    private static List<Document> copyOf(List<Document> documents) {
+        List<Document> copies = new ArrayList<>(documents.size());
+        for (Document doc : documents) {
+            copies.add(new Document(doc.getId(), doc.getContent(), doc.getMetadata(), doc.getScore())
+                    .embedding(doc.getEmbedding()));
+        }
+        return copies;
+    }
+
+    private static class Result {
+        final List<Document> documents;
+        final long expireAt;
+
+        Result(List<Document> documents, long expireAt) {
+            this.documents = documents;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * 创建缓存知识库
+     *
+     * @param repository 被装饰的知识库
+     */
+    public static Builder builder(Repository repository) {
+        return new Builder(repository);
+    }
+
+    /**
+     * 缓存知识库构建器
+     */
+    public static class Builder {
+        private final Repository repository;
+        private EmbeddingModel embeddingModel;
+        private EmbeddingCache embeddingCache;
+        private int embeddingCacheSize = 1000;
+        private int resultCacheSize = 0;
+        private Duration resultTtl = Duration.ofMinutes(5);
+
+        public Builder(Repository repository) {
+            this.repository = repository;
+        }
+
+        /**
+         * 被装饰的知识库所用的嵌入模型（用于缓存查询嵌入；不设置，或知识库不支持传入查询嵌入时，不缓存嵌入）
+         */
+        public Builder embeddingModel(EmbeddingModel embeddingModel) {
+            this.embeddingModel = embeddingModel;
+            return this;
+        }
+
+        /**
+         * 共用的嵌入缓存（不设置时，按 embeddingCacheSize 单独创建）
+         */
+        public Builder embeddingCache(EmbeddingCache embeddingCache) {
+            this.embeddingCache = embeddingCache;
+            return this;
+        }
+
+        /**
+         * 嵌入缓存条数（默认 1000）
+         */
+        public Builder embeddingCacheSize(int embeddingCacheSize) {
+            this.embeddingCacheSize = embeddingCacheSize;
+            return this;
+        }
+
+        /**
+         * 结果缓存条数（默认 0，即不缓存结果）
+         */
+        public Builder resultCacheSize(int resultCacheSize) {
+            this.resultCacheSize = resultCacheSize;
+            return this;
+        }
+
+        /**
+         * 结果缓存存活时间（默认 5 分钟）
+         */
+        public Builder resultTtl(Duration resultTtl) {
+            this.resultTtl = resultTtl;
+            return this;
+        }
+
+        public CachedRepository build() {
+            if (repository == null) {
+                throw new IllegalArgumentException("The repository is required");
+            }
+
+            return new CachedRepository(this);
+        }
+    }
+}
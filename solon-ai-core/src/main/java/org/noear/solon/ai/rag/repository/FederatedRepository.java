@@ -0,0 +1,361 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.rag.repository;
+
+import org.noear.solon.ai.embedding.EmbeddingCache;
+import org.noear.solon.ai.embedding.EmbeddingModel;
+import org.noear.solon.ai.rag.Document;
+import org.noear.solon.ai.rag.Repository;
+import org.noear.solon.ai.rag.util.FusionMode;
+import org.noear.solon.ai.rag.util.QueryCondition;
+import org.noear.solon.ai.rag.util.RankFusion;
+import org.noear.solon.core.util.RunUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 联合知识库（并行检索多个知识库，并融合排序）
+ *
+ * <p>各知识库并行检索，单个知识库超时或出错时返回其余知识库的结果；结果按 id 或内容去重。
+ * 使用同一个嵌入模型的知识库，共用一次查询嵌入（需在添加知识库时指明嵌入模型，且知识库支持传入查询嵌入，见 {@link Repository#isQueryEmbedSupported()}）；
+ * 查询嵌入在检索任务内计算，计入各自的超时。
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class FederatedRepository implements Repository {
+    private static final Logger log = LoggerFactory.getLogger(FederatedRepository.class);
+
+    private final List<Source> sources;
+    private final FusionMode fusion;
+    private final int rrfK;
+    private final Executor executor;
+    private final EmbeddingCache embeddingCache;
+
+    private FederatedRepository(Builder config) {
+        this.sources = new ArrayList<>(config.sources.size());
+        for (Source source : config.sources) {
+            //未单独设置超时的，使用默认超时
+            this.sources.add(source.timeout != null ? source :
+                    new Source(source.name, source.repository, source.embeddingModel, config.timeout, source.weight));
+        }
+
+        this.fusion = config.fusion;
+        this.rrfK = config.rrfK;
+        this.executor = config.executor;
+        this.embeddingCache = config.embeddingCache;
+    }
+
+    @Override
+    public List<Document> search(QueryCondition condition) throws IOException {
+        if (sources.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        //同一嵌入模型只嵌入一次（由首个执行的检索任务计算，其余任务共用）
+        Map<EmbeddingModel, CompletableFuture<float[]>> queryEmbeds = new IdentityHashMap<>();
+
+        //并行检索
+        long startNanos = System.nanoTime();
+        List<SearchTask> tasks = new ArrayList<>(sources.size());
+        for (Source source : sources) {
+            SearchTask task = new SearchTask(source, condition, queryEmbeds, startNanos);
+            tasks.add(task);
+            executor.execute(task);
+        }
+
+        //收集（各自计时；超时或出错的知识库不参与融合，权重记为 0）
+        List<List<Document>> lists = new ArrayList<>(sources.size());
+        double[] weights = new double[sources.size()];
+        Throwable lastError = null;
+        int failed = 0;
+
+        for (int i = 0; i < sources.size(); i++) {
+            Source source = sources.get(i);
+            SearchTask task = tasks.get(i);
+
+            long remainingNanos = source.timeout.toNanos() - (System.nanoTime() - startNanos);
+
+            try {
+                lists.add(task.future.get(Math.max(0L, remainingNanos), TimeUnit.NANOSECONDS));
+                weights[i] = source.weight;
+            } catch (TimeoutException e) {
+                task.cancel();
+                lists.add(null);
+                failed++;
+                lastError = e;
+                log.warn("Federated search timeout: source={}, timeout={}ms", source.name, source.timeout.toMillis());
+            } catch (ExecutionException e) {
+                lists.add(null);
+                failed++;
+                lastError = e.getCause();
+                log.warn("Federated search failed: source={}", source.name, e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Federated search interrupted", e);
+            }
+        }
+
+        if (failed == sources.size()) {
+            throw new IOException("Federated search failed for all sources", lastError);
+        }
+
+        List<Document> fused = RankFusion.fuse(lists, weights, fusion, rrfK, true);
+        if (fused.size() > condition.getLimit()) {
+            return new ArrayList<>(fused.subList(0, condition.getLimit()));
+        } else {
+            return fused;
+        }
+    }
+
+    /**
+     * 获取查询嵌入（同一嵌入模型只嵌入一次；共用的嵌入失败时，返回 null 由知识库自行嵌入）
+     *
+     * @param deadlineNanos 等待共用嵌入的截止时间（即所在知识库的检索超时）
+     */
+    private float[] embedQuery(Map<EmbeddingModel, CompletableFuture<float[]>> queryEmbeds,
+                               EmbeddingModel embeddingModel, String query, long deadlineNanos) throws Exception {
+        CompletableFuture<float[]> shared;
+        boolean owner = false;
+
+        synchronized (queryEmbeds) {
+            shared = queryEmbeds.get(embeddingModel);
+            if (shared == null) {
+                shared = new CompletableFuture<>();
+                queryEmbeds.put(embeddingModel, shared);
+                owner = true;
+            }
+        }
+
+        if (owner) {
+            try {
+                float[] queryEmbed = embeddingCache == null ?
+                        embeddingModel.embed(query) :
+                        embeddingCache.embed(embeddingModel, query);
+                shared.complete(queryEmbed);
+                return queryEmbed;
+            } catch (Throwable ex) {
+                shared.completeExceptionally(ex);
+                throw ex;
+            }
+        } else {
+            try {
+                //等待不超过本知识库的剩余时间（超时时，任务失败，由收集方按超时处理）
+                return shared.get(Math.max(0L, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 检索任务（超时取消时，中断正在执行的线程）
+     */
+    private class SearchTask implements Runnable {
+        final CompletableFuture<List<Document>> future = new CompletableFuture<>();
+        final Source source;
+        final QueryCondition condition;
+        final Map<EmbeddingModel, CompletableFuture<float[]>> queryEmbeds;
+        final long deadlineNanos;
+
+        private Thread thread;
+        private boolean cancelled;
+
+        SearchTask(Source source, QueryCondition condition, Map<EmbeddingModel, CompletableFuture<float[]>> queryEmbeds, long startNanos) {
+            this.source = source;
+            this.condition = condition;
+            this.queryEmbeds = queryEmbeds;
+            this.deadlineNanos = startNanos + source.timeout.toNanos();
+        }
+
+        @Override
+        public void run() {
+            if (start() == false) {
+                return;
+            }
+
+            try {
+                //不支持传入查询嵌入的知识库会自行嵌入，不参与共用（避免多一次模型请求）
+                float[] queryEmbed = null;
+                if (source.embeddingModel != null && condition.getQuery() != null && source.repository.isQueryEmbedSupported()) {
+                    queryEmbed = embedQuery(queryEmbeds, source.embeddingModel, condition.getQuery(), deadlineNanos);
+                }
+
+                List<Document> docs;
+                if (queryEmbed == null) {
+                    docs = source.repository.search(condition);
+                } else {
+                    docs = source.repository.search(condition, queryEmbed);
+                }
+
+                future.complete(docs == null ? new ArrayList<>() : docs);
+            } catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            } finally {
+                finish();
+            }
+        }
+
+        private synchronized boolean start() {
+            if (cancelled) {
+                return false;
+            }
+
+            thread = Thread.currentThread();
+            return true;
+        }
+
+        private synchronized void finish() {
+            thread = null;
+            //清除取消时留下的中断标记（避免影响线程池的后续任务）
+            Thread.interrupted();
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            future.cancel(true);
+
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * 创建联合知识库
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 知识库来源
+     */
+    private static class Source {
+        final String name;
+        final Repository repository;
+        final EmbeddingModel embeddingModel;
+        final Duration timeout;
+        final double weight;
+
+        Source(String name, Repository repository, EmbeddingModel embeddingModel, Duration timeout, double weight) {
+            this.name = name;
+            this.repository = repository;
+            this.embeddingModel = embeddingModel;
+            this.timeout = timeout;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * 联合知识库构建器
+     */
+    public static class Builder {
+        private final List<Source> sources = new ArrayList<>();
+        private Duration timeout = Duration.ofSeconds(10);
+        private FusionMode fusion = FusionMode.RRF;
+        private int rrfK = RankFusion.DEFAULT_RRF_K;
+        private Executor executor = task -> RunUtil.async(task);
+        private EmbeddingCache embeddingCache;
+
+        /**
+         * 添加知识库
+         */
+        public Builder add(Repository repository) {
+            return add(repository, null);
+        }
+
+        /**
+         * 添加知识库
+         *
+         * @param repository     知识库
+         * @param embeddingModel 知识库所用的嵌入模型（用于共用查询嵌入，知识库不支持传入查询嵌入时不起作用；可为 null）
+         */
+        public Builder add(Repository repository, EmbeddingModel embeddingModel) {
+            return add(repository, embeddingModel, null, 1.0D);
+        }
+
+        /**
+         * 添加知识库
+         *
+         * @param repository     知识库
+         * @param embeddingModel 知识库所用的嵌入模型（用于共用查询嵌入，知识库不支持传入查询嵌入时不起作用；可为 null）
+         * @param timeout        检索超时（为 null 时，使用默认超时）
+         * @param weight         融合权重
+         */
+        public Builder add(Repository repository, EmbeddingModel embeddingModel, Duration timeout, double weight) {
+            String name = repository.getClass().getSimpleName() + "#" + sources.size();
+            sources.add(new Source(name, repository, embeddingModel, timeout, weight));
+            return this;
+        }
+
+        /**
+         * 默认检索超时（默认 10 秒）
+         */
+        public Builder timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * 融合方式（默认 RRF；各知识库的分数口径不同时，RRF 更稳定）
+         */
+        public Builder fusion(FusionMode fusion) {
+            this.fusion = fusion;
+            return this;
+        }
+
+        /**
+         * RRF 常数（默认 60；仅 RRF 融合时有效）
+         */
+        public Builder rrfK(int rrfK) {
+            this.rrfK = rrfK;
+            return this;
+        }
+
+        /**
+         * 查询嵌入缓存（可选；可与 CachedRepository 共用）
+         */
+        public Builder embeddingCache(EmbeddingCache embeddingCache) {
+            this.embeddingCache = embeddingCache;
+            return this;
+        }
+
+        /**
+         * 检索执行器（默认使用 RunUtil 异步执行）
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public FederatedRepository build() {
+            return new FederatedRepository(this);
+        }
+    }
+}
@@ -17,18 +17,37 @@ package org.noear.solon.ai.rag.repository;
 
 import org.noear.solon.Utils;
 import org.noear.solon.ai.embedding.EmbeddingModel;
+import org.noear.solon.ai.embedding.ReusingEmbeddingModel;
 import org.noear.solon.ai.rag.Document;
 import org.noear.solon.ai.rag.RepositoryLifecycle;
 import org.noear.solon.ai.rag.RepositoryStorable;
+import org.noear.solon.ai.rag.repository.inmemory.FullTextIndex;
+import org.noear.solon.ai.rag.repository.inmemory.MetadataIndex;
+import org.noear.solon.ai.rag.repository.inmemory.QuantizedVectorStore;
+import org.noear.solon.ai.rag.repository.inmemory.VectorQuantization;
+import org.noear.solon.ai.rag.util.FusionMode;
+import org.noear.solon.ai.rag.util.HybridSearchParams;
 import org.noear.solon.ai.rag.util.ListUtil;
 import org.noear.solon.ai.rag.util.QueryCondition;
+import org.noear.solon.ai.rag.util.RankFusion;
+import org.noear.solon.ai.rag.util.SearchType;
 import org.noear.solon.ai.rag.util.SimilarityUtil;
+import org.noear.solon.expression.Expression;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Predicate;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 内存存储知识库
@@ -37,11 +56,54 @@ import java.util.function.BiConsumer;
  * @since 3.1
  */
 public class InMemoryRepository implements RepositoryStorable, RepositoryLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(InMemoryRepository.class);
+
     private final EmbeddingModel embeddingModel;
     private final Map<String, Document> store = new ConcurrentHashMap<>();
+    //量化向量存储（为 null 时，使用文档上的全精度向量）
+    private final QuantizedVectorStore vectorStore;
+    private final int rerankFactor;
+    //元数据倒排索引（为 null 时，过滤表达式逐个文档评估）
+    private final MetadataIndex metadataIndex;
+    //全文倒排索引（为 null 时，全文与混合检索退回向量检索）
+    private final FullTextIndex fullTextIndex;
+    private final FusionMode hybridFusion;
+    private final int rrfK;
+    private volatile boolean fullTextWarned;
 
     public InMemoryRepository(EmbeddingModel embeddingModel) {
-        this.embeddingModel = embeddingModel;
+        this(new Builder(embeddingModel));
+    }
+
+    private InMemoryRepository(Builder config) {
+        this.embeddingModel = config.embeddingModel;
+        this.rerankFactor = config.rerankFactor;
+
+        if (config.quantization == null || config.quantization == VectorQuantization.NONE) {
+            this.vectorStore = null;
+        } else {
+            this.vectorStore = new QuantizedVectorStore(config.quantization, config.rerankFile);
+        }
+
+        if (config.metadataIndex) {
+            this.metadataIndex = new MetadataIndex(config.metadataIndexFields);
+        } else {
+            this.metadataIndex = null;
+        }
+
+        if (config.fullTextIndex) {
+            this.fullTextIndex = new FullTextIndex();
+        } else {
+            this.fullTextIndex = null;
+        }
+
+        this.hybridFusion = config.hybridFusion;
+        this.rrfK = config.rrfK;
+    }
+
+    @Override
+    public boolean isEmbeddingReused() {
+        return embeddingModel instanceof ReusingEmbeddingModel;
     }
 
     @Override
@@ -68,13 +130,27 @@ public class InMemoryRepository implements RepositoryStorable, RepositoryLifecyc
         }
     }
 
-    private void batchInsertDo(List<Document> batch) {
+    private void batchInsertDo(List<Document> batch) throws IOException {
         for (Document doc : batch) {
             if (Utils.isEmpty(doc.getId())) {
                 doc.id(Utils.uuid());
             }
 
-            store.put(doc.getId(), doc);
+            if (vectorStore == null) {
+                store.put(doc.getId(), doc);
+            } else {
+                //全精度向量交给量化存储，文档本身不再持有
+                vectorStore.put(doc.getId(), doc.getEmbedding());
+                store.put(doc.getId(), new Document(doc.getId(), doc.getContent(), doc.getMetadata(), 0.0D));
+            }
+
+            if (metadataIndex != null) {
+                metadataIndex.add(doc.getId(), doc.getMetadata());
+            }
+
+            if (fullTextIndex != null) {
+                fullTextIndex.add(doc.getId(), doc.getContent());
+            }
         }
     }
 
@@ -86,12 +162,36 @@ public class InMemoryRepository implements RepositoryStorable, RepositoryLifecyc
     @Override
     public void dropRepository() {
         store.clear();
+
+        if (vectorStore != null) {
+            vectorStore.clear();
+        }
+
+        if (metadataIndex != null) {
+            metadataIndex.clear();
+        }
+
+        if (fullTextIndex != null) {
+            fullTextIndex.clear();
+        }
     }
 
     @Override
     public void deleteById(String... ids) {
         for (String id : ids) {
             store.remove(id);
+
+            if (vectorStore != null) {
+                vectorStore.remove(id);
+            }
+
+            if (metadataIndex != null) {
+                metadataIndex.remove(id);
+            }
+
+            if (fullTextIndex != null) {
+                fullTextIndex.remove(id);
+            }
         }
     }
 
@@ -102,11 +202,269 @@ public class InMemoryRepository implements RepositoryStorable, RepositoryLifecyc
 
     @Override
     public List<Document> search(QueryCondition condition) throws IOException {
-        float[] queryEmbed = embeddingModel.embed(condition.getQuery());
+        return search(condition, null);
+    }
+
+    @Override
+    public boolean isQueryEmbedSupported() {
+        return true;
+    }
+
+    @Override
+    public List<Document> search(QueryCondition condition, float[] queryEmbed) throws IOException {
+        SearchType searchType = condition.getSearchType();
+        if (searchType != SearchType.VECTOR && fullTextIndex == null) {
+            //未开启全文索引时，按向量检索处理（与之前忽略 searchType 的行为保持一致）
+            if (fullTextWarned == false) {
+                fullTextWarned = true;
+                log.warn("The {} search requires full-text index (see: Builder.fullTextIndex(true)), fallback to vector search", searchType);
+            }
+            searchType = SearchType.VECTOR;
+        }
+
+        FilterPlan filterPlan = planFilter(condition);
+
+        if (searchType == SearchType.FULL_TEXT) {
+            List<Document> docs = fullTextSearch(condition.getQuery(), condition.getLimit(), filterPlan);
+            return SimilarityUtil.refilter(normalize(docs).stream(),
+                    condition.getLimit(),
+                    condition.getSimilarityThreshold());
+        }
+
+        if (queryEmbed == null) {
+            queryEmbed = embeddingModel.embed(condition.getQuery());
+        }
+
+        if (searchType == SearchType.HYBRID) {
+            //两路各取更深的候选，融合后再截断（避免单路截断导致的漏召回）
+            int depth = condition.getLimit() * 4;
+            List<Document> vectorDocs = vectorSearch(queryEmbed, depth, filterPlan);
+            List<Document> fullTextDocs = fullTextSearch(condition.getQuery(), depth, filterPlan);
+
+            HybridSearchParams params = condition.getHybridSearchParams();
+            if (params == null) {
+                params = HybridSearchParams.DEFAULT;
+            }
+
+            List<Document> fused = RankFusion.fuse(Arrays.asList(vectorDocs, fullTextDocs),
+                    new double[]{params.getVectorWeight(), params.getFullTextWeight()},
+                    hybridFusion,
+                    rrfK);
+
+            return SimilarityUtil.refilter(fused.stream(),
+                    condition.getLimit(),
+                    condition.getSimilarityThreshold());
+        }
+
+        return SimilarityUtil.refilter(vectorSearch(queryEmbed, condition.getLimit(), filterPlan).stream(),
+                condition.getLimit(),
+                condition.getSimilarityThreshold());
+    }
+
+    /**
+     * 过滤规划（元数据索引预过滤：过滤表达式转为位图运算，只对候选文档评分；非精确时再对候选评估表达式）
+     */
+    private FilterPlan planFilter(QueryCondition condition) {
+        Expression<Boolean> filterExpression = condition.isDisableRefilter() ? null : condition.getFilterExpression();
 
+        MetadataIndex.Plan plan = null;
+        if (metadataIndex != null && filterExpression != null) {
+            plan = metadataIndex.plan(filterExpression);
+            if (plan != null && plan.isExact()) {
+                filterExpression = null;
+            }
+        }
+
+        return new FilterPlan(plan == null ? null : plan.getIds(), filterExpression);
+    }
+
+    private List<Document> vectorSearch(float[] queryEmbed, int limit, FilterPlan filterPlan) {
+        final Expression<Boolean> residualFilter = filterPlan.residualFilter;
+        final Collection<String> candidates = filterPlan.candidates;
+
+        if (vectorStore == null) {
+            Stream<Document> docs = candidates == null ? store.values().stream() :
+                    candidates.stream().map(store::get).filter(Objects::nonNull);
+
+            if (residualFilter != null) {
+                docs = docs.filter(doc -> residualFilter.eval(doc.getMetadata()));
+            }
+
+            return SimilarityUtil.refilter(docs.map(doc -> SimilarityUtil.copyAndScore(doc, queryEmbed)),
+                    limit,
+                    -1.0D);
+        } else {
+            //先过滤，再粗排与重排（避免被过滤的文档占用候选名额）
+            List<QuantizedVectorStore.Hit> hits = vectorStore.search(queryEmbed, limit, rerankFactor,
+                    candidates,
+                    filterPlan.toIdFilter());
+
+            return hits.stream()
+                    .map(hit -> {
+                        Document doc = store.get(hit.getId());
+                        return doc == null ? null : new Document(doc.getId(), doc.getContent(), doc.getMetadata(), hit.getScore());
+                    })
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private List<Document> fullTextSearch(String query, int limit, FilterPlan filterPlan) {
+        List<FullTextIndex.Hit> hits = fullTextIndex.search(query, limit, filterPlan.candidates, filterPlan.toIdFilter());
+
+        return hits.stream()
+                .map(hit -> {
+                    Document doc = store.get(hit.getId());
+                    return doc == null ? null : new Document(doc.getId(), doc.getContent(), doc.getMetadata(), hit.getScore());
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 将 BM25 分数按最高分归一化到 0-1（便于使用相似度阈值）
+     */
+    private static List<Document> normalize(List<Document> docs) {
+        if (docs.isEmpty()) {
+            return docs;
+        }
+
+        double maxScore = docs.get(0).getScore();
+        if (maxScore > 0.0D) {
+            for (Document doc : docs) {
+                doc.score(doc.getScore() / maxScore);
+            }
+        }
+
+        return docs;
+    }
+
+    /**
+     * 过滤规划结果
+     */
+    private class FilterPlan {
+        //候选标识（为 null 时，表示全部）
+        final Collection<String> candidates;
+        //剩余过滤表达式（为 null 时，表示无需再评估）
+        final Expression<Boolean> residualFilter;
+
+        FilterPlan(Collection<String> candidates, Expression<Boolean> residualFilter) {
+            this.candidates = candidates;
+            this.residualFilter = residualFilter;
+        }
+
+        Predicate<String> toIdFilter() {
+            if (residualFilter == null) {
+                return null;
+            }
+
+            return id -> {
+                Document doc = store.get(id);
+                return doc != null && residualFilter.eval(doc.getMetadata());
+            };
+        }
+    }
+
+    /**
+     * 创建内存知识库
+     *
+     * @param embeddingModel 嵌入模型
+     * @since 4.1
+     */
+    public static Builder builder(EmbeddingModel embeddingModel) {
+        return new Builder(embeddingModel);
+    }
+
+    /**
+     * 内存知识库构建器
+     *
+     * @since 4.1
+     */
+    public static class Builder {
+        private final EmbeddingModel embeddingModel;
+        private VectorQuantization quantization = VectorQuantization.NONE;
+        private int rerankFactor = 4;
+        private File rerankFile;
+        private boolean metadataIndex;
+        private List<String> metadataIndexFields;
+        private boolean fullTextIndex;
+        private FusionMode hybridFusion = FusionMode.WEIGHTED_SCORE;
+        private int rrfK = RankFusion.DEFAULT_RRF_K;
+
+        /**
+         * @param embeddingModel 嵌入模型
+         */
+        public Builder(EmbeddingModel embeddingModel) {
+            this.embeddingModel = embeddingModel;
+        }
+
+        /**
+         * 向量量化方式（默认 NONE）
+         */
+        public Builder quantization(VectorQuantization quantization) {
+            this.quantization = quantization;
+            return this;
+        }
+
+        /**
+         * 重排倍数（量化粗排候选数 = limit * rerankFactor；越大召回越高，越慢）
+         */
+        public Builder rerankFactor(int rerankFactor) {
+            this.rerankFactor = rerankFactor;
+            return this;
+        }
 
-        return SimilarityUtil.refilter(store.values().stream()
-                        .map(doc -> SimilarityUtil.copyAndScore(doc, queryEmbed)),
-                condition);
+        /**
+         * 全精度向量的磁盘映射文件（不设置时使用堆外内存）
+         */
+        public Builder rerankFile(File rerankFile) {
+            this.rerankFile = rerankFile;
+            return this;
+        }
+
+        /**
+         * 启用元数据倒排索引（用于过滤表达式预过滤；默认不启用）
+         */
+        public Builder metadataIndex(boolean metadataIndex) {
+            this.metadataIndex = metadataIndex;
+            return this;
+        }
+
+        /**
+         * 启用元数据倒排索引，并限定索引字段（未限定时索引全部字段）
+         */
+        public Builder metadataIndexFields(String... fields) {
+            this.metadataIndex = true;
+            this.metadataIndexFields = Arrays.asList(fields);
+            return this;
+        }
+
+        /**
+         * 启用全文倒排索引（BM25 评分；全文与混合检索需要，未启用时退回向量检索；默认不启用）
+         */
+        public Builder fullTextIndex(boolean fullTextIndex) {
+            this.fullTextIndex = fullTextIndex;
+            return this;
+        }
+
+        /**
+         * 混合检索的融合方式（默认 WEIGHTED_SCORE）
+         */
+        public Builder hybridFusion(FusionMode hybridFusion) {
+            this.hybridFusion = hybridFusion;
+            return this;
+        }
+
+        /**
+         * RRF 常数（默认 60；仅 RRF 融合时有效）
+         */
+        public Builder rrfK(int rrfK) {
+            this.rrfK = rrfK;
+            return this;
+        }
+
+        public InMemoryRepository build() {
+            return new InMemoryRepository(this);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,713 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.rag.repository;
+
+import org.noear.snack4.ONode;
+import org.noear.solon.Utils;
+import org.noear.solon.ai.embedding.EmbeddingModel;
+import org.noear.solon.ai.embedding.ReusingEmbeddingModel;
+import org.noear.solon.ai.rag.Document;
+import org.noear.solon.ai.rag.RepositoryLifecycle;
+import org.noear.solon.ai.rag.RepositoryStorable;
+import org.noear.solon.ai.rag.repository.inmemory.VectorQuantization;
+import org.noear.solon.ai.rag.repository.mapped.RecordLog;
+import org.noear.solon.ai.rag.repository.mapped.VectorColumnFile;
+import org.noear.solon.ai.rag.util.ListUtil;
+import org.noear.solon.ai.rag.util.QuantizationUtil;
+import org.noear.solon.ai.rag.util.QueryCondition;
+import org.noear.solon.expression.Expression;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 内存映射文件知识库（本地持久化，重启后可快速打开）
+ *
+ * <p>向量保存在内存映射的列文件中（连续的 float32 或 int8 数组）；内容与元数据保存在只追加的记录日志中，
+ * 通过偏移索引定位。偏移索引定期做检查点，打开时只需加载检查点并重放之后的日志尾部。
+ * 删除与更新会留下废弃记录，可通过 {@link #compact()} 压缩。
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class MappedFileRepository implements RepositoryStorable, RepositoryLifecycle, Closeable {
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_DELETE = 2;
+    private static final int INDEX_MAGIC = 0x53414958; //SAIX
+
+    private final Builder config;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private int slotCount;
+    private long generation;
+    private int uncheckpointed;
+    private VectorColumnFile vectors;
+    private RecordLog records;
+
+    private MappedFileRepository(Builder config) {
+        this.config = config;
+
+        try {
+            initRepository();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 初始化仓库（打开文件，加载检查点并重放日志尾部）
+     */
+    @Override
+    public void initRepository() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (vectors != null) {
+                return;
+            }
+
+            if (config.dir.exists() == false && config.dir.mkdirs() == false) {
+                throw new IOException("Unable to create directory: " + config.dir);
+            }
+
+            generation = readCurrent();
+            vectors = new VectorColumnFile(file("vectors", ".dat"), config.quantization);
+            records = new RecordLog(file("records", ".log"));
+
+            long from = loadIndex();
+            records.scan(from, this::replay);
+            rebuildFreeSlots();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 注销仓库（删除所有文件，并以空仓库重新打开）
+     */
+    @Override
+    public void dropRepository() throws IOException {
+        lock.writeLock().lock();
+        try {
+            closeFiles();
+
+            File[] files = config.dir.listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    Files.deleteIfExists(f.toPath());
+                }
+            }
+
+            initRepository();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmbeddingReused() {
+        return config.embeddingModel instanceof ReusingEmbeddingModel;
+    }
+
+    @Override
+    public void save(List<Document> documents, BiConsumer<Integer, Integer> progressCallback) throws IOException {
+        if (Utils.isEmpty(documents)) {
+            //回调进度
+            if (progressCallback != null) {
+                progressCallback.accept(0, 0);
+            }
+            return;
+        }
+
+        // 分块处理
+        List<List<Document>> batchList = ListUtil.partition(documents, config.embeddingModel.batchSize());
+        int batchIndex = 0;
+        for (List<Document> batch : batchList) {
+            config.embeddingModel.embed(batch);
+            batchInsertDo(batch);
+
+            //回调进度
+            if (progressCallback != null) {
+                progressCallback.accept(++batchIndex, batchList.size());
+            }
+        }
+    }
+
+    private void batchInsertDo(List<Document> batch) throws IOException {
+        lock.writeLock().lock();
+        try {
+            //先写向量（总是写入新槽位，旧版本在记录提交前保持完整）
+            int[] slots = new int[batch.size()];
+            for (int i = 0; i < batch.size(); i++) {
+                Document doc = batch.get(i);
+                if (Utils.isEmpty(doc.getId())) {
+                    doc.id(Utils.uuid());
+                }
+
+                slots[i] = allocateSlot();
+                vectors.write(slots[i], doc.getEmbedding());
+            }
+
+            if (config.forceOnWrite) {
+                vectors.force();
+            }
+
+            //再追加记录（记录提交后，新版本才可见）
+            long[] offsets = new long[batch.size()];
+            for (int i = 0; i < batch.size(); i++) {
+                offsets[i] = records.append(encodePut(batch.get(i), slots[i]));
+            }
+
+            if (config.forceOnWrite) {
+                records.force();
+            }
+
+            for (int i = 0; i < batch.size(); i++) {
+                Entry old = entries.put(batch.get(i).getId(), new Entry(slots[i], offsets[i]));
+                if (old != null) {
+                    freeSlots.push(old.slot);
+                }
+            }
+
+            afterAppend(batch.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteById(String... ids) throws IOException {
+        if (Utils.isEmpty(ids)) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            int count = 0;
+            for (String id : ids) {
+                Entry old = entries.get(id);
+                if (old != null) {
+                    records.append(encodeDelete(id, old.slot));
+                    count++;
+                }
+            }
+
+            if (count == 0) {
+                return;
+            }
+
+            if (config.forceOnWrite) {
+                records.force();
+            }
+
+            for (String id : ids) {
+                Entry old = entries.remove(id);
+                if (old != null) {
+                    freeSlots.push(old.slot);
+                }
+            }
+
+            afterAppend(count);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean existsById(String id) {
+        lock.readLock().lock();
+        try {
+            return entries.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 文档数量
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Document> search(QueryCondition condition) throws IOException {
+        return search(condition, null);
+    }
+
+    @Override
+    public boolean isQueryEmbedSupported() {
+        return true;
+    }
+
+    @Override
+    public List<Document> search(QueryCondition condition, float[] queryEmbed) throws IOException {
+        if (queryEmbed == null) {
+            queryEmbed = config.embeddingModel.embed(condition.getQuery());
+        }
+        queryEmbed = QuantizationUtil.normalize(queryEmbed);
+        Expression<Boolean> filterExpression = condition.isDisableRefilter() ? null : condition.getFilterExpression();
+
+        lock.readLock().lock();
+        try {
+            if (entries.isEmpty()) {
+                return new ArrayList<>();
+            }
+
+            if (queryEmbed.length != vectors.getDimensions()) {
+                throw new IllegalArgumentException("Embed length must be equal");
+            }
+
+            //向量评分只读映射内存；阈值先于过滤（与 SimilarityUtil.refilter 结果一致）
+            List<Entry> candidates = new ArrayList<>();
+            for (Entry entry : entries.values()) {
+                double score = vectors.score(entry.slot, queryEmbed);
+                if (score >= condition.getSimilarityThreshold()) {
+                    candidates.add(new Entry(entry.slot, entry.offset, score));
+                }
+            }
+
+            candidates.sort((a, b) -> Double.compare(b.score, a.score));
+
+            //按分数顺序读取记录并过滤，直到满足条数
+            List<Document> result = new ArrayList<>();
+            for (Entry entry : candidates) {
+                Document doc = decodeDocument(records.read(entry.offset), entry.score);
+                if (filterExpression == null || filterExpression.eval(doc.getMetadata())) {
+                    result.add(doc);
+
+                    if (result.size() >= condition.getLimit()) {
+                        break;
+                    }
+                }
+            }
+
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 压缩（去除删除与更新留下的废弃记录和槽位）
+     */
+    public void compact() throws IOException {
+        lock.writeLock().lock();
+        try {
+            long nextGeneration = generation + 1;
+            File nextVectorsFile = file("vectors", nextGeneration, ".dat");
+            File nextRecordsFile = file("records", nextGeneration, ".log");
+            Files.deleteIfExists(nextVectorsFile.toPath());
+            Files.deleteIfExists(nextRecordsFile.toPath());
+
+            VectorColumnFile nextVectors = new VectorColumnFile(nextVectorsFile, config.quantization);
+            RecordLog nextRecords = new RecordLog(nextRecordsFile);
+            Map<String, Entry> nextEntries = new HashMap<>();
+
+            try {
+                int slot = 0;
+                for (Map.Entry<String, Entry> kv : entries.entrySet()) {
+                    Entry entry = kv.getValue();
+                    Document doc = decodeDocument(records.read(entry.offset), 0.0D);
+
+                    //直接复制槽位数据（int8 编码不再解码后重新量化）
+                    vectors.copyTo(entry.slot, nextVectors, slot);
+                    long offset = nextRecords.append(encodePut(doc, slot));
+                    nextEntries.put(kv.getKey(), new Entry(slot, offset));
+                    slot++;
+                }
+
+                nextVectors.force();
+                nextRecords.force();
+            } catch (IOException | RuntimeException e) {
+                nextVectors.close();
+                nextRecords.close();
+                throw e;
+            }
+
+            //切换代次（CURRENT 原子替换后，新文件才生效）
+            long prevGeneration = generation;
+            VectorColumnFile prevVectors = vectors;
+            RecordLog prevRecords = records;
+
+            generation = nextGeneration;
+            vectors = nextVectors;
+            records = nextRecords;
+            entries.clear();
+            entries.putAll(nextEntries);
+            slotCount = nextEntries.size();
+            freeSlots.clear();
+
+            writeIndex();
+            writeCurrent();
+
+            prevVectors.close();
+            prevRecords.close();
+            Files.deleteIfExists(file("vectors", prevGeneration, ".dat").toPath());
+            Files.deleteIfExists(file("records", prevGeneration, ".log").toPath());
+            Files.deleteIfExists(file("index", prevGeneration, ".dat").toPath());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 检查点（持久化偏移索引，加快下次打开）
+     */
+    public void checkpoint() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (vectors != null) {
+                vectors.force();
+                records.force();
+                writeIndex();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 关闭（做检查点并释放文件）
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (vectors != null) {
+                checkpoint();
+                closeFiles();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /// ///////////////////////////
+
+    private void afterAppend(int count) throws IOException {
+        uncheckpointed += count;
+        if (config.checkpointInterval > 0 && uncheckpointed >= config.checkpointInterval) {
+            checkpoint();
+        }
+    }
+
+    private int allocateSlot() {
+        Integer slot = freeSlots.poll();
+        if (slot == null) {
+            return slotCount++;
+        } else {
+            return slot;
+        }
+    }
+
+    private void replay(long offset, byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte type = in.readByte();
+        String id = in.readUTF();
+        int slot = in.readInt();
+
+        if (type == TYPE_PUT) {
+            entries.put(id, new Entry(slot, offset));
+            if (slot >= slotCount) {
+                slotCount = slot + 1;
+            }
+        } else if (type == TYPE_DELETE) {
+            entries.remove(id);
+        }
+    }
+
+    private void rebuildFreeSlots() {
+        BitSet used = new BitSet(slotCount);
+        for (Entry entry : entries.values()) {
+            used.set(entry.slot);
+        }
+
+        freeSlots.clear();
+        for (int i = used.nextClearBit(0); i < slotCount; i = used.nextClearBit(i + 1)) {
+            freeSlots.push(i);
+        }
+    }
+
+    private void closeFiles() throws IOException {
+        if (vectors != null) {
+            vectors.close();
+            records.close();
+            vectors = null;
+            records = null;
+        }
+
+        entries.clear();
+        freeSlots.clear();
+        slotCount = 0;
+        uncheckpointed = 0;
+    }
+
+    /// ///////////////////////////
+
+    private long loadIndex() {
+        File indexFile = file("index", ".dat");
+        if (indexFile.exists() == false) {
+            return 0L;
+        }
+
+        try (CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(new FileInputStream(indexFile)), new CRC32());
+             DataInputStream in = new DataInputStream(checked)) {
+            if (in.readInt() != INDEX_MAGIC) {
+                return 0L;
+            }
+
+            long logPosition = in.readLong();
+            int slots = in.readInt();
+            int count = in.readInt();
+
+            Map<String, Entry> tmp = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String id = in.readUTF();
+                int slot = in.readInt();
+                long offset = in.readLong();
+                tmp.put(id, new Entry(slot, offset));
+            }
+
+            long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected || logPosition > records.size()) {
+                return 0L;
+            }
+
+            entries.putAll(tmp);
+            slotCount = slots;
+            return logPosition;
+        } catch (IOException e) {
+            //检查点无效时，重放全部日志
+            entries.clear();
+            slotCount = 0;
+            return 0L;
+        }
+    }
+
+    private void writeIndex() throws IOException {
+        File indexFile = file("index", ".dat");
+        File tmpFile = new File(config.dir, indexFile.getName() + ".tmp");
+
+        try (CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)), new CRC32());
+             DataOutputStream out = new DataOutputStream(checked)) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeLong(records.size());
+            out.writeInt(slotCount);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> kv : entries.entrySet()) {
+                out.writeUTF(kv.getKey());
+                out.writeInt(kv.getValue().slot);
+                out.writeLong(kv.getValue().offset);
+            }
+            out.flush();
+            out.writeLong(checked.getChecksum().getValue());
+        }
+
+        Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        uncheckpointed = 0;
+    }
+
+    private long readCurrent() throws IOException {
+        File current = new File(config.dir, "CURRENT");
+        if (current.exists()) {
+            String text = new String(Files.readAllBytes(current.toPath()), StandardCharsets.UTF_8).trim();
+            return Long.parseLong(text);
+        } else {
+            generation = 1L;
+            writeCurrent();
+            return generation;
+        }
+    }
+
+    private void writeCurrent() throws IOException {
+        File current = new File(config.dir, "CURRENT");
+        File tmpFile = new File(config.dir, "CURRENT.tmp");
+        Files.write(tmpFile.toPath(), String.valueOf(generation).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmpFile.toPath(), current.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private File file(String name, String ext) {
+        return file(name, generation, ext);
+    }
+
+    private File file(String name, long gen, String ext) {
+        return new File(config.dir, name + "-" + gen + ext);
+    }
+
+    /// ///////////////////////////
+
+    private static byte[] encodePut(Document doc, int slot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(TYPE_PUT);
+        out.writeUTF(doc.getId());
+        out.writeInt(slot);
+        writeString(out, doc.getContent());
+        writeString(out, ONode.serialize(doc.getMetadata()));
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeDelete(String id, int slot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(TYPE_DELETE);
+        out.writeUTF(id);
+        out.writeInt(slot);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Document decodeDocument(byte[] body, double score) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        in.readByte();
+        String id = in.readUTF();
+        in.readInt();
+        String content = readString(in);
+        String metadataJson = readString(in);
+
+        Map<String, Object> metadata = metadataJson == null ? null : ONode.deserialize(metadataJson, Map.class);
+        return new Document(id, content, metadata, score);
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        if (str == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class Entry {
+        final int slot;
+        final long offset;
+        final double score;
+
+        Entry(int slot, long offset) {
+            this(slot, offset, 0.0D);
+        }
+
+        Entry(int slot, long offset, double score) {
+            this.slot = slot;
+            this.offset = offset;
+            this.score = score;
+        }
+    }
+
+    /// ///////////////////////////
+
+    /**
+     * 创建内存映射文件知识库
+     *
+     * @param embeddingModel 嵌入模型
+     * @param dir            存储目录
+     */
+    public static Builder builder(EmbeddingModel embeddingModel, File dir) {
+        return new Builder(embeddingModel, dir);
+    }
+
+    /**
+     * 内存映射文件知识库构建器
+     */
+    public static class Builder {
+        private final EmbeddingModel embeddingModel;
+        private final File dir;
+        private VectorQuantization quantization = VectorQuantization.NONE;
+        private boolean forceOnWrite = true;
+        private int checkpointInterval = 10_000;
+
+        /**
+         * @param embeddingModel 嵌入模型
+         * @param dir            存储目录
+         */
+        public Builder(EmbeddingModel embeddingModel, File dir) {
+            this.embeddingModel = embeddingModel;
+            this.dir = dir;
+        }
+
+        /**
+         * 向量编码（NONE 为 float32；INT8 为 int8，约 1/4 大小，评分为近似值）
+         */
+        public Builder quantization(VectorQuantization quantization) {
+            this.quantization = quantization;
+            return this;
+        }
+
+        /**
+         * 每次写入后是否刷盘（默认 true）
+         */
+        public Builder forceOnWrite(boolean forceOnWrite) {
+            this.forceOnWrite = forceOnWrite;
+            return this;
+        }
+
+        /**
+         * 检查点间隔（追加记录数，小于 1 时只在 close 与 compact 时做检查点）
+         */
+        public Builder checkpointInterval(int checkpointInterval) {
+            this.checkpointInterval = checkpointInterval;
+            return this;
+        }
+
+        public MappedFileRepository build() {
+            return new MappedFileRepository(this);
+        }
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.rag.repository.inmemory;
+
+import org.noear.solon.ai.rag.util.TokenizeUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * 全文倒排索引（BM25 评分）
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class FullTextIndex {
+    public static final double DEFAULT_K1 = 1.2D;
+    public static final double DEFAULT_B = 0.75D;
+
+    private final double k1;
+    private final double b;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private String[] ordinalIds = new String[0];
+    private String[][] ordinalTerms = new String[0][];
+    private int[] docLengths = new int[0];
+    private int ordinalCount;
+    private int[] freeOrdinals = new int[16];
+    private int freeCount;
+    private long totalLength;
+
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    public FullTextIndex() {
+        this(DEFAULT_K1, DEFAULT_B);
+    }
+
+    /**
+     * @param k1 词频饱和参数
+     * @param b  文档长度归一化参数
+     */
+    public FullTextIndex(double k1, double b) {
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    /**
+     * 文档数量
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 添加（存在则替换）
+     */
+    public void add(String id, String text) {
+        List<String> tokens = TokenizeUtil.tokenize(text);
+        Map<String, Integer> freqs = new HashMap<>();
+        for (String token : tokens) {
+            freqs.merge(token, 1, Integer::sum);
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeDo(id);
+
+            int ord = allocate();
+            ordinals.put(id, ord);
+            ordinalIds[ord] = id;
+            docLengths[ord] = tokens.size();
+            totalLength += tokens.size();
+
+            String[] terms = new String[freqs.size()];
+            int i = 0;
+            for (Map.Entry<String, Integer> kv : freqs.entrySet()) {
+                postings.computeIfAbsent(kv.getKey(), k -> new Postings()).add(ord, kv.getValue());
+                terms[i++] = kv.getKey();
+            }
+            ordinalTerms[ord] = terms;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除
+     */
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            removeDo(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 清空
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            ordinals.clear();
+            ordinalIds = new String[0];
+            ordinalTerms = new String[0][];
+            docLengths = new int[0];
+            ordinalCount = 0;
+            freeCount = 0;
+            totalLength = 0;
+            postings.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 检索
+     *
+     * @param query      查询文本
+     * @param limit      返回数量
+     * @param candidates 候选标识（为 null 时，检索全部）
+     * @param filter     标识过滤（可为 null）
+     * @return 按 BM25 分数倒序的命中列表
+     */
+    public List<Hit> search(String query, int limit, Collection<String> candidates, Predicate<String> filter) {
+        Set<String> terms = new LinkedHashSet<>(TokenizeUtil.tokenize(query));
+
+        lock.readLock().lock();
+        try {
+            if (terms.isEmpty() || ordinals.isEmpty() || limit < 1) {
+                return new ArrayList<>();
+            }
+
+            //候选集（用位置标记，避免每次查表）
+            boolean[] allowed = null;
+            if (candidates != null) {
+                allowed = new boolean[ordinalCount];
+                for (String id : candidates) {
+                    Integer ord = ordinals.get(id);
+                    if (ord != null) {
+                        allowed[ord] = true;
+                    }
+                }
+            }
+
+            int docCount = ordinals.size();
+            double avgLength = (double) totalLength / docCount;
+            double[] scores = new double[ordinalCount];
+            int[] touched = new int[Math.min(ordinalCount, 1024)];
+            int touchedCount = 0;
+
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list == null) {
+                    continue;
+                }
+
+                double idf = Math.log(1.0D + (docCount - list.size + 0.5D) / (list.size + 0.5D));
+                for (int i = 0; i < list.size; i++) {
+                    int ord = list.ords[i];
+                    if (allowed != null && allowed[ord] == false) {
+                        continue;
+                    }
+
+                    int tf = list.freqs[i];
+                    double norm = k1 * (1.0D - b + b * docLengths[ord] / avgLength);
+                    if (scores[ord] == 0.0D) {
+                        if (touchedCount == touched.length) {
+                            touched = Arrays.copyOf(touched, touched.length * 2);
+                        }
+                        touched[touchedCount++] = ord;
+                    }
+                    scores[ord] += idf * (tf * (k1 + 1.0D)) / (tf + norm);
+                }
+            }
+
+            PriorityQueue<Hit> heap = new PriorityQueue<>(limit + 1, (x, y) -> Double.compare(x.score, y.score));
+            for (int i = 0; i < touchedCount; i++) {
+                int ord = touched[i];
+                double score = scores[ord];
+                if (heap.size() >= limit && score <= heap.peek().score) {
+                    continue;
+                }
+
+                String id = ordinalIds[ord];
+                if (filter != null && filter.test(id) == false) {
+                    continue;
+                }
+
+                heap.add(new Hit(id, score));
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+            }
+
+            List<Hit> hits = new ArrayList<>(heap);
+            hits.sort((x, y) -> Double.compare(y.score, x.score));
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int allocate() {
+        if (freeCount > 0) {
+            return freeOrdinals[--freeCount];
+        }
+
+        int ord = ordinalCount++;
+        if (ord >= ordinalIds.length) {
+            int capacity = Math.max(16, ordinalIds.length * 2);
+            ordinalIds = Arrays.copyOf(ordinalIds, capacity);
+            ordinalTerms = Arrays.copyOf(ordinalTerms, capacity);
+            docLengths = Arrays.copyOf(docLengths, capacity);
+        }
+        return ord;
+    }
+
+    private void removeDo(String id) {
+        Integer ord = ordinals.remove(id);
+        if (ord == null) {
+            return;
+        }
+
+        for (String term : ordinalTerms[ord]) {
+            Postings list = postings.get(term);
+            if (list != null) {
+                list.remove(ord);
+                if (list.size == 0) {
+                    postings.remove(term);
+                }
+            }
+        }
+
+        totalLength -= docLengths[ord];
+        ordinalIds[ord] = null;
+        ordinalTerms[ord] = null;
+        docLengths[ord] = 0;
+
+        if (freeCount == freeOrdinals.length) {
+            freeOrdinals = Arrays.copyOf(freeOrdinals, freeOrdinals.length * 2);
+        }
+        freeOrdinals[freeCount++] = ord;
+    }
+
+    /**
+     * 命中
+     */
+    public static class Hit {
+        private final String id;
+        private final double score;
+
+        private Hit(String id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        /**
+         * 标识
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * 评分（BM25）
+         */
+        public double getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * 倒排表（文档位置与词频，无序）
+     */
+    private static class Postings {
+        int[] ords = new int[4];
+        int[] freqs = new int[4];
+        int size;
+
+        void add(int ord, int freq) {
+            if (size == ords.length) {
+                ords = Arrays.copyOf(ords, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+
+            ords[size] = ord;
+            freqs[size] = freq;
+            size++;
+        }
+
+        void remove(int ord) {
+            for (int i = 0; i < size; i++) {
+                if (ords[i] == ord) {
+                    //与末尾交换后删除
+                    size--;
+                    ords[i] = ords[size];
+                    freqs[i] = freqs[size];
+                    return;
+                }
+            }
+        }
+    }
+}
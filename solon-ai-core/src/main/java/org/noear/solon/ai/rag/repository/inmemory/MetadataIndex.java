@@ -0,0 +1,529 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.rag.repository.inmemory;
+
+import org.noear.solon.expression.Expression;
+import org.noear.solon.expression.snel.ComparisonNode;
+import org.noear.solon.expression.snel.ComparisonOp;
+import org.noear.solon.expression.snel.ConstantNode;
+import org.noear.solon.expression.snel.LogicalNode;
+import org.noear.solon.expression.snel.LogicalOp;
+import org.noear.solon.expression.snel.VariableNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 元数据倒排索引（字段值 -> 文档位图，数值字段另有有序区间索引）
+ *
+ * <p>用于把过滤表达式预先转换为位图运算，在向量评分前缩小候选集。不支持的表达式返回 null（由调用方全量评估）；
+ * 非精确的计划（候选集为超集）需要调用方再对候选集评估表达式。
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class MetadataIndex {
+    private final Set<String> fields;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private String[] ordinalIds = new String[0];
+    private Object[][] ordinalTerms = new Object[0][];
+    private final BitSet live = new BitSet();
+    private int ordinalCount;
+    private int[] freeOrdinals = new int[16];
+    private int freeCount;
+
+    private final Map<String, FieldIndex> fieldIndexes = new HashMap<>();
+
+    /**
+     * @param fields 索引字段（为 null 或空时，索引全部字段）
+     */
+    public MetadataIndex(Collection<String> fields) {
+        if (fields == null || fields.isEmpty()) {
+            this.fields = null;
+        } else {
+            this.fields = new HashSet<>(fields);
+        }
+    }
+
+    /**
+     * 添加（存在则替换）
+     */
+    public void add(String id, Map<String, Object> metadata) {
+        lock.writeLock().lock();
+        try {
+            removeDo(id);
+
+            int ord = allocate();
+            ordinals.put(id, ord);
+            ordinalIds[ord] = id;
+            live.set(ord);
+
+            List<Object> terms = new ArrayList<>();
+            if (metadata != null) {
+                for (Map.Entry<String, Object> kv : metadata.entrySet()) {
+                    if (fields != null && fields.contains(kv.getKey()) == false) {
+                        continue;
+                    }
+
+                    fieldIndexes.computeIfAbsent(kv.getKey(), k -> new FieldIndex()).add(ord, kv.getValue());
+                    terms.add(kv.getKey());
+                    terms.add(kv.getValue());
+                }
+            }
+
+            ordinalTerms[ord] = terms.toArray();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除
+     */
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            removeDo(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 清空
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            ordinals.clear();
+            ordinalIds = new String[0];
+            ordinalTerms = new Object[0][];
+            live.clear();
+            ordinalCount = 0;
+            freeCount = 0;
+            fieldIndexes.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 规划过滤表达式
+     *
+     * @return 候选计划（为 null 表示不支持，需全量评估）
+     */
+    public Plan plan(Expression<Boolean> filterExpression) {
+        if (filterExpression == null) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            Bits bits = planDo(filterExpression);
+            if (bits == null) {
+                return null;
+            }
+
+            bits.set.and(live);
+
+            List<String> ids = new ArrayList<>(bits.set.cardinality());
+            for (int ord = bits.set.nextSetBit(0); ord >= 0; ord = bits.set.nextSetBit(ord + 1)) {
+                ids.add(ordinalIds[ord]);
+            }
+
+            return new Plan(ids, bits.exact);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /// ///////////////////////////
+
+    private Bits planDo(Expression<Boolean> expr) {
+        if (expr instanceof ComparisonNode) {
+            return planComparison((ComparisonNode) expr);
+        } else if (expr instanceof LogicalNode) {
+            LogicalNode node = (LogicalNode) expr;
+            LogicalOp operator = node.getOperator();
+
+            if (node.getRight() != null) {
+                Bits left = planDo(node.getLeft());
+                Bits right = planDo(node.getRight());
+
+                switch (operator) {
+                    case AND:
+                        //一侧不支持时，用另一侧作为候选超集
+                        if (left == null && right == null) {
+                            return null;
+                        } else if (left == null) {
+                            return new Bits(right.set, false);
+                        } else if (right == null) {
+                            return new Bits(left.set, false);
+                        } else {
+                            left.set.and(right.set);
+                            return new Bits(left.set, left.exact && right.exact);
+                        }
+                    case OR:
+                        if (left == null || right == null) {
+                            return null;
+                        } else {
+                            left.set.or(right.set);
+                            return new Bits(left.set, left.exact && right.exact);
+                        }
+                    default:
+                        return null;
+                }
+            } else if (operator == LogicalOp.NOT) {
+                //只有精确的子计划才能取补集
+                Bits inner = planDo(node.getLeft());
+                if (inner == null || inner.exact == false) {
+                    return null;
+                }
+
+                BitSet set = (BitSet) live.clone();
+                set.andNot(inner.set);
+                return new Bits(set, true);
+            }
+        }
+
+        return null;
+    }
+
+    private Bits planComparison(ComparisonNode node) {
+        ComparisonOp operator = node.getOperator();
+        String fieldName;
+        Object value;
+
+        if (node.getLeft() instanceof VariableNode && node.getRight() instanceof ConstantNode) {
+            fieldName = ((VariableNode) node.getLeft()).getName();
+            value = ((ConstantNode) node.getRight()).getValue();
+        } else if (node.getRight() instanceof VariableNode && node.getLeft() instanceof ConstantNode) {
+            fieldName = ((VariableNode) node.getRight()).getName();
+            value = ((ConstantNode) node.getLeft()).getValue();
+            operator = reverseOperator(operator);
+        } else {
+            return null;
+        }
+
+        if (fields != null && fields.contains(fieldName) == false) {
+            return null;
+        }
+
+        FieldIndex field = fieldIndexes.get(fieldName);
+        if (field == null) {
+            field = FieldIndex.EMPTY;
+        }
+
+        switch (operator) {
+            case eq:
+                return field.eq(value);
+            case neq:
+                return complement(field.eq(value), field);
+            case in:
+                return field.in(value);
+            case nin:
+                return complement(field.in(value), field);
+            case gt:
+                return field.range(value, false, true);
+            case gte:
+                return field.range(value, true, true);
+            case lt:
+                return field.range(value, false, false);
+            case lte:
+                return field.range(value, true, false);
+            default:
+                return null;
+        }
+    }
+
+    private Bits complement(Bits bits, FieldIndex field) {
+        if (bits == null || bits.exact == false) {
+            return null;
+        }
+
+        BitSet set = (BitSet) live.clone();
+        set.andNot(bits.set);
+        //缺失字段的文档也在补集中，其判定以表达式为准（非精确）
+        set.or(field.unindexed);
+        return new Bits(set, false);
+    }
+
+    private ComparisonOp reverseOperator(ComparisonOp op) {
+        switch (op) {
+            case gt:
+                return ComparisonOp.lt;
+            case gte:
+                return ComparisonOp.lte;
+            case lt:
+                return ComparisonOp.gt;
+            case lte:
+                return ComparisonOp.gte;
+            default:
+                return op;
+        }
+    }
+
+    private int allocate() {
+        if (freeCount > 0) {
+            return freeOrdinals[--freeCount];
+        }
+
+        int ord = ordinalCount++;
+        if (ord >= ordinalIds.length) {
+            int capacity = Math.max(16, ordinalIds.length * 2);
+            ordinalIds = Arrays.copyOf(ordinalIds, capacity);
+            ordinalTerms = Arrays.copyOf(ordinalTerms, capacity);
+        }
+        return ord;
+    }
+
+    private void removeDo(String id) {
+        Integer ord = ordinals.remove(id);
+        if (ord == null) {
+            return;
+        }
+
+        Object[] terms = ordinalTerms[ord];
+        for (int i = 0; i < terms.length; i += 2) {
+            FieldIndex field = fieldIndexes.get((String) terms[i]);
+            if (field != null) {
+                field.remove(ord, terms[i + 1]);
+            }
+        }
+
+        ordinalIds[ord] = null;
+        ordinalTerms[ord] = null;
+        live.clear(ord);
+
+        if (freeCount == freeOrdinals.length) {
+            freeOrdinals = Arrays.copyOf(freeOrdinals, freeOrdinals.length * 2);
+        }
+        freeOrdinals[freeCount++] = ord;
+    }
+
+    /// ///////////////////////////
+
+    /**
+     * 过滤计划
+     */
+    public static class Plan {
+        private final List<String> ids;
+        private final boolean exact;
+
+        private Plan(List<String> ids, boolean exact) {
+            this.ids = Collections.unmodifiableList(ids);
+            this.exact = exact;
+        }
+
+        /**
+         * 候选文档标识
+         */
+        public List<String> getIds() {
+            return ids;
+        }
+
+        /**
+         * 是否精确（为 false 时，候选集为超集，需再评估表达式）
+         */
+        public boolean isExact() {
+            return exact;
+        }
+    }
+
+    private static class Bits {
+        final BitSet set;
+        final boolean exact;
+
+        Bits(BitSet set, boolean exact) {
+            this.set = set;
+            this.exact = exact;
+        }
+    }
+
+    /**
+     * 单字段索引
+     */
+    private static class FieldIndex {
+        static final FieldIndex EMPTY = new FieldIndex();
+
+        //字符串与布尔：精确匹配
+        final Map<Object, BitSet> terms = new HashMap<>();
+        //数值（含可转为数值的字符串，与表达式的字符串、数值转换一致）：按 double 排序（同时用于等值与区间）
+        final NavigableMap<Double, BitSet> numbers = new TreeMap<>();
+        //不可转为数值的字符串（区间比较的语义以表达式为准，只作为超集）
+        final BitSet texts = new BitSet();
+        //无法索引的值（如集合、日期等）
+        final BitSet unindexed = new BitSet();
+
+        void add(int ord, Object value) {
+            if (value instanceof Number || value instanceof String || value instanceof Boolean) {
+                if (value instanceof Number == false) {
+                    terms.computeIfAbsent(value, k -> new BitSet()).set(ord);
+                }
+
+                Double number = toNumber(value);
+                if (number != null) {
+                    numbers.computeIfAbsent(number, k -> new BitSet()).set(ord);
+                } else if (value instanceof String) {
+                    texts.set(ord);
+                }
+            } else {
+                unindexed.set(ord);
+            }
+        }
+
+        void remove(int ord, Object value) {
+            if (value instanceof Number || value instanceof String || value instanceof Boolean) {
+                if (value instanceof Number == false) {
+                    clear(terms, value, ord);
+                }
+
+                Double number = toNumber(value);
+                if (number != null) {
+                    clear(numbers, number, ord);
+                } else if (value instanceof String) {
+                    texts.clear(ord);
+                }
+            } else {
+                unindexed.clear(ord);
+            }
+        }
+
+        Bits eq(Object value) {
+            BitSet set = new BitSet();
+            boolean exact;
+
+            if (value instanceof Number || value instanceof String || value instanceof Boolean) {
+                if (value instanceof Number == false) {
+                    BitSet found = terms.get(value);
+                    if (found != null) {
+                        set.or(found);
+                    }
+                }
+
+                Double number = toNumber(value);
+                if (number != null) {
+                    //数值的相等语义以表达式为准（如 1 与 1.0，"5" 与 5），位图只作为超集
+                    BitSet found = numbers.get(number);
+                    if (found != null) {
+                        set.or(found);
+                    }
+                    exact = false;
+                } else {
+                    exact = unindexed.isEmpty();
+                }
+            } else {
+                return null;
+            }
+
+            set.or(unindexed);
+            return new Bits(set, exact);
+        }
+
+        Bits in(Object value) {
+            if (value instanceof Collection == false) {
+                return eq(value);
+            }
+
+            BitSet set = new BitSet();
+            boolean exact = true;
+            for (Object item : (Collection<?>) value) {
+                Bits bits = eq(item);
+                if (bits == null) {
+                    return null;
+                }
+
+                set.or(bits.set);
+                exact = exact && bits.exact;
+            }
+
+            set.or(unindexed);
+            return new Bits(set, exact);
+        }
+
+        Bits range(Object value, boolean inclusive, boolean upward) {
+            Double bound = (value instanceof Boolean ? null : toNumber(value));
+            if (bound == null) {
+                return null;
+            }
+
+            NavigableMap<Double, BitSet> sub = upward ? numbers.tailMap(bound, inclusive) : numbers.headMap(bound, inclusive);
+
+            BitSet set = new BitSet();
+            for (BitSet bits : sub.values()) {
+                set.or(bits);
+            }
+
+            set.or(texts);
+            set.or(unindexed);
+            return new Bits(set, false);
+        }
+
+        private static <K> void clear(Map<K, BitSet> map, K key, int ord) {
+            BitSet set = map.get(key);
+            if (set != null) {
+                set.clear(ord);
+                if (set.isEmpty()) {
+                    map.remove(key);
+                }
+            }
+        }
+
+        /**
+         * 转为数值（数值，或可解析为有限数值的字符串；否则为 null）
+         */
+        private static Double toNumber(Object value) {
+            if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            }
+
+            if (value instanceof String) {
+                String str = ((String) value).trim();
+                if (str.isEmpty()) {
+                    return null;
+                }
+
+                char c = str.charAt(str.length() - 1);
+                if (Character.isDigit(c) == false && c != '.') {
+                    //排除 Infinity、NaN 以及 1d、1f 之类的后缀写法
+                    return null;
+                }
+
+                try {
+                    double number = Double.parseDouble(str);
+                    return Double.isInfinite(number) || Double.isNaN(number) ? null : number;
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+
+            return null;
+        }
+    }
+}
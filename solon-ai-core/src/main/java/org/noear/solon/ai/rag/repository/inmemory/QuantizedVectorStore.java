@@ -0,0 +1,455 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.rag.repository.inmemory;
+
+import org.noear.solon.ai.rag.util.BufferUtil;
+import org.noear.solon.ai.rag.util.QuantizationUtil;
+import org.noear.solon.ai.rag.util.SimilarityUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * 量化向量存储
+ *
+ * <p>量化编码保存在堆内的分页基本类型数组中，用于快速粗排；全精度向量（已归一化）保存在堆外内存或磁盘映射文件中，仅用于候选集重排。
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class QuantizedVectorStore {
+    public static final int DEFAULT_PAGE_SIZE = 1024;
+
+    private final VectorQuantization quantization;
+    private final File rerankFile;
+    private final int pageSize;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> slotMap = new HashMap<>();
+    private String[] slotIds = new String[0];
+    private int slotCount;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+
+    private int dimensions;
+    private int binaryWords;
+    private final List<byte[]> codePages = new ArrayList<>();
+    private float[] scales = new float[0];
+    private final List<long[]> bitPages = new ArrayList<>();
+    private final List<FloatBuffer> floatPages = new ArrayList<>();
+    //全精度向量页的原始缓冲（用于及时释放）
+    private final List<ByteBuffer> rawPages = new ArrayList<>();
+    private RandomAccessFile rerankRaf;
+
+    /**
+     * @param quantization 量化方式（INT8 或 BINARY）
+     * @param rerankFile   全精度向量的磁盘映射文件（为 null 时使用堆外内存）
+     */
+    public QuantizedVectorStore(VectorQuantization quantization, File rerankFile) {
+        this(quantization, rerankFile, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * @param quantization 量化方式（INT8 或 BINARY）
+     * @param rerankFile   全精度向量的磁盘映射文件（为 null 时使用堆外内存）
+     * @param pageSize     每页向量数
+     */
+    public QuantizedVectorStore(VectorQuantization quantization, File rerankFile, int pageSize) {
+        if (quantization == null || quantization == VectorQuantization.NONE) {
+            throw new IllegalArgumentException("The quantization must be INT8 or BINARY");
+        }
+
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("The pageSize must be greater than 0");
+        }
+
+        this.quantization = quantization;
+        this.rerankFile = rerankFile;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * 量化方式
+     */
+    public VectorQuantization getQuantization() {
+        return quantization;
+    }
+
+    /**
+     * 维度（未存入时为 0）
+     */
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * 向量数量
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotMap.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 是否包含
+     */
+    public boolean contains(String id) {
+        lock.readLock().lock();
+        try {
+            return slotMap.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 堆内占用字节数（量化编码与缩放系数，估算值）
+     */
+    public long heapBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = (long) scales.length * 4;
+            for (byte[] page : codePages) {
+                bytes += page.length;
+            }
+            for (long[] page : bitPages) {
+                bytes += (long) page.length * 8;
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 堆外（或磁盘映射）占用字节数（全精度向量）
+     */
+    public long offHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) floatPages.size() * pageSize * dimensions * 4;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 存入（存在则覆盖）
+     *
+     * @param id    标识
+     * @param embed 全精度向量
+     */
+    public void put(String id, float[] embed) throws IOException {
+        float[] normalized = QuantizationUtil.normalize(embed);
+
+        lock.writeLock().lock();
+        try {
+            if (dimensions == 0) {
+                dimensions = normalized.length;
+                binaryWords = QuantizationUtil.binaryWords(dimensions);
+            } else if (dimensions != normalized.length) {
+                throw new IllegalArgumentException("Embed length must be equal");
+            }
+
+            Integer slot = slotMap.get(id);
+            if (slot == null) {
+                slot = allocateSlot();
+                slotIds[slot] = id;
+                slotMap.put(id, slot);
+            }
+
+            int page = slot / pageSize;
+            int index = slot % pageSize;
+
+            if (quantization == VectorQuantization.INT8) {
+                scales[slot] = QuantizationUtil.quantizeInt8(normalized, codePages.get(page), index * dimensions);
+            } else {
+                QuantizationUtil.quantizeBinary(normalized, bitPages.get(page), index * binaryWords);
+            }
+
+            FloatBuffer floats = floatPages.get(page);
+            int base = index * dimensions;
+            for (int i = 0; i < dimensions; i++) {
+                floats.put(base + i, normalized[i]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除
+     */
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotMap.remove(id);
+            if (slot != null) {
+                slotIds[slot] = null;
+
+                if (freeCount == freeSlots.length) {
+                    freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+                }
+                freeSlots[freeCount++] = slot;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 清空（释放堆外内存与文件映射，并截断映射文件）
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            slotMap.clear();
+            slotIds = new String[0];
+            slotCount = 0;
+            freeCount = 0;
+            dimensions = 0;
+            binaryWords = 0;
+            codePages.clear();
+            scales = new float[0];
+            bitPages.clear();
+            floatPages.clear();
+
+            for (ByteBuffer buffer : rawPages) {
+                BufferUtil.release(buffer);
+            }
+            rawPages.clear();
+
+            if (rerankRaf != null) {
+                try {
+                    //映射已释放，截断文件以归还磁盘空间（之后按需从头重新映射）
+                    rerankRaf.setLength(0L);
+                } catch (IOException ignore) {
+                    //忽略（如映射未能释放）
+                }
+
+                try {
+                    rerankRaf.close();
+                } catch (IOException ignore) {
+                    //忽略
+                }
+                rerankRaf = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 检索（量化编码粗排 + 全精度重排）
+     *
+     * @param query        查询向量
+     * @param limit        返回数量
+     * @param rerankFactor 重排倍数（粗排候选数 = limit * rerankFactor）
+     * @param filter       标识过滤（可为 null）
+     * @return 按余弦相似度倒序的命中列表
+     */
+    public List<Hit> search(float[] query, int limit, int rerankFactor, Predicate<String> filter) {
+        return search(query, limit, rerankFactor, null, filter);
+    }
+
+    /**
+     * 检索（量化编码粗排 + 全精度重排）
+     *
+     * @param query        查询向量
+     * @param limit        返回数量
+     * @param rerankFactor 重排倍数（粗排候选数 = limit * rerankFactor）
+     * @param candidates   候选标识（为 null 时，检索全部）
+     * @param filter       标识过滤（可为 null）
+     * @return 按余弦相似度倒序的命中列表
+     * @since 4.1
+     */
+    public List<Hit> search(float[] query, int limit, int rerankFactor, Collection<String> candidates, Predicate<String> filter) {
+        lock.readLock().lock();
+        try {
+            if (slotMap.isEmpty() || limit < 1) {
+                return new ArrayList<>();
+            }
+
+            if (query.length != dimensions) {
+                throw new IllegalArgumentException("Embed length must be equal");
+            }
+
+            float[] normalized = QuantizationUtil.normalize(query);
+            int candidateSize = limit * Math.max(1, rerankFactor);
+
+            //粗排：只保留得分最高的候选
+            PriorityQueue<Hit> heap = new PriorityQueue<>(candidateSize + 1, (a, b) -> Double.compare(a.score, b.score));
+            long[] queryBits = null;
+            if (quantization == VectorQuantization.BINARY) {
+                queryBits = new long[binaryWords];
+                QuantizationUtil.quantizeBinary(normalized, queryBits, 0);
+            }
+
+            if (candidates == null) {
+                for (int slot = 0; slot < slotCount; slot++) {
+                    roughScore(slotIds[slot], slot, normalized, queryBits, filter, heap, candidateSize);
+                }
+            } else {
+                for (String id : candidates) {
+                    Integer slot = slotMap.get(id);
+                    if (slot != null) {
+                        roughScore(id, slot, normalized, queryBits, filter, heap, candidateSize);
+                    }
+                }
+            }
+
+            //重排：使用全精度向量（已归一化，点积即余弦相似度）
+            List<Hit> hits = new ArrayList<>(heap);
+            float[] buf = new float[dimensions];
+            for (Hit hit : hits) {
+                FloatBuffer floats = floatPages.get(hit.slot / pageSize);
+                int base = (hit.slot % pageSize) * dimensions;
+                for (int i = 0; i < dimensions; i++) {
+                    buf[i] = floats.get(base + i);
+                }
+                hit.score = SimilarityUtil.dotProduct(normalized, buf);
+            }
+
+            hits.sort((a, b) -> Double.compare(b.score, a.score));
+            if (hits.size() > limit) {
+                return new ArrayList<>(hits.subList(0, limit));
+            } else {
+                return hits;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void roughScore(String id, int slot, float[] normalized, long[] queryBits, Predicate<String> filter,
+                            PriorityQueue<Hit> heap, int candidateSize) {
+        if (id == null) {
+            return;
+        }
+
+        if (filter != null && filter.test(id) == false) {
+            return;
+        }
+
+        int page = slot / pageSize;
+        int index = slot % pageSize;
+        float score;
+        if (queryBits == null) {
+            score = QuantizationUtil.dotInt8(normalized, codePages.get(page), index * dimensions, scales[slot]);
+        } else {
+            score = QuantizationUtil.hammingSimilarity(queryBits, bitPages.get(page), index * binaryWords, dimensions);
+        }
+
+        if (heap.size() < candidateSize) {
+            heap.add(new Hit(id, slot, score));
+        } else if (score > heap.peek().score) {
+            heap.poll();
+            heap.add(new Hit(id, slot, score));
+        }
+    }
+
+    private int allocateSlot() throws IOException {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+
+        int slot = slotCount++;
+        if (slot >= slotIds.length) {
+            int capacity = Math.max(pageSize, slotIds.length * 2);
+            slotIds = Arrays.copyOf(slotIds, capacity);
+            if (quantization == VectorQuantization.INT8) {
+                scales = Arrays.copyOf(scales, capacity);
+            }
+        }
+
+        if (slot / pageSize >= floatPages.size()) {
+            addPage();
+        }
+
+        return slot;
+    }
+
+    private void addPage() throws IOException {
+        if (quantization == VectorQuantization.INT8) {
+            codePages.add(new byte[pageSize * dimensions]);
+        } else {
+            bitPages.add(new long[pageSize * binaryWords]);
+        }
+
+        int pageBytes = pageSize * dimensions * 4;
+        ByteBuffer buffer;
+        if (rerankFile == null) {
+            buffer = ByteBuffer.allocateDirect(pageBytes);
+        } else {
+            if (rerankRaf == null) {
+                rerankRaf = new RandomAccessFile(rerankFile, "rw");
+            }
+
+            long position = (long) floatPages.size() * pageBytes;
+            buffer = rerankRaf.getChannel().map(FileChannel.MapMode.READ_WRITE, position, pageBytes);
+        }
+
+        rawPages.add(buffer);
+        floatPages.add(buffer.order(ByteOrder.nativeOrder()).asFloatBuffer());
+    }
+
+    /**
+     * 命中
+     */
+    public static class Hit {
+        private final String id;
+        private final int slot;
+        private double score;
+
+        private Hit(String id, int slot, double score) {
+            this.id = id;
+            this.slot = slot;
+            this.score = score;
+        }
+
+        /**
+         * 标识
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * 评分（余弦相似度）
+         */
+        public double getScore() {
+            return score;
+        }
+    }
+}
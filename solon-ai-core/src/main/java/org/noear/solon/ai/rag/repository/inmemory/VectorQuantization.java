@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.rag.repository.inmemory;
+
+/**
+ * 向量量化方式
+ *
+ * @author noear
+ * @since 4.1
+ */
+public enum VectorQuantization {
+    /**
+     * 不量化（全精度向量保留在文档上）
+     */
+    NONE,
+
+    /**
+     * 标量 int8 量化（约 1/4 内存）
+     */
+    INT8,
+
+    /**
+     * 1-bit 二值量化（约 1/32 内存）
+     */
+    BINARY
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.rag.repository.mapped;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * 只追加记录日志（每条记录：int 长度 + int CRC32 + 内容）
+ *
+ * <p>打开时若尾部记录不完整或校验失败（崩溃时的半写），会截断到最后一条有效记录。
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class RecordLog implements Closeable {
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private long size;
+
+    public RecordLog(File file) throws IOException {
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = raf.getChannel();
+        this.size = channel.size();
+    }
+
+    /**
+     * 当前大小（即下一条记录的偏移）
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * 追加记录
+     *
+     * @return 记录偏移
+     */
+    public long append(byte[] body) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+
+        ByteBuffer buf = ByteBuffer.allocate(RECORD_HEADER_SIZE + body.length);
+        buf.putInt(body.length).putInt((int) crc.getValue()).put(body);
+        buf.flip();
+
+        long offset = size;
+        while (buf.hasRemaining()) {
+            channel.write(buf, offset + buf.position());
+        }
+        size = offset + RECORD_HEADER_SIZE + body.length;
+
+        return offset;
+    }
+
+    /**
+     * 读取记录内容
+     *
+     * @param offset 记录偏移
+     */
+    public byte[] read(long offset) throws IOException {
+        byte[] body = readValid(offset);
+        if (body == null) {
+            throw new IOException("Invalid record at offset: " + offset);
+        }
+        return body;
+    }
+
+    /**
+     * 从指定位置开始扫描有效记录（遇到无效记录时截断日志）
+     *
+     * @param from    开始偏移
+     * @param visitor 访问器
+     */
+    public void scan(long from, RecordVisitor visitor) throws IOException {
+        long offset = from;
+        while (offset < size) {
+            byte[] body = readValid(offset);
+            if (body == null) {
+                //半写或损坏的尾部记录，截断
+                channel.truncate(offset);
+                size = offset;
+                break;
+            }
+
+            visitor.visit(offset, body);
+            offset += RECORD_HEADER_SIZE + body.length;
+        }
+    }
+
+    /**
+     * 刷盘
+     */
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+    }
+
+    private byte[] readValid(long offset) throws IOException {
+        if (offset + RECORD_HEADER_SIZE > size) {
+            return null;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        readFully(header, offset);
+        header.flip();
+
+        int length = header.getInt();
+        int checksum = header.getInt();
+        if (length < 0 || offset + RECORD_HEADER_SIZE + length > size) {
+            return null;
+        }
+
+        ByteBuffer body = ByteBuffer.allocate(length);
+        readFully(body, offset + RECORD_HEADER_SIZE);
+
+        CRC32 crc = new CRC32();
+        crc.update(body.array(), 0, length);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+
+        return body.array();
+    }
+
+    private void readFully(ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 记录访问器
+     */
+    @FunctionalInterface
+    public interface RecordVisitor {
+        void visit(long offset, byte[] body) throws IOException;
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.rag.repository.mapped;
+
+import org.noear.solon.ai.rag.repository.inmemory.VectorQuantization;
+import org.noear.solon.ai.rag.util.BufferUtil;
+import org.noear.solon.ai.rag.util.QuantizationUtil;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 向量列文件（内存映射，按槽位连续存放已归一化的 float32 或 int8 向量）
+ *
+ * <p>文件结构：16 字节文件头（magic, version, dimensions, encoding），之后按段映射槽位数据。
+ * 打开时只做映射，不把向量复制到堆内。
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class VectorColumnFile implements Closeable {
+    private static final int MAGIC = 0x53414956; //SAIV
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOTS_PER_SEGMENT = 8192;
+
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final VectorQuantization quantization;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private int dimensions;
+    private int slotBytes;
+
+    /**
+     * @param file         文件
+     * @param quantization 编码（NONE 为 float32，INT8 为 int8 + 缩放系数）
+     */
+    public VectorColumnFile(File file, VectorQuantization quantization) throws IOException {
+        if (quantization == VectorQuantization.BINARY) {
+            throw new IllegalArgumentException("The quantization must be NONE or INT8");
+        }
+
+        this.quantization = quantization == null ? VectorQuantization.NONE : quantization;
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = raf.getChannel();
+
+        if (channel.size() >= HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            header.flip();
+
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                close();
+                throw new IOException("Invalid vector file: " + file);
+            }
+
+            int dims = header.getInt();
+            int encoding = header.getInt();
+            if (encoding != this.quantization.ordinal()) {
+                close();
+                throw new IOException("The vector file encoding does not match: " + file);
+            }
+
+            initDimensions(dims);
+
+            long segmentCount = (channel.size() - HEADER_SIZE + segmentBytes() - 1) / segmentBytes();
+            for (int i = 0; i < segmentCount; i++) {
+                mapSegment(i);
+            }
+        }
+    }
+
+    /**
+     * 维度（未写入时为 0）
+     */
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * 编码
+     */
+    public VectorQuantization getQuantization() {
+        return quantization;
+    }
+
+    /**
+     * 写入槽位（向量会先归一化）
+     */
+    public void write(int slot, float[] embed) throws IOException {
+        float[] normalized = QuantizationUtil.normalize(embed);
+
+        ByteBuffer buf = segmentFor(slot, normalized.length);
+        int base = (slot % SLOTS_PER_SEGMENT) * slotBytes;
+
+        if (quantization == VectorQuantization.INT8) {
+            byte[] codes = new byte[dimensions];
+            float scale = QuantizationUtil.quantizeInt8(normalized, codes, 0);
+            buf.putFloat(base, scale);
+            for (int i = 0; i < dimensions; i++) {
+                buf.put(base + 4 + i, codes[i]);
+            }
+        } else {
+            for (int i = 0; i < dimensions; i++) {
+                buf.putFloat(base + i * 4, normalized[i]);
+            }
+        }
+    }
+
+    /**
+     * 复制槽位的原始数据到另一个文件（编码须相同；int8 编码直接复制码值与缩放系数，不再重新量化）
+     *
+     * @param slot       槽位
+     * @param target     目标文件
+     * @param targetSlot 目标槽位
+     */
+    public void copyTo(int slot, VectorColumnFile target, int targetSlot) throws IOException {
+        if (target.quantization != quantization) {
+            throw new IllegalArgumentException("The quantization must be equal");
+        }
+
+        ByteBuffer src = segments.get(slot / SLOTS_PER_SEGMENT);
+        int srcBase = (slot % SLOTS_PER_SEGMENT) * slotBytes;
+
+        ByteBuffer dst = target.segmentFor(targetSlot, dimensions);
+        int dstBase = (targetSlot % SLOTS_PER_SEGMENT) * target.slotBytes;
+
+        for (int i = 0; i < slotBytes; i++) {
+            dst.put(dstBase + i, src.get(srcBase + i));
+        }
+    }
+
+    /**
+     * 读取槽位（归一化后的向量）
+     */
+    public float[] read(int slot) {
+        ByteBuffer buf = segments.get(slot / SLOTS_PER_SEGMENT);
+        int base = (slot % SLOTS_PER_SEGMENT) * slotBytes;
+        float[] out = new float[dimensions];
+
+        if (quantization == VectorQuantization.INT8) {
+            float scale = buf.getFloat(base);
+            for (int i = 0; i < dimensions; i++) {
+                out[i] = buf.get(base + 4 + i) * scale;
+            }
+        } else {
+            for (int i = 0; i < dimensions; i++) {
+                out[i] = buf.getFloat(base + i * 4);
+            }
+        }
+
+        return out;
+    }
+
+    /**
+     * 对槽位评分（余弦相似度）
+     *
+     * @param slot       槽位
+     * @param normalized 已归一化的查询向量
+     */
+    public double score(int slot, float[] normalized) {
+        ByteBuffer buf = segments.get(slot / SLOTS_PER_SEGMENT);
+        int base = (slot % SLOTS_PER_SEGMENT) * slotBytes;
+        float tmp = 0.0F;
+
+        if (quantization == VectorQuantization.INT8) {
+            float scale = buf.getFloat(base);
+            for (int i = 0; i < dimensions; i++) {
+                tmp += normalized[i] * buf.get(base + 4 + i);
+            }
+            return tmp * scale;
+        } else {
+            for (int i = 0; i < dimensions; i++) {
+                tmp += normalized[i] * buf.getFloat(base + i * 4);
+            }
+            return tmp;
+        }
+    }
+
+    /**
+     * 刷盘
+     */
+    public void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    /**
+     * 关闭（释放映射；之后不可再访问）
+     */
+    @Override
+    public void close() throws IOException {
+        for (MappedByteBuffer segment : segments) {
+            BufferUtil.release(segment);
+        }
+
+        segments.clear();
+        raf.close();
+    }
+
+    /**
+     * 获取槽位所在的段（首次写入时写文件头，按需映射新段）
+     */
+    private ByteBuffer segmentFor(int slot, int dims) throws IOException {
+        if (dimensions == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(dims).putInt(quantization.ordinal());
+            header.flip();
+            channel.write(header, 0);
+
+            initDimensions(dims);
+        } else if (dimensions != dims) {
+            throw new IllegalArgumentException("Embed length must be equal");
+        }
+
+        int segment = slot / SLOTS_PER_SEGMENT;
+        while (segments.size() <= segment) {
+            mapSegment(segments.size());
+        }
+
+        return segments.get(segment);
+    }
+
+    private void initDimensions(int dims) {
+        this.dimensions = dims;
+        if (quantization == VectorQuantization.INT8) {
+            this.slotBytes = 4 + dims;
+        } else {
+            this.slotBytes = dims * 4;
+        }
+    }
+
+    private long segmentBytes() {
+        return (long) SLOTS_PER_SEGMENT * slotBytes;
+    }
+
+    private void mapSegment(int index) throws IOException {
+        long position = HEADER_SIZE + index * segmentBytes();
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_WRITE, position, segmentBytes());
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        segments.add(buf);
+    }
+}
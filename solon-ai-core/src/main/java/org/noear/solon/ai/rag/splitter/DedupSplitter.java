@@ -0,0 +1,208 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.rag.splitter;
+
+import org.noear.solon.ai.rag.Document;
+import org.noear.solon.ai.rag.DocumentSplitter;
+import org.noear.solon.ai.rag.util.SimHashUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 去重分割器（基于 SimHash 过滤近似重复的文档，放在分割管道的最后，嵌入之前）
+ *
+ * <p>与索引中已有文档（含之前批次，以及持久化索引中之前执行的）近似重复时丢弃；
+ * 设置合并键后，同一批次内被丢弃文档的该元数据值，合并到保留文档的 duplicates 元数据中。
+ *
+ * <p>文档带有所有者元数据（默认为 {@link #OWNER_KEY}，入库管道使用入库清单时按源标识设置）时，
+ * 指纹按“所有者 + 内容”记录所有者；重新入库同一来源的相同内容时，不视为与自己重复。
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class DedupSplitter implements DocumentSplitter {
+    /**
+     * 合并的重复来源（元数据键）
+     */
+    public static final String DUPLICATES_KEY = "duplicates";
+    /**
+     * 所有者（元数据键；如来源标识）
+     */
+    public static final String OWNER_KEY = "dedup_owner";
+
+    private final SimHashIndex index;
+    private final AtomicLong duplicates = new AtomicLong();
+    private String mergeKey;
+    private String ownerKey = OWNER_KEY;
+
+    /**
+     * 使用默认相似度阈值 0.9（内存索引）
+     */
+    public DedupSplitter() {
+        this(0.9D);
+    }
+
+    /**
+     * @param similarityThreshold 相似度阈值（0.8~1，按指纹的汉明距离换算）
+     */
+    public DedupSplitter(double similarityThreshold) {
+        this(similarityThreshold, null);
+    }
+
+    /**
+     * @param similarityThreshold 相似度阈值（0.8~1，按指纹的汉明距离换算）
+     * @param indexFile           持久化索引文件（为 null 时只在内存）
+     */
+    public DedupSplitter(double similarityThreshold, File indexFile) {
+        if (similarityThreshold < 0.8D || similarityThreshold > 1.0D) {
+            throw new IllegalArgumentException("similarityThreshold must be between 0.8 and 1");
+        }
+
+        int maxDistance = (int) Math.floor((1.0D - similarityThreshold) * 64 + 1e-9);
+
+        try {
+            this.index = new SimHashIndex(maxDistance, indexFile);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load simhash index: " + indexFile, e);
+        }
+    }
+
+    /**
+     * @param index 指纹索引（可在多个分割器之间共享）
+     */
+    public DedupSplitter(SimHashIndex index) {
+        if (index == null) {
+            throw new IllegalArgumentException("index must not be null");
+        }
+
+        this.index = index;
+    }
+
+    /**
+     * 设置合并键（如 url；为 null 时直接丢弃重复文档）
+     */
+    public void setMergeKey(String mergeKey) {
+        this.mergeKey = mergeKey;
+    }
+
+    /**
+     * 设置所有者键（如 url；为 null 时不区分所有者，与任何已有指纹相似都视为重复）
+     */
+    public void setOwnerKey(String ownerKey) {
+        this.ownerKey = ownerKey;
+    }
+
+    /**
+     * 指纹索引
+     */
+    public SimHashIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * 已丢弃的重复文档数量
+     */
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    @Override
+    public List<Document> split(List<Document> documents) {
+        List<Document> outs = new ArrayList<>(documents.size());
+        //指纹序号 -> 本批次中保留的文档（用于合并）
+        Map<Integer, Document> kept = (mergeKey == null ? null : new HashMap<>());
+        //所有者 -> 本批次中的指纹序号（同一批次内重复出现的相同内容，仍视为重复）
+        Map<Long, Integer> owned = new HashMap<>();
+
+        for (Document doc : documents) {
+            String content = doc.getContent();
+            if (content == null || content.trim().isEmpty()) {
+                outs.add(doc);
+                continue;
+            }
+
+            long owner = ownerOf(doc, content);
+            Integer ordinal = (owner == 0L ? null : owned.get(owner));
+
+            if (ordinal == null) {
+                ordinal = index.matchOrAdd(SimHashUtil.signature(content), owner);
+            }
+
+            if (ordinal < 0) {
+                outs.add(doc);
+                if (owner != 0L) {
+                    owned.put(owner, -ordinal - 1);
+                }
+                if (kept != null) {
+                    kept.put(-ordinal - 1, doc);
+                }
+            } else {
+                duplicates.incrementAndGet();
+
+                if (kept != null) {
+                    Document target = kept.get(ordinal);
+                    if (target != null) {
+                        merge(target, doc);
+                    }
+                }
+            }
+        }
+
+        try {
+            index.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to flush simhash index", e);
+        }
+
+        return outs;
+    }
+
+    /**
+     * 所有者标识（所有者 + 内容的散列；没有所有者时为 0）
+     */
+    private long ownerOf(Document doc, String content) {
+        Object owner = (ownerKey == null ? null : doc.getMetadata(ownerKey));
+        if (owner == null) {
+            return 0L;
+        }
+
+        return SimHashUtil.hash(owner + "\u0001" + content);
+    }
+
+    private void merge(Document target, Document duplicate) {
+        Object value = duplicate.getMetadata(mergeKey);
+        if (value == null) {
+            return;
+        }
+
+        List<Object> values = new ArrayList<>();
+        Object existing = target.getMetadata(DUPLICATES_KEY);
+        if (existing instanceof List) {
+            values.addAll((List<?>) existing);
+        }
+
+        if (values.contains(value) == false) {
+            values.add(value);
+            target.metadata(DUPLICATES_KEY, values);
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package org.noear.solon.ai.rag.splitter;
 
-import com.knuddels.jtokkit.Encodings;
 import com.knuddels.jtokkit.api.Encoding;
 import com.knuddels.jtokkit.api.EncodingRegistry;
 import com.knuddels.jtokkit.api.EncodingType;
@@ -9,12 +8,14 @@ import org.noear.solon.ai.embedding.EmbeddingModel;
 import org.noear.solon.ai.embedding.EmbeddingOptions;
 import org.noear.solon.ai.embedding.EmbeddingResponse;
 import org.noear.solon.ai.rag.Document;
-import org.noear.solon.ai.rag.DocumentSplitter;
 import org.noear.solon.ai.rag.util.ListUtil;
 import org.noear.solon.ai.rag.util.SimilarityUtil;
+import org.noear.solon.ai.tokenizer.TokenizerManager;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * 基于语义的文本分割器
@@ -34,7 +35,7 @@ import java.util.*;
  * @author 烧饵块
  * @since 3.10.1
  */
-public class SemanticSplitter implements DocumentSplitter {
+public class SemanticSplitter extends TextSplitter {
     /**
      * 英文句子分隔符
      */
@@ -48,6 +49,11 @@ public class SemanticSplitter implements DocumentSplitter {
      */
     public static final String[] ALL_COMMON_DELIM = {". ", "! ", "? ", "。", "！", "？", "；", "\n"};
 
+    /**
+     * 多文档汇集嵌入时的批次数上限
+     */
+    private static final int POOLED_BATCHES = 32;
+
     protected EmbeddingModel embeddingModel;
 
     private final double similarityThreshold;
@@ -59,6 +65,9 @@ public class SemanticSplitter implements DocumentSplitter {
     private EncodingRegistry encodingRegistry;
     private EncodingType encodingType;
 
+    //子类重写了分割扩展点时，逐个文档经由 splitDocument 分割（保证重写生效）
+    private final boolean hooksOverridden;
+
     /**
      * 使用默认参数构造（阈值 0.5、最大 512 Token、窗口 3、最少 1 句、全部常用分隔符）
      *
@@ -104,8 +113,24 @@ public class SemanticSplitter implements DocumentSplitter {
         this.similarityWindow = similarityWindow;
         this.minSentencesPerChunk = minSentencesPerChunk;
         this.delimiters = delimiters;
-        this.encodingRegistry = Encodings.newLazyEncodingRegistry();
+        this.encodingRegistry = TokenizerManager.getEncodingRegistry();
         this.encodingType = EncodingType.CL100K_BASE;
+        this.hooksOverridden = isHooksOverridden(getClass());
+    }
+
+    /**
+     * 是否重写了分割扩展点（splitDocument、splitText）
+     */
+    private static boolean isHooksOverridden(Class<?> clz) {
+        for (Class<?> tmp = clz; tmp != SemanticSplitter.class && tmp != null; tmp = tmp.getSuperclass()) {
+            for (Method method : tmp.getDeclaredMethods()) {
+                if ("splitDocument".equals(method.getName()) || "splitText".equals(method.getName())) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
     }
 
     /**
@@ -128,6 +153,38 @@ public class SemanticSplitter implements DocumentSplitter {
 
     @Override
     public List<Document> split(List<Document> documents) {
+        if (hooksOverridden || isParallel()) {
+            return splitEach(documents);
+        }
+
+        //汇集多个文档的嵌入文本，共享批次（相同文本只嵌入一次）；按上限分段，控制内存占用
+        int maxPooled = embeddingModel.batchSize() * POOLED_BATCHES;
+        List<Document> result = new ArrayList<>();
+        List<Plan> plans = new ArrayList<>();
+        Map<String, Integer> texts = new LinkedHashMap<>();
+
+        for (Document doc : documents) {
+            plans.add(plan(doc, doc.getContent(), texts));
+
+            if (texts.size() >= maxPooled) {
+                finishAll(plans, texts, result);
+            }
+        }
+
+        finishAll(plans, texts, result);
+        return result;
+    }
+
+    /**
+     * 逐个文档分割（经由 splitDocument）
+     */
+    private List<Document> splitEach(List<Document> documents) {
+        if (isParallel() && documents.size() > 1) {
+            return documents.parallelStream()
+                    .flatMap(doc -> splitDocument(doc).stream())
+                    .collect(Collectors.toList());
+        }
+
         List<Document> result = new ArrayList<>();
         for (Document doc : documents) {
             result.addAll(splitDocument(doc));
@@ -139,42 +196,133 @@ public class SemanticSplitter implements DocumentSplitter {
      * 分割单个文档
      */
     protected List<Document> splitDocument(Document doc) {
-        String text = doc.getContent();
+        return splitDocument(doc, new ArrayList<>());
+    }
+
+    @Override
+    protected List<String> splitText(String text) {
+        Map<String, Integer> texts = new LinkedHashMap<>();
+        Plan plan = plan(null, text, texts);
+        return finish(plan, embedAll(texts));
+    }
+
+    /**
+     * 分割计划（源文档，句子，以及窗口文本与下一句在嵌入列表中的位置）
+     */
+    private static class Plan {
+        final Document doc;
+        final List<String> sentences;
+        //不需要嵌入时的直接结果
+        final List<String> direct;
+        int[] windows;
+        int[] nexts;
+
+        Plan(Document doc, List<String> sentences, List<String> direct) {
+            this.doc = doc;
+            this.sentences = sentences;
+            this.direct = direct;
+        }
+    }
+
+    /**
+     * 拆分句子，并登记需要嵌入的文本
+     */
+    private Plan plan(Document doc, String text, Map<String, Integer> texts) {
         if (text == null || text.trim().isEmpty()) {
-            return Collections.emptyList();
+            return new Plan(doc, null, Collections.emptyList());
         }
 
         // 1. 拆分为句子
         List<String> sentences = splitSentences(text);
         if (sentences.isEmpty()) {
-            return Collections.emptyList();
+            return new Plan(doc, null, Collections.emptyList());
         }
 
         // 句子数不够窗口大小，直接作为单个 chunk 返回
         if (sentences.size() <= similarityWindow) {
-            return Collections.singletonList(new Document(text, doc.getMetadata()));
+            return new Plan(doc, null, Collections.singletonList(text));
         }
 
-        try {
-            // 2. 计算相邻句子间的语义相似度
-            double[] similarities = computeSimilarities(sentences);
+        // 窗口文本 sentences[i..i+window) 与下一个句子 sentences[i+window]
+        int count = sentences.size() - similarityWindow;
+        Plan plan = new Plan(doc, sentences, null);
+        plan.windows = new int[count];
+        plan.nexts = new int[count];
 
-            // 3. 根据相似度找到分割点
-            List<Integer> splitIndices = findSplitIndices(similarities);
+        for (int i = 0; i < count; i++) {
+            StringBuilder windowText = new StringBuilder();
+            for (int j = i; j < i + similarityWindow; j++) {
+                windowText.append(sentences.get(j));
+            }
 
-            // 4. 按分割点将句子分组
-            List<List<String>> groups = groupSentences(sentences, splitIndices);
+            plan.windows[i] = indexOf(texts, windowText.toString());
+            plan.nexts[i] = indexOf(texts, sentences.get(i + similarityWindow));
+        }
 
-            // 5. 拆分超过最大 Token 数的组
-            groups = splitOversizedGroups(groups);
+        return plan;
+    }
 
-            // 6. 生成 Document 列表
-            return createDocuments(groups, doc.getMetadata());
+    private static int indexOf(Map<String, Integer> texts, String text) {
+        Integer idx = texts.get(text);
+        if (idx == null) {
+            idx = texts.size();
+            texts.put(text, idx);
+        }
+        return idx;
+    }
+
+    private void finishAll(List<Plan> plans, Map<String, Integer> texts, List<Document> result) {
+        List<float[]> embeddings = embedAll(texts);
+        for (Plan plan : plans) {
+            toDocuments(plan.doc, finish(plan, embeddings), result);
+        }
+
+        plans.clear();
+        texts.clear();
+    }
+
+    private List<float[]> embedAll(Map<String, Integer> texts) {
+        if (texts.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        try {
+            return batchEmbed(new ArrayList<>(texts.keySet()));
         } catch (IOException e) {
             throw new RuntimeException("Embedding failed during semantic splitting", e);
         }
     }
 
+    /**
+     * 完成分割（基于嵌入结果）
+     */
+    private List<String> finish(Plan plan, List<float[]> embeddings) {
+        if (plan.direct != null) {
+            return plan.direct;
+        }
+
+        // 2. 计算相邻句子间的语义相似度
+        double[] similarities = new double[plan.windows.length];
+        for (int i = 0; i < similarities.length; i++) {
+            similarities[i] = SimilarityUtil.cosineSimilarity(
+                    embeddings.get(plan.windows[i]),
+                    embeddings.get(plan.nexts[i])
+            );
+        }
+
+        // 3. 根据相似度找到分割点
+        List<Integer> splitIndices = findSplitIndices(similarities);
+
+        // 4. 按分割点将句子分组
+        List<List<String>> groups = groupSentences(plan.sentences, splitIndices);
+
+        // 5. 拆分超过最大 Token 数的组
+        groups = splitOversizedGroups(groups);
+
+        // 6. 生成片段文本
+        return createChunks(groups);
+    }
+
     /**
      * 按分隔符拆分句子，分隔符保留在前一个句子末尾
      */
@@ -215,45 +363,6 @@ public class SemanticSplitter implements DocumentSplitter {
         return sentences;
     }
 
-    /**
-     * 计算滑动窗口与下一个句子之间的语义相似度
-     *
-     * <p>对于每个位置 i，将 sentences[i..i+window) 拼接为窗口文本，
-     * 与 sentences[i+window] 分别计算嵌入后求余弦相似度。
-     */
-    private double[] computeSimilarities(List<String> sentences) throws IOException {
-        int count = sentences.size() - similarityWindow;
-
-        // 拼接全部需要嵌入的文本（前半窗口文本，后半下一句文本）
-        List<String> allTexts = new ArrayList<>(count * 2);
-
-        for (int i = 0; i < count; i++) {
-            StringBuilder windowText = new StringBuilder();
-            for (int j = i; j < i + similarityWindow; j++) {
-                windowText.append(sentences.get(j));
-            }
-            allTexts.add(windowText.toString());
-        }
-
-        for (int i = 0; i < count; i++) {
-            allTexts.add(sentences.get(i + similarityWindow));
-        }
-
-        // 批量嵌入
-        List<float[]> allEmbeddings = batchEmbed(allTexts);
-
-        // 计算余弦相似度
-        double[] similarities = new double[count];
-        for (int i = 0; i < count; i++) {
-            similarities[i] = SimilarityUtil.cosineSimilarity(
-                    allEmbeddings.get(i),
-                    allEmbeddings.get(count + i)
-            );
-        }
-
-        return similarities;
-    }
-
     /**
      * 批量嵌入文本，按模型批次大小分批调用
      */
@@ -328,9 +437,12 @@ public class SemanticSplitter implements DocumentSplitter {
         List<List<String>> result = new ArrayList<>();
 
         for (List<String> group : groups) {
+            //每个句子只计数一次（只计数，不生成词元列表）
+            int[] sentenceTokens = new int[group.size()];
             int totalTokens = 0;
-            for (String sentence : group) {
-                totalTokens += encoding.encode(sentence).size();
+            for (int i = 0; i < group.size(); i++) {
+                sentenceTokens[i] = encoding.countTokens(group.get(i));
+                totalTokens += sentenceTokens[i];
             }
 
             if (totalTokens <= maxChunkTokenSize) {
@@ -340,19 +452,19 @@ public class SemanticSplitter implements DocumentSplitter {
                 List<String> currentGroup = new ArrayList<>();
                 int currentTokens = 0;
 
-                for (String sentence : group) {
-                    int sentenceTokens = encoding.encode(sentence).size();
+                for (int i = 0; i < group.size(); i++) {
+                    String sentence = group.get(i);
 
-                    if (currentTokens + sentenceTokens <= maxChunkTokenSize) {
+                    if (currentTokens + sentenceTokens[i] <= maxChunkTokenSize) {
                         currentGroup.add(sentence);
-                        currentTokens += sentenceTokens;
+                        currentTokens += sentenceTokens[i];
                     } else {
                         if (!currentGroup.isEmpty()) {
                             result.add(currentGroup);
                         }
                         currentGroup = new ArrayList<>();
                         currentGroup.add(sentence);
-                        currentTokens = sentenceTokens;
+                        currentTokens = sentenceTokens[i];
                     }
                 }
 
@@ -366,10 +478,10 @@ public class SemanticSplitter implements DocumentSplitter {
     }
 
     /**
-     * 从句子组创建 Document 列表
+     * 从句子组创建片段文本
      */
-    private List<Document> createDocuments(List<List<String>> groups, Map<String, Object> metadata) {
-        List<Document> documents = new ArrayList<>(groups.size());
+    private List<String> createChunks(List<List<String>> groups) {
+        List<String> chunks = new ArrayList<>(groups.size());
 
         for (List<String> group : groups) {
             StringBuilder sb = new StringBuilder();
@@ -379,10 +491,10 @@ public class SemanticSplitter implements DocumentSplitter {
 
             String content = sb.toString();
             if (!content.trim().isEmpty()) {
-                documents.add(new Document(content, metadata));
+                chunks.add(content);
             }
         }
 
-        return documents;
+        return chunks;
     }
 }
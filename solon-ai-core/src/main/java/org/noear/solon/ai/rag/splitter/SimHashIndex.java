@@ -0,0 +1,265 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.rag.splitter;
+
+import org.noear.solon.ai.rag.util.SimHashUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SimHash 指纹索引（按分段做局部敏感散列，支持持久化）
+ *
+ * <p>把 64 位指纹切为 maxDistance + 1 段：汉明距离不超过 maxDistance 的两个指纹，至少有一段完全相同（抽屉原理），
+ * 因此只需比较同段相同的候选。持久化文件只追加记录（指纹与所有者各 8 字节），启动时加载。
+ *
+ * <p>所有者（如“来源 + 内容”的散列）用于识别重新入库：与同一所有者的指纹相似时，不视为重复（0 表示没有所有者）。
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class SimHashIndex {
+    private final int maxDistance;
+    private final int[] bandShifts;
+    private final long[] bandMasks;
+    private final File file;
+
+    private long[] signatures = new long[1024];
+    private long[] owners = new long[1024];
+    private int size;
+    //未写入文件的起始位置
+    private int flushed;
+    private final Map<Long, int[]> buckets = new HashMap<>();
+
+    /**
+     * @param maxDistance 最大汉明距离（0 到 12）
+     */
+    public SimHashIndex(int maxDistance) throws IOException {
+        this(maxDistance, null);
+    }
+
+    /**
+     * @param maxDistance 最大汉明距离（0 到 12）
+     * @param file        持久化文件（为 null 时只在内存）
+     */
+    public SimHashIndex(int maxDistance, File file) throws IOException {
+        if (maxDistance < 0 || maxDistance > 12) {
+            throw new IllegalArgumentException("maxDistance must be between 0 and 12");
+        }
+
+        this.maxDistance = maxDistance;
+        this.file = file;
+
+        int bands = maxDistance + 1;
+        this.bandShifts = new int[bands];
+        this.bandMasks = new long[bands];
+        int shift = 0;
+        for (int b = 0; b < bands; b++) {
+            int bits = 64 / bands + (b < 64 % bands ? 1 : 0);
+            bandShifts[b] = shift;
+            bandMasks[b] = (bits == 64 ? -1L : (1L << bits) - 1L);
+            shift += bits;
+        }
+
+        if (file != null && file.exists()) {
+            load(file);
+        }
+    }
+
+    /**
+     * 最大汉明距离
+     */
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    /**
+     * 指纹数量
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 查找相似指纹（没有时返回 -1）
+     *
+     * @return 指纹序号
+     */
+    public synchronized int match(long signature) {
+        for (int b = 0; b < bandShifts.length; b++) {
+            int[] bucket = buckets.get(bucketKey(b, signature));
+            if (bucket == null) {
+                continue;
+            }
+
+            for (int i = 1; i <= bucket[0]; i++) {
+                if (SimHashUtil.distance(signature, signatures[bucket[i]]) <= maxDistance) {
+                    return bucket[i];
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * 指纹的所有者（0 表示没有所有者）
+     */
+    public synchronized long ownerOf(int ordinal) {
+        return owners[ordinal];
+    }
+
+    /**
+     * 添加指纹
+     *
+     * @return 指纹序号
+     */
+    public synchronized int add(long signature) {
+        return add(signature, 0L);
+    }
+
+    /**
+     * 添加指纹
+     *
+     * @param owner 所有者（0 表示没有所有者）
+     * @return 指纹序号
+     */
+    public synchronized int add(long signature, long owner) {
+        if (size == signatures.length) {
+            signatures = Arrays.copyOf(signatures, size * 2);
+            owners = Arrays.copyOf(owners, size * 2);
+        }
+
+        int ordinal = size++;
+        signatures[ordinal] = signature;
+        owners[ordinal] = owner;
+
+        for (int b = 0; b < bandShifts.length; b++) {
+            Long key = bucketKey(b, signature);
+            int[] bucket = buckets.get(key);
+            if (bucket == null) {
+                bucket = new int[4];
+            } else if (bucket[0] + 1 == bucket.length) {
+                bucket = Arrays.copyOf(bucket, bucket.length * 2);
+            }
+
+            bucket[++bucket[0]] = ordinal;
+            buckets.put(key, bucket);
+        }
+
+        return ordinal;
+    }
+
+    /**
+     * 查找相似指纹，没有时添加
+     *
+     * @return 相似指纹的序号；新添加时返回 -(新序号 + 1)
+     */
+    public synchronized int matchOrAdd(long signature) {
+        return matchOrAdd(signature, 0L);
+    }
+
+    /**
+     * 查找其它所有者的相似指纹，没有时添加（同一所有者的相似指纹已存在时，不再添加）
+     *
+     * @param owner 所有者（0 表示没有所有者，与任何相似指纹都视为重复）
+     * @return 其它所有者的相似指纹序号；同一所有者已有或新添加时返回 -(序号 + 1)
+     */
+    public synchronized int matchOrAdd(long signature, long owner) {
+        int other = -1;
+
+        for (int b = 0; b < bandShifts.length; b++) {
+            int[] bucket = buckets.get(bucketKey(b, signature));
+            if (bucket == null) {
+                continue;
+            }
+
+            for (int i = 1; i <= bucket[0]; i++) {
+                int ordinal = bucket[i];
+                if (SimHashUtil.distance(signature, signatures[ordinal]) <= maxDistance) {
+                    if (owner != 0L && owners[ordinal] == owner) {
+                        //同一所有者（重新入库）
+                        return -(ordinal + 1);
+                    } else if (other < 0) {
+                        other = ordinal;
+                    }
+                }
+            }
+        }
+
+        if (other < 0) {
+            return -(add(signature, owner) + 1);
+        }
+        return other;
+    }
+
+    /**
+     * 把新增的指纹追加到持久化文件
+     */
+    public synchronized void flush() throws IOException {
+        if (file == null || flushed == size) {
+            return;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+            for (int i = flushed; i < size; i++) {
+                out.writeLong(signatures[i]);
+                out.writeLong(owners[i]);
+            }
+        }
+
+        flushed = size;
+    }
+
+    private Long bucketKey(int band, long signature) {
+        long value = (signature >>> bandShifts[band]) & bandMasks[band];
+        //多段时每段不超过 32 位，高位用于区分段
+        return bandShifts.length == 1 ? value : (value | ((long) band << 56));
+    }
+
+    private void load(File file) throws IOException {
+        long count = file.length() / 16;
+
+        if (file.length() % 16 != 0) {
+            //截掉不足一条记录的尾部（写入中断），避免后续追加错位
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(count * 16);
+            }
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            for (long i = 0; i < count; i++) {
+                long signature = in.readLong();
+                add(signature, in.readLong());
+            }
+        } catch (EOFException e) {
+            //忽略
+        }
+
+        flushed = size;
+    }
+}
@@ -19,15 +19,21 @@ import org.noear.solon.ai.rag.Document;
 import org.noear.solon.ai.rag.DocumentSplitter;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * 管道分割器
  *
+ * <p>并行模式下，每个环节把文档列表切成连续的片段，在 fork/join 池中并行分割后按原顺序拼接
+ * （片段内的多个文档仍交给同一次 split 调用，便于 SemanticSplitter 等合并嵌入批次）。
+ *
  * @author noear
  * @since 3.1
  */
 public class SplitterPipeline implements DocumentSplitter {
     private Deque<DocumentSplitter> pipeline = new LinkedList<>();
+    private ForkJoinPool pool;
 
     /**
      * 添加到后面
@@ -53,15 +59,60 @@ public class SplitterPipeline implements DocumentSplitter {
         return this;
     }
 
+    /**
+     * 并行分割（使用 fork/join 公共池）
+     *
+     * @since 4.1
+     */
+    public SplitterPipeline parallel(boolean parallel) {
+        return parallel(parallel ? ForkJoinPool.commonPool() : null);
+    }
+
+    /**
+     * 并行分割（使用指定的 fork/join 池；为 null 时顺序分割）
+     *
+     * @since 4.1
+     */
+    public SplitterPipeline parallel(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
     /**
      * 分割
      */
     @Override
     public List<Document> split(List<Document> documents) {
         for (DocumentSplitter splitter : pipeline) {
-            documents = splitter.split(documents);
+            if (pool == null || documents.size() < 2) {
+                documents = splitter.split(documents);
+            } else {
+                documents = splitParallel(splitter, documents);
+            }
         }
 
         return documents;
     }
+
+    /**
+     * 按片段并行分割（保持顺序）
+     */
+    private List<Document> splitParallel(DocumentSplitter splitter, List<Document> documents) {
+        //每个工作线程约 4 个片段，兼顾负载均衡与批次合并
+        int slices = Math.max(1, pool.getParallelism() * 4);
+        int sliceSize = Math.max(1, (documents.size() + slices - 1) / slices);
+
+        List<ForkJoinTask<List<Document>>> tasks = new ArrayList<>();
+        for (int i = 0; i < documents.size(); i += sliceSize) {
+            List<Document> slice = new ArrayList<>(documents.subList(i, Math.min(documents.size(), i + sliceSize)));
+            tasks.add(pool.submit(() -> splitter.split(slice)));
+        }
+
+        List<Document> outs = new ArrayList<>();
+        for (ForkJoinTask<List<Document>> task : tasks) {
+            outs.addAll(task.join());
+        }
+
+        return outs;
+    }
 }
\ No newline at end of file
@@ -17,9 +17,11 @@ package org.noear.solon.ai.rag.splitter;
 
 import org.noear.solon.ai.rag.Document;
 import org.noear.solon.ai.rag.DocumentSplitter;
+import org.noear.solon.ai.rag.util.SimHashUtil;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * 文本分割器
@@ -28,9 +30,57 @@ import java.util.List;
  * @since 3.1
  */
 public abstract class TextSplitter implements DocumentSplitter {
+    /**
+     * 片段序号元数据键
+     *
+     * @since 4.1
+     */
+    public static final String CHUNK_INDEX_KEY = "chunk_index";
+    /**
+     * 片段所属源文档元数据键（源文档的 id，没有时为内容散列；同一来源有多个文档时，用于区分序号）
+     *
+     * @since 4.1
+     */
+    public static final String CHUNK_DOCUMENT_KEY = "chunk_document";
+
+    private boolean parallel;
+    private boolean chunkIndexed;
+
+    /**
+     * 设置是否并行分割多个文档（基于 fork/join 公共池；输出顺序不变。要求 splitText 无共享状态）
+     *
+     * @since 4.1
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * 是否并行分割多个文档
+     *
+     * @since 4.1
+     */
+    protected boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * 设置是否为片段标记序号（元数据 chunk_index，每个源文档从 0 开始，并以 chunk_document 标记所属源文档；便于上下文打包时合并相邻片段）
+     *
+     * @since 4.1
+     */
+    public void setChunkIndexed(boolean chunkIndexed) {
+        this.chunkIndexed = chunkIndexed;
+    }
 
     @Override
     public List<Document> split(List<Document> documents) {
+        if (parallel && documents.size() > 1) {
+            return documents.parallelStream()
+                    .flatMap(doc -> splitDocument(doc, new ArrayList<>()).stream())
+                    .collect(Collectors.toList());
+        }
+
         List<Document> outs = new ArrayList<>();
 
         for (Document doc : documents) {
@@ -41,9 +91,29 @@ public abstract class TextSplitter implements DocumentSplitter {
     }
 
     protected List<Document> splitDocument(Document in, List<Document> outs) {
-        for (String chuck : splitText(in.getContent())) {
+        return toDocuments(in, splitText(in.getContent()), outs);
+    }
+
+    /**
+     * 将片段文本转为文档（继承源文档的元数据，并按需标记序号）
+     *
+     * @since 4.1
+     */
+    protected List<Document> toDocuments(Document in, List<String> chunks, List<Document> outs) {
+        int index = 0;
+        String document = null;
+        for (String chuck : chunks) {
             if (chuck.length() > 0) {
-                outs.add(new Document(chuck, in.getMetadata()));
+                Document doc = new Document(chuck, in.getMetadata());
+                if (chunkIndexed) {
+                    if (document == null) {
+                        document = (in.getId() != null ? in.getId() : Long.toHexString(SimHashUtil.hash(in.getContent())));
+                    }
+
+                    doc.metadata(CHUNK_INDEX_KEY, index++);
+                    doc.metadata(CHUNK_DOCUMENT_KEY, document);
+                }
+                outs.add(doc);
             }
         }
 
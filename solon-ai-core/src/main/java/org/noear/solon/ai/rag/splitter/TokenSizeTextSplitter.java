@@ -15,11 +15,11 @@
  */
 package org.noear.solon.ai.rag.splitter;
 
-import com.knuddels.jtokkit.Encodings;
 import com.knuddels.jtokkit.api.Encoding;
 import com.knuddels.jtokkit.api.EncodingRegistry;
 import com.knuddels.jtokkit.api.EncodingType;
 import com.knuddels.jtokkit.api.IntArrayList;
+import org.noear.solon.ai.tokenizer.TokenizerManager;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -39,6 +39,8 @@ public class TokenSizeTextSplitter extends TextSplitter {
     private final int minChunkLengthToEmbed;
     private final int maxChunkCount;
     private final boolean keepSeparator;
+    //子类重写了 encodeTokens 或 decodeTokens 时，走原有的装箱列表分割（保证重写生效）
+    private final boolean codecOverridden;
 
     public TokenSizeTextSplitter() {
         this(500);
@@ -53,7 +55,7 @@ public class TokenSizeTextSplitter extends TextSplitter {
     }
 
     public TokenSizeTextSplitter(int chunkSize, int minChunkSizeChars, int minChunkLengthToEmbed, int maxChunkCount, boolean keepSeparator) {
-        this.encodingRegistry = Encodings.newLazyEncodingRegistry();
+        this.encodingRegistry = TokenizerManager.getEncodingRegistry();
         this.encodingType = EncodingType.CL100K_BASE;
 
         this.chunkSize = chunkSize;
@@ -61,6 +63,28 @@ public class TokenSizeTextSplitter extends TextSplitter {
         this.minChunkLengthToEmbed = minChunkLengthToEmbed;
         this.maxChunkCount = maxChunkCount;
         this.keepSeparator = keepSeparator;
+        this.codecOverridden = isCodecOverridden(getClass());
+    }
+
+    /**
+     * 是否重写了编码或解码方法
+     */
+    private static boolean isCodecOverridden(Class<?> clz) {
+        for (Class<?> tmp = clz; tmp != TokenSizeTextSplitter.class && tmp != null; tmp = tmp.getSuperclass()) {
+            try {
+                tmp.getDeclaredMethod("encodeTokens", Encoding.class, String.class);
+                return true;
+            } catch (NoSuchMethodException ignored) {
+            }
+
+            try {
+                tmp.getDeclaredMethod("decodeTokens", Encoding.class, List.class);
+                return true;
+            } catch (NoSuchMethodException ignored) {
+            }
+        }
+
+        return false;
     }
 
     /**
@@ -84,7 +108,62 @@ public class TokenSizeTextSplitter extends TextSplitter {
     @Override
     protected List<String> splitText(String text) {
         Encoding encoding = encodingRegistry.getEncoding(encodingType);
-        List<String> chunks = new ArrayList();
+        List<String> chunks = new ArrayList<>();
+
+        if (codecOverridden) {
+            return splitTextByCodec(encoding, text);
+        }
+
+        if (text != null && !text.trim().isEmpty()) {
+            //基于原始 int 数组与偏移处理（不装箱，不产生子列表）
+            IntArrayList tokens = encoding.encode(text);
+            IntArrayList window = new IntArrayList(Math.max(1, Math.min(chunkSize, tokens.size())));
+            int size = tokens.size();
+            int pos = 0;
+            int chunksCount = 0;
+
+            while (pos < size && chunksCount < this.maxChunkCount) {
+                int end = Math.min(pos + chunkSize, size);
+                String chunkText = decodeRange(encoding, tokens, pos, end, window);
+                if (chunkText.trim().isEmpty()) {
+                    pos = end;
+                } else {
+                    int lastPunctuation = Math.max(chunkText.lastIndexOf(46),
+                            Math.max(chunkText.lastIndexOf(63),
+                                    Math.max(chunkText.lastIndexOf(33),
+                                            chunkText.lastIndexOf(10))));
+
+                    if (lastPunctuation > 0 && lastPunctuation > this.minChunkSizeChars) {
+                        chunkText = chunkText.substring(0, lastPunctuation + 1);
+                    }
+
+                    String chunkTextToAppend = this.keepSeparator ? chunkText.trim() : chunkText.replace(System.lineSeparator(), " ").trim();
+                    if (chunkTextToAppend.length() > this.minChunkLengthToEmbed) {
+                        chunks.add(chunkTextToAppend);
+                    }
+
+                    //消耗的词元数按块文本重新计数（截断处的 BPE 合并可能与原序列不同，以此保持输出不变）；只计数不生成列表
+                    pos = Math.min(size, pos + encoding.countTokens(chunkText));
+                    ++chunksCount;
+                }
+            }
+
+            if (pos < size) {
+                String remaining_text = decodeRange(encoding, tokens, pos, size, window).replace(System.lineSeparator(), " ").trim();
+                if (remaining_text.length() > this.minChunkLengthToEmbed) {
+                    chunks.add(remaining_text);
+                }
+            }
+        }
+
+        return chunks;
+    }
+
+    /**
+     * 基于 encodeTokens、decodeTokens 分割（子类重写了编码或解码方法时使用）
+     */
+    private List<String> splitTextByCodec(Encoding encoding, String text) {
+        List<String> chunks = new ArrayList<>();
 
         if (text != null && !text.trim().isEmpty()) {
             List<Integer> tokens = this.encodeTokens(encoding, text);
@@ -127,7 +206,19 @@ public class TokenSizeTextSplitter extends TextSplitter {
     }
 
     /**
-     * 编码符号
+     * 解码区间内的符号（复用缓冲）
+     */
+    private static String decodeRange(Encoding encoding, IntArrayList tokens, int start, int end, IntArrayList buffer) {
+        buffer.clear();
+        for (int i = start; i < end; i++) {
+            buffer.add(tokens.get(i));
+        }
+
+        return encoding.decode(buffer);
+    }
+
+    /**
+     * 编码符号（子类重写时，分割改为基于本方法与 decodeTokens）
      */
     protected List<Integer> encodeTokens(Encoding encoding, String text) {
         Objects.requireNonNull(text, "tokens is null");
@@ -136,7 +227,7 @@ public class TokenSizeTextSplitter extends TextSplitter {
     }
 
     /**
-     * 解码符号
+     * 解码符号（子类重写时，分割改为基于本方法与 encodeTokens）
      */
     protected String decodeTokens(Encoding encoding, List<Integer> tokens) {
         Objects.requireNonNull(tokens, "tokens is null");
@@ -0,0 +1,504 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.rag.util;
+
+import org.noear.solon.ai.rag.Document;
+import org.noear.solon.ai.rag.splitter.TextSplitter;
+import org.noear.solon.ai.tokenizer.Tokenizer;
+import org.noear.solon.ai.tokenizer.TokenizerManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 上下文打包器（在 token 预算内挑选与编排检索结果，用于提示词增强）
+ *
+ * <p>处理过程：近似重复去除 -> 按“边际收益 / token 成本”贪心选取（收益为 MMR：相关度减去与已选片段的最大相似度）
+ * -> 同一来源的相邻片段合并 -> 按相关度排序输出。首个片段总是取预算内相关度最高者。
+ *
+ * <p>相似度：双方都有向量时用余弦相似度；否则去重用 SimHash 指纹，多样性用分词集合的 Jaccard 系数。
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class ContextPacker {
+    /**
+     * 默认候选数量（检索时取回，再由打包器筛选）
+     */
+    public static final int DEFAULT_CANDIDATE_LIMIT = 20;
+    /**
+     * 默认的最小重叠字符数（无序号时，按文本首尾重叠判断相邻；有序号时，去除首尾重叠）
+     */
+    public static final int DEFAULT_MIN_OVERLAP = 16;
+
+    private final int maxTokens;
+    private Tokenizer tokenizer = TokenizerManager.getDefault();
+    private double diversity = 0.3D;
+    private double dedupThreshold = 0.9D;
+    private boolean mergeAdjacent = true;
+    private String sourceKey = "url";
+    private String indexKey = TextSplitter.CHUNK_INDEX_KEY;
+    private String documentKey = TextSplitter.CHUNK_DOCUMENT_KEY;
+    private int minOverlap = DEFAULT_MIN_OVERLAP;
+    private int candidateLimit = DEFAULT_CANDIDATE_LIMIT;
+
+    /**
+     * @param maxTokens 上下文 token 预算
+     */
+    public ContextPacker(int maxTokens) {
+        if (maxTokens <= 0) {
+            throw new IllegalArgumentException("maxTokens must be greater than 0");
+        }
+
+        this.maxTokens = maxTokens;
+    }
+
+    /**
+     * 上下文 token 预算
+     */
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    /**
+     * 候选数量
+     */
+    public int getCandidateLimit() {
+        return candidateLimit;
+    }
+
+    /**
+     * 配置 token 计数器（默认 o200k）
+     */
+    public ContextPacker tokenizer(Tokenizer tokenizer) {
+        if (tokenizer != null) {
+            this.tokenizer = tokenizer;
+        }
+        return this;
+    }
+
+    /**
+     * 配置多样性权重（0~1，MMR 中相似度惩罚的权重；0 表示只看相关度）
+     */
+    public ContextPacker diversity(double diversity) {
+        if (diversity < 0.0D || diversity > 1.0D) {
+            throw new IllegalArgumentException("diversity must be between 0 and 1");
+        }
+
+        this.diversity = diversity;
+        return this;
+    }
+
+    /**
+     * 配置近似重复阈值（0~1，相似度不小于该值的视为重复；1 表示只去除完全相同的）
+     */
+    public ContextPacker dedupThreshold(double dedupThreshold) {
+        if (dedupThreshold <= 0.0D || dedupThreshold > 1.0D) {
+            throw new IllegalArgumentException("dedupThreshold must be between 0 and 1");
+        }
+
+        this.dedupThreshold = dedupThreshold;
+        return this;
+    }
+
+    /**
+     * 配置是否合并同一来源的相邻片段
+     */
+    public ContextPacker mergeAdjacent(boolean mergeAdjacent) {
+        this.mergeAdjacent = mergeAdjacent;
+        return this;
+    }
+
+    /**
+     * 配置来源元数据键（默认 url）
+     */
+    public ContextPacker sourceKey(String sourceKey) {
+        this.sourceKey = sourceKey;
+        return this;
+    }
+
+    /**
+     * 配置片段序号元数据键（默认 chunk_index；没有序号时，按文本首尾重叠判断相邻）
+     */
+    public ContextPacker indexKey(String indexKey) {
+        this.indexKey = indexKey;
+        return this;
+    }
+
+    /**
+     * 配置片段所属源文档元数据键（默认 chunk_document；同一来源有多个文档时，只合并同一文档内序号相邻的片段）
+     */
+    public ContextPacker documentKey(String documentKey) {
+        this.documentKey = documentKey;
+        return this;
+    }
+
+    /**
+     * 配置最小重叠字符数（默认 16；宜与分割器的重叠长度一致，避免去除偶然相同的首尾字符）
+     */
+    public ContextPacker minOverlap(int minOverlap) {
+        if (minOverlap <= 0) {
+            throw new IllegalArgumentException("minOverlap must be greater than 0");
+        }
+
+        this.minOverlap = minOverlap;
+        return this;
+    }
+
+    /**
+     * 配置候选数量
+     */
+    public ContextPacker candidateLimit(int candidateLimit) {
+        if (candidateLimit <= 0) {
+            throw new IllegalArgumentException("candidateLimit must be greater than 0");
+        }
+
+        this.candidateLimit = candidateLimit;
+        return this;
+    }
+
+    /**
+     * 估算文档在提示词中的 token 数
+     */
+    public int countTokens(Document doc) {
+        return tokenizer.countTokens(doc.toString());
+    }
+
+    /**
+     * 打包
+     *
+     * @param documents 检索结果（按分数倒序）
+     * @return 预算内的文档（合并后的文档为新实例）
+     */
+    public List<Document> pack(List<Document> documents) {
+        if (documents == null || documents.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Candidate> candidates = dedup(prepare(documents));
+        List<Candidate> selected = select(candidates);
+
+        List<Candidate> packed = mergeAdjacent ? merge(selected) : selected;
+        packed.sort(Comparator.comparingDouble((Candidate c) -> -c.relevance).thenComparingInt(c -> c.rank));
+
+        //合并后重新计数；分词不完全可加，超出时从尾部剔除
+        List<Document> result = new ArrayList<>(packed.size());
+        int total = 0;
+        for (Candidate c : packed) {
+            int cost = (c.merged ? countTokens(c.doc) : c.cost);
+            if (total + cost <= maxTokens) {
+                total += cost;
+                result.add(c.doc);
+            }
+        }
+
+        return result;
+    }
+
+    private List<Candidate> prepare(List<Document> documents) {
+        double maxScore = 0.0D;
+        for (Document doc : documents) {
+            maxScore = Math.max(maxScore, doc.getScore());
+        }
+
+        List<Candidate> candidates = new ArrayList<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            Document doc = documents.get(i);
+            if (doc == null || doc.getContent() == null || doc.getContent().isEmpty()) {
+                continue;
+            }
+
+            Candidate c = new Candidate(doc, i);
+            if (maxScore > 0.0D) {
+                c.relevance = Math.max(0.0D, doc.getScore()) / maxScore;
+            } else {
+                //没有分数时，按排名
+                c.relevance = 1.0D - (double) i / documents.size();
+            }
+            c.cost = countTokens(doc);
+            candidates.add(c);
+        }
+
+        return candidates;
+    }
+
+    private List<Candidate> dedup(List<Candidate> candidates) {
+        List<Candidate> kept = new ArrayList<>(candidates.size());
+
+        for (Candidate c : candidates) {
+            boolean duplicate = false;
+            for (Candidate k : kept) {
+                if (duplicateOf(c, k)) {
+                    duplicate = true;
+                    break;
+                }
+            }
+
+            if (duplicate == false) {
+                kept.add(c);
+            }
+        }
+
+        return kept;
+    }
+
+    private List<Candidate> select(List<Candidate> candidates) {
+        List<Candidate> selected = new ArrayList<>();
+        double[] maxSim = new double[candidates.size()];
+        boolean[] taken = new boolean[candidates.size()];
+        int remaining = maxTokens;
+
+        while (true) {
+            int best = -1;
+            double bestValue = 0.0D;
+
+            for (int i = 0; i < candidates.size(); i++) {
+                Candidate c = candidates.get(i);
+                if (taken[i] || c.cost > remaining) {
+                    continue;
+                }
+
+                double gain = (1.0D - diversity) * c.relevance - diversity * maxSim[i];
+                if (gain <= 0.0D) {
+                    continue;
+                }
+
+                //首个取相关度最高者，之后按单位 token 收益
+                double value = (selected.isEmpty() ? gain : gain / c.cost);
+                if (best < 0 || value > bestValue) {
+                    best = i;
+                    bestValue = value;
+                }
+            }
+
+            if (best < 0) {
+                break;
+            }
+
+            Candidate picked = candidates.get(best);
+            taken[best] = true;
+            remaining -= picked.cost;
+            selected.add(picked);
+
+            if (diversity > 0.0D) {
+                for (int i = 0; i < candidates.size(); i++) {
+                    if (taken[i] == false) {
+                        maxSim[i] = Math.max(maxSim[i], similarity(candidates.get(i), picked));
+                    }
+                }
+            }
+        }
+
+        return selected;
+    }
+
+    private List<Candidate> merge(List<Candidate> selected) {
+        Map<Object, List<Candidate>> groups = new LinkedHashMap<>();
+        List<Candidate> result = new ArrayList<>();
+
+        for (Candidate c : selected) {
+            Object source = (sourceKey == null ? null : c.doc.getMetadata(sourceKey));
+            if (source == null) {
+                result.add(c);
+            } else {
+                //同一来源的多个文档（如分页、分表），序号各自从 0 开始，按所属文档分组
+                Object document = (documentKey == null ? null : c.doc.getMetadata(documentKey));
+                groups.computeIfAbsent(Arrays.asList(source, document), k -> new ArrayList<>()).add(c);
+            }
+        }
+
+        for (List<Candidate> group : groups.values()) {
+            if (group.size() == 1) {
+                result.add(group.get(0));
+            } else {
+                result.addAll(mergeGroup(group));
+            }
+        }
+
+        return result;
+    }
+
+    private List<Candidate> mergeGroup(List<Candidate> group) {
+        List<Candidate> runs = new ArrayList<>(group);
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (int i = 0; i < runs.size() && changed == false; i++) {
+                for (int j = 0; j < runs.size(); j++) {
+                    if (i == j) {
+                        continue;
+                    }
+
+                    Candidate a = runs.get(i);
+                    Candidate b = runs.get(j);
+                    String joined = join(a, b);
+                    if (joined != null) {
+                        Candidate m = new Candidate(new Document(a.doc.getId(), joined, a.doc.getMetadata(),
+                                Math.max(a.doc.getScore(), b.doc.getScore())), Math.min(a.rank, b.rank));
+                        m.relevance = Math.max(a.relevance, b.relevance);
+                        m.lastIndex = b.lastIndex;
+                        m.merged = true;
+
+                        runs.set(i, m);
+                        runs.remove(j);
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        return runs;
+    }
+
+    /**
+     * a 之后紧接 b 时，返回拼接内容；否则返回 null
+     */
+    private String join(Candidate a, Candidate b) {
+        if (a.lastIndex != null && b.firstIndex != null) {
+            if (b.firstIndex == a.lastIndex + 1) {
+                String ac = a.doc.getContent();
+                String bc = b.doc.getContent();
+                int overlap = overlap(ac, bc, minOverlap);
+                return (overlap > 0 ? ac + bc.substring(overlap) : ac + "\n" + bc);
+            } else {
+                return null;
+            }
+        }
+
+        String ac = a.doc.getContent();
+        String bc = b.doc.getContent();
+        int overlap = overlap(ac, bc, minOverlap);
+        return (overlap > 0 ? ac + bc.substring(overlap) : null);
+    }
+
+    /**
+     * a 的后缀与 b 的前缀的最长重叠（小于 min 时返回 0）
+     */
+    private static int overlap(String a, String b, int min) {
+        int max = Math.min(a.length(), b.length()) - 1;
+        for (int len = max; len >= min; len--) {
+            if (a.regionMatches(a.length() - len, b, 0, len)) {
+                return len;
+            }
+        }
+        return 0;
+    }
+
+    private boolean duplicateOf(Candidate a, Candidate b) {
+        if (a.doc.getContent().equals(b.doc.getContent())) {
+            return true;
+        }
+
+        if (dedupThreshold >= 1.0D) {
+            return false;
+        }
+
+        if (hasEmbeddings(a, b)) {
+            return SimilarityUtil.cosineSimilarity(a.doc.getEmbedding(), b.doc.getEmbedding()) >= dedupThreshold;
+        } else {
+            return SimHashUtil.similarity(a.signature(), b.signature()) >= dedupThreshold;
+        }
+    }
+
+    private double similarity(Candidate a, Candidate b) {
+        if (hasEmbeddings(a, b)) {
+            return Math.max(0.0D, SimilarityUtil.cosineSimilarity(a.doc.getEmbedding(), b.doc.getEmbedding()));
+        }
+
+        Set<String> ta = a.tokens();
+        Set<String> tb = b.tokens();
+        if (ta.isEmpty() || tb.isEmpty()) {
+            return 0.0D;
+        }
+
+        int common = 0;
+        for (String t : (ta.size() < tb.size() ? ta : tb)) {
+            if ((ta.size() < tb.size() ? tb : ta).contains(t)) {
+                common++;
+            }
+        }
+
+        return (double) common / (ta.size() + tb.size() - common);
+    }
+
+    private static boolean hasEmbeddings(Candidate a, Candidate b) {
+        float[] ea = a.doc.getEmbedding();
+        float[] eb = b.doc.getEmbedding();
+        return ea != null && eb != null && ea.length == eb.length && ea.length > 0;
+    }
+
+    private Integer indexOf(Document doc) {
+        if (indexKey == null) {
+            return null;
+        }
+
+        Object val = doc.getMetadata(indexKey);
+        if (val instanceof Number) {
+            return ((Number) val).intValue();
+        } else if (val instanceof String) {
+            try {
+                return Integer.parseInt((String) val);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+    }
+
+    private class Candidate {
+        final Document doc;
+        final int rank;
+        final Integer firstIndex;
+        Integer lastIndex;
+        double relevance;
+        int cost;
+        boolean merged;
+
+        private Long signature;
+        private Set<String> tokens;
+
+        Candidate(Document doc, int rank) {
+            this.doc = doc;
+            this.rank = rank;
+            this.firstIndex = indexOf(doc);
+            this.lastIndex = firstIndex;
+        }
+
+        long signature() {
+            if (signature == null) {
+                signature = SimHashUtil.signature(doc.getContent());
+            }
+            return signature;
+        }
+
+        Set<String> tokens() {
+            if (tokens == null) {
+                tokens = new HashSet<>(TokenizeUtil.tokenize(doc.getContent()));
+            }
+            return tokens;
+        }
+    }
+}
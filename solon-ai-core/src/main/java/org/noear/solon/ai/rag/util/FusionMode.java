@@ -0,0 +1,34 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.rag.util;
+
+/**
+ * 多路结果融合方式
+ *
+ * @author noear
+ * @since 4.1
+ */
+public enum FusionMode {
+    /**
+     * 加权分数（各路分数按本路最高分归一化后加权求和）
+     */
+    WEIGHTED_SCORE,
+
+    /**
+     * 倒数排名融合（RRF，按排名加权：weight / (k + rank)）
+     */
+    RRF
+}
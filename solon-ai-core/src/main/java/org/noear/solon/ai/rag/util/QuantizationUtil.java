@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.rag.util;
+
+/**
+ * 向量量化工具（标量 int8 量化与 1-bit 二值量化）
+ *
+ * @author noear
+ * @since 4.1
+ */
+public final class QuantizationUtil {
+    /**
+     * 归一化为单位向量（返回新数组）
+     */
+    public static float[] normalize(float[] embed) {
+        if (embed == null) {
+            throw new RuntimeException("Embed must not be null");
+        }
+
+        double sum = 0.0D;
+        for (float v : embed) {
+            sum += v * v;
+        }
+
+        if (sum == 0.0D) {
+            throw new IllegalArgumentException("Embed cannot be zero norm");
+        }
+
+        float inv = (float) (1.0D / Math.sqrt(sum));
+        float[] out = new float[embed.length];
+        for (int i = 0; i < embed.length; i++) {
+            out[i] = embed[i] * inv;
+        }
+        return out;
+    }
+
+    /**
+     * 标量量化为 int8（对称量化）
+     *
+     * @param embed  源向量
+     * @param codes  输出编码
+     * @param offset 输出偏移
+     * @return 缩放系数（原值 ≈ code * scale）
+     */
+    public static float quantizeInt8(float[] embed, byte[] codes, int offset) {
+        float maxAbs = 0.0F;
+        for (float v : embed) {
+            float a = Math.abs(v);
+            if (a > maxAbs) {
+                maxAbs = a;
+            }
+        }
+
+        if (maxAbs == 0.0F) {
+            for (int i = 0; i < embed.length; i++) {
+                codes[offset + i] = 0;
+            }
+            return 0.0F;
+        }
+
+        float scale = maxAbs / 127.0F;
+        for (int i = 0; i < embed.length; i++) {
+            int q = Math.round(embed[i] / scale);
+            codes[offset + i] = (byte) Math.max(-127, Math.min(127, q));
+        }
+
+        return scale;
+    }
+
+    /**
+     * 浮点查询向量与 int8 编码的点积（非对称计算，精度高于双侧量化）
+     *
+     * @param query  查询向量
+     * @param codes  编码
+     * @param offset 编码偏移
+     * @param scale  缩放系数
+     */
+    public static float dotInt8(float[] query, byte[] codes, int offset, float scale) {
+        float tmp = 0.0F;
+        for (int i = 0; i < query.length; i++) {
+            tmp += query[i] * codes[offset + i];
+        }
+        return tmp * scale;
+    }
+
+    /**
+     * 二值量化所需的 long 字数
+     */
+    public static int binaryWords(int dimensions) {
+        return (dimensions + 63) >>> 6;
+    }
+
+    /**
+     * 二值量化（按符号位）
+     *
+     * @param embed  源向量
+     * @param bits   输出位图
+     * @param offset 输出偏移（long 单位）
+     */
+    public static void quantizeBinary(float[] embed, long[] bits, int offset) {
+        int words = binaryWords(embed.length);
+        for (int w = 0; w < words; w++) {
+            bits[offset + w] = 0L;
+        }
+
+        for (int i = 0; i < embed.length; i++) {
+            if (embed[i] > 0.0F) {
+                bits[offset + (i >>> 6)] |= 1L << (i & 63);
+            }
+        }
+    }
+
+    /**
+     * 汉明相似度（映射到 -1 到 1，近似余弦相似度）
+     *
+     * @param query      查询位图
+     * @param bits       目标位图
+     * @param offset     目标偏移（long 单位）
+     * @param dimensions 维度
+     */
+    public static float hammingSimilarity(long[] query, long[] bits, int offset, int dimensions) {
+        int distance = 0;
+        for (int w = 0; w < query.length; w++) {
+            distance += Long.bitCount(query[w] ^ bits[offset + w]);
+        }
+
+        return 1.0F - (2.0F * distance) / dimensions;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.rag.util;
+
+import org.noear.solon.ai.rag.Document;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 多路检索结果融合
+ *
+ * @author noear
+ * @since 4.1
+ */
+public final class RankFusion {
+    /**
+     * RRF 默认常数
+     */
+    public static final int DEFAULT_RRF_K = 60;
+
+    /**
+     * 融合（按文档 id 合并，融合分数归一化到 0-1，按分数倒序）
+     *
+     * @param lists   各路结果（各自按分数倒序）
+     * @param weights 各路权重
+     * @param mode    融合方式
+     * @param rrfK    RRF 常数（仅 RRF 时有效）
+     */
+    public static List<Document> fuse(List<List<Document>> lists, double[] weights, FusionMode mode, int rrfK) {
+        return fuse(lists, weights, mode, rrfK, false);
+    }
+
+    /**
+     * 融合（融合分数归一化到 0-1，按分数倒序）
+     *
+     * @param lists          各路结果（各自按分数倒序）
+     * @param weights        各路权重
+     * @param mode           融合方式
+     * @param rrfK           RRF 常数（仅 RRF 时有效）
+     * @param dedupByContent 是否同时按内容去重（id 相同或内容相同，均视为同一文档；适合多个独立知识库）
+     */
+    public static List<Document> fuse(List<List<Document>> lists, double[] weights, FusionMode mode, int rrfK, boolean dedupByContent) {
+        if (lists.size() != weights.length) {
+            throw new IllegalArgumentException("The weights length must be equal to lists size");
+        }
+
+        double weightSum = 0.0D;
+        for (double w : weights) {
+            weightSum += Math.max(0.0D, w);
+        }
+
+        if (weightSum <= 0.0D) {
+            return new ArrayList<>();
+        }
+
+        Map<String, Document> byKey = new HashMap<>();
+        Map<String, Document> byContent = new HashMap<>();
+        List<Document> result = new ArrayList<>();
+
+        for (int i = 0; i < lists.size(); i++) {
+            List<Document> list = lists.get(i);
+            double weight = Math.max(0.0D, weights[i]);
+            if (weight == 0.0D || list == null || list.isEmpty()) {
+                continue;
+            }
+
+            double maxScore = 0.0D;
+            for (Document doc : list) {
+                maxScore = Math.max(maxScore, doc.getScore());
+            }
+
+            //同一路内的重复文档只计一次（取排名靠前的）
+            Set<Document> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+
+            for (int rank = 0; rank < list.size(); rank++) {
+                Document doc = list.get(rank);
+                double part;
+                if (mode == FusionMode.RRF) {
+                    //归一化：每路排第一时为 weight / weightSum
+                    part = weight * (rrfK + 1) / (rrfK + rank + 1) / weightSum;
+                } else {
+                    part = maxScore > 0.0D ? weight * Math.max(0.0D, doc.getScore()) / maxScore / weightSum : 0.0D;
+                }
+
+                String key = keyOf(doc);
+                Document target = byKey.get(key);
+                if (target == null && dedupByContent && doc.getContent() != null) {
+                    target = byContent.get(doc.getContent());
+                }
+
+                if (target == null) {
+                    target = new Document(doc.getId(), doc.getContent(), doc.getMetadata(), 0.0D);
+                    result.add(target);
+                }
+
+                byKey.putIfAbsent(key, target);
+                if (dedupByContent && doc.getContent() != null) {
+                    byContent.putIfAbsent(doc.getContent(), target);
+                }
+
+                if (counted.add(target)) {
+                    target.score(target.getScore() + part);
+                }
+            }
+        }
+
+        result.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
+        return result;
+    }
+
+    /**
+     * 文档合并键（优先 id，否则为内容）
+     */
+    public static String keyOf(Document doc) {
+        if (doc.getId() == null || doc.getId().isEmpty()) {
+            return "content:" + doc.getContent();
+        } else {
+            return "id:" + doc.getId();
+        }
+    }
+}
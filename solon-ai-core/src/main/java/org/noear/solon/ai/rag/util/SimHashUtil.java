@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.rag.util;
+
+import java.util.List;
+
+/**
+ * SimHash 工具（64 位文本指纹，用于近似重复检测）
+ *
+ * <p>特征为分词结果及相邻词的二元组（按出现次数加权）；两段文本越相似，指纹的汉明距离越小。
+ *
+ * @author noear
+ * @since 4.1
+ */
+public final class SimHashUtil {
+    /**
+     * 计算指纹
+     */
+    public static long signature(String text) {
+        List<String> tokens = TokenizeUtil.tokenize(text);
+        int[] weights = new int[64];
+
+        String prev = null;
+        for (String token : tokens) {
+            add(weights, hash(token));
+            if (prev != null) {
+                add(weights, hash(prev + ' ' + token));
+            }
+            prev = token;
+        }
+
+        long signature = 0L;
+        for (int i = 0; i < 64; i++) {
+            if (weights[i] > 0) {
+                signature |= 1L << i;
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * 汉明距离
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * 相似度（0 到 1）
+     */
+    public static double similarity(long a, long b) {
+        return 1.0D - distance(a, b) / 64.0D;
+    }
+
+    private static void add(int[] weights, long hash) {
+        for (int i = 0; i < 64; i++) {
+            if (((hash >>> i) & 1L) != 0L) {
+                weights[i]++;
+            } else {
+                weights[i]--;
+            }
+        }
+    }
+
+    /**
+     * 64 位散列（FNV-1a，再经 splitmix64 混合）
+     */
+    public static long hash(String text) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            h ^= text.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.rag.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分词工具（轻量，兼顾中日韩文字）
+ *
+ * <p>拉丁字母与数字按连续片段切词并转小写；中日韩文字输出单字，并额外输出相邻两字的二元组（提升短语匹配精度）。
+ *
+ * @author noear
+ * @since 4.1
+ */
+public final class TokenizeUtil {
+    /**
+     * 分词
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+
+        StringBuilder word = new StringBuilder();
+        int prevCjk = -1;
+
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+
+            if (isCjk(cp)) {
+                flushWord(word, tokens);
+
+                String ch = new String(Character.toChars(cp));
+                tokens.add(ch);
+                if (prevCjk >= 0) {
+                    tokens.add(new String(Character.toChars(prevCjk)) + ch);
+                }
+                prevCjk = cp;
+            } else if (Character.isLetterOrDigit(cp)) {
+                prevCjk = -1;
+                word.appendCodePoint(Character.toLowerCase(cp));
+            } else {
+                prevCjk = -1;
+                flushWord(word, tokens);
+            }
+        }
+
+        flushWord(word, tokens);
+        return tokens;
+    }
+
+    /**
+     * 是否为中日韩文字
+     */
+    public static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    private static void flushWord(StringBuilder word, List<String> tokens) {
+        if (word.length() > 0) {
+            tokens.add(word.toString());
+            word.setLength(0);
+        }
+    }
+}
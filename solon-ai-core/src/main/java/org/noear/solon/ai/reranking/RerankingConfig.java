@@ -19,6 +19,8 @@ import org.noear.solon.ai.AiConfig;
 import org.noear.solon.annotation.BindProps;
 import org.noear.solon.lang.Preview;
 
+import java.time.Duration;
+
 /**
  * 重排配置
  *
@@ -27,6 +29,110 @@ import org.noear.solon.lang.Preview;
  */
 @Preview("3.1")
 public class RerankingConfig extends AiConfig {
+    private int batchSize = 64;
+    private int batchMaxChars = 0;
+    private int batchConcurrency = 4;
+    private int cacheSize = 1024;
+    private Duration fallbackTimeout;
+
+    /**
+     * 获取批次大小（每个请求的最多文档数）
+     *
+     * @since 4.1
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * 设置批次大小（每个请求的最多文档数）
+     *
+     * @since 4.1
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize > 0) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    /**
+     * 获取批次最大字符数（0 表示不限）
+     *
+     * @since 4.1
+     */
+    public int getBatchMaxChars() {
+        return batchMaxChars;
+    }
+
+    /**
+     * 设置批次最大字符数（0 表示不限；单个文档超出时单独成批）
+     *
+     * @since 4.1
+     */
+    public void setBatchMaxChars(int batchMaxChars) {
+        if (batchMaxChars >= 0) {
+            this.batchMaxChars = batchMaxChars;
+        }
+    }
+
+    /**
+     * 获取批次并发数
+     *
+     * @since 4.1
+     */
+    public int getBatchConcurrency() {
+        return batchConcurrency;
+    }
+
+    /**
+     * 设置批次并发数
+     *
+     * @since 4.1
+     */
+    public void setBatchConcurrency(int batchConcurrency) {
+        if (batchConcurrency > 0) {
+            this.batchConcurrency = batchConcurrency;
+        }
+    }
+
+    /**
+     * 获取分数缓存条数（0 表示不缓存）
+     *
+     * @since 4.1
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * 设置分数缓存条数（0 表示不缓存）
+     *
+     * @since 4.1
+     */
+    public void setCacheSize(int cacheSize) {
+        if (cacheSize >= 0) {
+            this.cacheSize = cacheSize;
+        }
+    }
+
+    /**
+     * 获取降级超时（超时后按原顺序返回；为 null 时不降级）
+     *
+     * @since 4.1
+     */
+    public Duration getFallbackTimeout() {
+        return fallbackTimeout;
+    }
+
+    /**
+     * 设置降级超时（超时后按原顺序返回；为 null 时不降级）
+     *
+     * @since 4.1
+     */
+    public void setFallbackTimeout(Duration fallbackTimeout) {
+        this.fallbackTimeout = fallbackTimeout;
+    }
+
     @Override
     public String toString() {
         return "RerankingConfig{" +
@@ -36,6 +142,11 @@ public class RerankingConfig extends AiConfig {
                 ", model='" + model + '\'' +
                 ", headers=" + headers +
                 ", timeout=" + timeout +
+                ", batchSize=" + batchSize +
+                ", batchMaxChars=" + batchMaxChars +
+                ", batchConcurrency=" + batchConcurrency +
+                ", cacheSize=" + cacheSize +
+                ", fallbackTimeout=" + fallbackTimeout +
                 '}';
     }
 }
@@ -21,16 +21,28 @@ import org.noear.solon.ai.reranking.dialect.RerankingDialect;
 import org.noear.solon.ai.reranking.dialect.RerankingDialectManager;
 import org.noear.solon.core.Props;
 import org.noear.solon.core.util.Assert;
+import org.noear.solon.core.util.RunUtil;
 import org.noear.solon.lang.Preview;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 重排模型
@@ -40,8 +52,11 @@ import java.util.stream.Collectors;
  */
 @Preview("3.1")
 public class RerankingModel implements AiModel {
+    private static final Logger log = LoggerFactory.getLogger(RerankingModel.class);
+
     private final RerankingConfig config;
     private final RerankingDialect dialect;
+    private final Map<String, Float> scoreCache;
 
     public RerankingModel(Properties properties) {
         //支持直接注入
@@ -55,24 +70,254 @@ public class RerankingModel implements AiModel {
 
         this.dialect = RerankingDialectManager.select(config);
         this.config = config;
+        this.scoreCache = new LinkedHashMap<String, Float>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Float> eldest) {
+                return size() > config.getCacheSize();
+            }
+        };
     }
 
     /**
      * 重排
+     *
+     * <p>候选文档按批次大小（及批次字符数）拆分为多个请求并发执行，分数合并后统一排序；
+     * 已缓存分数的文档不再请求。配置了降级超时且超时时，按原顺序返回（不修改分数）。
+     * 服务端未返回分数的文档（如受 top_n 限制），排在最后并保持原顺序。
      */
     public List<Document> rerank(String query, List<Document> documents) throws IOException {
-        RerankingResponse resp = input(query, documents).call();
+        int size = documents.size();
+        if (size == 0) {
+            return new ArrayList<>();
+        }
+
+        float[] scores = new float[size];
+        boolean[] scored = new boolean[size];
+        String[] keys = new String[size];
+
+        //取缓存
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (config.getCacheSize() > 0) {
+                keys[i] = cacheKey(query, documents.get(i).getContent());
+
+                Float cached;
+                synchronized (scoreCache) {
+                    cached = scoreCache.get(keys[i]);
+                }
+
+                if (cached != null) {
+                    scores[i] = cached;
+                    scored[i] = true;
+                    continue;
+                }
+            }
+
+            pending.add(i);
+        }
+
+        if (pending.size() > 0) {
+            List<List<Integer>> batches = splitBatches(documents, pending);
+
+            if (runBatches(query, documents, batches, scores, scored, keys) == false) {
+                //超时降级：保持原顺序
+                return new ArrayList<>(documents);
+            }
+        }
+
+        List<Integer> order = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            order.add(i);
+        }
+
+        order.sort((a, b) -> {
+            if (scored[a] != scored[b]) {
+                return scored[a] ? -1 : 1;
+            } else if (scored[a]) {
+                return Float.compare(scores[b], scores[a]);
+            } else {
+                return 0;
+            }
+        });
+
+        List<Document> result = new ArrayList<>(size);
+        for (int i : order) {
+            Document doc = documents.get(i);
+            if (scored[i]) {
+                doc.score(scores[i]);
+            }
+            result.add(doc);
+        }
+
+        return result;
+    }
+
+    /**
+     * 清空分数缓存
+     *
+     * @since 4.1
+     */
+    public void clearCache() {
+        synchronized (scoreCache) {
+            scoreCache.clear();
+        }
+    }
+
+    /**
+     * 重排一个批次（返回的序号相对于批次）
+     *
+     * @since 4.1
+     */
+    protected List<Reranking> rerankBatch(String query, List<Document> batch) throws IOException {
+        RerankingResponse resp = input(query, batch).call();
         if (resp.getError() != null) {
             throw resp.getError();
         }
 
-        for (int i = 0, len = documents.size(); i < len; i++) {
-            documents.get(i).score(resp.getResults().get(i).getRelevanceScore());
+        return resp.getResults();
+    }
+
+    /**
+     * 按批次大小与批次字符数拆分
+     */
+    private List<List<Integer>> splitBatches(List<Document> documents, List<Integer> pending) {
+        List<List<Integer>> batches = new ArrayList<>();
+        List<Integer> batch = new ArrayList<>();
+        long chars = 0;
+
+        for (int i : pending) {
+            String content = documents.get(i).getContent();
+            int len = (content == null ? 0 : content.length());
+
+            if (batch.size() > 0 && (batch.size() >= config.getBatchSize() ||
+                    (config.getBatchMaxChars() > 0 && chars + len > config.getBatchMaxChars()))) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                chars = 0;
+            }
+
+            batch.add(i);
+            chars += len;
         }
 
-        return documents.stream()
-                .sorted(Comparator.comparing(Document::getScore).reversed())
-                .collect(Collectors.toList());
+        batches.add(batch);
+        return batches;
+    }
+
+    /**
+     * 执行批次（超时返回 false）
+     */
+    private boolean runBatches(String query, List<Document> documents, List<List<Integer>> batches,
+                               float[] scores, boolean[] scored, String[] keys) throws IOException {
+        Duration fallbackTimeout = config.getFallbackTimeout();
+
+        if (batches.size() == 1 && fallbackTimeout == null) {
+            runBatch(query, documents, batches.get(0), scores, scored, keys);
+            return true;
+        }
+
+        //各工作者依次领取批次，并发数不超过 batchConcurrency
+        AtomicInteger cursor = new AtomicInteger();
+        int workers = Math.min(config.getBatchConcurrency(), batches.size());
+        List<CompletableFuture<Void>> futures = new ArrayList<>(workers);
+
+        for (int w = 0; w < workers; w++) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            futures.add(future);
+
+            RunUtil.async(() -> {
+                try {
+                    for (int b = cursor.getAndIncrement(); b < batches.size(); b = cursor.getAndIncrement()) {
+                        runBatch(query, documents, batches.get(b), scores, scored, keys);
+                    }
+
+                    future.complete(null);
+                } catch (Throwable ex) {
+                    future.completeExceptionally(ex);
+                }
+            });
+        }
+
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+
+        try {
+            if (fallbackTimeout == null) {
+                all.get();
+            } else {
+                all.get(fallbackTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            }
+
+            return true;
+        } catch (TimeoutException e) {
+            //让未开始的批次不再执行（已完成的批次分数仍会进入缓存）
+            cursor.set(batches.size());
+            log.warn("Reranking timeout, fallback to the original order: model={}, timeout={}ms",
+                    config.getNameOrModel(), fallbackTimeout.toMillis());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Reranking interrupted", e);
+        } catch (ExecutionException e) {
+            cursor.set(batches.size());
+
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new RerankingException(cause);
+            }
+        }
+    }
+
+    private void runBatch(String query, List<Document> documents, List<Integer> batch,
+                          float[] scores, boolean[] scored, String[] keys) throws IOException {
+        List<Document> docs = new ArrayList<>(batch.size());
+        for (int i : batch) {
+            docs.add(documents.get(i));
+        }
+
+        List<Reranking> results = rerankBatch(query, docs);
+        if (results == null) {
+            return;
+        }
+
+        for (Reranking r : results) {
+            if (r.getIndex() < 0 || r.getIndex() >= batch.size()) {
+                continue;
+            }
+
+            int i = batch.get(r.getIndex());
+            scores[i] = r.getRelevanceScore();
+            scored[i] = true;
+
+            if (keys[i] != null) {
+                synchronized (scoreCache) {
+                    scoreCache.put(keys[i], r.getRelevanceScore());
+                }
+            }
+        }
+    }
+
+    /**
+     * 分数缓存键（查询 + 文档内容摘要）
+     */
+    private static String cacheKey(String query, String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(content).getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder buf = new StringBuilder(query.length() + 33).append(query).append('\u0001');
+            byte[] bytes = digest.digest();
+            for (int i = 0; i < 16; i++) {
+                buf.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16))
+                        .append(Character.forDigit(bytes[i] & 0xF, 16));
+            }
+            return buf.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
 
@@ -182,6 +427,56 @@ public class RerankingModel implements AiModel {
             return this;
         }
 
+        /**
+         * 批次大小（默认 64）
+         *
+         * @since 4.1
+         */
+        public Builder batchSize(int batchSize) {
+            config.setBatchSize(batchSize);
+            return this;
+        }
+
+        /**
+         * 批次最大字符数（默认 0，即不限）
+         *
+         * @since 4.1
+         */
+        public Builder batchMaxChars(int batchMaxChars) {
+            config.setBatchMaxChars(batchMaxChars);
+            return this;
+        }
+
+        /**
+         * 批次并发数（默认 4）
+         *
+         * @since 4.1
+         */
+        public Builder batchConcurrency(int batchConcurrency) {
+            config.setBatchConcurrency(batchConcurrency);
+            return this;
+        }
+
+        /**
+         * 分数缓存条数（默认 1024；0 表示不缓存）
+         *
+         * @since 4.1
+         */
+        public Builder cacheSize(int cacheSize) {
+            config.setCacheSize(cacheSize);
+            return this;
+        }
+
+        /**
+         * 降级超时（超时后按原顺序返回）
+         *
+         * @since 4.1
+         */
+        public Builder fallbackTimeout(Duration fallbackTimeout) {
+            config.setFallbackTimeout(fallbackTimeout);
+            return this;
+        }
+
         /**
          * 网络代理
          */
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.tokenizer;
+
+/**
+ * 近似分词计数器（单次扫描，不加载词表；适用于没有公开词表的模型）
+ *
+ * <p>中日韩文字按每字 1 个计；拉丁字母与数字的连续片段按每 4 字符 1 个计（向上取整）；其它非空白字符每个 1 个。
+ * 对主流中文模型略为偏高，用于预算控制时更安全。
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class ApproximateTokenizer implements Tokenizer {
+    @Override
+    public String name() {
+        return "approximate";
+    }
+
+    @Override
+    public int countTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+
+        int count = 0;
+        int word = 0;
+
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+
+            if (cp < 128 ? Character.isLetterOrDigit(cp) : (Character.isLetterOrDigit(cp) && isCjk(cp) == false)) {
+                word++;
+                continue;
+            }
+
+            if (word > 0) {
+                count += (word + 3) / 4;
+                word = 0;
+            }
+
+            if (Character.isWhitespace(cp) == false) {
+                count++;
+            }
+        }
+
+        if (word > 0) {
+            count += (word + 3) / 4;
+        }
+
+        return count;
+    }
+
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.tokenizer;
+
+import com.knuddels.jtokkit.api.Encoding;
+
+/**
+ * 基于 jtokkit 编码的分词计数器（精确，适用于 OpenAI 系列模型）
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class EncodingTokenizer implements Tokenizer {
+    private final Encoding encoding;
+
+    public EncodingTokenizer(Encoding encoding) {
+        this.encoding = encoding;
+    }
+
+    /**
+     * 获取编码
+     */
+    public Encoding getEncoding() {
+        return encoding;
+    }
+
+    @Override
+    public String name() {
+        return encoding.getName();
+    }
+
+    @Override
+    public int countTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+
+        return encoding.countTokens(text);
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.tokenizer;
+
+import org.noear.solon.ai.chat.content.AbsMedia;
+import org.noear.solon.ai.chat.content.ContentBlock;
+import org.noear.solon.ai.chat.message.AssistantMessage;
+import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.chat.message.ToolMessage;
+import org.noear.solon.ai.chat.message.UserMessage;
+import org.noear.solon.ai.chat.tool.ToolCall;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Token 计数工具（消息级计数带记忆）
+ *
+ * <p>消息的计数结果连同计数器名与消息指纹记录在进程内的弱引用缓存中（不写入消息元数据，避免并发写入与随会话持久化）；
+ * 消息内容、工具调用或内容块变化后指纹随之变化，会自动重算。指纹基于字符串散列（有缓存），远低于重新分词的开销。
+ *
+ * @author noear
+ * @since 4.1
+ */
+public final class TokenCountUtil {
+    /**
+     * 计数元数据键（历史上用于在消息元数据中缓存计数；本工具不读写该键）
+     */
+    public static final String META_TOKEN_SIZE = "token_size";
+
+    /**
+     * 计数记忆（消息无 equals/hashCode 重写，按实例区分；消息回收后自动移除）
+     */
+    private static final Map<ChatMessage, Memo> memos = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * 计算消息的 Token 数量（带记忆，每条消息在内容不变时只计算一次）
+     */
+    public static int countMessage(ChatMessage message, Tokenizer tokenizer) {
+        long fingerprint = fingerprint(message);
+
+        Memo memo = memos.get(message);
+        if (memo != null && memo.fingerprint == fingerprint && memo.tokenizer.equals(tokenizer.name())) {
+            return memo.count;
+        }
+
+        int count = estimateMessage(message, tokenizer);
+        memos.put(message, new Memo(tokenizer.name(), fingerprint, count));
+
+        return count;
+    }
+
+    /**
+     * 估算消息的 Token 数量（不带记忆）
+     */
+    public static int estimateMessage(ChatMessage message, Tokenizer tokenizer) {
+        int count = tokenizer.countTokens(message.getContent());
+
+        if (message instanceof AssistantMessage) {
+            AssistantMessage assistant = (AssistantMessage) message;
+            List<ToolCall> toolCalls = assistant.getToolCalls();
+            if (toolCalls != null) {
+                for (ToolCall tc : toolCalls) {
+                    String name = tc.getName() != null ? tc.getName() : "";
+                    String args = tc.getArgumentsStr() != null ? tc.getArgumentsStr() : "";
+                    count += tokenizer.countTokens(name + args) + 10;
+                    count += tokenizer.countTokens(tc.getId());
+                    count += tokenizer.countTokens(tc.getThoughtSignature());
+                }
+            }
+
+            if (assistant.getToolCallsRaw() != null && assistant.getToolCallsRaw().isEmpty() == false) {
+                count += tokenizer.countTokens(String.valueOf(assistant.getToolCallsRaw()));
+            }
+
+            count += estimateMedia(assistant.getBlocks(), tokenizer);
+        } else if (message instanceof UserMessage) {
+            count += estimateMedia(((UserMessage) message).getBlocks(), tokenizer);
+        } else if (message instanceof ToolMessage) {
+            ToolMessage toolMessage = (ToolMessage) message;
+            count += estimateMedia(toolMessage.getBlocks(), tokenizer);
+            count += tokenizer.countTokens(toolMessage.getName());
+            count += tokenizer.countTokens(toolMessage.getToolCallId());
+        }
+
+        return count;
+    }
+
+    /**
+     * 估算媒体块的 Token 数量
+     *
+     * <p>base64 数据按约 4 字符 1 个估算（加结构开销）；url 按文本计数。
+     */
+    public static int estimateMedia(List<ContentBlock> blocks, Tokenizer tokenizer) {
+        if (blocks == null || blocks.isEmpty()) {
+            return 0;
+        }
+
+        int tokens = 0;
+        for (ContentBlock block : blocks) {
+            if (!(block instanceof AbsMedia)) {
+                continue;
+            }
+
+            AbsMedia<?> media = (AbsMedia<?>) block;
+            Object storedLength = (media.getMediaHash() == null ? null : media.metas().get("original_data_length"));
+            if (storedLength instanceof Number) {
+                //存于媒体存储的数据，不必取回
+                tokens += Math.max(1, ((Number) storedLength).intValue() / 4) + 20;
+                continue;
+            }
+
+            String data = media.getData();
+            if (data != null && data.isEmpty() == false) {
+                tokens += Math.max(1, data.length() / 4) + 20;
+            } else if (media.getUrl() != null && media.getUrl().isEmpty() == false) {
+                tokens += tokenizer.countTokens(media.getUrl()) + 10;
+            } else {
+                tokens += 8;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 消息指纹（覆盖参与计数的全部内容）
+     */
+    private static long fingerprint(ChatMessage message) {
+        long h = message.getRole().ordinal();
+        h = mix(h, message.getContent());
+
+        if (message instanceof AssistantMessage) {
+            AssistantMessage assistant = (AssistantMessage) message;
+            if (assistant.getToolCalls() != null) {
+                for (ToolCall tc : assistant.getToolCalls()) {
+                    h = mix(h, tc.getName());
+                    h = mix(h, tc.getArgumentsStr());
+                    h = mix(h, tc.getId());
+                    h = mix(h, tc.getThoughtSignature());
+                }
+            }
+
+            if (assistant.getToolCallsRaw() != null) {
+                h = h * 31 + assistant.getToolCallsRaw().hashCode();
+            }
+
+            h = mixBlocks(h, assistant.getBlocks());
+        } else if (message instanceof UserMessage) {
+            h = mixBlocks(h, ((UserMessage) message).getBlocks());
+        } else if (message instanceof ToolMessage) {
+            ToolMessage toolMessage = (ToolMessage) message;
+            h = mixBlocks(h, toolMessage.getBlocks());
+            h = mix(h, toolMessage.getName());
+            h = mix(h, toolMessage.getToolCallId());
+        }
+
+        return h;
+    }
+
+    private static long mixBlocks(long h, List<ContentBlock> blocks) {
+        if (blocks != null) {
+            for (ContentBlock block : blocks) {
+                if (block instanceof AbsMedia) {
+                    AbsMedia<?> media = (AbsMedia<?>) block;
+                    h = mix(h, media.getMediaHash() == null ? media.getData() : media.getMediaHash());
+                    h = mix(h, media.getUrl());
+                } else {
+                    h = h * 31 + 7;
+                }
+            }
+        }
+        return h;
+    }
+
+    private static long mix(long h, String text) {
+        if (text == null) {
+            return h * 31 + 1;
+        }
+
+        //字符串散列有缓存；长度参与以降低碰撞
+        return (h * 31 + text.hashCode()) * 31 + text.length();
+    }
+
+    private static class Memo {
+        final String tokenizer;
+        final long fingerprint;
+        final int count;
+
+        Memo(String tokenizer, long fingerprint, int count) {
+            this.tokenizer = tokenizer;
+            this.fingerprint = fingerprint;
+            this.count = count;
+        }
+    }
+}
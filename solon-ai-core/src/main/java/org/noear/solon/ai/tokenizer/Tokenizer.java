@@ -0,0 +1,34 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.tokenizer;
+
+/**
+ * 分词计数器（估算文本的 Token 数量）
+ *
+ * @author noear
+ * @since 4.1
+ */
+public interface Tokenizer {
+    /**
+     * 名字（用于区分计数结果的来源）
+     */
+    String name();
+
+    /**
+     * 计算 Token 数量（null 或空文本返回 0）
+     */
+    int countTokens(String text);
+}
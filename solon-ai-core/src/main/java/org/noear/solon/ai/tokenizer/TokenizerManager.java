@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.tokenizer;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingRegistry;
+import com.knuddels.jtokkit.api.EncodingType;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 分词计数器管理（全局共享；编码表只加载一次）
+ *
+ * <p>按模型名选择计数器：OpenAI 系列使用对应的精确编码，其它模型使用近似计数器（可通过 register 按前缀指定）。
+ *
+ * @author noear
+ * @since 4.1
+ */
+public final class TokenizerManager {
+    private static final EncodingRegistry encodingRegistry = Encodings.newLazyEncodingRegistry();
+    private static final Map<EncodingType, EncodingTokenizer> encodingTokenizers = new ConcurrentHashMap<>();
+    private static final Map<String, Tokenizer> modelTokenizers = new ConcurrentHashMap<>();
+    private static final Tokenizer approximate = new ApproximateTokenizer();
+
+    /**
+     * 获取共享的编码库
+     */
+    public static EncodingRegistry getEncodingRegistry() {
+        return encodingRegistry;
+    }
+
+    /**
+     * 获取共享的编码
+     */
+    public static Encoding getEncoding(EncodingType encodingType) {
+        return getTokenizer(encodingType).getEncoding();
+    }
+
+    /**
+     * 获取编码计数器
+     */
+    public static EncodingTokenizer getTokenizer(EncodingType encodingType) {
+        return encodingTokenizers.computeIfAbsent(encodingType,
+                k -> new EncodingTokenizer(encodingRegistry.getEncoding(k)));
+    }
+
+    /**
+     * 获取默认计数器（o200k_base，对主流模型偏差较小）
+     */
+    public static EncodingTokenizer getDefault() {
+        return getTokenizer(EncodingType.O200K_BASE);
+    }
+
+    /**
+     * 获取近似计数器
+     */
+    public static Tokenizer getApproximate() {
+        return approximate;
+    }
+
+    /**
+     * 注册模型计数器（按模型名前缀匹配，不区分大小写）
+     */
+    public static void register(String modelPrefix, Tokenizer tokenizer) {
+        modelTokenizers.put(modelPrefix.toLowerCase(), tokenizer);
+    }
+
+    /**
+     * 按模型名获取计数器
+     */
+    public static Tokenizer getTokenizer(String model) {
+        if (model == null || model.isEmpty()) {
+            return getDefault();
+        }
+
+        String name = model.toLowerCase();
+        //去掉供应商前缀（如 openai/gpt-4o）
+        int slash = name.lastIndexOf('/');
+        if (slash >= 0) {
+            name = name.substring(slash + 1);
+        }
+
+        Tokenizer matched = null;
+        int matchedLength = -1;
+        for (Map.Entry<String, Tokenizer> kv : modelTokenizers.entrySet()) {
+            if (name.startsWith(kv.getKey()) && kv.getKey().length() > matchedLength) {
+                matched = kv.getValue();
+                matchedLength = kv.getKey().length();
+            }
+        }
+
+        if (matched != null) {
+            return matched;
+        }
+
+        if (name.startsWith("gpt-4o") || name.startsWith("gpt-4.1") || name.startsWith("gpt-5")
+                || name.startsWith("o1") || name.startsWith("o3") || name.startsWith("o4")
+                || name.startsWith("chatgpt")) {
+            return getTokenizer(EncodingType.O200K_BASE);
+        }
+
+        if (name.startsWith("gpt-4") || name.startsWith("gpt-3.5") || name.startsWith("text-embedding")) {
+            return getTokenizer(EncodingType.CL100K_BASE);
+        }
+
+        return approximate;
+    }
+}
@@ -0,0 +1,88 @@
+package features.ai.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.noear.solon.ai.chat.ChatSession;
+import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.chat.session.BoundedChatSessionProvider;
+import org.noear.solon.ai.chat.session.FileChatSession;
+
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 有界会话提供者：按数量、字节与空闲淘汰，淘汰后从后端存储重新加载
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class BoundedChatSessionProviderTest {
+    @Test
+    public void evictByCountAndReload() throws Exception {
+        String dir = Files.createTempDirectory("solon_ai_bounded_").toString();
+        AtomicInteger loads = new AtomicInteger();
+
+        BoundedChatSessionProvider provider = BoundedChatSessionProvider.builder(id -> {
+                    loads.incrementAndGet();
+                    return new FileChatSession(id, dir);
+                })
+                .maxSessions(2)
+                .build();
+
+        provider.getSession("a").addMessage(ChatMessage.ofUser("hello a"));
+        provider.getSession("b").addMessage(ChatMessage.ofUser("hello b"));
+        Assertions.assertSame(provider.getSession("a"), provider.getSession("a"));
+
+        // 第 3 个会话进入，最久未访问的 b 被淘汰
+        provider.getSession("c");
+        Assertions.assertEquals(2, provider.getCache().size());
+        Assertions.assertFalse(provider.getCache().contains("b"));
+
+        // 再次访问 b：从文件重新加载
+        ChatSession b = provider.getSession("b");
+        Assertions.assertEquals(1, b.getMessages().size());
+        Assertions.assertEquals("hello b", b.getMessages().get(0).getContent());
+        Assertions.assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void evictByBytes() throws Exception {
+        String dir = Files.createTempDirectory("solon_ai_bounded_").toString();
+
+        BoundedChatSessionProvider provider = BoundedChatSessionProvider.builder(id -> new FileChatSession(id, dir))
+                .maxSessions(0)
+                .maxBytes(8 * 1024)
+                .build();
+
+        StringBuilder big = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            big.append('x');
+        }
+
+        provider.getSession("a").addMessage(ChatMessage.ofUser(big.toString()));
+        provider.getSession("a");
+        provider.getSession("b").addMessage(ChatMessage.ofUser(big.toString()));
+        provider.getSession("b");
+
+        Assertions.assertFalse(provider.getCache().contains("a"));
+        Assertions.assertTrue(provider.getCache().bytes() <= 8 * 1024);
+        Assertions.assertEquals(1, provider.getSession("a").getMessages().size());
+    }
+
+    @Test
+    public void evictByIdle() throws Exception {
+        String dir = Files.createTempDirectory("solon_ai_bounded_").toString();
+
+        BoundedChatSessionProvider provider = BoundedChatSessionProvider.builder(id -> new FileChatSession(id, dir))
+                .idleTimeout(Duration.ofMillis(100))
+                .build();
+
+        provider.getSession("a");
+        Thread.sleep(200);
+        provider.getSession("b");
+
+        Assertions.assertFalse(provider.getCache().contains("a"));
+        Assertions.assertEquals(1, provider.getCache().size());
+    }
+}
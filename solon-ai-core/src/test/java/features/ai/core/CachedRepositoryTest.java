@@ -0,0 +1,127 @@
+package features.ai.core;
+
+import org.junit.jupiter.api.Test;
+import org.noear.solon.ai.rag.Document;
+import org.noear.solon.ai.rag.Repository;
+import org.noear.solon.ai.rag.repository.CachedRepository;
+import org.noear.solon.ai.rag.repository.InMemoryRepository;
+import org.noear.solon.ai.rag.util.QueryCondition;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author noear
+ * @since 4.1
+ */
+public class CachedRepositoryTest {
+    @Test
+    public void case1_embedding() throws Exception {
+        FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel();
+
+        InMemoryRepository inner = new InMemoryRepository(embeddingModel);
+        inner.save(Arrays.asList(
+                new Document("solon is a java framework").id("d1"),
+                new Document("solon ai supports rag").id("d2")));
+
+        CachedRepository repository = CachedRepository.builder(inner)
+                .embeddingModel(embeddingModel)
+                .build();
+
+        embeddingModel.embedCount.set(0);
+        List<Document> list1 = repository.search(new QueryCondition("solon ai rag").similarityThreshold(0));
+        List<Document> list2 = repository.search(new QueryCondition("solon ai rag").similarityThreshold(0));
+
+        //查询嵌入只计算一次（被装饰的知识库直接使用传入的查询嵌入）
+        assert embeddingModel.embedCount.get() == 1;
+        assert repository.getEmbeddingCache().getHitCount() == 1;
+        assert list1.size() == list2.size();
+        assert list1.get(0).getId().equals(list2.get(0).getId());
+    }
+
+    @Test
+    public void case2_result() throws Exception {
+        FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel();
+
+        InMemoryRepository inner = new InMemoryRepository(embeddingModel);
+        inner.save(Arrays.asList(
+                new Document("solon is a java framework").id("d1"),
+                new Document("solon ai supports rag").id("d2")));
+
+        CachedRepository repository = CachedRepository.builder(inner)
+                .embeddingModel(embeddingModel)
+                .resultCacheSize(100)
+                .resultTtl(Duration.ofMinutes(1))
+                .build();
+
+        QueryCondition condition = new QueryCondition("solon ai rag").similarityThreshold(0).limit(10);
+
+        List<Document> list1 = repository.search(condition);
+        assert list1.size() == 2;
+
+        //调用方修改结果，不影响缓存
+        list1.get(0).score(-1);
+        List<Document> list2 = repository.search(condition);
+        assert repository.getResultHitCount() == 1;
+        assert list2.get(0).getScore() != -1;
+
+        //条件不同，不命中
+        repository.search(new QueryCondition("solon ai rag").similarityThreshold(0).limit(1));
+        assert repository.getResultMissCount() == 2;
+
+        //写入后失效
+        repository.save(new Document("solon ai rag rag rag").id("d3"));
+        List<Document> list3 = repository.search(condition);
+        assert list3.size() == 3;
+        assert repository.getResultMissCount() == 3;
+
+        repository.deleteById("d3");
+        assert repository.search(condition).size() == 2;
+    }
+
+    @Test
+    public void case3_ttl() throws Exception {
+        FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel();
+
+        InMemoryRepository inner = new InMemoryRepository(embeddingModel);
+        inner.save(new Document("solon is a java framework").id("d1"));
+
+        CachedRepository repository = CachedRepository.builder(inner)
+                .resultCacheSize(100)
+                .resultTtl(Duration.ofMillis(50))
+                .build();
+
+        QueryCondition condition = new QueryCondition("solon").similarityThreshold(0);
+        repository.search(condition);
+        Thread.sleep(100);
+        repository.search(condition);
+
+        assert repository.getResultHitCount() == 0;
+        assert repository.getResultMissCount() == 2;
+        assert repository.getEmbeddingCache() == null;
+    }
+
+    @Test
+    public void case4_unsupported() throws Exception {
+        FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel();
+
+        InMemoryRepository inner = new InMemoryRepository(embeddingModel);
+        inner.save(new Document("solon is a java framework").id("d1"));
+
+        //不支持传入查询嵌入的知识库（如未适配的第三方实现）
+        Repository plain = condition -> inner.search(condition);
+
+        CachedRepository repository = CachedRepository.builder(plain)
+                .embeddingModel(embeddingModel)
+                .build();
+
+        embeddingModel.embedCount.set(0);
+        assert repository.search(new QueryCondition("solon").similarityThreshold(0)).size() == 1;
+
+        //不预先计算查询嵌入，只有知识库自身的一次嵌入
+        assert embeddingModel.embedCount.get() == 1;
+        assert repository.getEmbeddingCache().getMissCount() == 0;
+        assert repository.isQueryEmbedSupported() == false;
+    }
+}
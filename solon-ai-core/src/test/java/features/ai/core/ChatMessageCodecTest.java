@@ -0,0 +1,123 @@
+package features.ai.core;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.noear.solon.ai.chat.content.ImageBlock;
+import org.noear.solon.ai.chat.message.AssistantMessage;
+import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.chat.message.ChatMessageCodec;
+import org.noear.solon.ai.chat.tool.ToolCall;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 聊天消息编解码（json 与二进制）
+ *
+ * @author noear
+ * @since 4.1
+ */
+@Slf4j
+public class ChatMessageCodecTest {
+    private List<ChatMessage> samples() {
+        Map<String, Object> funcMap = new LinkedHashMap<>();
+        Map<String, String> funcNameMap = new LinkedHashMap<>();
+        funcNameMap.put("name", "getWeather");
+        funcMap.put("function", funcNameMap);
+        Map<String, Object> argMap = new LinkedHashMap<>();
+        argMap.put("city", "杭州");
+
+        List<ChatMessage> list = new ArrayList<>();
+        list.add(ChatMessage.ofUser("今天杭州天气怎么样？\n\"quoted\""));
+        list.add(new AssistantMessage("", false, null,
+                Collections.singletonList(funcMap),
+                Collections.singletonList(new ToolCall("0", "call_1", "getWeather", "{\"city\":\"杭州\"}", argMap)),
+                null));
+        list.add(ChatMessage.ofTool("晴，24度", "getWeather", "call_1"));
+        list.add(ChatMessage.ofAssistant("杭州今天晴，24度。"));
+        list.add(ChatMessage.ofUser("look", ImageBlock.ofUrl("https://example.com/a.png")));
+        return list;
+    }
+
+    @Test
+    public void roundTrip() {
+        for (ChatMessage msg : samples()) {
+            String expected = ChatMessage.toJson(msg);
+
+            byte[] bin = ChatMessageCodec.BINARY.encode(msg);
+            Assertions.assertEquals(expected, ChatMessage.toJson(ChatMessageCodec.BINARY.decode(bin)));
+            Assertions.assertEquals(expected, ChatMessage.toJson(ChatMessageCodec.decodeAny(bin)));
+
+            byte[] json = ChatMessageCodec.JSON.encode(msg);
+            Assertions.assertEquals(expected, ChatMessage.toJson(ChatMessageCodec.JSON.decode(json)));
+
+            //两种格式互相兼容
+            Assertions.assertEquals(expected, ChatMessage.toJson(ChatMessageCodec.BINARY.decode(json)));
+            Assertions.assertEquals(expected, ChatMessage.toJson(ChatMessageCodec.JSON.decode(bin)));
+
+            assert bin.length < json.length;
+        }
+    }
+
+    @Test
+    public void bulk() throws Exception {
+        List<ChatMessage> list = samples();
+
+        ByteArrayOutputStream bin = new ByteArrayOutputStream();
+        ChatMessageCodec.BINARY.encodeAll(list, bin);
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        ChatMessageCodec.JSON.encodeAll(list, json);
+
+        for (byte[] data : new byte[][]{bin.toByteArray(), json.toByteArray()}) {
+            for (ChatMessageCodec codec : new ChatMessageCodec[]{ChatMessageCodec.BINARY, ChatMessageCodec.JSON}) {
+                List<ChatMessage> decoded = codec.decodeAll(new ByteArrayInputStream(data));
+                Assertions.assertEquals(list.size(), decoded.size());
+                for (int i = 0; i < list.size(); i++) {
+                    Assertions.assertEquals(ChatMessage.toJson(list.get(i)), ChatMessage.toJson(decoded.get(i)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void load_2k() throws Exception {
+        List<ChatMessage> samples = samples();
+        List<ChatMessage> list = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            list.add(samples.get(i % samples.size()));
+        }
+
+        ByteArrayOutputStream bin = new ByteArrayOutputStream();
+        ChatMessageCodec.BINARY.encodeAll(list, bin);
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        ChatMessageCodec.JSON.encodeAll(list, json);
+
+        //预热
+        for (int i = 0; i < 5; i++) {
+            ChatMessageCodec.BINARY.decodeAll(new ByteArrayInputStream(bin.toByteArray()));
+            ChatMessageCodec.JSON.decodeAll(new ByteArrayInputStream(json.toByteArray()));
+        }
+
+        long start = System.nanoTime();
+        List<ChatMessage> decoded = ChatMessageCodec.BINARY.decodeAll(new ByteArrayInputStream(bin.toByteArray()));
+        long binNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        ChatMessageCodec.JSON.decodeAll(new ByteArrayInputStream(json.toByteArray()));
+        long jsonNanos = System.nanoTime() - start;
+
+        log.warn("2k messages: binary={} bytes / {}ms, json={} bytes / {}ms",
+                bin.size(), binNanos / 1000000, json.size(), jsonNanos / 1000000);
+
+        Assertions.assertEquals(2000, decoded.size());
+        assert bin.size() < json.size();
+    }
+}
@@ -0,0 +1,120 @@
+package features.ai.core;
+
+import org.junit.jupiter.api.Test;
+import org.noear.solon.ai.rag.Document;
+import org.noear.solon.ai.rag.splitter.RegexTextSplitter;
+import org.noear.solon.ai.rag.splitter.TextSplitter;
+import org.noear.solon.ai.rag.util.ContextPacker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * @author noear
+ * @since 4.1
+ */
+public class ContextPackerTest {
+    private Document doc(String id, String content, double score, String url) {
+        return new Document(id, content, new HashMap<>(), score).url(url);
+    }
+
+    @Test
+    public void case1_budget() {
+        List<Document> docs = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            docs.add(doc("d" + i, "solon ai document number " + i + " talks about topic " + (i * 7) + " in detail", 1.0D - i * 0.01D, "u" + i));
+        }
+
+        ContextPacker packer = new ContextPacker(120);
+        List<Document> packed = packer.pack(docs);
+
+        int total = 0;
+        for (Document d : packed) {
+            total += packer.countTokens(d);
+        }
+
+        assert packed.size() > 0;
+        assert packed.size() < docs.size();
+        assert total <= 120;
+        assert "d0".equals(packed.get(0).getId());
+    }
+
+    @Test
+    public void case2_dedup() {
+        List<Document> docs = new ArrayList<>();
+        docs.add(doc("a", "Solon is a lightweight java application development framework.", 0.9D, "u1"));
+        docs.add(doc("b", "Solon is a lightweight java application development framework.", 0.8D, "u2"));
+        docs.add(doc("c", "Redis is an in-memory data structure store.", 0.7D, "u3"));
+
+        List<Document> packed = new ContextPacker(1000).pack(docs);
+
+        assert packed.size() == 2;
+        assert "a".equals(packed.get(0).getId());
+        assert "c".equals(packed.get(1).getId());
+    }
+
+    @Test
+    public void case3_mergeAdjacent() {
+        RegexTextSplitter splitter = new RegexTextSplitter("\n\n");
+        splitter.setChunkIndexed(true);
+
+        Document source = new Document("The first part of the guide.\n\nThe second part of the guide.\n\nThe third part of the guide.\n\nAn unrelated appendix.")
+                .url("guide");
+        List<Document> chunks = splitter.split(Collections.singletonList(source));
+        assert chunks.size() == 4;
+        assert Integer.valueOf(1).equals(chunks.get(1).getMetadata(TextSplitter.CHUNK_INDEX_KEY));
+
+        //检索只命中第 0、1、3 段
+        List<Document> hits = new ArrayList<>();
+        hits.add(chunks.get(1).score(0.9D));
+        hits.add(chunks.get(0).score(0.8D));
+        hits.add(chunks.get(3).score(0.1D));
+
+        List<Document> packed = new ContextPacker(1000).diversity(0.0D).pack(hits);
+
+        assert packed.size() == 2;
+        assert packed.get(0).getContent().equals("The first part of the guide.\nThe second part of the guide.");
+        assert packed.get(1).getContent().equals("An unrelated appendix.");
+    }
+
+    @Test
+    public void case4_overlap() {
+        List<Document> docs = new ArrayList<>();
+        docs.add(doc("x1", "the quick brown fox jumps over the lazy dog", 0.9D, "s"));
+        docs.add(doc("x0", "a story begins: the quick brown fox jumps", 0.5D, "s"));
+
+        List<Document> packed = new ContextPacker(1000).diversity(0.0D).pack(docs);
+
+        assert packed.size() == 1;
+        assert packed.get(0).getContent().equals("a story begins: the quick brown fox jumps over the lazy dog");
+    }
+
+    @Test
+    public void case5_pages() {
+        RegexTextSplitter splitter = new RegexTextSplitter("\n\n");
+        splitter.setChunkIndexed(true);
+
+        //同一来源的两页（序号各自从 0 开始）
+        List<Document> pages = new ArrayList<>();
+        pages.add(new Document("Page one begins with a\n\napples grow on trees.").url("book"));
+        pages.add(new Document("Page two begins here.\n\nPage two ends here.").url("book"));
+        List<Document> chunks = splitter.split(pages);
+        assert chunks.size() == 4;
+
+        //第一页的第 0 段与第二页的第 1 段序号相邻，但不属于同一文档，不合并
+        List<Document> hits = new ArrayList<>();
+        hits.add(chunks.get(0).score(0.9D));
+        hits.add(chunks.get(3).score(0.8D));
+        assert new ContextPacker(1000).diversity(0.0D).pack(hits).size() == 2;
+
+        //同一页的相邻片段合并；偶然相同的单个首尾字符（a）不作为重叠去除
+        hits.clear();
+        hits.add(chunks.get(1).score(0.9D));
+        hits.add(chunks.get(0).score(0.8D));
+        List<Document> packed = new ContextPacker(1000).diversity(0.0D).pack(hits);
+        assert packed.size() == 1;
+        assert packed.get(0).getContent().equals("Page one begins with a\napples grow on trees.");
+    }
+}
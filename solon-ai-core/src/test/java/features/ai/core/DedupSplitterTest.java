@@ -0,0 +1,78 @@
+package features.ai.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.noear.solon.ai.rag.Document;
+import org.noear.solon.ai.rag.splitter.DedupSplitter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author noear
+ * @since 4.1
+ */
+public class DedupSplitterTest {
+    private static final String TEXT = "Solon AI is a Java AI application development framework. " +
+            "It supports chat models, embedding models, tool calling, retrieval augmented generation and agents. " +
+            "它支持多种向量数据库与文档加载器，可以快速构建知识库应用。";
+
+    private Document doc(String content, String url) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("url", url);
+        return new Document(content, metadata);
+    }
+
+    @Test
+    public void case1() {
+        DedupSplitter splitter = new DedupSplitter();
+        splitter.setMergeKey("url");
+
+        List<Document> docs = new ArrayList<>();
+        docs.add(doc(TEXT, "a"));
+        docs.add(doc(TEXT.replace("快速", "高效"), "b"));
+        docs.add(doc(TEXT, "c"));
+        docs.add(doc("How to cook pasta with tomatoes, garlic and fresh basil in fifteen minutes.", "d"));
+
+        List<Document> list = splitter.split(docs);
+
+        assert list.size() == 2;
+        assert splitter.getDuplicates() == 2;
+        assert Arrays.asList("b", "c").equals(list.get(0).getMetadata(DedupSplitter.DUPLICATES_KEY));
+    }
+
+    @Test
+    public void case2_persistent(@TempDir File dir) {
+        File file = new File(dir, "simhash.bin");
+
+        DedupSplitter splitter = new DedupSplitter(0.9, file);
+        assert splitter.split(Arrays.asList(doc(TEXT, "a"))).size() == 1;
+
+        //重新加载索引后，之前入库过的内容仍被识别为重复
+        DedupSplitter splitter2 = new DedupSplitter(0.9, file);
+        assert splitter2.getIndex().size() == 1;
+        assert splitter2.split(Arrays.asList(doc(TEXT.replace("agents", "agent"), "b"))).isEmpty();
+    }
+
+    @Test
+    public void case3_owner(@TempDir File dir) {
+        File file = new File(dir, "simhash.bin");
+
+        DedupSplitter splitter = new DedupSplitter(0.9, file);
+        splitter.setOwnerKey("url");
+        assert splitter.split(Arrays.asList(doc(TEXT, "a"))).size() == 1;
+
+        //同一来源重新入库，不视为与自己重复；其它来源仍视为重复
+        DedupSplitter splitter2 = new DedupSplitter(0.9, file);
+        splitter2.setOwnerKey("url");
+        assert splitter2.split(Arrays.asList(doc(TEXT, "a"))).size() == 1;
+        assert splitter2.split(Arrays.asList(doc(TEXT, "b"))).isEmpty();
+        //同一批次内重复出现的相同内容，仍视为重复
+        assert splitter2.split(Arrays.asList(doc(TEXT, "a"), doc(TEXT, "a"))).size() == 1;
+        assert splitter2.getIndex().size() == 1;
+    }
+}
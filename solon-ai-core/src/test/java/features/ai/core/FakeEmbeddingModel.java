@@ -0,0 +1,60 @@
+package features.ai.core;
+
+import org.noear.solon.ai.embedding.EmbeddingConfig;
+import org.noear.solon.ai.embedding.EmbeddingModel;
+import org.noear.solon.ai.rag.Document;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用嵌入模型（按词哈希的词袋向量，不访问网络）
+ *
+ * @author noear
+ * @since 4.1
+ */
+class FakeEmbeddingModel extends EmbeddingModel {
+    private static final int DIMENSIONS = 64;
+
+    final AtomicInteger embedCount = new AtomicInteger();
+
+    FakeEmbeddingModel() {
+        super(buildConfig());
+    }
+
+    private static EmbeddingConfig buildConfig() {
+        EmbeddingConfig config = new EmbeddingConfig();
+        config.setApiUrl("http://localhost/embeddings");
+        config.setModel("fake");
+        config.setBatchSize(4);
+        return config;
+    }
+
+    @Override
+    public float[] embed(String text) throws IOException {
+        embedCount.incrementAndGet();
+
+        float[] vector = new float[DIMENSIONS];
+        //避免零向量
+        vector[0] = 0.01F;
+        for (String word : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (word.length() > 0) {
+                vector[Math.floorMod(word.hashCode(), DIMENSIONS - 1) + 1] += 1.0F;
+            }
+        }
+        return vector;
+    }
+
+    @Override
+    public void embed(List<Document> documents) throws IOException {
+        for (Document doc : documents) {
+            doc.embedding(embed(doc.getContent()));
+        }
+    }
+
+    @Override
+    public int dimensions() {
+        return DIMENSIONS;
+    }
+}
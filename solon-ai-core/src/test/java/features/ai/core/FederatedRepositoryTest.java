@@ -0,0 +1,115 @@
+package features.ai.core;
+
+import org.junit.jupiter.api.Test;
+import org.noear.solon.ai.rag.Document;
+import org.noear.solon.ai.rag.Repository;
+import org.noear.solon.ai.rag.repository.FederatedRepository;
+import org.noear.solon.ai.rag.repository.InMemoryRepository;
+import org.noear.solon.ai.rag.util.QueryCondition;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author noear
+ * @since 4.1
+ */
+public class FederatedRepositoryTest {
+    @Test
+    public void case1() throws Exception {
+        FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel();
+
+        InMemoryRepository docs = new InMemoryRepository(embeddingModel);
+        docs.save(Arrays.asList(
+                new Document("solon is a java framework").id("d1"),
+                new Document("solon ai supports rag").id("d2")));
+
+        InMemoryRepository faq = new InMemoryRepository(embeddingModel);
+        faq.save(Arrays.asList(
+                new Document("solon ai supports rag").id("f1"),
+                new Document("how to start solon").id("f2")));
+
+        CountDownLatch slowInterrupted = new CountDownLatch(1);
+        Repository slow = condition -> {
+            try {
+                Thread.sleep(3000);
+            } catch (InterruptedException ignored) {
+                slowInterrupted.countDown();
+            }
+            return Collections.singletonList(new Document("slow result"));
+        };
+
+        Repository broken = condition -> {
+            throw new IOException("unavailable");
+        };
+
+        FederatedRepository repository = FederatedRepository.builder()
+                .add(docs, embeddingModel)
+                .add(faq, embeddingModel)
+                .add(slow, null, Duration.ofMillis(200), 1.0D)
+                .add(broken)
+                .build();
+
+        embeddingModel.embedCount.set(0);
+        long start = System.currentTimeMillis();
+        List<Document> list = repository.search(new QueryCondition("solon ai rag")
+                .limit(10)
+                .similarityThreshold(0));
+        long elapsed = System.currentTimeMillis() - start;
+
+        //慢知识库超时，不阻塞整体
+        assert elapsed < 2000 : elapsed;
+        //超时的检索任务被中断
+        assert slowInterrupted.await(1, TimeUnit.SECONDS);
+        //同一嵌入模型只嵌入一次查询
+        assert embeddingModel.embedCount.get() == 1;
+        //两个知识库中内容相同的文档合并为一个，并排在最前
+        assert list.size() == 3 : list;
+        assert "solon ai supports rag".equals(list.get(0).getContent());
+    }
+
+    @Test
+    public void case2() throws Exception {
+        Repository broken = condition -> {
+            throw new IOException("unavailable");
+        };
+
+        FederatedRepository repository = FederatedRepository.builder()
+                .add(broken)
+                .build();
+
+        try {
+            repository.search("solon");
+            assert false;
+        } catch (IOException e) {
+            assert e.getCause() instanceof IOException;
+        }
+    }
+
+    @Test
+    public void case3() throws Exception {
+        FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel();
+
+        InMemoryRepository docs = new InMemoryRepository(embeddingModel);
+        docs.save(new Document("solon ai supports rag").id("d1"));
+
+        //不支持传入查询嵌入的知识库（自行嵌入）
+        Repository plain = condition -> docs.search(condition);
+
+        FederatedRepository repository = FederatedRepository.builder()
+                .add(plain, embeddingModel)
+                .build();
+
+        embeddingModel.embedCount.set(0);
+        List<Document> list = repository.search(new QueryCondition("solon ai rag").similarityThreshold(0));
+
+        //不预先计算查询嵌入，只有知识库自身的一次嵌入
+        assert list.size() == 1;
+        assert embeddingModel.embedCount.get() == 1;
+    }
+}
@@ -6,11 +6,16 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.chat.message.ChatMessageCodec;
 import org.noear.solon.ai.chat.session.FileChatSession;
+import org.noear.solon.ai.chat.session.FlushMode;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -108,4 +113,142 @@ public class FileChatSessionTest {
         Assertions.assertEquals("msg 1", sessionRecovered.getMessages().get(0).getContent());
         Assertions.assertEquals("ans 1", sessionRecovered.getMessages().get(1).getContent());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testIntervalFlush() throws Exception {
+        String sessionId = "s-interval-" + UUID.randomUUID();
+        FileChatSession session = FileChatSession.builder()
+                .sessionId(sessionId)
+                .dir(tempDir)
+                .flushMode(FlushMode.INTERVAL)
+                .flushInterval(Duration.ofMillis(100))
+                .build();
+
+        for (int i = 0; i < 5; i++) {
+            session.addMessage(ChatMessage.ofUser("m" + i));
+        }
+
+        // 成组提交前，尚未写入文件
+        Assertions.assertTrue(new FileChatSession(sessionId, tempDir).isEmpty());
+
+        // 未写入的消息直接从缓冲中移除
+        session.removeLatestMessage(1);
+
+        Thread.sleep(500);
+        FileChatSession sessionRecovered = new FileChatSession(sessionId, tempDir);
+        Assertions.assertEquals(4, sessionRecovered.getMessages().size());
+        Assertions.assertEquals("m3", sessionRecovered.getMessages().get(3).getContent());
+
+        session.close();
+    }
+
+    @Test
+    public void testOnCloseFlush() {
+        String sessionId = "s-close-" + UUID.randomUUID();
+        FileChatSession session = FileChatSession.builder()
+                .sessionId(sessionId)
+                .dir(tempDir)
+                .flushMode(FlushMode.ON_CLOSE)
+                .build();
+
+        session.addMessage(ChatMessage.ofUser("q"));
+        Assertions.assertTrue(new FileChatSession(sessionId, tempDir).isEmpty());
+
+        session.close();
+        Assertions.assertEquals("q", new FileChatSession(sessionId, tempDir).getMessages().get(0).getContent());
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        String sessionId = "s-compact-" + UUID.randomUUID();
+        FileChatSession session = FileChatSession.builder()
+                .sessionId(sessionId)
+                .dir(tempDir)
+                .maxMessages(5)
+                .compactThreshold(20)
+                .build();
+
+        for (int i = 0; i < 50; i++) {
+            session.addMessage(ChatMessage.ofUser("x" + i));
+        }
+
+        // 文件记录数受压缩约束（不再无限增长）
+        long lines = Files.readAllLines(Paths.get(tempDir, sessionId + ".messages.ndjson")).size();
+        Assertions.assertTrue(lines <= 20, "lines=" + lines);
+
+        // 压缩后仍可按偏移截断
+        session.removeLatestMessage(2);
+        FileChatSession sessionRecovered = new FileChatSession(sessionId, tempDir);
+        Assertions.assertEquals("x47", sessionRecovered.getMessages().get(sessionRecovered.getMessages().size() - 1).getContent());
+
+        session.close();
+    }
+
+    @Test
+    public void testCodec_sizeAndTime() {
+        long[] sizes = new long[2];
+        long[] nanos = new long[2];
+        ChatMessageCodec[] codecs = {ChatMessageCodec.JSON, ChatMessageCodec.BINARY};
+
+        for (int c = 0; c < codecs.length; c++) {
+            String sessionId = "s-codec-" + c + "-" + UUID.randomUUID();
+            FileChatSession session = FileChatSession.builder()
+                    .sessionId(sessionId)
+                    .dir(tempDir)
+                    .maxMessages(0)
+                    .compactThreshold(0)
+                    .codec(codecs[c])
+                    .build();
+
+            for (int i = 0; i < 2000; i++) {
+                session.addMessage(ChatMessage.ofUser("今天杭州天气怎么样？ \"quoted\" #" + i));
+                session.addMessage(ChatMessage.ofAssistant("杭州今天晴，24度。#" + i));
+            }
+            session.close();
+
+            sizes[c] = Paths.get(tempDir, sessionId + ".messages.ndjson").toFile().length();
+
+            //预热后计时加载
+            for (int i = 0; i < 3; i++) {
+                new FileChatSession(sessionId, tempDir, 0, FlushMode.WRITE, Duration.ofMillis(200), Duration.ofSeconds(30), 0, codecs[c]);
+            }
+
+            long start = System.nanoTime();
+            FileChatSession recovered = new FileChatSession(sessionId, tempDir, 0, FlushMode.WRITE,
+                    Duration.ofMillis(200), Duration.ofSeconds(30), 0, codecs[c]);
+            nanos[c] = System.nanoTime() - start;
+
+            List<ChatMessage> messages = recovered.getMessages();
+            Assertions.assertEquals(4000, messages.size());
+            Assertions.assertEquals("杭州今天晴，24度。#1999", messages.get(3999).getContent());
+        }
+
+        log.warn("4k messages: json={} bytes / {}ms, binary={} bytes / {}ms",
+                sizes[0], nanos[0] / 1000000, sizes[1], nanos[1] / 1000000);
+
+        Assertions.assertTrue(sizes[1] < sizes[0], "binary=" + sizes[1] + ", json=" + sizes[0]);
+    }
+
+    @Test
+    public void testCodec_switch() {
+        String sessionId = "s-switch-" + UUID.randomUUID();
+
+        FileChatSession session = new FileChatSession(sessionId, tempDir);
+        session.addMessage(ChatMessage.ofUser("json 1"));
+        session.addMessage(ChatMessage.ofAssistant("json 2"));
+
+        //切换编解码器后，同一文件混合两种记录
+        session = FileChatSession.builder().sessionId(sessionId).dir(tempDir).codec(ChatMessageCodec.BINARY).build();
+        Assertions.assertEquals(2, session.getMessages().size());
+        session.addMessage(ChatMessage.ofUser("bin 1\nline"));
+        session.addMessage(ChatMessage.ofAssistant("bin 2"));
+
+        //按偏移截断二进制记录
+        session.removeLatestMessage(1);
+
+        FileChatSession recovered = new FileChatSession(sessionId, tempDir);
+        Assertions.assertEquals(3, recovered.getMessages().size());
+        Assertions.assertEquals("json 2", recovered.getMessages().get(1).getContent());
+        Assertions.assertEquals("bin 1\nline", recovered.getMessages().get(2).getContent());
+    }
+}
@@ -5,9 +5,15 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.noear.solon.ai.chat.message.AssistantMessage;
 import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.chat.message.UserMessage;
 import org.noear.solon.ai.chat.session.InMemoryChatSession;
+import org.noear.solon.ai.chat.tool.ToolCall;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -325,4 +331,85 @@ public class InMemoryChatSessionTest {
         Assertions.assertEquals(1, session.getMessages().size());
         Assertions.assertEquals("u1", session.getMessages().get(0).getContent());
     }
-}
\ No newline at end of file
+
+    /**
+     * 测试 getLatestMessages - 长会话（截断点索引与逐条扫描结果一致）
+     */
+    @Test
+    public void getLatestMessages_largeSession() {
+        InMemoryChatSession session = InMemoryChatSession.builder()
+                .maxMessages(2000)
+                .build();
+
+        session.addMessage(ChatMessage.ofSystem("system"));
+        for (int i = 0; i < 5000; i++) {
+            session.addMessage(ChatMessage.ofUser("u" + i));
+            if (i % 3 == 0) {
+                session.addMessage(toolCallMessage("call_" + i));
+                session.addMessage(ChatMessage.ofTool("t" + i, "getWeather", "call_" + i));
+                session.addMessage(ChatMessage.ofTool("t" + i, "getWeather", "call_" + i));
+            }
+            session.addMessage(ChatMessage.ofAssistant("a" + i));
+        }
+
+        List<ChatMessage> all = session.getMessages();
+        Assertions.assertEquals(2000, all.size());
+        Assertions.assertEquals("system", all.get(0).getContent());
+
+        for (int windowSize = 1; windowSize < all.size(); windowSize++) {
+            List<ChatMessage> latest = session.getLatestMessages(windowSize);
+            int expected = -1;
+            for (int i = all.size() - windowSize; i >= 0; i--) {
+                if (all.get(i) instanceof UserMessage) {
+                    expected = i;
+                    break;
+                }
+            }
+
+            if (expected < 0) {
+                for (int i = all.size() - windowSize; i < all.size(); i++) {
+                    if (all.get(i) instanceof UserMessage) {
+                        expected = i;
+                        break;
+                    }
+                }
+            }
+
+            Assertions.assertEquals(all.size() - expected, latest.size());
+        }
+    }
+
+    /**
+     * 测试 maxMessages - 淘汰带 ToolCall 的 AssistantMessage 时连带淘汰其 ToolMessage，且不跳过后续消息
+     */
+    @Test
+    public void maxSize_withToolCallChain() {
+        InMemoryChatSession session = InMemoryChatSession.builder()
+                .maxMessages(5)
+                .build();
+
+        session.addMessage(ChatMessage.ofSystem("system"));
+        session.addMessage(toolCallMessage("call_1"));
+        session.addMessage(ChatMessage.ofTool("sunny", "getWeather", "call_1"));
+        session.addMessage(ChatMessage.ofUser("u1"));
+        session.addMessage(ChatMessage.ofUser("u2"));
+
+        // 超出 3 条：淘汰 Assistant(toolCalls) 及其 ToolMessage，再淘汰 u1
+        session.addMessage(Arrays.asList(ChatMessage.ofUser("u3"), ChatMessage.ofUser("u4"), ChatMessage.ofUser("u5")));
+        Assertions.assertEquals(5, session.getMessages().size());
+        Assertions.assertEquals("system", session.getMessages().get(0).getContent());
+        Assertions.assertEquals("u2", session.getMessages().get(1).getContent());
+        Assertions.assertEquals("u5", session.getMessages().get(4).getContent());
+    }
+
+    private static AssistantMessage toolCallMessage(String callId) {
+        Map<String, Object> funcMap = new LinkedHashMap<>();
+        Map<String, String> funcNameMap = new LinkedHashMap<>();
+        funcNameMap.put("name", "getWeather");
+        funcMap.put("function", funcNameMap);
+        return new AssistantMessage("", false, null,
+                Collections.singletonList(funcMap),
+                Collections.singletonList(new ToolCall("0", callId, "getWeather", "{}", new LinkedHashMap<>())),
+                null);
+    }
+}
@@ -0,0 +1,189 @@
+package features.ai.core;
+
+import org.junit.jupiter.api.Test;
+import org.noear.solon.ai.rag.Document;
+import org.noear.solon.ai.rag.repository.InMemoryRepository;
+import org.noear.solon.ai.rag.repository.inmemory.VectorQuantization;
+import org.noear.solon.ai.rag.util.FusionMode;
+import org.noear.solon.ai.rag.util.HybridSearchParams;
+import org.noear.solon.ai.rag.util.QueryCondition;
+import org.noear.solon.ai.rag.util.SearchType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author noear
+ * @since 4.1
+ */
+public class InMemoryRepositoryTest {
+    private List<Document> docs() {
+        List<Document> list = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            list.add(new Document("solon doc " + i + (i % 2 == 0 ? " even" : " odd"))
+                    .id("id" + i)
+                    .metadata("tenant", "t" + (i % 7))
+                    .metadata("num", i));
+        }
+        return list;
+    }
+
+    private void assertSame(InMemoryRepository expected, InMemoryRepository actual, String filter) throws Exception {
+        for (String query : new String[]{"solon doc 14", "odd", "even doc"}) {
+            QueryCondition condition = new QueryCondition(query)
+                    .limit(8)
+                    .similarityThreshold(0)
+                    .filterExpression(filter);
+
+            String expectedStr = expected.search(condition).toString();
+            String actualStr = actual.search(condition).toString();
+            assert expectedStr.equals(actualStr) : filter + "\n" + expectedStr + "\n" + actualStr;
+        }
+    }
+
+    @Test
+    public void metadataIndex() throws Exception {
+        InMemoryRepository plain = new InMemoryRepository(new FakeEmbeddingModel());
+        InMemoryRepository indexed = InMemoryRepository.builder(new FakeEmbeddingModel())
+                .metadataIndex(true)
+                .build();
+
+        plain.save(docs());
+        indexed.save(docs());
+        plain.deleteById("id7", "id14");
+        indexed.deleteById("id7", "id14");
+
+        assertSame(plain, indexed, "tenant == 't0'");
+        assertSame(plain, indexed, "tenant == 't0' AND num > 100");
+        assertSame(plain, indexed, "tenant IN ['t1', 't2'] OR num >= 190");
+        assertSame(plain, indexed, "NOT (tenant == 't3')");
+        assertSame(plain, indexed, "tenant != 't3'");
+        assertSame(plain, indexed, "num == 21");
+        assertSame(plain, indexed, "tenant LIKE 't1'");
+    }
+
+    @Test
+    public void metadataIndex_mixedTypes() throws Exception {
+        //同一字段混合字符串与数值（索引的候选集须与表达式的类型转换一致）
+        List<Document> list = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            Object num = (i % 3 == 0 ? String.valueOf(i) : (i % 3 == 1 ? i : (double) i));
+            list.add(new Document("solon doc " + i)
+                    .id("id" + i)
+                    .metadata("num", num)
+                    .metadata("code", i % 2 == 0 ? String.valueOf(i % 5) : i % 5));
+        }
+
+        InMemoryRepository plain = new InMemoryRepository(new FakeEmbeddingModel());
+        InMemoryRepository indexed = InMemoryRepository.builder(new FakeEmbeddingModel())
+                .metadataIndex(true)
+                .build();
+
+        plain.save(list);
+        indexed.save(list);
+
+        assertSame(plain, indexed, "num == 9");
+        assertSame(plain, indexed, "num == '10'");
+        assertSame(plain, indexed, "num > 30");
+        assertSame(plain, indexed, "num <= '12'");
+        assertSame(plain, indexed, "code == 3");
+        assertSame(plain, indexed, "code == '4' AND num < 40");
+        assertSame(plain, indexed, "code IN [1, '2']");
+        assertSame(plain, indexed, "code != 0");
+    }
+
+    @Test
+    public void metadataIndex_quantized() throws Exception {
+        InMemoryRepository indexed = InMemoryRepository.builder(new FakeEmbeddingModel())
+                .quantization(VectorQuantization.INT8)
+                .metadataIndexFields("tenant")
+                .build();
+
+        indexed.save(docs());
+
+        List<Document> list = indexed.search(new QueryCondition("solon doc")
+                .limit(50)
+                .similarityThreshold(0)
+                .filterExpression("tenant == 't2' AND num < 50"));
+
+        assert list.size() == 7;
+        for (Document doc : list) {
+            assert "t2".equals(doc.getMetadata("tenant"));
+            assert ((Number) doc.getMetadata("num")).intValue() < 50;
+        }
+    }
+
+    @Test
+    public void fullText() throws Exception {
+        InMemoryRepository repository = InMemoryRepository.builder(new FakeEmbeddingModel())
+                .fullTextIndex(true)
+                .build();
+
+        repository.save(docs());
+        repository.save(Arrays.asList(
+                new Document("Solon 是一个高效的 Java 应用开发框架").id("cn1"),
+                new Document("向量数据库用于相似度检索").id("cn2")));
+
+        List<Document> list = repository.search(new QueryCondition("数据库检索")
+                .searchType(SearchType.FULL_TEXT)
+                .limit(3));
+
+        assert list.size() == 1;
+        assert "cn2".equals(list.get(0).getId());
+        assert list.get(0).getScore() == 1.0D;
+
+        list = repository.search(new QueryCondition("doc 14")
+                .searchType(SearchType.FULL_TEXT)
+                .limit(3)
+                .similarityThreshold(0)
+                .filterExpression("tenant == 't0'"));
+
+        assert "id14".equals(list.get(0).getId());
+        for (Document doc : list) {
+            assert "t0".equals(doc.getMetadata("tenant"));
+        }
+
+        repository.deleteById("cn2");
+        list = repository.search(new QueryCondition("数据库检索")
+                .searchType(SearchType.FULL_TEXT));
+        assert list.isEmpty();
+    }
+
+    @Test
+    public void hybrid() throws Exception {
+        for (FusionMode mode : FusionMode.values()) {
+            InMemoryRepository repository = InMemoryRepository.builder(new FakeEmbeddingModel())
+                    .fullTextIndex(true)
+                    .hybridFusion(mode)
+                    .build();
+
+            repository.save(docs());
+
+            List<Document> list = repository.search(new QueryCondition("solon doc 33 odd")
+                    .searchType(SearchType.HYBRID)
+                    .hybridSearchParams(HybridSearchParams.of(0.3))
+                    .limit(5)
+                    .similarityThreshold(0));
+
+            assert list.size() == 5;
+            assert "id33".equals(list.get(0).getId()) : mode + ": " + list;
+            assert list.get(0).getScore() <= 1.0D;
+        }
+    }
+
+    @Test
+    public void fullText_disabled() throws Exception {
+        InMemoryRepository repository = new InMemoryRepository(new FakeEmbeddingModel());
+        repository.save(docs());
+
+        //未开启全文索引时，退回向量检索
+        for (SearchType searchType : new SearchType[]{SearchType.FULL_TEXT, SearchType.HYBRID}) {
+            QueryCondition condition = new QueryCondition("solon doc 14").limit(5).similarityThreshold(0);
+            String expected = repository.search(condition).toString();
+            String actual = repository.search(condition.searchType(searchType)).toString();
+
+            assert expected.equals(actual) : searchType + "\n" + expected + "\n" + actual;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package features.ai.core;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.noear.solon.ai.embedding.ReusingEmbeddingModel;
+import org.noear.solon.ai.rag.Document;
+import org.noear.solon.ai.rag.DocumentLoader;
+import org.noear.solon.ai.rag.RepositoryStorable;
+import org.noear.solon.ai.rag.ingestion.IngestionPipeline;
+import org.noear.solon.ai.rag.ingestion.IngestionStats;
+import org.noear.solon.ai.rag.loader.TextLoader;
+import org.noear.solon.ai.rag.repository.InMemoryRepository;
+import org.noear.solon.ai.rag.splitter.DedupSplitter;
+import org.noear.solon.ai.rag.splitter.RegexTextSplitter;
+import org.noear.solon.ai.rag.splitter.SplitterPipeline;
+import org.noear.solon.ai.rag.util.QueryCondition;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * @author noear
+ * @since 4.1
+ */
+@Slf4j
+public class IngestionPipelineTest {
+    @TempDir
+    File dir;
+
+    private DocumentLoader loader(int lines) {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            buf.append("solon line ").append(i).append('\n');
+        }
+        return new TextLoader(buf.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void case1() throws Exception {
+        FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel();
+        InMemoryRepository repository = new InMemoryRepository(new ReusingEmbeddingModel(embeddingModel));
+
+        IngestionStats stats = IngestionPipeline.builder(repository)
+                .embeddingModel(embeddingModel)
+                .splitter(new RegexTextSplitter("\n"))
+                .source(loader(100))
+                .source(loader(50))
+                .embedParallelism(3)
+                .storeParallelism(2)
+                .queueCapacity(2)
+                .build()
+                .run();
+
+        log.warn("{}", stats);
+
+        assert stats.getStage("split").getItems() == 150;
+        assert stats.getStage("store").getItems() == 150;
+        //嵌入阶段已嵌入，存储时不重复嵌入
+        assert embeddingModel.embedCount.get() == 150;
+
+        List<Document> list = repository.search(new QueryCondition("solon line 42").limit(1));
+        assert list.size() == 1;
+    }
+
+    @Test
+    public void case1_plain() throws Exception {
+        FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel();
+        InMemoryRepository repository = new InMemoryRepository(embeddingModel);
+
+        IngestionStats stats = IngestionPipeline.builder(repository)
+                .embeddingModel(embeddingModel)
+                .splitter(new RegexTextSplitter("\n"))
+                .source(loader(20))
+                .build()
+                .run();
+
+        //知识库存储时不复用已有嵌入，跳过嵌入阶段，只嵌入一次
+        assert stats.getStage("embed") == null;
+        assert stats.getStage("store").getItems() == 20;
+        assert embeddingModel.embedCount.get() == 20;
+    }
+
+    @Test
+    public void case2_resume() throws Exception {
+        File checkpoint = new File(dir, "ingestion.checkpoint");
+        AtomicBoolean broken = new AtomicBoolean(true);
+        AtomicInteger saves = new AtomicInteger();
+        AtomicInteger stored = new AtomicInteger();
+
+        RepositoryStorable repository = new InMemoryRepository(new FakeEmbeddingModel()) {
+            @Override
+            public void save(List<Document> documents, BiConsumer<Integer, Integer> progressCallback) throws IOException {
+                if (broken.get() && saves.incrementAndGet() > 5) {
+                    throw new IOException("unavailable");
+                }
+
+                stored.addAndGet(documents.size());
+                super.save(documents, progressCallback);
+            }
+        };
+
+        IngestionPipeline pipeline = IngestionPipeline.builder(repository)
+                .source(loader(3))
+                .source(loader(3))
+                .source(loader(3))
+                .source(loader(3))
+                .source(loader(3))
+                .source(loader(3))
+                .source(loader(3))
+                .source(loader(3))
+                .batchSize(1)
+                .maxRetries(1)
+                .retryBackoff(Duration.ofMillis(1))
+                .checkpoint(checkpoint)
+                .build();
+
+        try {
+            pipeline.run();
+            assert false;
+        } catch (IOException e) {
+            assert checkpoint.exists();
+        }
+
+        assert stored.get() == 5;
+
+        broken.set(false);
+        IngestionStats stats = pipeline.run();
+
+        //从检查点继续，已提交的源文档不再重复存储
+        assert stats.getSkipped() == 5;
+        assert stored.get() == 8;
+        assert checkpoint.exists() == false;
+    }
+
+    @Test
+    public void case3_incremental() throws Exception {
+        File manifest = new File(dir, "ingestion.manifest");
+        FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel();
+        AtomicInteger stored = new AtomicInteger();
+        AtomicInteger deleted = new AtomicInteger();
+
+        InMemoryRepository repository = new InMemoryRepository(new ReusingEmbeddingModel(embeddingModel)) {
+            @Override
+            public void save(List<Document> documents, BiConsumer<Integer, Integer> progressCallback) throws IOException {
+                stored.addAndGet(documents.size());
+                super.save(documents, progressCallback);
+            }
+
+            @Override
+            public void deleteById(String... ids) {
+                deleted.addAndGet(ids.length);
+                super.deleteById(ids);
+            }
+        };
+
+        //使用清单与分割器时，须指定配置标识
+        try {
+            IngestionPipeline.builder(repository)
+                    .splitter(new RegexTextSplitter("\n"))
+                    .source("a.txt", loader(10))
+                    .manifest(manifest)
+                    .build();
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().contains("configKey");
+        }
+
+        IngestionStats stats = IngestionPipeline.builder(repository)
+                .embeddingModel(embeddingModel)
+                .splitter(new RegexTextSplitter("\n"))
+                .source("a.txt", loader(10))
+                .source("b.txt", loader(5))
+                .manifest(manifest)
+                .configKey("regex-v1")
+                .build()
+                .run();
+
+        assert stats.getUnchanged() == 0;
+        assert stored.get() == 15;
+        assert manifest.exists();
+
+        //内容未变：不再嵌入与存储
+        stats = IngestionPipeline.builder(repository)
+                .embeddingModel(embeddingModel)
+                .splitter(new RegexTextSplitter("\n"))
+                .source("a.txt", loader(10))
+                .source("b.txt", loader(5))
+                .manifest(manifest)
+                .configKey("regex-v1")
+                .build()
+                .run();
+
+        assert stats.getUnchanged() == 15;
+        assert stored.get() == 15;
+        assert embeddingModel.embedCount.get() == 15;
+
+        //a.txt 变更（删除两行，新增一行），b.txt 移除
+        String text = "solon line 0\nsolon line 1\nsolon line 2\nsolon line 3\nsolon line 4\n" +
+                "solon line 5\nsolon line 6\nsolon line 7\nsolon new line\n";
+
+        stats = IngestionPipeline.builder(repository)
+                .embeddingModel(embeddingModel)
+                .splitter(new RegexTextSplitter("\n"))
+                .source("a.txt", new TextLoader(text.getBytes(StandardCharsets.UTF_8)))
+                .manifest(manifest)
+                .configKey("regex-v1")
+                .deleteMissingSources(true)
+                .build()
+                .run();
+
+        log.warn("{}", stats);
+
+        assert stats.getUnchanged() == 8;
+        assert stats.getDeleted() == 7;
+        assert stored.get() == 16;
+        assert deleted.get() == 7;
+
+        List<Document> list = repository.search(new QueryCondition("solon new line").limit(20).similarityThreshold(0));
+        assert list.size() == 9;
+    }
+
+    @Test
+    public void case4_dedup() throws Exception {
+        File manifest = new File(dir, "ingestion.manifest");
+        File index = new File(dir, "simhash.bin");
+        FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel();
+        AtomicInteger deleted = new AtomicInteger();
+
+        InMemoryRepository repository = new InMemoryRepository(new ReusingEmbeddingModel(embeddingModel)) {
+            @Override
+            public void deleteById(String... ids) {
+                deleted.addAndGet(ids.length);
+                super.deleteById(ids);
+            }
+        };
+
+        String text = "Solon is a lightweight Java application framework with fast startup.\n" +
+                "The chat model supports streaming output, tool calling and reasoning content.\n" +
+                "Vector repositories store embeddings for retrieval augmented generation.\n";
+
+        IngestionStats stats = IngestionPipeline.builder(repository)
+                .embeddingModel(embeddingModel)
+                .splitter(new SplitterPipeline()
+                        .next(new RegexTextSplitter("\n"))
+                        .next(new DedupSplitter(0.9, index)))
+                .source("a.txt", new TextLoader(text.getBytes(StandardCharsets.UTF_8)))
+                .manifest(manifest)
+                .configKey("regex-v1")
+                .build()
+                .run();
+
+        assert stats.getStage("store").getItems() == 3;
+
+        //a.txt 变更（新增一行）；使用同一个持久化指纹索引重新入库，之前的分块不被当作与自己重复而丢弃、删除
+        text = text + "Agents plan tasks, call tools and remember the session history.\n";
+
+        stats = IngestionPipeline.builder(repository)
+                .embeddingModel(embeddingModel)
+                .splitter(new SplitterPipeline()
+                        .next(new RegexTextSplitter("\n"))
+                        .next(new DedupSplitter(0.9, index)))
+                .source("a.txt", new TextLoader(text.getBytes(StandardCharsets.UTF_8)))
+                .manifest(manifest)
+                .configKey("regex-v1")
+                .build()
+                .run();
+
+        assert stats.getUnchanged() == 3;
+        assert stats.getDeleted() == 0;
+        assert deleted.get() == 0;
+
+        List<Document> list = repository.search(new QueryCondition("solon").limit(20).similarityThreshold(0));
+        assert list.size() == 4;
+        assert list.get(0).getMetadata(DedupSplitter.OWNER_KEY) == null;
+    }
+}
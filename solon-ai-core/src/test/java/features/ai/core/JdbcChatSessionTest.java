@@ -0,0 +1,165 @@
+package features.ai.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.chat.message.ChatMessageCodec;
+import org.noear.solon.ai.chat.session.JdbcChatSession;
+import org.noear.solon.ai.chat.session.JdbcSessionStore;
+import org.sqlite.SQLiteDataSource;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * JdbcChatSession 单元测试（SQLite 嵌入式数据库）
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class JdbcChatSessionTest {
+    private SQLiteDataSource dataSource;
+    private JdbcSessionStore store;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        File file = File.createTempFile("solon_ai_session_", ".db");
+        file.deleteOnExit();
+
+        dataSource = new SQLiteDataSource();
+        dataSource.setUrl("jdbc:sqlite:" + file.getAbsolutePath());
+
+        store = new JdbcSessionStore(dataSource);
+    }
+
+    @Test
+    public void testPersistenceAndRecovery() {
+        JdbcChatSession session = new JdbcChatSession("s1", store);
+        session.addMessage(Arrays.asList(
+                ChatMessage.ofSystem("not persisted"),
+                ChatMessage.ofUser("hello"),
+                ChatMessage.ofAssistant("hi")));
+        session.addMessage(ChatMessage.ofUser("bye"));
+
+        JdbcChatSession recovered = new JdbcChatSession("s1", store);
+        List<ChatMessage> messages = recovered.getMessages();
+        Assertions.assertEquals(3, messages.size());
+        Assertions.assertEquals("hello", messages.get(0).getContent());
+        Assertions.assertEquals("bye", messages.get(2).getContent());
+    }
+
+    @Test
+    public void testRemoveLatestMessage() {
+        JdbcChatSession session = new JdbcChatSession("s2", store);
+        session.addMessage(ChatMessage.ofUser("1"));
+        session.addMessage(ChatMessage.ofUser("2"));
+        session.addMessage(ChatMessage.ofUser("3"));
+
+        session.removeLatestMessage(1);
+        session.addMessage(ChatMessage.ofUser("4"));
+
+        JdbcChatSession recovered = new JdbcChatSession("s2", store);
+        List<ChatMessage> messages = recovered.getMessages();
+        Assertions.assertEquals(3, messages.size());
+        Assertions.assertEquals("2", messages.get(1).getContent());
+        Assertions.assertEquals("4", messages.get(2).getContent());
+    }
+
+    @Test
+    public void testLatestMessagesPushdown() {
+        JdbcChatSession session = new JdbcChatSession("s3", store, 3);
+        for (int i = 1; i <= 6; i++) {
+            session.addMessage(ChatMessage.ofUser(String.valueOf(i)));
+        }
+
+        // 内存层只保留 3 条
+        JdbcChatSession recovered = new JdbcChatSession("s3", store, 3);
+        Assertions.assertEquals(3, recovered.getMessages().size());
+
+        // 超出内存层的窗口从库里读
+        List<ChatMessage> latest = recovered.getLatestMessages(5);
+        Assertions.assertEquals(5, latest.size());
+        Assertions.assertEquals("2", latest.get(0).getContent());
+        Assertions.assertEquals("6", latest.get(4).getContent());
+    }
+
+    @Test
+    public void testConcurrentInstances() {
+        JdbcChatSession a = new JdbcChatSession("s4", store);
+        JdbcChatSession b = new JdbcChatSession("s4", store);
+
+        a.addMessage(ChatMessage.ofUser("from a"));
+        // b 的顺序号已过期，冲突后重新取号
+        b.addMessage(ChatMessage.ofUser("from b"));
+
+        Assertions.assertEquals(2, new JdbcChatSession("s4", store).getMessages().size());
+    }
+
+    @Test
+    public void testAppendErrorNotRetried() throws Exception {
+        JdbcChatSession session = new JdbcChatSession("s8", store);
+
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE ai_session_message");
+        }
+
+        // 非约束冲突的错误不重新取号重试；记录日志后继续，内存层不加入写入失败的消息
+        Assertions.assertDoesNotThrow(() -> session.addMessage(ChatMessage.ofUser("lost")));
+        Assertions.assertTrue(session.isEmpty());
+
+        // 重新初始化时，按表不存在重建
+        Assertions.assertTrue(new JdbcChatSession("s8", new JdbcSessionStore(dataSource)).isEmpty());
+    }
+
+    @Test
+    public void testListAndPrune() throws Exception {
+        new JdbcChatSession("s5", store).addMessage(ChatMessage.ofUser("old"));
+        Thread.sleep(20);
+        new JdbcChatSession("s6", store).addMessage(ChatMessage.ofUser("new"));
+
+        List<String> sessions = store.listSessions(10);
+        Assertions.assertEquals("s6", sessions.get(0));
+        Assertions.assertTrue(sessions.contains("s5"));
+
+        // 未过期的不清理
+        Assertions.assertEquals(0, store.prune(Duration.ofHours(1)));
+
+        Thread.sleep(20);
+        Assertions.assertEquals(2, store.prune(Duration.ZERO));
+        Assertions.assertTrue(store.listSessions(10).isEmpty());
+    }
+
+    @Test
+    public void testCodec() {
+        new JdbcChatSession("s9", store).addMessage(ChatMessage.ofUser("json"));
+
+        //切换编解码器后，已存的 json 仍可读取
+        JdbcSessionStore binaryStore = new JdbcSessionStore(dataSource, "ai_", ChatMessageCodec.BINARY);
+        JdbcChatSession session = new JdbcChatSession("s9", binaryStore);
+        Assertions.assertEquals(1, session.getMessages().size());
+        session.addMessage(ChatMessage.ofAssistant("binary"));
+
+        for (JdbcSessionStore tmp : new JdbcSessionStore[]{store, binaryStore}) {
+            List<ChatMessage> messages = new JdbcChatSession("s9", tmp).getMessages();
+            Assertions.assertEquals(2, messages.size());
+            Assertions.assertEquals("json", messages.get(0).getContent());
+            Assertions.assertEquals("binary", messages.get(1).getContent());
+        }
+    }
+
+    @Test
+    public void testClear() {
+        JdbcChatSession session = new JdbcChatSession("s7", store);
+        session.addMessage(ChatMessage.ofUser("to be deleted"));
+        session.clear();
+
+        Assertions.assertTrue(session.isEmpty());
+        Assertions.assertTrue(new JdbcChatSession("s7", store).isEmpty());
+    }
+}
@@ -0,0 +1,102 @@
+package features.ai.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.noear.solon.ai.rag.Document;
+import org.noear.solon.ai.rag.repository.MappedFileRepository;
+import org.noear.solon.ai.rag.repository.inmemory.VectorQuantization;
+import org.noear.solon.ai.rag.util.QueryCondition;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author noear
+ * @since 4.1
+ */
+public class MappedFileRepositoryTest {
+    @TempDir
+    File dir;
+
+    private List<Document> docs() {
+        List<Document> list = new ArrayList<>();
+        list.add(new Document("solon is a java application framework").id("1").metadata("type", "doc"));
+        list.add(new Document("redis is an in memory data store").id("2").metadata("type", "doc"));
+        list.add(new Document("milvus is a vector database").id("3").metadata("type", "faq"));
+        list.add(new Document("java virtual machine tuning").id("4").metadata("type", "faq"));
+        list.add(new Document("solon ai supports rag and agents").id("5").metadata("type", "doc"));
+        return list;
+    }
+
+    @Test
+    public void reopen() throws Exception {
+        FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel();
+
+        MappedFileRepository repository = MappedFileRepository.builder(embeddingModel, dir).build();
+        repository.save(docs());
+        repository.deleteById("2");
+        repository.close();
+
+        //不做检查点，只靠日志重放
+        repository = MappedFileRepository.builder(embeddingModel, dir).checkpointInterval(0).build();
+        assert repository.size() == 4;
+        assert repository.existsById("2") == false;
+
+        List<Document> list = repository.search(new QueryCondition("solon framework").limit(2));
+        assert list.size() > 0;
+        assert "1".equals(list.get(0).getId());
+
+        list = repository.search(new QueryCondition("solon").filterExpression("type == 'faq'").similarityThreshold(0));
+        assert list.size() == 2;
+        repository.close();
+    }
+
+    @Test
+    public void tornTail() throws Exception {
+        FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel();
+
+        MappedFileRepository repository = MappedFileRepository.builder(embeddingModel, dir).checkpointInterval(0).build();
+        repository.save(docs());
+        repository.close();
+
+        //模拟崩溃时的半写记录
+        File[] logs = dir.listFiles((d, name) -> name.endsWith(".log"));
+        try (FileOutputStream out = new FileOutputStream(logs[0], true)) {
+            out.write(new byte[]{0, 0, 0, 99, 1, 2, 3});
+        }
+
+        repository = MappedFileRepository.builder(embeddingModel, dir).build();
+        assert repository.size() == 5;
+
+        repository.save(new Document("after crash").id("6"));
+        assert repository.existsById("6");
+        repository.close();
+    }
+
+    @Test
+    public void compact() throws Exception {
+        FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel();
+
+        MappedFileRepository repository = MappedFileRepository.builder(embeddingModel, dir)
+                .quantization(VectorQuantization.INT8)
+                .build();
+        repository.save(docs());
+        repository.save(new Document("milvus vector database cluster").id("3"));
+        repository.deleteById("4");
+        repository.compact();
+
+        assert repository.size() == 4;
+        List<Document> list = repository.search(new QueryCondition("milvus cluster").limit(1));
+        assert "3".equals(list.get(0).getId());
+        assert "milvus vector database cluster".equals(list.get(0).getContent());
+        repository.close();
+
+        repository = MappedFileRepository.builder(embeddingModel, dir)
+                .quantization(VectorQuantization.INT8)
+                .build();
+        assert repository.size() == 4;
+        repository.close();
+    }
+}
@@ -0,0 +1,105 @@
+package features.ai.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.noear.solon.ai.chat.content.BlobBlock;
+import org.noear.solon.ai.chat.content.ImageBlock;
+import org.noear.solon.ai.chat.media.FileMediaStore;
+import org.noear.solon.ai.chat.media.InMemoryMediaStore;
+import org.noear.solon.ai.chat.media.MediaStore;
+import org.noear.solon.ai.chat.media.MediaStoreManager;
+import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.chat.message.UserMessage;
+
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * 媒体存储：按摘要去重与按需取回
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class MediaStoreTest {
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void inMemoryDedup() {
+        InMemoryMediaStore store = new InMemoryMediaStore();
+        byte[] data = randomBytes(4096);
+
+        String hash1 = store.put(data);
+        String hash2 = store.put(data.clone());
+
+        Assertions.assertEquals(hash1, hash2);
+        Assertions.assertEquals(64, hash1.length());
+        Assertions.assertEquals(1, store.size());
+        Assertions.assertArrayEquals(data, store.get(hash1));
+
+        store.remove(hash1);
+        Assertions.assertFalse(store.contains(hash1));
+        Assertions.assertNull(store.get(hash1));
+    }
+
+    @Test
+    public void fileStore() throws Exception {
+        FileMediaStore store = new FileMediaStore(Files.createTempDirectory("solon_ai_media_").toString());
+        byte[] data = randomBytes(4096);
+
+        String hash = store.put(data);
+        Assertions.assertEquals(hash, store.put(data));
+        Assertions.assertTrue(store.contains(hash));
+        Assertions.assertArrayEquals(data, store.get(hash));
+
+        store.remove(hash);
+        Assertions.assertNull(store.get(hash));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> store.get("../x"));
+    }
+
+    @Test
+    public void sessionJsonReferencesHash() {
+        InMemoryMediaStore store = new InMemoryMediaStore();
+        MediaStoreManager.setDefault(store);
+
+        try {
+            byte[] image = randomBytes(8192);
+            byte[] blob = randomBytes(2048);
+
+            // 同一张图在两条消息中重复发送
+            String json1 = ChatMessage.toJson(ChatMessage.ofUser("look", ImageBlock.ofBase64(image, "image/png")));
+            String json2 = ChatMessage.toJson(ChatMessage.ofUser("again", ImageBlock.ofBase64(image, "image/png"),
+                    BlobBlock.of(blob, "application/octet-stream")));
+
+            String base64 = Base64.getEncoder().encodeToString(image);
+            Assertions.assertFalse(json1.contains(base64.substring(0, 80)));
+            Assertions.assertTrue(json1.contains(MediaStore.META_HASH));
+            Assertions.assertEquals(2, store.size());
+
+            // 反序列化后按需取回
+            UserMessage msg = (UserMessage) ChatMessage.fromJson(json2);
+            ImageBlock imageBlock = (ImageBlock) msg.getBlocks().stream().filter(b -> b instanceof ImageBlock).findFirst().get();
+            BlobBlock blobBlock = (BlobBlock) msg.getBlocks().stream().filter(b -> b instanceof BlobBlock).findFirst().get();
+
+            Assertions.assertNotNull(imageBlock.getMediaHash());
+            Assertions.assertEquals(base64, imageBlock.getData());
+            Assertions.assertEquals("data:image/png;base64," + base64, imageBlock.toDataString(true));
+            Assertions.assertEquals(Base64.getEncoder().encodeToString(blob), blobBlock.getBlob());
+
+            // 再次序列化不会重新内联
+            String json3 = ChatMessage.toJson(msg);
+            Assertions.assertFalse(json3.contains(base64.substring(0, 80)));
+            Assertions.assertEquals(2, store.size());
+
+            // 小数据保持内联
+            String smallJson = ChatMessage.toJson(ChatMessage.ofUser("s", ImageBlock.ofBase64("AAAA", "image/png")));
+            Assertions.assertTrue(smallJson.contains("AAAA"));
+        } finally {
+            MediaStoreManager.setDefault(null);
+        }
+    }
+}
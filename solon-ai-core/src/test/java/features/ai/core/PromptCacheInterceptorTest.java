@@ -0,0 +1,126 @@
+package features.ai.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.noear.solon.ai.AiUsage;
+import org.noear.solon.ai.chat.CacheControl;
+import org.noear.solon.ai.chat.ChatConfig;
+import org.noear.solon.ai.chat.ChatOptions;
+import org.noear.solon.ai.chat.ChatRequest;
+import org.noear.solon.ai.chat.interceptor.CallChain;
+import org.noear.solon.ai.chat.interceptor.PromptCacheInterceptor;
+import org.noear.solon.ai.chat.interceptor.PromptCacheStats;
+import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.chat.session.InMemoryChatSession;
+import org.noear.solon.ai.chat.tool.FunctionTool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 提示词缓存拦截器（工具排序、缓存控制补齐、稳定前缀、命中率统计）
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class PromptCacheInterceptorTest {
+    static class TestInterceptor extends PromptCacheInterceptor {
+        void doPrepare(ChatRequest req) {
+            remember(req, prepare(req));
+        }
+    }
+
+    private ChatRequest newReq(ChatOptions options, InMemoryChatSession session) {
+        return new ChatRequest(new ChatConfig(), null, options, session,
+                ChatMessage.ofSystem("你是一个助手"), null, false);
+    }
+
+    private ChatOptions newOptions() {
+        return ChatOptions.of()
+                .toolAdd("weather", d -> d.description("查询天气"))
+                .toolAdd("calc", d -> d.description("计算"));
+    }
+
+    @Test
+    public void prepare() {
+        TestInterceptor interceptor = new TestInterceptor();
+        InMemoryChatSession session = InMemoryChatSession.builder().build();
+        session.addMessage(ChatMessage.ofUser("u1"));
+
+        // 第一轮：工具按名字排序，补齐断点类型与缓存键，稳定前缀未知
+        ChatOptions options = newOptions();
+        interceptor.doPrepare(newReq(options, session));
+
+        List<String> names = new ArrayList<>();
+        for (FunctionTool tool : options.tools()) {
+            names.add(tool.name());
+        }
+        Assertions.assertEquals("[calc, weather]", names.toString());
+
+        CacheControl cc1 = options.cacheControl();
+        Assertions.assertEquals("ephemeral", cc1.getType());
+        Assertions.assertTrue(cc1.getPromptCacheKey().startsWith("pc-"));
+        Assertions.assertEquals(0, cc1.getStableMessages());
+
+        // 第二轮：system + u1 未变化（system 每轮重建也算稳定）
+        session.addMessage(ChatMessage.ofAssistant("a1"));
+        session.addMessage(ChatMessage.ofUser("u2"));
+        options = newOptions();
+        interceptor.doPrepare(newReq(options, session));
+
+        CacheControl cc2 = options.cacheControl();
+        Assertions.assertEquals(2, cc2.getStableMessages());
+        Assertions.assertEquals(cc1.getPromptCacheKey(), cc2.getPromptCacheKey());
+
+        // 工具变化：缓存键随之变化
+        options = newOptions().toolAdd("search", d -> d.description("搜索"));
+        interceptor.doPrepare(newReq(options, session));
+        Assertions.assertNotEquals(cc1.getPromptCacheKey(), options.cacheControl().getPromptCacheKey());
+        Assertions.assertEquals(4, options.cacheControl().getStableMessages());
+
+        // 显式指定的缓存键保持不变
+        options = newOptions().cacheControl(CacheControl.ofPromptKey("user-key"));
+        interceptor.doPrepare(newReq(options, session));
+        Assertions.assertEquals("user-key", options.cacheControl().getPromptCacheKey());
+        Assertions.assertEquals("ephemeral", options.cacheControl().getType());
+    }
+
+    @Test
+    public void failedCallNotRemembered() {
+        TestInterceptor interceptor = new TestInterceptor();
+        InMemoryChatSession session = InMemoryChatSession.builder().build();
+        session.addMessage(ChatMessage.ofUser("u1"));
+
+        interceptor.doPrepare(newReq(newOptions(), session));
+
+        // 失败的请求不更新对比基准
+        session.addMessage(ChatMessage.ofAssistant("a1"));
+        session.addMessage(ChatMessage.ofUser("u2"));
+        CallChain failed = new CallChain(Collections.emptyList(), r -> {
+            throw new IOException("unavailable");
+        });
+        Assertions.assertThrows(IOException.class,
+                () -> interceptor.interceptCall(newReq(newOptions(), session), failed));
+
+        // 稳定前缀仍以上一次成功的请求（system + u1）为准
+        ChatOptions options = newOptions();
+        interceptor.doPrepare(newReq(options, session));
+        Assertions.assertEquals(2, options.cacheControl().getStableMessages());
+    }
+
+    @Test
+    public void stats() {
+        InMemoryChatSession session = InMemoryChatSession.builder().build();
+
+        PromptCacheStats stats = PromptCacheInterceptor.getStats(session);
+        stats.addUsage(new AiUsage(1000, 0, 100, 1100, 1000, 0, null));
+        stats.addUsage(new AiUsage(1000, 0, 100, 1100, 0, 900, null));
+        stats.addUsage(null);
+
+        Assertions.assertSame(stats, PromptCacheInterceptor.getStats(session));
+        Assertions.assertEquals(2, stats.getRequests());
+        Assertions.assertEquals(45.0D, stats.getCacheRate());
+    }
+}
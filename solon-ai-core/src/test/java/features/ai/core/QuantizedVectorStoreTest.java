@@ -0,0 +1,162 @@
+package features.ai.core;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.noear.solon.ai.rag.repository.inmemory.QuantizedVectorStore;
+import org.noear.solon.ai.rag.repository.inmemory.VectorQuantization;
+import org.noear.solon.ai.rag.util.SimilarityUtil;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 量化向量存储：内存占用与召回率基准
+ *
+ * @author noear
+ * @since 4.1
+ */
+@Slf4j
+public class QuantizedVectorStoreTest {
+    private static final int COUNT = 5000;
+    private static final int DIMENSIONS = 256;
+    private static final int QUERIES = 100;
+    private static final int LIMIT = 10;
+
+    private final Random random = new Random(7);
+    private final float[][] vectors = new float[COUNT][DIMENSIONS];
+
+    public QuantizedVectorStoreTest() {
+        for (int i = 0; i < COUNT; i++) {
+            for (int j = 0; j < DIMENSIONS; j++) {
+                vectors[i][j] = (float) random.nextGaussian();
+            }
+        }
+    }
+
+    @Test
+    public void int8() throws Exception {
+        double top1 = bench(new QuantizedVectorStore(VectorQuantization.INT8, null), 4);
+        assert top1 > 0.95;
+    }
+
+    @Test
+    public void binary() throws Exception {
+        double top1 = bench(new QuantizedVectorStore(VectorQuantization.BINARY, null), 8);
+        assert top1 > 0.95;
+    }
+
+    @Test
+    public void binary_mapped() throws Exception {
+        File file = File.createTempFile("solon-ai-rerank", ".bin");
+        file.deleteOnExit();
+
+        QuantizedVectorStore store = new QuantizedVectorStore(VectorQuantization.BINARY, file);
+        try {
+            double top1 = bench(store, 8);
+            assert top1 > 0.95;
+            assert file.length() > 0;
+        } finally {
+            store.clear();
+        }
+
+        //清空后映射文件被截断
+        assert file.length() == 0;
+
+        //清空后可继续使用
+        store.put("d0", vectors[0]);
+        assert "d0".equals(store.search(vectors[0], 1, 8, null).get(0).getId());
+        store.clear();
+    }
+
+    @Test
+    public void removeAndReuse() throws Exception {
+        QuantizedVectorStore store = new QuantizedVectorStore(VectorQuantization.INT8, null, 4);
+        for (int i = 0; i < 10; i++) {
+            store.put("d" + i, vectors[i]);
+        }
+
+        store.remove("d3");
+        assert store.size() == 9;
+        assert store.contains("d3") == false;
+
+        store.put("x", vectors[3]);
+        assert store.size() == 10;
+
+        List<QuantizedVectorStore.Hit> hits = store.search(vectors[3], 1, 4, null);
+        assert "x".equals(hits.get(0).getId());
+
+        hits = store.search(vectors[3], 1, 4, id -> id.equals("x") == false);
+        assert "x".equals(hits.get(0).getId()) == false;
+    }
+
+    private double bench(QuantizedVectorStore store, int rerankFactor) throws Exception {
+        for (int i = 0; i < COUNT; i++) {
+            store.put("d" + i, vectors[i]);
+        }
+
+        long exactNanos = 0;
+        long quantNanos = 0;
+        int matched = 0;
+        int top1 = 0;
+
+        for (int q = 0; q < QUERIES; q++) {
+            float[] query = new float[DIMENSIONS];
+            int sourceIdx = random.nextInt(COUNT);
+            float[] source = vectors[sourceIdx];
+            for (int j = 0; j < DIMENSIONS; j++) {
+                query[j] = source[j] + (float) random.nextGaussian() * 0.5F;
+            }
+
+            long start = System.nanoTime();
+            Set<String> expected = exactTopK(query);
+            exactNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            List<QuantizedVectorStore.Hit> hits = store.search(query, LIMIT, rerankFactor, null);
+            quantNanos += System.nanoTime() - start;
+
+            if (("d" + sourceIdx).equals(hits.get(0).getId())) {
+                top1++;
+            }
+
+            for (QuantizedVectorStore.Hit hit : hits) {
+                if (expected.contains(hit.getId())) {
+                    matched++;
+                }
+            }
+        }
+
+        double recall = (double) matched / (QUERIES * LIMIT);
+        long floatBytes = (long) COUNT * DIMENSIONS * 4;
+
+        //随机高斯数据是召回的最差情况（近邻之间区分度很低），以 top1 命中源向量作为断言依据
+        log.warn("{}: top1={}, recall@{}={}, heap={} bytes (float[] heap={} bytes), offHeap={} bytes, exact={}ms, quantized={}ms",
+                store.getQuantization(), (double) top1 / QUERIES, LIMIT, recall,
+                store.heapBytes(), floatBytes, store.offHeapBytes(),
+                exactNanos / 1000000, quantNanos / 1000000);
+
+        assert store.heapBytes() < floatBytes;
+        return (double) top1 / QUERIES;
+    }
+
+    private Set<String> exactTopK(float[] query) {
+        List<Integer> order = new ArrayList<>(COUNT);
+        double[] scores = new double[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            order.add(i);
+            scores[i] = SimilarityUtil.cosineSimilarity(query, vectors[i]);
+        }
+
+        return order.stream()
+                .sorted(Comparator.comparingDouble(i -> -scores[i]))
+                .limit(LIMIT)
+                .map(i -> "d" + i)
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 import org.noear.redisx.RedisClient;
 import org.noear.solon.ai.chat.message.ChatMessage;
 import org.noear.solon.ai.chat.session.RedisChatSession;
+import org.noear.solon.ai.chat.session.RedisSessionStore;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -108,6 +109,73 @@ public class RedisChatSessionTest {
         Assertions.assertEquals(0, redisClient.getList(messagesKey).size());
     }
 
+    @Test
+    public void testMaxMessages_Capped() {
+        RedisChatSession session = new RedisChatSession(testId, redisClient, 3);
+
+        for (int i = 1; i <= 5; i++) {
+            session.addMessage(Collections.singletonList(ChatMessage.ofUser("msg " + i)));
+        }
+
+        // Redis 列表按上限裁剪（一次管道往返 LPUSH + LTRIM）
+        String messagesKey = testId + ":messages";
+        Assertions.assertEquals(3, redisClient.getList(messagesKey).size());
+
+        // 重新加载：保留的是最新的 3 条
+        RedisChatSession reloaded = new RedisChatSession(testId, redisClient, 3);
+        Assertions.assertEquals(3, reloaded.getMessages().size());
+        Assertions.assertEquals("msg 3", reloaded.getMessages().get(0).getContent());
+        Assertions.assertEquals("msg 5", reloaded.getMessages().get(2).getContent());
+    }
+
+    @Test
+    public void testMaxMessages_DefaultUncapped() {
+        RedisChatSession session = new RedisChatSession(testId, redisClient);
+
+        for (int i = 1; i <= 60; i++) {
+            session.addMessage(Collections.singletonList(ChatMessage.ofUser("msg " + i)));
+        }
+
+        // 默认不裁剪 Redis 列表
+        String messagesKey = testId + ":messages";
+        Assertions.assertEquals(60, redisClient.getList(messagesKey).size());
+    }
+
+    @Test
+    public void testRemoveLatestMessage_KeepsOldest() {
+        RedisChatSession session = new RedisChatSession(testId, redisClient);
+
+        session.addMessage(Collections.singletonList(ChatMessage.ofUser("msg 1")));
+        session.addMessage(Collections.singletonList(ChatMessage.ofUser("msg 2")));
+        session.addMessage(Collections.singletonList(ChatMessage.ofUser("msg 3")));
+
+        session.removeLatestMessage(1);
+
+        RedisChatSession reloaded = new RedisChatSession(testId, redisClient);
+        Assertions.assertEquals(2, reloaded.getMessages().size());
+        Assertions.assertEquals("msg 1", reloaded.getMessages().get(0).getContent());
+        Assertions.assertEquals("msg 2", reloaded.getMessages().get(1).getContent());
+    }
+
+    @Test
+    public void testSnapshotCodec() {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            buf.append("{\"k\":\"value-").append(i).append("\"}");
+        }
+        String json = buf.toString();
+
+        // 低于阈值：原样存储
+        Assertions.assertEquals("{}", RedisSessionStore.encodeSnapshot("{}", 1024));
+        Assertions.assertEquals("{}", RedisSessionStore.decodeSnapshot("{}"));
+
+        // 超过阈值：压缩存储，且可还原
+        String encoded = RedisSessionStore.encodeSnapshot(json, 1024);
+        Assertions.assertTrue(encoded.length() < json.length());
+        Assertions.assertEquals(json, RedisSessionStore.decodeSnapshot(encoded));
+        Assertions.assertNull(RedisSessionStore.decodeSnapshot(null));
+    }
+
     @Test
     public void testConstructor_Exceptions() {
         Assertions.assertThrows(NullPointerException.class, () -> new RedisChatSession(null, redisClient));
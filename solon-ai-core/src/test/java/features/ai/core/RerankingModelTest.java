@@ -0,0 +1,157 @@
+package features.ai.core;
+
+import org.junit.jupiter.api.Test;
+import org.noear.solon.ai.rag.Document;
+import org.noear.solon.ai.reranking.Reranking;
+import org.noear.solon.ai.reranking.RerankingConfig;
+import org.noear.solon.ai.reranking.RerankingModel;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author noear
+ * @since 4.1
+ */
+public class RerankingModelTest {
+    /**
+     * 测试用重排模型（按查询词命中数打分，不访问网络）
+     */
+    static class FakeRerankingModel extends RerankingModel {
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger maxBatch = new AtomicInteger();
+        long delayMillis;
+        int topN;
+
+        FakeRerankingModel(RerankingConfig config) {
+            super(config);
+        }
+
+        @Override
+        protected List<Reranking> rerankBatch(String query, List<Document> batch) throws IOException {
+            calls.incrementAndGet();
+            maxBatch.accumulateAndGet(batch.size(), Math::max);
+
+            if (delayMillis > 0) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+
+            List<Reranking> results = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                if (topN > 0 && i >= topN) {
+                    break;
+                }
+
+                float score = 0;
+                for (String word : query.split(" ")) {
+                    if (batch.get(i).getContent().contains(word)) {
+                        score++;
+                    }
+                }
+                results.add(new Reranking(i, null, score));
+            }
+            return results;
+        }
+    }
+
+    private FakeRerankingModel build(int batchSize, Duration fallbackTimeout) {
+        RerankingConfig config = new RerankingConfig();
+        config.setApiUrl("http://localhost/rerank");
+        config.setModel("fake");
+        config.setBatchSize(batchSize);
+        config.setFallbackTimeout(fallbackTimeout);
+        return new FakeRerankingModel(config);
+    }
+
+    private List<Document> docs(int count) {
+        List<Document> docs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder buf = new StringBuilder("doc" + i);
+            if (i % 2 == 0) {
+                buf.append(" solon");
+            }
+            if (i % 3 == 0) {
+                buf.append(" rag");
+            }
+            docs.add(new Document(buf.toString()).score(1.0D - i * 0.01D));
+        }
+        return docs;
+    }
+
+    @Test
+    public void case1_batch() throws Exception {
+        FakeRerankingModel model = build(3, null);
+
+        List<Document> result = model.rerank("solon rag", docs(10));
+
+        assert model.calls.get() == 4;
+        assert model.maxBatch.get() == 3;
+        assert result.size() == 10;
+        assert result.get(0).getContent().equals("doc0 solon rag");
+        assert result.get(1).getContent().equals("doc6 solon rag");
+        for (int i = 1; i < result.size(); i++) {
+            assert result.get(i - 1).getScore() >= result.get(i).getScore();
+        }
+    }
+
+    @Test
+    public void case2_cache() throws Exception {
+        FakeRerankingModel model = build(3, null);
+
+        model.rerank("solon rag", docs(6));
+        assert model.calls.get() == 2;
+
+        //相同候选，全部命中缓存
+        List<Document> result = model.rerank("solon rag", docs(6));
+        assert model.calls.get() == 2;
+        assert result.get(0).getContent().equals("doc0 solon rag");
+
+        //翻页：只请求新增的候选
+        model.rerank("solon rag", docs(8));
+        assert model.calls.get() == 3;
+        assert model.maxBatch.get() == 3;
+
+        //查询不同，不命中
+        model.rerank("solon", docs(6));
+        assert model.calls.get() == 5;
+    }
+
+    @Test
+    public void case3_topN() throws Exception {
+        FakeRerankingModel model = build(10, null);
+        model.topN = 2;
+
+        List<Document> result = model.rerank("rag", docs(5));
+
+        //未返回分数的文档排在最后，并保持原顺序与原分数
+        assert result.get(0).getContent().equals("doc0 solon rag");
+        assert result.get(1).getContent().equals("doc1");
+        assert result.get(2).getContent().equals("doc2 solon");
+        assert result.get(2).getScore() == 0.98D;
+    }
+
+    @Test
+    public void case4_timeout() throws Exception {
+        FakeRerankingModel model = build(2, Duration.ofMillis(100));
+        model.delayMillis = 1000;
+
+        List<Document> docs = docs(6);
+        long start = System.currentTimeMillis();
+        List<Document> result = model.rerank("solon rag", docs);
+        long elapsed = System.currentTimeMillis() - start;
+
+        //超时降级为原顺序
+        assert elapsed < 800 : elapsed;
+        for (int i = 0; i < docs.size(); i++) {
+            assert result.get(i) == docs.get(i);
+        }
+        assert result.get(0).getScore() == 1.0D;
+    }
+}
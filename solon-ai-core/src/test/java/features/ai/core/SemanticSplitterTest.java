@@ -7,11 +7,14 @@ import org.noear.solon.ai.embedding.EmbeddingModel;
 import org.noear.solon.ai.embedding.dialect.EmbeddingDialectManager;
 import org.noear.solon.ai.rag.Document;
 import org.noear.solon.ai.rag.splitter.SemanticSplitter;
+import org.noear.solon.ai.rag.splitter.TextSplitter;
 import org.noear.solon.test.SolonTest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author 烧饵块
@@ -187,4 +190,45 @@ public class SemanticSplitterTest {
             log.info("Chunk {}: {}", i, chunks.get(i).getContent());
         }
     }
+
+    @Test
+    public void testChunkIndexed() {
+        SemanticSplitter splitter = new SemanticSplitter(
+                new FakeEmbeddingModel(), 0.5, 512, 3, 1, SemanticSplitter.CHINESE_DELIM
+        );
+        splitter.setChunkIndexed(true);
+
+        // 句子数少于窗口大小，不需要嵌入
+        List<Document> chunks = splitter.split(Arrays.asList(
+                new Document("人工智能正在改变世界。").metadata("src", "a"),
+                new Document("机器学习是重要分支。").metadata("src", "b")));
+
+        assert chunks.size() == 2;
+        assert Integer.valueOf(0).equals(chunks.get(0).getMetadata().get(TextSplitter.CHUNK_INDEX_KEY));
+        assert Integer.valueOf(0).equals(chunks.get(1).getMetadata().get(TextSplitter.CHUNK_INDEX_KEY));
+        assert "b".equals(chunks.get(1).getMetadata().get("src"));
+    }
+
+    @Test
+    public void testSplitDocumentOverride() {
+        AtomicInteger count = new AtomicInteger();
+
+        SemanticSplitter splitter = new SemanticSplitter(
+                new FakeEmbeddingModel(), 0.5, 512, 3, 1, SemanticSplitter.CHINESE_DELIM
+        ) {
+            @Override
+            protected List<Document> splitDocument(Document doc) {
+                count.incrementAndGet();
+                return super.splitDocument(doc);
+            }
+        };
+
+        List<Document> chunks = splitter.split(Arrays.asList(
+                new Document("人工智能正在改变世界。"),
+                new Document("机器学习是重要分支。")));
+
+        // 重写的扩展点对每个文档生效
+        assert chunks.size() == 2;
+        assert count.get() == 2;
+    }
 }
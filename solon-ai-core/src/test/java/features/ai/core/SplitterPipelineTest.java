@@ -0,0 +1,54 @@
+package features.ai.core;
+
+import org.junit.jupiter.api.Test;
+import org.noear.solon.ai.rag.Document;
+import org.noear.solon.ai.rag.splitter.RegexTextSplitter;
+import org.noear.solon.ai.rag.splitter.SplitterPipeline;
+import org.noear.solon.ai.rag.splitter.TokenSizeTextSplitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @author noear
+ * @since 4.1
+ */
+public class SplitterPipelineTest {
+    private List<Document> documents() {
+        List<Document> docs = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            StringBuilder buf = new StringBuilder();
+            for (int j = 0; j < 20; j++) {
+                buf.append("doc ").append(i).append(" paragraph ").append(j).append(". solon ai splitter.\n\n");
+            }
+            docs.add(new Document(buf.toString()));
+        }
+        return docs;
+    }
+
+    @Test
+    public void parallel() {
+        List<Document> serial = new SplitterPipeline()
+                .next(new RegexTextSplitter())
+                .next(new TokenSizeTextSplitter(20, 10))
+                .split(documents());
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<Document> parallel = new SplitterPipeline()
+                    .next(new RegexTextSplitter())
+                    .next(new TokenSizeTextSplitter(20, 10))
+                    .parallel(pool)
+                    .split(documents());
+
+            //并行分割，输出顺序不变
+            assert serial.size() == parallel.size();
+            for (int i = 0; i < serial.size(); i++) {
+                assert serial.get(i).getContent().equals(parallel.get(i).getContent());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
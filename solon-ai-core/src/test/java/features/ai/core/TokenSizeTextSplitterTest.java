@@ -0,0 +1,161 @@
+package features.ai.core;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import com.knuddels.jtokkit.api.IntArrayList;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.noear.solon.ai.rag.Document;
+import org.noear.solon.ai.rag.splitter.TokenSizeTextSplitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 词元大小文本分割器：与原实现的输出一致性
+ *
+ * @author noear
+ * @since 4.1
+ */
+@Slf4j
+public class TokenSizeTextSplitterTest {
+    private final Encoding encoding = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+
+    @Test
+    public void sameAsLegacy() {
+        Random random = new Random(11);
+        String[] words = {"solon", "ai", "框架", "分割器", "token", "hello", "world", "。", ".", "?", "!", "\n", " ", "😀", "1234567"};
+
+        for (int round = 0; round < 30; round++) {
+            StringBuilder buf = new StringBuilder();
+            int count = 200 + random.nextInt(3000);
+            for (int i = 0; i < count; i++) {
+                buf.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            String text = buf.toString();
+
+            int chunkSize = 20 + random.nextInt(200);
+            int minChars = random.nextInt(300);
+            boolean keepSeparator = random.nextBoolean();
+
+            List<Document> actual = new TokenSizeTextSplitter(chunkSize, minChars, 5, 1000, keepSeparator)
+                    .split(text);
+            List<String> expected = legacySplit(text, chunkSize, minChars, 5, 1000, keepSeparator);
+
+            assert actual.size() == expected.size();
+            for (int i = 0; i < expected.size(); i++) {
+                assert expected.get(i).equals(actual.get(i).getContent());
+            }
+        }
+    }
+
+    @Test
+    public void parallel() {
+        List<Document> docs = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            StringBuilder buf = new StringBuilder();
+            for (int j = 0; j < 300; j++) {
+                buf.append("doc ").append(i).append(" sentence ").append(j).append(". ");
+            }
+            docs.add(new Document(buf.toString()));
+        }
+
+        TokenSizeTextSplitter splitter = new TokenSizeTextSplitter(100);
+        List<Document> serial = splitter.split(docs);
+
+        splitter.setParallel(true);
+        List<Document> parallel = splitter.split(docs);
+
+        assert serial.size() == parallel.size();
+        for (int i = 0; i < serial.size(); i++) {
+            assert serial.get(i).getContent().equals(parallel.get(i).getContent());
+        }
+    }
+
+    @Test
+    public void codecOverride() {
+        AtomicInteger encodeCount = new AtomicInteger();
+        AtomicInteger decodeCount = new AtomicInteger();
+
+        TokenSizeTextSplitter splitter = new TokenSizeTextSplitter(20, 10) {
+            @Override
+            protected List<Integer> encodeTokens(Encoding encoding, String text) {
+                encodeCount.incrementAndGet();
+                return super.encodeTokens(encoding, text);
+            }
+
+            @Override
+            protected String decodeTokens(Encoding encoding, List<Integer> tokens) {
+                decodeCount.incrementAndGet();
+                return super.decodeTokens(encoding, tokens).toUpperCase();
+            }
+        };
+
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            buf.append("solon sentence ").append(i).append(". ");
+        }
+
+        List<Document> docs = splitter.split(buf.toString());
+
+        //重写的编码与解码方法生效
+        assert docs.size() > 1;
+        assert encodeCount.get() > 0;
+        assert decodeCount.get() > 0;
+        for (Document doc : docs) {
+            assert doc.getContent().equals(doc.getContent().toUpperCase());
+        }
+    }
+
+    /**
+     * 原实现（装箱列表，逐块重新编码）
+     */
+    private List<String> legacySplit(String text, int chunkSize, int minChunkSizeChars, int minChunkLengthToEmbed, int maxChunkCount, boolean keepSeparator) {
+        List<String> chunks = new ArrayList<>();
+        List<Integer> tokens = encoding.encode(text).boxed();
+        int chunksCount = 0;
+
+        while (!tokens.isEmpty() && chunksCount < maxChunkCount) {
+            List<Integer> chunk = tokens.subList(0, Math.min(chunkSize, tokens.size()));
+            String chunkText = decode(chunk);
+            if (chunkText.trim().isEmpty()) {
+                tokens = tokens.subList(chunk.size(), tokens.size());
+            } else {
+                int lastPunctuation = Math.max(chunkText.lastIndexOf(46),
+                        Math.max(chunkText.lastIndexOf(63),
+                                Math.max(chunkText.lastIndexOf(33),
+                                        chunkText.lastIndexOf(10))));
+
+                if (lastPunctuation > 0 && lastPunctuation > minChunkSizeChars) {
+                    chunkText = chunkText.substring(0, lastPunctuation + 1);
+                }
+
+                String chunkTextToAppend = keepSeparator ? chunkText.trim() : chunkText.replace(System.lineSeparator(), " ").trim();
+                if (chunkTextToAppend.length() > minChunkLengthToEmbed) {
+                    chunks.add(chunkTextToAppend);
+                }
+
+                tokens = tokens.subList(encoding.encode(chunkText).size(), tokens.size());
+                ++chunksCount;
+            }
+        }
+
+        if (!tokens.isEmpty()) {
+            String remaining = decode(tokens).replace(System.lineSeparator(), " ").trim();
+            if (remaining.length() > minChunkLengthToEmbed) {
+                chunks.add(remaining);
+            }
+        }
+
+        return chunks;
+    }
+
+    private String decode(List<Integer> tokens) {
+        IntArrayList tmp = new IntArrayList(tokens.size());
+        tokens.forEach(tmp::add);
+        return encoding.decode(tmp);
+    }
+}
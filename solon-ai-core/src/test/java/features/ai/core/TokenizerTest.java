@@ -0,0 +1,72 @@
+package features.ai.core;
+
+import com.knuddels.jtokkit.api.EncodingType;
+import org.junit.jupiter.api.Test;
+import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.tokenizer.ApproximateTokenizer;
+import org.noear.solon.ai.tokenizer.TokenCountUtil;
+import org.noear.solon.ai.tokenizer.Tokenizer;
+import org.noear.solon.ai.tokenizer.TokenizerManager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author noear
+ * @since 4.1
+ */
+public class TokenizerTest {
+    @Test
+    public void manager() {
+        assert TokenizerManager.getTokenizer("gpt-4o-mini") == TokenizerManager.getTokenizer(EncodingType.O200K_BASE);
+        assert TokenizerManager.getTokenizer("openai/gpt-4") == TokenizerManager.getTokenizer(EncodingType.CL100K_BASE);
+        assert TokenizerManager.getTokenizer("qwen-plus") == TokenizerManager.getApproximate();
+        assert TokenizerManager.getDefault().getEncoding() == TokenizerManager.getEncoding(EncodingType.O200K_BASE);
+
+        TokenizerManager.register("deepseek-", new ApproximateTokenizer());
+        assert TokenizerManager.getTokenizer("DeepSeek-V3") instanceof ApproximateTokenizer;
+    }
+
+    @Test
+    public void approximate() {
+        Tokenizer tokenizer = TokenizerManager.getApproximate();
+
+        assert tokenizer.countTokens(null) == 0;
+        assert tokenizer.countTokens("hello world") == 4;
+        assert tokenizer.countTokens("你好，世界") == 5;
+    }
+
+    @Test
+    public void memo() {
+        AtomicInteger calls = new AtomicInteger();
+        Tokenizer tokenizer = new Tokenizer() {
+            @Override
+            public String name() {
+                return "counting";
+            }
+
+            @Override
+            public int countTokens(String text) {
+                calls.incrementAndGet();
+                return TokenizerManager.getDefault().countTokens(text);
+            }
+        };
+
+        ChatMessage message = ChatMessage.ofUser("solon ai token count memo");
+        int count = TokenCountUtil.countMessage(message, tokenizer);
+        int calls1 = calls.get();
+
+        //内容不变，复用记忆
+        assert TokenCountUtil.countMessage(message, tokenizer) == count;
+        assert calls.get() == calls1;
+
+        //记忆不写入消息元数据（元数据中的旧值也不被采用）
+        assert message.hasMetadata(TokenCountUtil.META_TOKEN_SIZE) == false;
+        ChatMessage forged = ChatMessage.ofUser("solon ai token count memo");
+        forged.addMetadata(TokenCountUtil.META_TOKEN_SIZE, 1);
+        assert TokenCountUtil.countMessage(forged, tokenizer) == count;
+
+        //不同消息各自计数
+        ChatMessage other = ChatMessage.ofUser("another message");
+        assert TokenCountUtil.countMessage(other, tokenizer) == TokenCountUtil.estimateMessage(other, tokenizer);
+    }
+}
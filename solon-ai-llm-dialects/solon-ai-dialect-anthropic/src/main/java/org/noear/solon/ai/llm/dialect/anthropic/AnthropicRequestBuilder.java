@@ -108,7 +108,14 @@ public class AnthropicRequestBuilder {
         // 构建消息数组，过滤掉系统消息
         ONode messagesNode = root.getOrNew("messages").asArray();
         ONode pendingToolResultNode = null; // 用于合并连续的 ToolMessage
+        int stableMessages = (cacheEnabled ? cacheControl.getStableMessages() : 0);
+        int stableNodeIndex = -1; // 稳定前缀末尾所在的消息节点（落在合并中的 ToolMessage 节点内时取其前一个节点）
+        int messageIndex = 0;
         for (ChatMessage message : messages) {
+            if (++messageIndex == stableMessages) {
+                stableNodeIndex = messagesNode.size() - 1;
+            }
+
             if (message instanceof SystemMessage || message.isThinking()) {
                 continue;
             }
@@ -128,6 +135,10 @@ public class AnthropicRequestBuilder {
                 }
                 messagesNode.add(buildMessageNode(message));
             }
+
+            if (messageIndex == stableMessages && pendingToolResultNode == null) {
+                stableNodeIndex = messagesNode.size() - 1;
+            }
         }
         if (pendingToolResultNode != null) {
             messagesNode.add(pendingToolResultNode);
@@ -137,7 +148,7 @@ public class AnthropicRequestBuilder {
         // 配额 = 4 - 静态断点数，把预算尽量倾斜给历史，增强 20-block 窗口抗性。
         if (cacheEnabled) {
             int rollingQuota = CACHE_BREAKPOINT_LIMIT - staticBreakpoints;
-            applyMessageCacheBreakpoints(messagesNode, cacheControl, rollingQuota);
+            applyMessageCacheBreakpoints(messagesNode, cacheControl, rollingQuota, stableNodeIndex);
         }
 
         // 设置流式模式参数
@@ -989,9 +1000,11 @@ public class AnthropicRequestBuilder {
      * @param messagesNode messages 数组节点
      * @param cacheControl 缓存控制（已确保 type 非空）
      * @param quota        滚动断点配额（= 上限 - 静态断点数）
+     * @param stableIndex  稳定前缀末尾的消息节点（-1 表示未知）；不在滚动断点范围内时占用 1 个配额，
+     *                     使历史被改写（如上下文压缩）时，稳定的前缀仍能命中缓存
      * @since 4.0.4
      */
-    private void applyMessageCacheBreakpoints(ONode messagesNode, CacheControl cacheControl, int quota) {
+    private void applyMessageCacheBreakpoints(ONode messagesNode, CacheControl cacheControl, int quota, int stableIndex) {
         if (messagesNode == null || !messagesNode.isArray() || quota <= 0) {
             return;
         }
@@ -1001,6 +1014,11 @@ public class AnthropicRequestBuilder {
             return;
         }
 
+        if (quota > 1 && stableIndex >= 0 && stableIndex < total - quota) {
+            markMessageCacheBreakpoint(messagesNode.get(stableIndex), cacheControl);
+            quota--;
+        }
+
         // 最后 quota 条消息（不足则只处理存在的那些）
         int count = Math.min(quota, total);
         int fromIndex = total - count;
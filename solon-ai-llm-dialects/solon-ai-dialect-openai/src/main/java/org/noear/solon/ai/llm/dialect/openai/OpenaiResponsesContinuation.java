@@ -0,0 +1,185 @@
+/*
+ * Copyright 2017-2025 noear.org and authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.noear.solon.ai.llm.dialect.openai;
+
+import org.noear.solon.ai.chat.ChatOptions;
+import org.noear.solon.ai.chat.ChatRequest;
+import org.noear.solon.ai.chat.ChatSession;
+import org.noear.solon.ai.chat.message.AssistantMessage;
+import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.chat.message.SystemMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * OpenAI Responses 服务端会话续接状态（基于 previous_response_id）
+ *
+ * <p>记录上一次响应 id，及服务端已持有的输入消息数（不含 system）与最后一条输入消息的指纹；
+ * 下一轮请求时若会话前缀未变，则只发送新增的输入消息。存放于 ChatSession.attrs()</p>
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class OpenaiResponsesContinuation {
+    /**
+     * 会话属性键
+     */
+    public static final String ATTR_KEY = "openai_responses_continuation";
+
+    private final String responseId;
+    private final int inputCount;
+    private final int anchorHash;
+
+    public OpenaiResponsesContinuation(String responseId, int inputCount, int anchorHash) {
+        this.responseId = responseId;
+        this.inputCount = inputCount;
+        this.anchorHash = anchorHash;
+    }
+
+    /**
+     * 上一次响应 id
+     */
+    public String getResponseId() {
+        return responseId;
+    }
+
+    /**
+     * 服务端已持有的输入消息数（不含 system 及响应输出）
+     */
+    public int getInputCount() {
+        return inputCount;
+    }
+
+    /**
+     * 是否启用续接（显式开启；且未关闭 store，未手动透传 previous_response_id）
+     */
+    public static boolean isEnabled(ChatOptions options) {
+        return Boolean.TRUE.equals(options.option(OpenaiResponsesDialect.OPTION_STATEFUL))
+                && Boolean.FALSE.equals(options.option("store")) == false
+                && options.option("previous_response_id") == null;
+    }
+
+    /**
+     * 获取会话中的续接状态
+     */
+    public static OpenaiResponsesContinuation get(ChatSession session) {
+        Object state = session.attrs().get(ATTR_KEY);
+        if (state instanceof OpenaiResponsesContinuation) {
+            return (OpenaiResponsesContinuation) state;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * 清除会话中的续接状态
+     *
+     * @return 是否存在并已清除
+     */
+    public static boolean clear(ChatSession session) {
+        return session.attrs().remove(ATTR_KEY) != null;
+    }
+
+    /**
+     * 记录本次请求的续接状态（响应成功后调用）
+     *
+     * @param req        聊天请求
+     * @param responseId 响应 id
+     */
+    public static void capture(ChatRequest req, String responseId) {
+        if (req == null || responseId == null || responseId.isEmpty() || isEnabled(req.getOptions()) == false) {
+            return;
+        }
+
+        List<ChatMessage> inputs = inputs(req.getFinalPrompt().getMessages());
+        if (inputs.isEmpty()) {
+            return;
+        }
+
+        int last = inputs.size() - 1;
+        req.getSession().attrs().put(ATTR_KEY,
+                new OpenaiResponsesContinuation(responseId, inputs.size(), fingerprint(inputs.get(last))));
+    }
+
+    /**
+     * 计算可续接的输入起点
+     *
+     * @param inputs 输入消息（不含 system）
+     * @return 新增输入消息的起始位置；不可续接时为 -1
+     */
+    public int resolveStart(List<ChatMessage> inputs) {
+        int size = inputs.size();
+        if (inputCount < 1 || inputCount >= size) {
+            return -1;
+        }
+
+        //会话前缀须保持不变：已发送的最后一条输入一致，且其后紧跟响应输出（助理消息）
+        if (inputs.get(inputCount) instanceof AssistantMessage == false
+                || fingerprint(inputs.get(inputCount - 1)) != anchorHash) {
+            return -1;
+        }
+
+        //跳过服务端已持有的响应输出
+        int start = inputCount;
+        while (start < size && inputs.get(start) instanceof AssistantMessage) {
+            start++;
+        }
+
+        return start < size ? start : -1;
+    }
+
+    /**
+     * 是否为响应 id 失效（不存在或已过期）的错误
+     */
+    public static boolean isExpiredError(Throwable error) {
+        for (Throwable e = error; e != null; e = (e.getCause() == e ? null : e.getCause())) {
+            String message = e.getMessage();
+            if (message == null) {
+                continue;
+            }
+
+            message = message.toLowerCase();
+            if (message.contains("previous_response_not_found")) {
+                return true;
+            }
+
+            if ((message.contains("previous response") || message.contains("previous_response"))
+                    && (message.contains("not found") || message.contains("expired"))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * 过滤出输入消息（不含 system）
+     */
+    public static List<ChatMessage> inputs(List<ChatMessage> messages) {
+        List<ChatMessage> inputs = new ArrayList<>(messages.size());
+        for (ChatMessage msg : messages) {
+            if (msg instanceof SystemMessage == false) {
+                inputs.add(msg);
+            }
+        }
+        return inputs;
+    }
+
+    private static int fingerprint(ChatMessage msg) {
+        return ChatMessage.toJson(msg, true).hashCode();
+    }
+}
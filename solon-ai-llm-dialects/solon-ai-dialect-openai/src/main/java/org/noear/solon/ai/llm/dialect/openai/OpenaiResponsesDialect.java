@@ -19,6 +19,7 @@ import org.noear.snack4.ONode;
 import org.noear.solon.Utils;
 import org.noear.solon.ai.chat.ChatConfig;
 import org.noear.solon.ai.chat.ChatOptions;
+import org.noear.solon.ai.chat.ChatRequest;
 import org.noear.solon.ai.chat.ChatResponseDefault;
 import org.noear.solon.ai.chat.dialect.AbstractChatDialect;
 import org.noear.solon.ai.chat.message.ChatMessage;
@@ -40,6 +41,16 @@ import java.util.Map;
 public class OpenaiResponsesDialect extends AbstractChatDialect {
     private static final Logger log = LoggerFactory.getLogger(OpenaiResponsesDialect.class);
 
+    /**
+     * 选项：开启服务端会话续接（Boolean，不会发送给服务端）
+     *
+     * <p>开启后按会话记录上一次响应 id，后续请求通过 previous_response_id 续接并只发送新增输入；
+     * 响应 id 失效时自动清除状态并以完整历史重试一次</p>
+     *
+     * @since 4.1
+     */
+    public static final String OPTION_STATEFUL = "stateful";
+
     private static final OpenaiResponsesDialect instance = new OpenaiResponsesDialect();
     public static OpenaiResponsesDialect getInstance() {
         return instance;
@@ -166,6 +177,48 @@ public class OpenaiResponsesDialect extends AbstractChatDialect {
         return requestBuilder.build(config, options, messages, isStream);
     }
 
+    /**
+     * 构建请求体（开启续接且会话前缀未变时，只发送新增输入）
+     *
+     * @since 4.1
+     */
+    @Override
+    public ONode buildRequestJson(ChatConfig config, ChatRequest req) {
+        List<ChatMessage> messages = req.getFinalPrompt().getMessages();
+
+        if (OpenaiResponsesContinuation.isEnabled(req.getOptions())) {
+            OpenaiResponsesContinuation state = OpenaiResponsesContinuation.get(req.getSession());
+            if (state != null) {
+                int start = state.resolveStart(OpenaiResponsesContinuation.inputs(messages));
+                if (start > 0) {
+                    return requestBuilder.build(config, req.getOptions(), messages, req.isStream(),
+                            state.getResponseId(), start);
+                }
+
+                //前缀已变化（如会话被截断或改写），状态不再可用
+                OpenaiResponsesContinuation.clear(req.getSession());
+            }
+        }
+
+        return buildRequestJson(config, req.getOptions(), messages, req.isStream());
+    }
+
+    /**
+     * 响应 id 失效时清除续接状态（以完整历史重试）
+     *
+     * @since 4.1
+     */
+    @Override
+    public boolean recoverRequest(ChatRequest req, Throwable error) {
+        if (OpenaiResponsesContinuation.isExpiredError(error)
+                && OpenaiResponsesContinuation.clear(req.getSession())) {
+            log.warn("OpenAI Responses: previous response expired, retry with full history");
+            return true;
+        }
+
+        return false;
+    }
+
     /**
      * 构建助手消息（用于工具调用）
      *
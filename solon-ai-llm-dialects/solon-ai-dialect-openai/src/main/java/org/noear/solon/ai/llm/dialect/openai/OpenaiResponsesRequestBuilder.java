@@ -53,6 +53,22 @@ public class OpenaiResponsesRequestBuilder {
      * @return 符合 Responses JSON 字符串
      */
     public ONode build(ChatConfig config, ChatOptions options, List<ChatMessage> messages, boolean isStream) {
+        return build(config, options, messages, isStream, null, 0);
+    }
+
+    /**
+     * 构建请求 JSON（服务端会话续接）
+     *
+     * @param config             聊天配置
+     * @param options            聊天选项
+     * @param messages           对话消息列表
+     * @param isStream           是否使用流式模式
+     * @param previousResponseId 上一次响应 id（为 null 时发送完整历史）
+     * @param inputStart         输入起点（按非 SystemMessage 计数，之前的消息已由服务端持有）
+     * @since 4.1
+     */
+    public ONode build(ChatConfig config, ChatOptions options, List<ChatMessage> messages, boolean isStream,
+                       String previousResponseId, int inputStart) {
         ONode root = new ONode();
         if (Utils.isNotEmpty(config.getModel())) {
             root.set("model", config.getModel());
@@ -70,12 +86,20 @@ public class OpenaiResponsesRequestBuilder {
         if (instructions.length() > 0) {
             root.set("instructions", instructions.toString());
         }
+        // 续接时 instructions 不会从上一次响应继承，仍需每次发送
+        if (Utils.isNotEmpty(previousResponseId)) {
+            root.set("previous_response_id", previousResponseId);
+        }
         // 构建 input（将消息转为 input 数组，SystemMessage 已提取到 instructions）
         ONode inputArray = root.getOrNew("input").asArray();
+        int inputIdx = 0;
         for (ChatMessage msg : messages) {
             if (msg instanceof SystemMessage) {
                 continue;
             }
+            if (inputIdx++ < inputStart) {
+                continue;
+            }
             buildInputItem(inputArray, msg);
         }
         root.set("stream", isStream);
@@ -84,7 +108,8 @@ public class OpenaiResponsesRequestBuilder {
         for (Map.Entry<String, Object> kv : options.options().entrySet()) {
             String key = kv.getKey();
             // 跳过已处理的字段（response_format 不适用于 Responses API，使用 text.format 替代）
-            if ("stream".equals(key) || "response_format".equals(key)) {
+            if ("stream".equals(key) || "response_format".equals(key)
+                    || OpenaiResponsesDialect.OPTION_STATEFUL.equals(key)) {
                 continue;
             }
             // max_tokens -> max_output_tokens 转换
@@ -117,7 +142,7 @@ public class OpenaiResponsesRequestBuilder {
         // ⭐ prompt_cache_key（官方 Responses API 独立的缓存路由提示字段）
         //    通过 ChatOptions.promptCacheKey() 传入，仅用于提升 KV cache 命中，不改变会话语义
         //    注意：与 previous_response_id（服务端会话续接）是两个不同字段；
-        //    后者可经 options 直接透传（如 options.options().put("previous_response_id", ...)）
+        //    后者可经 options 直接透传，或开启 OpenaiResponsesDialect.OPTION_STATEFUL 由会话自动续接
         CacheControl cacheControl = options.cacheControl();
         if (cacheControl != null && Utils.isNotEmpty(cacheControl.getPromptCacheKey())) {
             root.set("prompt_cache_key", cacheControl.getPromptCacheKey());
@@ -77,6 +77,18 @@ public class OpenaiResponsesResponseParser {
         }
     }
 
+    /**
+     * 记录服务端会话续接状态（响应未存储时跳过）
+     */
+    private void captureContinuation(ChatResponseDefault resp, ONode response) {
+        ONode store = response.getOrNull("store");
+        if (store != null && Boolean.FALSE.equals(store.getValue())) {
+            return;
+        }
+
+        OpenaiResponsesContinuation.capture(resp.getRequest(), response.get("id").getString());
+    }
+
     /**
      * 获取或创建流式状态
      */
@@ -343,6 +355,7 @@ public class OpenaiResponsesResponseParser {
                 ONode response = oResp.get("response");
                 if (response != null) {
                     resp.setModel(response.get("model").getString());
+                    captureContinuation(resp, response);
                     // 解析 usage
                     AiUsage usage = parseUsage(response.getOrNull("usage"));
                     if (usage != null) {
@@ -363,6 +376,7 @@ public class OpenaiResponsesResponseParser {
                 ONode response = oResp.get("response");
                 if (response != null) {
                     resp.setModel(response.get("model").getString());
+                    captureContinuation(resp, response);
                     AiUsage usage = parseUsage(response.getOrNull("usage"));
                     if (usage != null) {
                         resp.setUsage(usage);
@@ -452,6 +466,7 @@ public class OpenaiResponsesResponseParser {
         }
         // 设置模型信息
         resp.setModel(oResp.get("model").getString());
+        captureContinuation(resp, oResp);
         Date created = new Date();
         if (oResp.hasKey("created_at")) {
             try {
@@ -15,7 +15,13 @@
  */
 package org.noear.solon.ai.rag.loader;
 
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.FileMagic;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
 import org.noear.snack4.ONode;
 import org.noear.solon.Utils;
 import org.noear.solon.ai.rag.Document;
@@ -23,12 +29,26 @@ import org.noear.solon.ai.rag.Document;
 import org.noear.solon.core.util.SupplierEx;
 import org.noear.solon.lang.Preview;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Excel 文档加载器
@@ -40,79 +60,592 @@ import java.util.*;
 @Preview("3.1")
 public class ExcelLoader extends AbstractOptionsDocumentLoader<ExcelLoader.Options, ExcelLoader> {
     private final SupplierEx<InputStream> source;
+    private final File file;
 
     public ExcelLoader(File source) {
-        this(() -> new FileInputStream(source));
+        this(() -> new FileInputStream(source), source);
     }
 
     public ExcelLoader(URL source) {
-        this(() -> source.openStream());
+        this(() -> source.openStream(), null);
     }
 
     public ExcelLoader(SupplierEx<InputStream> source) {
+        this(source, null);
+    }
+
+    private ExcelLoader(SupplierEx<InputStream> source, File file) {
         this.source = source;
+        this.file = file;
         this.options = new Options();
         this.additionalMetadata.put("type", "excel");
     }
 
     @Override
     public List<Document> load() throws IOException {
-        try (InputStream stream = source.get()) {
-            List<Document> documents = new ArrayList<>();
+        try (Stream<Document> stream = stream()) {
+            return stream.collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 流式加载（xlsx 使用流式解析，不构建整个工作簿；每满 documentMaxRows 行产出一个文档）
+     *
+     * @since 4.1
+     */
+    @Override
+    public Stream<Document> stream() throws IOException {
+        //非文件来源，先转存为临时文件（避免整个文件驻留内存）
+        File target = file;
+        File tempFile = null;
+
+        try {
+            if (target == null) {
+                tempFile = Files.createTempFile("solon-ai-excel", ".tmp").toFile();
+                try (InputStream stream = source.get()) {
+                    Files.copy(stream, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                target = tempFile;
+            }
 
-            //HSSFWorkbook workbook = new HSSFWorkbook(stream);
-            //HSSFWorkbook workbook = new XSSFWorkbook(stream);
+            SheetIterator iterator;
+            if (FileMagic.valueOf(target) == FileMagic.OOXML) {
+                iterator = new XlsxIterator(OPCPackage.open(target, PackageAccess.READ), tempFile);
+            } else {
+                //xls 等格式，仍需构建工作簿（只读），但逐批产出文档
+                iterator = new WorkbookIterator(WorkbookFactory.create(target, null, true), tempFile);
+            }
 
-            try (Workbook reader = WorkbookFactory.create(stream)) {
-                int numberOfSheets = reader.getNumberOfSheets();
+            return iterator.toStream();
+        } catch (Throwable e) {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
 
-                for (int num = 0; num < numberOfSheets; num++) {
-                    Sheet sheet = reader.getSheetAt(num);
+            if (e instanceof IOException) {
+                throw (IOException) e;
+            } else if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            } else {
+                throw new RuntimeException(e);
+            }
+        }
+    }
 
-                    List<Map<String, Object>> readAll = new ArrayList<>();
-                    List<Object> titles = null;
+    /**
+     * 工作表迭代器（按工作表逐行读取，每满 documentMaxRows 行产出一个文档）
+     */
+    private abstract class SheetIterator extends DocumentIterator {
+        private final File tempFile;
+        private boolean inSheet;
+        private boolean sheetEnded;
+        private List<Object> titles;
 
-                    for (Row row : sheet) {
-                        List<Object> values = readRow(row);
+        SheetIterator(File tempFile) {
+            this.tempFile = tempFile;
+        }
 
-                        if (Utils.isEmpty(values)) {
-                            break;
-                        }
+        /**
+         * 切换到下一个工作表（没有时返回 false）
+         */
+        protected abstract boolean nextSheet() throws IOException;
 
-                        if (titles == null) {
-                            titles = values;
-                        } else {
-                            readAll.add(rowToMap(titles, values));
-                        }
+        /**
+         * 读取当前工作表的下一行（工作表结束时返回 null；空白行返回空列表）
+         */
+        protected abstract List<Object> nextRow() throws IOException;
+
+        /**
+         * 释放工作簿
+         */
+        protected abstract void releaseWorkbook() throws IOException;
+
+        @Override
+        protected Document fetch() throws IOException {
+            while (true) {
+                if (inSheet == false) {
+                    if (nextSheet() == false) {
+                        return null;
+                    }
+
+                    inSheet = true;
+                    sheetEnded = false;
+                    titles = null;
+                }
+
+                List<Map<String, Object>> batch = new ArrayList<>();
+
+                while (options.documentMaxRows < 1 || batch.size() < options.documentMaxRows) {
+                    List<Object> values = nextRow();
+
+                    if (Utils.isEmpty(values)) {
+                        //遇到空白行，结束当前工作表
+                        sheetEnded = true;
+                        break;
                     }
 
-                    if (readAll.size() > 0) {
-                        if (options.documentMaxRows < 0) {
-                            documents.add(new Document(ONode.serialize(readAll)).metadata(this.additionalMetadata));
-                        } else {
-                            int totalSize = readAll.size();
-                            int numBatches = (totalSize + options.documentMaxRows - 1) / options.documentMaxRows; // 计算总批次数
-                            for (int i = 0; i < numBatches; i++) {
-                                int start = i * options.documentMaxRows;
-                                int end = Math.min(start + options.documentMaxRows, totalSize); // 确保最后一组不会越界
+                    if (titles == null) {
+                        titles = values;
+                    } else {
+                        batch.add(rowToMap(titles, values));
+                    }
+                }
+
+                if (sheetEnded) {
+                    inSheet = false;
+                }
+
+                if (batch.size() > 0) {
+                    return new Document(ONode.serialize(batch)).metadata(additionalMetadata);
+                }
+            }
+        }
+
+        @Override
+        protected void release() throws IOException {
+            try {
+                releaseWorkbook();
+            } finally {
+                if (tempFile != null) {
+                    tempFile.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * 工作簿迭代器（基于 usermodel，用于 xls 等格式）
+     */
+    private class WorkbookIterator extends SheetIterator {
+        private final Workbook workbook;
+        private int sheetIndex = -1;
+        private Iterator<Row> rows;
+
+        WorkbookIterator(Workbook workbook, File tempFile) {
+            super(tempFile);
+            this.workbook = workbook;
+        }
+
+        @Override
+        protected boolean nextSheet() {
+            sheetIndex++;
+            if (sheetIndex < workbook.getNumberOfSheets()) {
+                rows = workbook.getSheetAt(sheetIndex).iterator();
+                return true;
+            } else {
+                rows = null;
+                return false;
+            }
+        }
+
+        @Override
+        protected List<Object> nextRow() {
+            if (rows.hasNext()) {
+                List<Object> values = readRow(rows.next());
+                return values == null ? Collections.emptyList() : values;
+            } else {
+                return null;
+            }
+        }
+
+        @Override
+        protected void releaseWorkbook() throws IOException {
+            workbook.close();
+        }
+    }
+
+    /**
+     * xlsx 迭代器（基于 StAX 流式解析工作表 xml，内存只与单批行数有关）
+     */
+    private class XlsxIterator extends SheetIterator {
+        private final OPCPackage pkg;
+        private final ReadOnlySharedStringsTable sharedStrings;
+        private final Iterator<InputStream> sheets;
+        private final XMLInputFactory xmlFactory;
+        private final boolean date1904;
+        //共享公式（按 si）：主单元格的公式与位置（行、列），用于还原从属单元格的公式
+        private final Map<String, SharedFormula> sharedFormulas = new HashMap<>();
+        private InputStream sheetStream;
+        private XMLStreamReader xml;
+
+        XlsxIterator(OPCPackage pkg, File tempFile) throws IOException {
+            super(tempFile);
+            this.pkg = pkg;
+
+            this.xmlFactory = XMLInputFactory.newInstance();
+            this.xmlFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            this.xmlFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
 
-                                List<Map<String, Object>> batch = readAll.subList(start, end);
+            try {
+                XSSFReader reader = new XSSFReader(pkg);
+                this.sharedStrings = new ReadOnlySharedStringsTable(pkg);
+                this.sheets = reader.getSheetsData();
+                this.date1904 = readDate1904(reader);
+            } catch (IOException e) {
+                pkg.revert();
+                throw e;
+            } catch (Exception e) {
+                pkg.revert();
+                throw new IOException(e);
+            }
+        }
 
-                                documents.add(new Document(ONode.serialize(batch)).metadata(this.additionalMetadata));
+        /**
+         * 读取工作簿是否使用 1904 日期系统
+         */
+        private boolean readDate1904(XSSFReader reader) throws Exception {
+            try (InputStream stream = reader.getWorkbookData()) {
+                XMLStreamReader wb = xmlFactory.createXMLStreamReader(stream);
+                try {
+                    while (wb.hasNext()) {
+                        if (wb.next() == XMLStreamConstants.START_ELEMENT) {
+                            if ("workbookPr".equals(wb.getLocalName())) {
+                                String val = wb.getAttributeValue(null, "date1904");
+                                return "1".equals(val) || "true".equals(val);
+                            } else if ("sheets".equals(wb.getLocalName())) {
+                                return false;
                             }
                         }
                     }
+                    return false;
+                } finally {
+                    wb.close();
                 }
             }
+        }
 
-            return documents;
-        } catch (IOException e) {
-            throw e;
-        } catch (RuntimeException e) {
-            throw e;
-        } catch (Throwable e) {
-            throw new RuntimeException(e);
+        @Override
+        protected boolean nextSheet() throws IOException {
+            closeSheet();
+
+            if (sheets.hasNext() == false) {
+                return false;
+            }
+
+            sheetStream = sheets.next();
+            sharedFormulas.clear();
+            try {
+                xml = xmlFactory.createXMLStreamReader(sheetStream);
+            } catch (XMLStreamException e) {
+                throw new IOException(e);
+            }
+            return true;
+        }
+
+        @Override
+        protected List<Object> nextRow() throws IOException {
+            try {
+                while (xml.hasNext()) {
+                    int event = xml.next();
+                    if (event == XMLStreamConstants.START_ELEMENT && "row".equals(xml.getLocalName())) {
+                        return readXmlRow();
+                    } else if (event == XMLStreamConstants.END_ELEMENT && "sheetData".equals(xml.getLocalName())) {
+                        return null;
+                    }
+                }
+
+                return null;
+            } catch (XMLStreamException e) {
+                throw new IOException(e);
+            }
+        }
+
+        /**
+         * 读取行（与 usermodel 的 readRow 保持一致：只含实际存在的单元格，全空白时返回空列表）
+         */
+        private List<Object> readXmlRow() throws XMLStreamException {
+            int noneCount = 0;
+            List<Object> values = new ArrayList<>();
+
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.END_ELEMENT && "row".equals(xml.getLocalName())) {
+                    break;
+                }
+
+                if (event == XMLStreamConstants.START_ELEMENT && "c".equals(xml.getLocalName())) {
+                    Object value = readCell(xml.getAttributeValue(null, "t"), xml.getAttributeValue(null, "r"));
+                    if (value == null) {
+                        values.add("");
+                        noneCount++;
+                    } else {
+                        values.add(value);
+                    }
+                }
+            }
+
+            if (values.size() == noneCount) {
+                return Collections.emptyList();
+            } else {
+                return values;
+            }
+        }
+
+        /**
+         * 读取单元格（空白时返回 null）
+         *
+         * @param type 单元格类型
+         * @param ref  单元格位置（如 B3；可能没有）
+         */
+        private Object readCell(String type, String ref) throws XMLStreamException {
+            String value = null;
+            String formula = null;
+            StringBuilder inline = null;
+
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.END_ELEMENT && "c".equals(xml.getLocalName())) {
+                    break;
+                }
+
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = xml.getLocalName();
+                    if ("v".equals(name)) {
+                        value = xml.getElementText();
+                    } else if ("f".equals(name)) {
+                        String sharedIndex = ("shared".equals(xml.getAttributeValue(null, "t")) ? xml.getAttributeValue(null, "si") : null);
+                        formula = xml.getElementText();
+
+                        if (sharedIndex != null) {
+                            formula = resolveSharedFormula(sharedIndex, formula, ref);
+                        }
+                    } else if ("is".equals(name)) {
+                        inline = new StringBuilder();
+                    } else if ("t".equals(name) && inline != null) {
+                        inline.append(xml.getElementText());
+                    } else if ("rPh".equals(name)) {
+                        //跳过拼音注释
+                        skipElement();
+                    }
+                }
+            }
+
+            //公式单元格取公式（与 usermodel 一致，共享公式的从属单元格取按位置换算后的公式；无法换算时取缓存值）
+            if (Utils.isNotEmpty(formula)) {
+                return formula;
+            }
+
+            if ("inlineStr".equals(type)) {
+                return inline == null ? "" : inline.toString();
+            }
+
+            if (value == null) {
+                return null;
+            }
+
+            switch (type == null ? "n" : type) {
+                case "s":
+                    return sharedStrings.getItemAt(Integer.parseInt(value.trim())).getString();
+                case "b":
+                    return "1".equals(value.trim());
+                case "e":
+                    return FormulaError.forString(value.trim()).getCode();
+                case "str":
+                    return value;
+                case "d":
+                    //ISO 8601 日期（与 usermodel 一致，转为 Excel 日期序数）
+                    return toExcelDate(value.trim());
+                default:
+                    return Double.parseDouble(value.trim());
+            }
+        }
+
+        /**
+         * 共享公式：主单元格记录公式与位置；从属单元格（没有公式文本）按相对位置换算主单元格的公式
+         */
+        private String resolveSharedFormula(String sharedIndex, String formula, String ref) {
+            int[] cell = parseCellRef(ref);
+
+            if (Utils.isNotEmpty(formula)) {
+                if (cell != null) {
+                    sharedFormulas.put(sharedIndex, new SharedFormula(formula, cell[0], cell[1]));
+                }
+                return formula;
+            }
+
+            SharedFormula master = sharedFormulas.get(sharedIndex);
+            if (master == null || cell == null) {
+                return null;
+            }
+
+            return shiftFormula(master.formula, cell[0] - master.row, cell[1] - master.col);
+        }
+
+        private Object toExcelDate(String value) {
+            try {
+                if (value.indexOf('-') > 0) {
+                    LocalDateTime dateTime;
+                    if (value.indexOf('T') > 0) {
+                        dateTime = LocalDateTime.from(DateTimeFormatter.ISO_DATE_TIME.parse(value));
+                    } else {
+                        dateTime = LocalDate.parse(value, DateTimeFormatter.ISO_DATE).atStartOfDay();
+                    }
+
+                    return DateUtil.getExcelDate(dateTime, date1904);
+                } else {
+                    //只有时间
+                    return LocalTime.parse(value).toNanoOfDay() / 86_400_000_000_000D;
+                }
+            } catch (DateTimeException e) {
+                return value;
+            }
+        }
+
+        private void skipElement() throws XMLStreamException {
+            int depth = 1;
+            while (depth > 0 && xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+        }
+
+        private void closeSheet() throws IOException {
+            if (xml != null) {
+                try {
+                    xml.close();
+                } catch (XMLStreamException ignored) {
+                    //忽略
+                }
+                xml = null;
+            }
+
+            if (sheetStream != null) {
+                sheetStream.close();
+                sheetStream = null;
+            }
+        }
+
+        @Override
+        protected void releaseWorkbook() throws IOException {
+            try {
+                closeSheet();
+            } finally {
+                //只读打开，不回写
+                pkg.revert();
+            }
+        }
+    }
+
+    /**
+     * 共享公式的主单元格
+     */
+    private static class SharedFormula {
+        final String formula;
+        final int row;
+        final int col;
+
+        SharedFormula(String formula, int row, int col) {
+            this.formula = formula;
+            this.row = row;
+            this.col = col;
+        }
+    }
+
+    /**
+     * 解析单元格位置（如 B3 -> [3, 2]；不是单元格位置时返回 null）
+     */
+    private static int[] parseCellRef(String ref) {
+        if (ref == null) {
+            return null;
+        }
+
+        int i = (ref.startsWith("$") ? 1 : 0);
+        int col = 0;
+        int letters = 0;
+        while (i < ref.length() && ref.charAt(i) >= 'A' && ref.charAt(i) <= 'Z') {
+            col = col * 26 + (ref.charAt(i) - 'A' + 1);
+            letters++;
+            i++;
+        }
+
+        if (i < ref.length() && ref.charAt(i) == '$') {
+            i++;
+        }
+
+        int digitsFrom = i;
+        int row = 0;
+        while (i < ref.length() && Character.isDigit(ref.charAt(i)) && i - digitsFrom < 7) {
+            row = row * 10 + (ref.charAt(i) - '0');
+            i++;
         }
+
+        if (letters < 1 || letters > 3 || i == digitsFrom || i != ref.length()
+                || col > 16384 || row < 1 || row > 1048576) {
+            return null;
+        }
+
+        return new int[]{row, col};
+    }
+
+    /**
+     * 按相对位置换算公式中的单元格引用（带 $ 的绝对引用不变；跳过字符串、工作表名与函数名）
+     */
+    private static String shiftFormula(String formula, int rowDelta, int colDelta) {
+        StringBuilder out = new StringBuilder(formula.length() + 8);
+        int n = formula.length();
+        int i = 0;
+
+        while (i < n) {
+            char c = formula.charAt(i);
+
+            if (c == '"' || c == '\'') {
+                //字符串或带引号的工作表名（两个引号表示转义）
+                int j = i + 1;
+                while (j < n) {
+                    if (formula.charAt(j) == c) {
+                        if (j + 1 < n && formula.charAt(j + 1) == c) {
+                            j += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    j++;
+                }
+                j = Math.min(n, j + 1);
+                out.append(formula, i, j);
+                i = j;
+            } else if (Character.isLetter(c) || c == '$' || c == '_') {
+                int j = i;
+                while (j < n && (Character.isLetterOrDigit(formula.charAt(j)) || formula.charAt(j) == '$'
+                        || formula.charAt(j) == '_' || formula.charAt(j) == '.')) {
+                    j++;
+                }
+
+                String word = formula.substring(i, j);
+                char next = (j < n ? formula.charAt(j) : 0);
+                int[] cell = (next == '(' || next == '!' ? null : parseCellRef(word));
+
+                if (cell == null) {
+                    out.append(word);
+                } else {
+                    int dollar = word.indexOf('$', 1);
+                    boolean colAbsolute = word.startsWith("$");
+                    boolean rowAbsolute = dollar > 0;
+                    int row = (rowAbsolute ? cell[0] : cell[0] + rowDelta);
+                    int col = (colAbsolute ? cell[1] : cell[1] + colDelta);
+
+                    if (row < 1 || col < 1) {
+                        out.append("#REF!");
+                    } else {
+                        out.append(colAbsolute ? "$" : "").append(CellReference.convertNumToColString(col - 1))
+                                .append(rowAbsolute ? "$" : "").append(row);
+                    }
+                }
+
+                i = j;
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+
+        return out.toString();
     }
 
     private Map<String, Object> rowToMap(List<Object> titles, List<Object> values) {
@@ -174,7 +707,7 @@ public class ExcelLoader extends AbstractOptionsDocumentLoader<ExcelLoader.Optio
         private int documentMaxRows = 200;
 
         /**
-         * 一个文档最多放多少行
+         * 一个文档最多放多少行（小于 1 时，一个工作表一个文档）
          */
         public Options documentMaxRows(int documentMaxRows) {
             this.documentMaxRows = documentMaxRows;
@@ -8,6 +8,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.Collectors;
 
 public class ExcelLoaderTest {
     private static final Logger log = LoggerFactory.getLogger(ExcelLoaderTest.class);
@@ -25,4 +27,23 @@ public class ExcelLoaderTest {
         List<Document> docs = loader.load();
         System.out.println(docs);
     }
+
+    @Test
+    public void test3() throws Exception {
+        ExcelLoader loader = new ExcelLoader(ResourceUtil.getResource("demo2.xlsx"))
+                .options(opt -> opt.documentMaxRows(1));
+
+        try (Stream<Document> stream = loader.stream()) {
+            List<Document> docs = stream.collect(Collectors.toList());
+            System.out.println(docs);
+
+            //首行为标题，其后两行数据各成一个文档，空白行结束工作表
+            assert docs.size() == 2;
+            assert docs.get(0).getContent().contains("\"b\"");
+            assert docs.get(0).getContent().contains("98k");
+            assert docs.get(0).getContent().contains("13k") == false;
+            assert docs.get(1).getContent().contains("\"c\"");
+            assert docs.get(1).getContent().contains("13k");
+        }
+    }
 }
@@ -19,12 +19,15 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URL;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.noear.solon.ai.rag.Document;
@@ -67,48 +70,118 @@ public class PdfLoader extends AbstractOptionsDocumentLoader<PdfLoader.Options,
 
     @Override
     public List<Document> load() throws IOException {
+        try (Stream<Document> stream = stream()) {
+            return stream.collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 流式加载（分页模式下逐页提取文本，复用同一个文本提取器）
+     *
+     * @since 4.1
+     */
+    @Override
+    public Stream<Document> stream() throws IOException {
+        InputStream stream = null;
+        PDDocument pdf = null;
+
+        try {
+            PDFTextStripper stripper = new PDFTextStripper();
+            stream = source.get();
+
+            if (options.maxMainMemoryBytes < 0) {
+                pdf = PDDocument.load(stream);
+            } else {
+                //超出内存上限的部分使用临时文件
+                pdf = PDDocument.load(stream, MemoryUsageSetting.setupMixed(options.maxMainMemoryBytes));
+            }
+
+            return new PageIterator(stream, pdf, stripper).toStream();
+        } catch (Throwable e) {
+            try {
+                if (pdf != null) {
+                    pdf.close();
+                }
+            } finally {
+                if (stream != null) {
+                    stream.close();
+                }
+            }
+
+            if (e instanceof IOException) {
+                throw (IOException) e;
+            } else if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            } else {
+                throw new RuntimeException(e);
+            }
+        }
+    }
 
-        try (InputStream stream = source.get(); PDDocument pdf = PDDocument.load(stream)) {
-            List<Document> documents = new ArrayList<>();
+    /**
+     * 页面迭代器
+     */
+    private class PageIterator extends DocumentIterator {
+        private final InputStream stream;
+        private final PDDocument pdf;
+        private final PDFTextStripper stripper;
+        private final int totalPages;
+        private int pageNum = 0;
+        private boolean done = false;
+
+        PageIterator(InputStream stream, PDDocument pdf, PDFTextStripper stripper) {
+            this.stream = stream;
+            this.pdf = pdf;
+            this.stripper = stripper;
+            this.totalPages = pdf.getNumberOfPages();
+        }
 
+        @Override
+        protected Document fetch() throws IOException {
             if (options.loadMode == LoadMode.SINGLE) {
-                // 整个文档作为一个 Document
-                PDFTextStripper stripper = new PDFTextStripper();
+                if (done) {
+                    return null;
+                }
+
+                // 整个文档作为一个 Document（0 页文档也只产出一次）
+                done = true;
                 // 设置页面分隔符
                 stripper.setPageEnd(options.pageDelimiter);
                 String text = stripper.getText(pdf);
 
-                Document doc = new Document(text)
-                        .metadata(this.additionalMetadata)
-                        .metadata("pages", pdf.getNumberOfPages());
-                documents.add(doc);
+                return new Document(text)
+                        .metadata(additionalMetadata)
+                        .metadata("pages", totalPages);
+            }
 
-            } else {
-                // 每页作为一个 Document
-                PDFTextStripper stripper = new PDFTextStripper();
-                for (int pageNum = 1; pageNum <= pdf.getNumberOfPages(); pageNum++) {
-                    stripper.setStartPage(pageNum);
-                    stripper.setEndPage(pageNum);
-                    String pageText = stripper.getText(pdf);
-
-                    Map<String, Object> pageMetadata = new HashMap<>();
-                    pageMetadata.put("page", pageNum);
-                    pageMetadata.put("total_pages", pdf.getNumberOfPages());
-
-                    Document doc = new Document(pageText.trim(), pageMetadata)
-                            .summary("Page " + pageNum)
-                            .metadata(this.additionalMetadata);
-                    documents.add(doc);
-                }
+            // 每页作为一个 Document
+            if (pageNum >= totalPages) {
+                return null;
             }
 
-            return documents;
-        } catch (IOException e) {
-            throw e;
-        } catch (RuntimeException e) {
-            throw e;
-        } catch (Throwable e) {
-            throw new RuntimeException(e);
+            pageNum++;
+            stripper.setStartPage(pageNum);
+            stripper.setEndPage(pageNum);
+            String pageText = stripper.getText(pdf);
+
+            Map<String, Object> pageMetadata = new HashMap<>();
+            pageMetadata.put("page", pageNum);
+            pageMetadata.put("total_pages", totalPages);
+
+            return new Document(pageText.trim(), pageMetadata)
+                    .summary("Page " + pageNum)
+                    .metadata(additionalMetadata);
+        }
+
+        @Override
+        protected void release() throws IOException {
+            try {
+                pdf.close();
+            } finally {
+                stream.close();
+            }
         }
     }
 
@@ -135,6 +208,7 @@ public class PdfLoader extends AbstractOptionsDocumentLoader<PdfLoader.Options,
     public static class Options {
         private LoadMode loadMode = LoadMode.PAGE;
         private String pageDelimiter = "\n\f";
+        private long maxMainMemoryBytes = -1L;
 
         /**
          * PDF 加载模式，可以是单文档模式或分页模式
@@ -153,5 +227,15 @@ public class PdfLoader extends AbstractOptionsDocumentLoader<PdfLoader.Options,
             }
             return this;
         }
+
+        /**
+         * 解析时的最大堆内存（字节；超出部分使用临时文件；默认 -1 不限制）
+         *
+         * @since 4.1
+         */
+        public Options maxMainMemoryBytes(long maxMainMemoryBytes) {
+            this.maxMainMemoryBytes = maxMainMemoryBytes;
+            return this;
+        }
     }
 }
\ No newline at end of file
@@ -7,11 +7,15 @@ import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Assertions; // 修改导入路径
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
 import org.noear.solon.ai.rag.Document;
 import org.noear.solon.ai.rag.loader.PdfLoader;
 
@@ -147,4 +151,57 @@ public class PdfLoaderTest {
             }
         }
     }
+
+    /**
+     * 测试流式加载
+     */
+    @Test
+    public void testStream() throws IOException {
+        PdfLoader loader = new PdfLoader(pdfFile)
+                .options(o -> o.maxMainMemoryBytes(1024 * 1024));
+
+        try (Stream<Document> stream = loader.stream(); PDDocument pdf = PDDocument.load(pdfFile)) {
+            List<Document> documents = stream.collect(Collectors.toList());
+
+            // 与 pdfbox 直接逐页提取的文本对照
+            assertEquals(3, documents.size(), "页数应匹配");
+            PDFTextStripper stripper = new PDFTextStripper();
+            for (int i = 0; i < documents.size(); i++) {
+                stripper.setStartPage(i + 1);
+                stripper.setEndPage(i + 1);
+
+                Document doc = documents.get(i);
+                assertEquals(i + 1, doc.getMetadata().get("page"), "页码应匹配");
+                assertEquals(3, doc.getMetadata().get("total_pages"), "总页数应匹配");
+                assertEquals(stripper.getText(pdf).trim(), doc.getContent(), "页面内容应匹配");
+            }
+        }
+    }
+
+    /**
+     * 测试空文档流式加载（0 页）
+     */
+    @Test
+    public void testStreamEmpty() throws IOException {
+        File emptyFile = File.createTempFile("empty", ".pdf");
+        emptyFile.deleteOnExit();
+        try (PDDocument pdf = new PDDocument()) {
+            pdf.save(emptyFile);
+        }
+
+        PdfLoader loader = new PdfLoader(emptyFile)
+                .options(o -> o.loadMode(PdfLoader.LoadMode.SINGLE));
+        try (Stream<Document> stream = loader.stream()) {
+            // limit 防止流不终止时测试挂起
+            List<Document> documents = stream.limit(3).collect(Collectors.toList());
+
+            assertEquals(1, documents.size(), "单文档模式应只返回一个文档");
+            assertEquals(0, documents.get(0).getMetadata().get("pages"), "页数应为0");
+        }
+
+        loader = new PdfLoader(emptyFile);
+        try (Stream<Document> stream = loader.stream()) {
+            assertEquals(0, stream.limit(3).count(), "分页模式应无文档");
+        }
+    }
 }
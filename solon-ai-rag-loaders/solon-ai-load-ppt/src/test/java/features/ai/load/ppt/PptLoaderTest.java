@@ -8,6 +8,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.Collectors;
 
 public class PptLoaderTest {
     private static final Logger log = LoggerFactory.getLogger(PptLoaderTest.class);
@@ -29,4 +31,18 @@ public class PptLoaderTest {
         System.out.println(docs);
         assert docs.size()  == 2;
     }
+
+    @Test
+    public void test3() throws Exception {
+        PptLoader loader = new PptLoader(ResourceUtil.getResource("demo.pptx"))
+                .options(opt -> opt.loadMode(PptLoader.LoadMode.PAGE));
+
+        try (Stream<Document> stream = loader.stream()) {
+            List<Document> docs = stream.collect(Collectors.toList());
+            System.out.println(docs);
+            assert docs.size() == 2;
+            assert docs.get(0).getContent().contains("aaa");
+            assert docs.get(1).getContent().contains("bbb");
+        }
+    }
 }
@@ -17,16 +17,27 @@ package org.noear.solon.ai.rag.loader;
 
 import java.io.*;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.apache.poi.EmptyFileException;
 import org.apache.poi.EncryptedDocumentException;
 import org.apache.poi.hwpf.HWPFDocument;
 import org.apache.poi.hwpf.usermodel.Paragraph;
 import org.apache.poi.hwpf.usermodel.Range;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackageRelationshipCollection;
+import org.apache.poi.openxml4j.opc.PackageRelationshipTypes;
 import org.apache.poi.poifs.filesystem.DirectoryNode;
 import org.apache.poi.poifs.filesystem.FileMagic;
 import org.apache.poi.poifs.filesystem.POIFSFileSystem;
@@ -49,36 +60,93 @@ import org.noear.solon.lang.Preview;
  */
 @Preview("3.1")
 public class WordLoader extends AbstractOptionsDocumentLoader<WordLoader.Options, WordLoader> {
+    private static final String WORD_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+
     private final SupplierEx<InputStream> source;
+    private final File file;
 
     public WordLoader(File source) {
-        this(() -> new FileInputStream(source));
+        this(() -> new FileInputStream(source), source);
     }
 
     public WordLoader(URL source) {
-        this(() -> source.openStream());
+        this(() -> source.openStream(), null);
     }
 
     public WordLoader(SupplierEx<InputStream> source) {
+        this(source, null);
+    }
+
+    private WordLoader(SupplierEx<InputStream> source, File file) {
         this.source = source;
+        this.file = file;
         this.options = new Options();
         this.additionalMetadata.put("type", "word");
     }
 
     @Override
     public List<Document> load() throws IOException {
-        try (InputStream stream = source.get()) {
-            List<Document> documents = new ArrayList<>();
+        try (Stream<Document> stream = stream()) {
+            return stream.collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 流式加载（docx 分段模式下流式解析正文 xml，逐段产出；其它情况先完整读取）
+     *
+     * @since 4.1
+     */
+    @Override
+    public Stream<Document> stream() throws IOException {
+        if (options.loadMode != LoadMode.PARAGRAPH) {
+            return loadAll().stream();
+        }
+
+        //非文件来源，先转存为临时文件（避免整个文件驻留内存）
+        File target = file;
+        File tempFile = null;
 
-            try (Closeable reader = create(stream)) {
-                if (reader instanceof XWPFDocument) {
-                    doRead((XWPFDocument) reader, documents);
-                } else {
-                    doRead((HWPFDocument) reader, documents);
+        try {
+            if (target == null) {
+                tempFile = Files.createTempFile("solon-ai-word", ".tmp").toFile();
+                try (InputStream stream = source.get()) {
+                    Files.copy(stream, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
                 }
+                target = tempFile;
             }
 
-            return documents;
+            if (FileMagic.valueOf(target) == FileMagic.OOXML) {
+                return new DocxParagraphIterator(OPCPackage.open(target, PackageAccess.READ), tempFile).toStream();
+            }
+        } catch (Throwable e) {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+
+            if (e instanceof IOException) {
+                throw (IOException) e;
+            } else if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            } else {
+                throw new RuntimeException(e);
+            }
+        }
+
+        //doc 格式，仍需完整读取
+        try (InputStream stream = new FileInputStream(target)) {
+            return read(stream).stream();
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    private List<Document> loadAll() throws IOException {
+        try (InputStream stream = source.get()) {
+            return read(stream);
         } catch (IOException e) {
             throw e;
         } catch (RuntimeException e) {
@@ -88,6 +156,20 @@ public class WordLoader extends AbstractOptionsDocumentLoader<WordLoader.Options
         }
     }
 
+    private List<Document> read(InputStream stream) throws IOException {
+        List<Document> documents = new ArrayList<>();
+
+        try (Closeable reader = create(stream)) {
+            if (reader instanceof XWPFDocument) {
+                doRead((XWPFDocument) reader, documents);
+            } else {
+                doRead((HWPFDocument) reader, documents);
+            }
+        }
+
+        return documents;
+    }
+
     private void doRead(XWPFDocument reader, List<Document> documents) throws IOException {
         if (options.loadMode == LoadMode.SINGLE) {
             try (XWPFWordExtractor extractor = new XWPFWordExtractor(reader)) {
@@ -155,6 +237,135 @@ public class WordLoader extends AbstractOptionsDocumentLoader<WordLoader.Options
         }
     }
 
+    /**
+     * docx 段落迭代器（基于 StAX 流式解析正文 xml，只取正文顶层段落，与 XWPFDocument.getParagraphs 一致）
+     */
+    private class DocxParagraphIterator extends DocumentIterator {
+        private final OPCPackage pkg;
+        private final File tempFile;
+        private final InputStream partStream;
+        private final XMLStreamReader xml;
+        private int depth;
+        private int bodyDepth = -1;
+
+        DocxParagraphIterator(OPCPackage pkg, File tempFile) throws IOException {
+            this.pkg = pkg;
+            this.tempFile = tempFile;
+
+            try {
+                PackageRelationshipCollection rels = pkg.getRelationshipsByType(PackageRelationshipTypes.CORE_DOCUMENT);
+                if (rels.size() == 0) {
+                    throw new IOException("Can't open word - main document part not found");
+                }
+
+                PackagePart part = pkg.getPart(rels.getRelationship(0));
+                XMLInputFactory factory = XMLInputFactory.newInstance();
+                factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+                factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+                this.partStream = part.getInputStream();
+                this.xml = factory.createXMLStreamReader(partStream);
+            } catch (IOException e) {
+                pkg.revert();
+                throw e;
+            } catch (Exception e) {
+                pkg.revert();
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        protected Document fetch() throws IOException {
+            try {
+                while (xml.hasNext()) {
+                    int event = xml.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        depth++;
+
+                        if (isWord("body")) {
+                            bodyDepth = depth;
+                        } else if (bodyDepth > 0 && depth == bodyDepth + 1 && isWord("p")) {
+                            String content = readParagraph();
+                            depth--;
+
+                            return new Document(content)
+                                    .metadata(additionalMetadata);
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        depth--;
+                    }
+                }
+
+                return null;
+            } catch (XMLStreamException e) {
+                throw new IOException(e);
+            }
+        }
+
+        /**
+         * 读取段落文本（文本、制表与换行；跳过文本框等嵌套内容）
+         */
+        private String readParagraph() throws XMLStreamException {
+            StringBuilder buf = new StringBuilder();
+            int level = 1;
+            int skipLevel = 0;
+
+            while (level > 0 && xml.hasNext()) {
+                int event = xml.next();
+
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    level++;
+
+                    if (skipLevel > 0) {
+                        continue;
+                    }
+
+                    if (isWord("txbxContent")) {
+                        skipLevel = level;
+                    } else if (isWord("t")) {
+                        buf.append(xml.getElementText());
+                        level--;
+                    } else if (isWord("tab")) {
+                        buf.append('\t');
+                    } else if (isWord("br") || isWord("cr")) {
+                        buf.append('\n');
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (skipLevel == level) {
+                        skipLevel = 0;
+                    }
+                    level--;
+                }
+            }
+
+            return buf.toString();
+        }
+
+        private boolean isWord(String localName) {
+            return localName.equals(xml.getLocalName()) && WORD_NS.equals(xml.getNamespaceURI());
+        }
+
+        @Override
+        protected void release() throws IOException {
+            try {
+                try {
+                    xml.close();
+                } catch (XMLStreamException ignored) {
+                    //忽略
+                }
+
+                partStream.close();
+            } finally {
+                //只读打开，不回写
+                pkg.revert();
+
+                if (tempFile != null) {
+                    tempFile.delete();
+                }
+            }
+        }
+    }
+
     public static enum LoadMode {
         /**
          * 整个文档作为一个 Document
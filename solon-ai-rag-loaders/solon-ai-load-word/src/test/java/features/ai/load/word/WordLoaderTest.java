@@ -8,6 +8,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 public class WordLoaderTest {
     private static final Logger log = LoggerFactory.getLogger(WordLoaderTest.class);
@@ -29,4 +30,16 @@ public class WordLoaderTest {
         System.out.println(docs);
         assert docs.size() > 0;
     }
-}
\ No newline at end of file
+
+    @Test
+    public void test3() throws Exception {
+        WordLoader loader = new WordLoader(ResourceUtil.getResource("demo.docx"))
+                .options(opt -> opt.loadMode(WordLoader.LoadMode.PARAGRAPH));
+
+        try (Stream<Document> stream = loader.stream()) {
+            Document first = stream.findFirst().get();
+            System.out.println(first);
+            assert first.getContent().contains("十四届全国人大三次会议开幕");
+        }
+    }
+}
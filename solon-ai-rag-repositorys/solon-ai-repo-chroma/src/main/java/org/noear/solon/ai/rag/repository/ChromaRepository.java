@@ -198,13 +198,23 @@ public class ChromaRepository implements RepositoryStorable, RepositoryLifecycle
      */
     @Override
     public List<Document> search(QueryCondition condition) throws IOException {
+        return search(condition, null);
+    }
+
+    @Override
+    public boolean isQueryEmbedSupported() {
+        return true;
+    }
+
+    @Override
+    public List<Document> search(QueryCondition condition, float[] queryEmbed) throws IOException {
         // 如果查询条件为空，返回空列表
         if (condition == null || condition.getQuery() == null) {
             return new ArrayList<>();
         }
 
         // 使用文本查询生成向量
-        float[] embedding = config.embeddingModel.embed(condition.getQuery());
+        float[] embedding = queryEmbed != null ? queryEmbed : config.embeddingModel.embed(condition.getQuery());
 
         try {
             // 将float[]转换为List<Float>
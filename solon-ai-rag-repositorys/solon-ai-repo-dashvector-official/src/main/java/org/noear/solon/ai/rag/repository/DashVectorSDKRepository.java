@@ -397,12 +397,22 @@ public class DashVectorSDKRepository implements RepositoryStorable, RepositoryLi
      */
     @Override
     public List<Document> search(QueryCondition condition) throws IOException {
+        return search(condition, null);
+    }
+
+    @Override
+    public boolean isQueryEmbedSupported() {
+        return true;
+    }
+
+    @Override
+    public List<Document> search(QueryCondition condition, float[] queryEmbed) throws IOException {
         if (condition == null || condition.getQuery() == null) {
             return new ArrayList<>();
         }
 
         try {
-            QueryDocRequest request = buildQueryRequest(condition);
+            QueryDocRequest request = buildQueryRequest(condition, queryEmbed);
             Response<List<Doc>> resp = collection.query(request);
             if (!resp.isSuccess()) {
                 throw new IOException("Failed to query documents: " + resp.getMessage());
@@ -443,6 +453,15 @@ public class DashVectorSDKRepository implements RepositoryStorable, RepositoryLi
      * 根据 {@link QueryCondition} / {@link DashVectorQueryCondition} 构造 SDK 的 {@link QueryDocRequest}
      */
     public QueryDocRequest buildQueryRequest(QueryCondition condition) throws IOException {
+        return buildQueryRequest(condition, null);
+    }
+
+    /**
+     * 根据 {@link QueryCondition} / {@link DashVectorQueryCondition} 构造 SDK 的 {@link QueryDocRequest}
+     *
+     * @param queryEmbed 预先计算的查询嵌入（为 null 时，由嵌入模型生成）
+     */
+    public QueryDocRequest buildQueryRequest(QueryCondition condition, float[] queryEmbed) throws IOException {
         QueryDocRequest.QueryDocRequestBuilder requestBuilder = QueryDocRequest.builder()
                 .topk(condition.getLimit())
                 .includeVector(false);
@@ -457,7 +476,7 @@ public class DashVectorSDKRepository implements RepositoryStorable, RepositoryLi
         if (useIdQuery) {
             requestBuilder.id(dvCondition.getId());
         } else if (!Utils.isEmpty(condition.getQuery())) {
-            float[] embedding = config.embeddingModel.embed(condition.getQuery());
+            float[] embedding = queryEmbed != null ? queryEmbed : config.embeddingModel.embed(condition.getQuery());
             Vector queryVector = Vector.builder()
                     .value(DocumentConverter.floatArrayToList(embedding))
                     .build();
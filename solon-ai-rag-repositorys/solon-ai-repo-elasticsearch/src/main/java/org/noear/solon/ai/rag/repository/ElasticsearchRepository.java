@@ -154,12 +154,22 @@ public class ElasticsearchRepository implements RepositoryStorable, RepositoryLi
      */
     @Override
     public List<Document> search(QueryCondition condition) throws IOException {
+        return search(condition, null);
+    }
+
+    @Override
+    public boolean isQueryEmbedSupported() {
+        return true;
+    }
+
+    @Override
+    public List<Document> search(QueryCondition condition, float[] queryEmbed) throws IOException {
         if (condition.getQuery() == null || condition.getQuery().isEmpty()) {
             throw new IllegalArgumentException("Query text cannot be empty for vector search");
         }
 
         // 生成查询向量
-        float[] queryVector = config.embeddingModel.embed(condition.getQuery());
+        float[] queryVector = queryEmbed != null ? queryEmbed : config.embeddingModel.embed(condition.getQuery());
 
         String responseBody = executeSearch(condition, queryVector);
         return parseSearchResponse(responseBody);
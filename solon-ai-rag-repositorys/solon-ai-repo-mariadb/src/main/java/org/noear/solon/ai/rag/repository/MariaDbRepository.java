@@ -355,7 +355,17 @@ public class MariaDbRepository implements RepositoryStorable, RepositoryLifecycl
 
     @Override
     public List<Document> search(QueryCondition condition) throws IOException {
-        float[] queryEmbedding = config.embeddingModel.embed(condition.getQuery());
+        return search(condition, null);
+    }
+
+    @Override
+    public boolean isQueryEmbedSupported() {
+        return true;
+    }
+
+    @Override
+    public List<Document> search(QueryCondition condition, float[] queryEmbed) throws IOException {
+        float[] queryEmbedding = queryEmbed != null ? queryEmbed : config.embeddingModel.embed(condition.getQuery());
 
         String sql = buildSearchSql(condition);
         String queryVectorText = floatArrayToText(queryEmbedding);
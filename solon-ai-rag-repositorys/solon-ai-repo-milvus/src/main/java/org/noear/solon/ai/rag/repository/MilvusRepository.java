@@ -221,7 +221,17 @@ public class MilvusRepository implements RepositoryStorable, RepositoryLifecycle
 
     @Override
     public List<Document> search(QueryCondition condition) throws IOException {
-        FloatVec queryVector = new FloatVec(config.embeddingModel.embed(condition.getQuery()));
+        return search(condition, null);
+    }
+
+    @Override
+    public boolean isQueryEmbedSupported() {
+        return true;
+    }
+
+    @Override
+    public List<Document> search(QueryCondition condition, float[] queryEmbed) throws IOException {
+        FloatVec queryVector = new FloatVec(queryEmbed != null ? queryEmbed : config.embeddingModel.embed(condition.getQuery()));
 
         SearchReqBuilder builder = SearchReq.builder()
                 .collectionName(config.collectionName)
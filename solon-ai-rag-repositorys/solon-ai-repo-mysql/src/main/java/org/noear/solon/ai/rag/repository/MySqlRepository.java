@@ -313,7 +313,17 @@ public class MySqlRepository implements RepositoryStorable, RepositoryLifecycle
      */
     @Override
     public List<Document> search(QueryCondition condition) throws IOException {
-        float[] queryEmbedding = config.embeddingModel.embed(condition.getQuery());
+        return search(condition, null);
+    }
+
+    @Override
+    public boolean isQueryEmbedSupported() {
+        return true;
+    }
+
+    @Override
+    public List<Document> search(QueryCondition condition, float[] queryEmbed) throws IOException {
+        float[] queryEmbedding = queryEmbed != null ? queryEmbed : config.embeddingModel.embed(condition.getQuery());
         try {
             return searchWithDatabaseFunction(condition, queryEmbedding);
         } catch (Exception e) {
@@ -330,7 +330,17 @@ public class PgVectorRepository implements RepositoryStorable, RepositoryLifecyc
      */
     @Override
     public List<Document> search(QueryCondition condition) throws IOException {
-        float[] queryEmbedding = config.embeddingModel.embed(condition.getQuery());
+        return search(condition, null);
+    }
+
+    @Override
+    public boolean isQueryEmbedSupported() {
+        return true;
+    }
+
+    @Override
+    public List<Document> search(QueryCondition condition, float[] queryEmbed) throws IOException {
+        float[] queryEmbedding = queryEmbed != null ? queryEmbed : config.embeddingModel.embed(condition.getQuery());
 
         StringBuilder sql = new StringBuilder();
         sql.append("SELECT id, content, metadata, 1 - (embedding <=> ?::vector) as similarity ");
@@ -177,8 +177,18 @@ public class QdrantRepository implements RepositoryStorable, RepositoryLifecycle
 
     @Override
     public List<Document> search(QueryCondition condition) throws IOException {
+        return search(condition, null);
+    }
+
+    @Override
+    public boolean isQueryEmbedSupported() {
+        return true;
+    }
+
+    @Override
+    public List<Document> search(QueryCondition condition, float[] queryEmbed) throws IOException {
         try {
-            float[] queryVector = config.embeddingModel.embed(condition.getQuery());
+            float[] queryVector = queryEmbed != null ? queryEmbed : config.embeddingModel.embed(condition.getQuery());
 
             QueryPoints.Builder queryBuilder = QueryPoints.newBuilder().setCollectionName(config.collectionName)
                     .setQuery(nearest(queryVector))
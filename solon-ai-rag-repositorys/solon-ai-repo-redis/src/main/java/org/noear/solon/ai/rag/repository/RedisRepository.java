@@ -244,7 +244,17 @@ public class RedisRepository implements RepositoryStorable, RepositoryLifecycle
      */
     @Override
     public List<Document> search(QueryCondition condition) throws IOException {
-        float[] embedding = config.embeddingModel.embed(condition.getQuery());
+        return search(condition, null);
+    }
+
+    @Override
+    public boolean isQueryEmbedSupported() {
+        return true;
+    }
+
+    @Override
+    public List<Document> search(QueryCondition condition, float[] queryEmbed) throws IOException {
+        float[] embedding = queryEmbed != null ? queryEmbed : config.embeddingModel.embed(condition.getQuery());
 
         String filter = FilterTransformer.getInstance().transform(condition.getFilterExpression());
 
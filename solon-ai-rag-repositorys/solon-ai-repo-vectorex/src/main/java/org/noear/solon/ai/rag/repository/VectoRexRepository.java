@@ -176,7 +176,17 @@ public class VectoRexRepository implements RepositoryStorable, RepositoryLifecyc
 
     @Override
     public List<Document> search(QueryCondition condition) throws IOException {
-        float[] embed = config.embeddingModel.embed(condition.getQuery());
+        return search(condition, null);
+    }
+
+    @Override
+    public boolean isQueryEmbedSupported() {
+        return true;
+    }
+
+    @Override
+    public List<Document> search(QueryCondition condition, float[] queryEmbed) throws IOException {
+        float[] embed = queryEmbed != null ? queryEmbed : config.embeddingModel.embed(condition.getQuery());
         List<Float> embedList = new ArrayList<>();
         for (float f : embed) {
             embedList.add(f);
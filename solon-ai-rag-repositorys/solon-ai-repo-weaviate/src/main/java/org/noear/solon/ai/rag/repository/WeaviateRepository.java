@@ -258,6 +258,16 @@ public class WeaviateRepository implements RepositoryStorable, RepositoryLifecyc
      */
     @Override
     public List<Document> search(QueryCondition condition) throws IOException {
+        return search(condition, null);
+    }
+
+    @Override
+    public boolean isQueryEmbedSupported() {
+        return true;
+    }
+
+    @Override
+    public List<Document> search(QueryCondition condition, float[] queryEmbed) throws IOException {
         if (condition == null || condition.getQuery() == null) {
             return new ArrayList<>();
         }
@@ -267,7 +277,7 @@ public class WeaviateRepository implements RepositoryStorable, RepositoryLifecyc
         }
 
         // 使用 EmbeddingModel 生成查询向量
-        float[] embedding = config.embeddingModel.embed(condition.getQuery());
+        float[] embedding = queryEmbed != null ? queryEmbed : config.embeddingModel.embed(condition.getQuery());
         double[] queryVec = new double[embedding.length];
         for (int i = 0; i < embedding.length; i++) {
             queryVec[i] = embedding[i];
@@ -0,0 +1,63 @@
+package features.ai.chat;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.noear.snack4.ONode;
+import org.noear.solon.ai.chat.CacheControl;
+import org.noear.solon.ai.chat.ChatConfig;
+import org.noear.solon.ai.chat.ChatOptions;
+import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.llm.dialect.anthropic.AnthropicRequestBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Anthropic 缓存断点：稳定前缀末尾补断点
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class AnthropicCacheBreakpointTest {
+    private static List<ChatMessage> messages() {
+        return Arrays.asList(
+                ChatMessage.ofSystem("system"),
+                ChatMessage.ofUser("u1"),
+                ChatMessage.ofAssistant("a1"),
+                ChatMessage.ofUser("u2"),
+                ChatMessage.ofAssistant("a2"),
+                ChatMessage.ofUser("u3"),
+                ChatMessage.ofAssistant("a3"),
+                ChatMessage.ofUser("u4"));
+    }
+
+    private static boolean hasBreakpoint(ONode messageNode) {
+        ONode content = messageNode.get("content");
+        return content.isArray() && content.get(-1).hasKey("cache_control");
+    }
+
+    @Test
+    public void stablePrefix() {
+        ChatConfig config = new ChatConfig();
+        config.setModel("claude-sonnet");
+
+        // system + u1 + a1 稳定：a1（节点 1）补断点，其余 2 个配额滚动到最后两条
+        ChatOptions options = ChatOptions.of()
+                .cacheControl(CacheControl.ofEphemeral().withStableMessages(3));
+        ONode messagesNode = new AnthropicRequestBuilder().build(config, options, messages(), false).get("messages");
+
+        Assertions.assertEquals(7, messagesNode.size());
+        Assertions.assertTrue(hasBreakpoint(messagesNode.get(1)));
+        Assertions.assertFalse(hasBreakpoint(messagesNode.get(4)));
+        Assertions.assertTrue(hasBreakpoint(messagesNode.get(5)));
+        Assertions.assertTrue(hasBreakpoint(messagesNode.get(6)));
+
+        // 未知稳定前缀：3 个配额全部滚动
+        options = ChatOptions.of().cacheControl(CacheControl.ofEphemeral());
+        messagesNode = new AnthropicRequestBuilder().build(config, options, messages(), false).get("messages");
+
+        Assertions.assertFalse(hasBreakpoint(messagesNode.get(1)));
+        Assertions.assertTrue(hasBreakpoint(messagesNode.get(4)));
+        Assertions.assertTrue(hasBreakpoint(messagesNode.get(6)));
+    }
+}
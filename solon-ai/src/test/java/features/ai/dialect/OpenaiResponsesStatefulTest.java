@@ -0,0 +1,134 @@
+package features.ai.dialect;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.noear.snack4.ONode;
+import org.noear.solon.ai.chat.ChatConfig;
+import org.noear.solon.ai.chat.ChatException;
+import org.noear.solon.ai.chat.ChatOptions;
+import org.noear.solon.ai.chat.ChatRequest;
+import org.noear.solon.ai.chat.ChatResponseDefault;
+import org.noear.solon.ai.chat.ChatSession;
+import org.noear.solon.ai.chat.message.ChatMessage;
+import org.noear.solon.ai.chat.session.InMemoryChatSession;
+import org.noear.solon.ai.llm.dialect.openai.OpenaiResponsesContinuation;
+import org.noear.solon.ai.llm.dialect.openai.OpenaiResponsesDialect;
+
+/**
+ * OpenAI Responses 服务端会话续接（previous_response_id）单测（mock JSON，不依赖真实 API）
+ *
+ * @author noear
+ * @since 4.1
+ */
+public class OpenaiResponsesStatefulTest {
+    private static final OpenaiResponsesDialect dialect = OpenaiResponsesDialect.getInstance();
+    private static final ChatConfig config = new ChatConfig();
+
+    private static ChatRequest newReq(ChatSession session, ChatOptions options) {
+        return new ChatRequest(config, dialect, options, session, ChatMessage.ofSystem("system"), null, false);
+    }
+
+    private static void complete(ChatRequest req, String responseId) {
+        String json = "{\"id\":\"" + responseId + "\",\"object\":\"response\",\"status\":\"completed\","
+                + "\"model\":\"gpt-5\",\"output\":[{\"id\":\"m1\",\"type\":\"message\",\"role\":\"assistant\","
+                + "\"content\":[{\"type\":\"output_text\",\"text\":\"ok\"}]}]}";
+
+        ChatResponseDefault resp = new ChatResponseDefault(req, false);
+        Assertions.assertTrue(dialect.parseResponseJson(config, resp, json));
+        req.getSession().addMessage(resp.getMessage());
+    }
+
+    private static ONode build(ChatRequest req) {
+        return ONode.ofJson(req.toRequestData());
+    }
+
+    @Test
+    public void incrementalInput() {
+        ChatSession session = InMemoryChatSession.builder().build();
+        ChatOptions options = ChatOptions.of().optionSet(OpenaiResponsesDialect.OPTION_STATEFUL, true);
+
+        session.addMessage(ChatMessage.ofUser("u1"));
+        ChatRequest req = newReq(session, options);
+        ONode root = build(req);
+        Assertions.assertFalse(root.hasKey("previous_response_id"));
+        Assertions.assertFalse(root.hasKey(OpenaiResponsesDialect.OPTION_STATEFUL));
+        Assertions.assertEquals(1, root.get("input").size());
+        complete(req, "resp_1");
+
+        // 第二轮：只发送新增的用户消息，instructions 仍保留
+        session.addMessage(ChatMessage.ofUser("u2"));
+        req = newReq(session, options);
+        root = build(req);
+        Assertions.assertEquals("resp_1", root.get("previous_response_id").getString());
+        Assertions.assertEquals("system", root.get("instructions").getString());
+        Assertions.assertEquals(1, root.get("input").size());
+        Assertions.assertEquals("u2", root.get("input").get(0).get("content").getString());
+        complete(req, "resp_2");
+
+        session.addMessage(ChatMessage.ofUser("u3"));
+        root = build(newReq(session, options));
+        Assertions.assertEquals("resp_2", root.get("previous_response_id").getString());
+        Assertions.assertEquals(1, root.get("input").size());
+    }
+
+    @Test
+    public void prefixChanged() {
+        ChatSession session = InMemoryChatSession.builder().build();
+        ChatOptions options = ChatOptions.of().optionSet(OpenaiResponsesDialect.OPTION_STATEFUL, true);
+
+        session.addMessage(ChatMessage.ofUser("u1"));
+        complete(newReq(session, options), "resp_1");
+
+        // 会话被改写：退回完整历史，并清除状态
+        session.clear();
+        session.addMessage(ChatMessage.ofUser("x1"));
+        session.addMessage(ChatMessage.ofAssistant("y1"));
+        session.addMessage(ChatMessage.ofUser("x2"));
+
+        ONode root = build(newReq(session, options));
+        Assertions.assertFalse(root.hasKey("previous_response_id"));
+        Assertions.assertEquals(3, root.get("input").size());
+        Assertions.assertNull(OpenaiResponsesContinuation.get(session));
+    }
+
+    @Test
+    public void disabled() {
+        ChatSession session = InMemoryChatSession.builder().build();
+
+        session.addMessage(ChatMessage.ofUser("u1"));
+        complete(newReq(session, ChatOptions.of()), "resp_1");
+        Assertions.assertNull(OpenaiResponsesContinuation.get(session));
+
+        // 关闭 store 时不续接
+        ChatOptions options = ChatOptions.of()
+                .optionSet(OpenaiResponsesDialect.OPTION_STATEFUL, true)
+                .optionSet("store", false);
+        complete(newReq(session, options), "resp_2");
+        Assertions.assertNull(OpenaiResponsesContinuation.get(session));
+    }
+
+    @Test
+    public void expiredFallback() {
+        ChatSession session = InMemoryChatSession.builder().build();
+        ChatOptions options = ChatOptions.of().optionSet(OpenaiResponsesDialect.OPTION_STATEFUL, true);
+
+        session.addMessage(ChatMessage.ofUser("u1"));
+        complete(newReq(session, options), "resp_1");
+        session.addMessage(ChatMessage.ofUser("u2"));
+
+        ChatRequest req = newReq(session, options);
+        Assertions.assertEquals(1, build(req).get("input").size());
+
+        // 其它错误不恢复
+        Assertions.assertFalse(dialect.recoverRequest(req, new ChatException("[rate_limit_exceeded] slow down")));
+
+        ChatException error = new ChatException("[invalid_request_error] Previous response with id 'resp_1' not found.");
+        Assertions.assertTrue(dialect.recoverRequest(req, error));
+        Assertions.assertFalse(dialect.recoverRequest(req, error));
+
+        // 重试时以完整历史构建
+        ONode root = build(req);
+        Assertions.assertFalse(root.hasKey("previous_response_id"));
+        Assertions.assertEquals(3, root.get("input").size());
+    }
+}